@@ -33,6 +33,7 @@ create table if not exists app
     cover        varchar(512)                       null comment '应用封面',
     initPrompt   text                               null comment '应用初始化的 prompt',
     codeGenType  varchar(64)                        null comment '代码生成类型（枚举）',
+    codeGenTypeSource varchar(32)                   null comment '代码生成类型来源：llm/shadow/fast_path/fallback',
     deployKey    varchar(64)                        null comment '部署标识',
     deployedTime datetime                           null comment '部署时间',
     priority     int      default 0                 not null comment '优先级',
@@ -46,6 +47,9 @@ create table if not exists app
     INDEX idx_userId (userId)            -- 提升基于用户 ID 的查询性能
 ) comment '应用' collate = utf8mb4_unicode_ci;
 
+-- 已有数据库升级：记录代码生成类型来源，路由分类器只用可信来源训练
+-- alter table app add column codeGenTypeSource varchar(32) null comment '代码生成类型来源：llm/shadow/fast_path/fallback' after codeGenType;
+
 -- 对话历史表
 create table if not exists chat_history
 (
@@ -1,5 +1,7 @@
 package com.hz.aicodelessappbuilder.ai;
 
+import cn.hutool.core.util.StrUtil;
+import com.hz.aicodelessappbuilder.ai.cache.PromptResultCache;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
@@ -15,16 +17,35 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class AiAppNameGeneratorServiceFactory {
 
+    /**
+     * 可缓存的应用名称最大长度（提示词要求不超过 12 个字符，留出余量）
+     */
+    private static final int MAX_CACHED_NAME_LENGTH = 30;
+
     @Resource
     private ChatModel chatModel;
 
+    @Resource
+    private PromptResultCache promptResultCache;
+
     /**
      * 创建AI应用名称生成服务实例
+     * 按归一化的提示词缓存生成的名称
      */
     @Bean
     public AiAppNameGeneratorService aiAppNameGeneratorService() {
-        return AiServices.builder(AiAppNameGeneratorService.class)
+        AiAppNameGeneratorService aiService = AiServices.builder(AiAppNameGeneratorService.class)
                 .chatModel(chatModel)
                 .build();
+        return userPrompt -> promptResultCache.get(PromptResultCache.KIND_APP_NAME, userPrompt,
+                () -> aiService.generateAppName(userPrompt), AiAppNameGeneratorServiceFactory::validateAppName);
+    }
+
+    /**
+     * 名称非空且不过长（模型没有按要求只返回名称时不缓存）
+     */
+    private static String validateAppName(String result) {
+        String name = result.trim();
+        return StrUtil.isBlank(name) || name.length() > MAX_CACHED_NAME_LENGTH ? null : name;
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.hz.aicodelessappbuilder.ai;
 
+import com.hz.aicodelessappbuilder.ai.cache.PromptResultCache;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
@@ -18,14 +20,33 @@ public class AiCodeGenTypeRoutingServiceFactory {
     @Resource
     private ChatModel chatModel;
 
+    @Resource
+    private PromptResultCache promptResultCache;
+
     /**
-     * 创建AI代码生成类型路由服务实例
+     * 创建AI代码生成类型路由服务实例（模型路由）
+     * 模型的路由结果按归一化的提示词缓存，只缓存合法的生成类型；本地分类器快速路由见 FastPathCodeGenTypeRouter
      */
     @Bean
     public AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService() {
-        return AiServices.builder(AiCodeGenTypeRoutingService.class)
+        AiCodeGenTypeRoutingService aiService = AiServices.builder(AiCodeGenTypeRoutingService.class)
                 .chatModel(chatModel)
                 .build();
+        return userPrompt -> promptResultCache.get(PromptResultCache.KIND_ROUTING, userPrompt,
+                () -> aiService.routeCodeGenType(userPrompt), AiCodeGenTypeRoutingServiceFactory::validateCodeGenType);
+    }
+
+    /**
+     * 路由结果必须是 CodeGenTypeEnum 的枚举名，否则不缓存
+     */
+    private static String validateCodeGenType(String result) {
+        String name = result.trim();
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            if (codeGenType.name().equals(name)) {
+                return name;
+            }
+        }
+        return null;
     }
 }
 
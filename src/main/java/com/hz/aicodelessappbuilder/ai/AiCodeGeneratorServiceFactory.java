@@ -2,23 +2,42 @@ package com.hz.aicodelessappbuilder.ai;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.hz.aicodelessappbuilder.ai.guardrail.PromptSafetyInputGuardrail;
+import com.hz.aicodelessappbuilder.ai.memory.ChatMemoryCompactor;
+import com.hz.aicodelessappbuilder.ai.memory.CompactingChatMemory;
+import com.hz.aicodelessappbuilder.ai.memory.TieredChatMemoryStore;
+import com.hz.aicodelessappbuilder.ai.prompt.StablePromptAssembler;
+import com.hz.aicodelessappbuilder.ai.tools.ToolCallScheduler;
 import com.hz.aicodelessappbuilder.ai.tools.ToolManager;
+import com.hz.aicodelessappbuilder.config.ModelResilienceConfig;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
 import com.hz.aicodelessappbuilder.service.ChatHistoryService;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @Slf4j
@@ -28,13 +47,27 @@ public class AiCodeGeneratorServiceFactory {
     private ChatModel chatModel;
 
     @Resource
-    private StreamingChatModel openAiStreamingChatModel;
+    private ModelResilienceConfig modelResilienceConfig;
+
+    /**
+     * 代码生成使用的同步模型（与短调用分开计入舱壁和熔断）
+     */
+    private ChatModel generationChatModel;
+
+    @Resource
+    private StreamingChatModel streamingChatModelPool;
 
     @Resource
     private StreamingChatModel reasoningStreamingChatModel;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private TieredChatMemoryStore tieredChatMemoryStore;
+
+    @Resource
+    private ChatMemoryCompactor chatMemoryCompactor;
+
+    @Resource
+    private StablePromptAssembler stablePromptAssembler;
 
     @Resource
     private ChatHistoryService chatHistoryService;
@@ -42,71 +75,193 @@ public class AiCodeGeneratorServiceFactory {
     @Resource
     private ToolManager toolManager;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Vue 项目生成时是否并发执行同一轮响应中的工具调用
+     */
+    @Value("${code.tool-call.concurrent:true}")
+    private boolean concurrentToolCalls;
+
+    /**
+     * 工具调用并发执行器，所有 Vue 项目服务共用（路径冲突判断包含应用目录）
+     */
+    private ToolCallScheduler toolCallScheduler;
+
+    private Timer warmStartTimer;
+
+    private Timer coldStartTimer;
+
     /**
-     * AI 服务实例缓存
+     * 每种生成类型共享的 AI 服务实例，对话记忆通过 chatMemoryProvider 按应用ID获取
+     */
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> services = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 活跃应用（应用ID + 生成类型）
+     * AI 服务内部按记忆ID持有对话记忆对象，应用闲置后从服务中移除；再次使用时重新创建并初始化记忆（Redis 中的记忆不受影响）。
+     * 同一应用可能先后使用多种类型的服务（例如兼容旧逻辑的 HTML 服务），按类型分别记录，闲置时从各自的服务中移除。
      * 缓存策略：
-     * - 最大缓存 1000 个实例
-     * - 写入后 30 分钟过期
+     * - 最多 10000 个活跃应用
      * - 访问后 10 分钟过期
      */
-    private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterWrite(Duration.ofMinutes(30))
+    private final Cache<ActiveApp, Boolean> activeApps = Caffeine.newBuilder()
+            .maximumSize(10000)
             .expireAfterAccess(Duration.ofMinutes(10))
-            .removalListener((key, value, cause) -> {
-                log.debug("AI 服务实例被移除，appId: {}, 原因: {}", key, cause);
+            .removalListener((ActiveApp activeApp, Boolean ignored, RemovalCause cause) -> {
+                if (activeApp == null) {
+                    return;
+                }
+                log.debug("应用对话记忆被移除，appId: {}, 类型: {}, 原因: {}",
+                        activeApp.appId(), activeApp.codeGenType().getValue(), cause);
+                AiCodeGeneratorService service = services.get(activeApp.codeGenType());
+                if (service != null) {
+                    service.evictChatMemory(activeApp.appId());
+                }
             })
             .build();
 
     /**
-     * 根据 appId 获取服务（带缓存）为了兼容历史逻辑
+     * 活跃应用的缓存键
+     */
+    private record ActiveApp(long appId, CodeGenTypeEnum codeGenType) {
+    }
+
+    @PostConstruct
+    public void init() {
+        warmStartTimer = Timer.builder("ai_service_memory_init_seconds")
+                .tag("start", "warm")
+                .description("初始化应用对话记忆的耗时（复用 Redis 记忆）")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        coldStartTimer = Timer.builder("ai_service_memory_init_seconds")
+                .tag("start", "cold")
+                .description("初始化应用对话记忆的耗时（从数据库加载）")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        toolCallScheduler = new ToolCallScheduler(meterRegistry);
+        generationChatModel = modelResilienceConfig.forGeneration("generationChatModel", chatModel);
+        // 启动时创建各生成类型的服务，不占用首次请求的时间
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            services.put(codeGenType, createAiCodeGeneratorService(codeGenType));
+        }
+    }
+
+    /**
+     * 根据 appId 获取服务 为了兼容历史逻辑
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId) {
         return getAiCodeGeneratorService(appId, CodeGenTypeEnum.HTML);
     }
 
     /**
-     * 根据 appId 和代码生成类型获取服务（带缓存）
+     * 根据代码生成类型获取共享的服务，调用时以 appId 作为记忆ID
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        String cacheKey = appId + "_" + codeGenType.getValue();
-        return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+        AiCodeGeneratorService service = services.get(codeGenType);
+        if (service == null) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的生成类型：" + codeGenType.getValue());
+        }
+        activeApps.put(new ActiveApp(appId, codeGenType), Boolean.TRUE);
+        return service;
     }
 
     /**
-     * 创建新的 AI 服务实例
+     * 创建生成类型对应的 AI 服务
      */
-    private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-        log.info("为 appId: {} 创建新的 AI 服务实例", appId);
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(50)
-                .build();
-        // 从数据库加载历史对话到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 50);
+    private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("创建 {} 类型的 AI 服务", codeGenType.getValue());
         return switch (codeGenType) {
-            case VUE_PROJECT -> AiServices.builder(AiCodeGeneratorService.class)
-                    .chatModel(chatModel)
-                    .streamingChatModel(reasoningStreamingChatModel)
-                    .chatMemoryProvider(memoryId -> chatMemory)
-                    .tools(toolManager.getAllTools())
-                    .inputGuardrails(new PromptSafetyInputGuardrail())
-                    .hallucinatedToolNameStrategy(
-                            toolExecutionRequest -> ToolExecutionResultMessage
-                                    .from(toolExecutionRequest, "未找到工具" + toolExecutionRequest.name()))
-                    .build();
+            case VUE_PROJECT -> {
+                AiServices<AiCodeGeneratorService> builder = AiServices.builder(AiCodeGeneratorService.class)
+                        .chatModel(generationChatModel)
+                        .streamingChatModel(reasoningStreamingChatModel)
+                        .chatMemoryProvider(memoryId -> createChatMemory((Long) memoryId, codeGenType))
+                        .chatRequestTransformer(stablePromptAssembler)
+                        .inputGuardrails(new PromptSafetyInputGuardrail())
+                        .hallucinatedToolNameStrategy(
+                                toolExecutionRequest -> ToolExecutionResultMessage
+                                        .from(toolExecutionRequest, "未找到工具" + toolExecutionRequest.name()));
+                if (concurrentToolCalls) {
+                    // 同一轮响应中的多个工具调用并发执行，操作同一路径的调用保持串行
+                    builder.tools(toolCallScheduler.wrapTools((Object[]) toolManager.getAllTools()))
+                            .executeToolsConcurrently(toolCallScheduler);
+                } else {
+                    builder.tools((Object[]) toolManager.getAllTools());
+                }
+                yield builder.build();
+            }
 
             case HTML, MULTI_FILE -> AiServices.builder(AiCodeGeneratorService.class)
-                    .chatModel(chatModel)
-                    .streamingChatModel(openAiStreamingChatModel)
+                    .chatModel(generationChatModel)
+                    .streamingChatModel(streamingChatModelPool)
                     .inputGuardrails(new PromptSafetyInputGuardrail())
-                    .chatMemory(chatMemory)
+                    .chatMemoryProvider(memoryId -> createChatMemory((Long) memoryId, codeGenType))
+                    .chatRequestTransformer(stablePromptAssembler)
                     .build();
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的生成类型：" + codeGenType.getValue());
         };
     }
+
+    /**
+     * 创建应用的对话记忆（应用在服务中首次使用时调用）
+     */
+    private ChatMemory createChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+        // 根据 appId 构建独立的对话记忆，按 token 预算压缩；Vue 项目可以重新读取文件，之前轮次的文件内容替换为引用
+        CompactingChatMemory chatMemory = new CompactingChatMemory(appId, tieredChatMemoryStore, chatMemoryCompactor,
+                codeGenType == CodeGenTypeEnum.VUE_PROJECT);
+        // Redis 中的记忆仍有效时直接复用，否则从数据库加载历史对话到记忆中
+        long startNanos = System.nanoTime();
+        if (isReusable(appId)) {
+            warmStartTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            log.info("appId: {} 复用 Redis 中的对话记忆", appId);
+        } else {
+            chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 50);
+            coldStartTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+        return chatMemory;
+    }
+
+    /**
+     * Redis 中的记忆是否可以直接复用：
+     * - 有对话（只有系统消息不算）
+     * - 最后的工具调用都有结果（生成中途中断时可能只写入了工具调用）
+     * - 最后一条用户消息与数据库一致：调用前本次的用户消息已经保存，记忆中最后一条应是数据库中的上一条，
+     *   否则记忆落后于对话历史（例如其他节点上的对话没有写入记忆）或已包含本次的消息
+     */
+    private boolean isReusable(long appId) {
+        // 直接读存储，不经过 chatMemory.messages()（后者按一次模型请求记录指标）
+        List<ChatMessage> messages = tieredChatMemoryStore.getMessages(appId);
+        UserMessage lastUserMessage = null;
+        Set<String> pendingToolCallIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            switch (message) {
+                case UserMessage userMessage when !ChatMemoryCompactor.isSummary(userMessage) ->
+                        lastUserMessage = userMessage;
+                case AiMessage aiMessage when aiMessage.hasToolExecutionRequests() -> {
+                    pendingToolCallIds.clear();
+                    aiMessage.toolExecutionRequests().forEach(request -> pendingToolCallIds.add(request.id()));
+                }
+                case ToolExecutionResultMessage resultMessage -> pendingToolCallIds.remove(resultMessage.id());
+                default -> {
+                }
+            }
+        }
+        if (lastUserMessage == null || !lastUserMessage.hasSingleText()) {
+            return false;
+        }
+        if (!pendingToolCallIds.isEmpty()) {
+            log.warn("appId: {} 的对话记忆中有未完成的工具调用，改为从数据库加载", appId);
+            return false;
+        }
+        List<String> latestUserMessages = chatHistoryService.listLatestUserMessages(appId, 2);
+        String previousUserMessage = latestUserMessages.size() < 2 ? null : latestUserMessages.get(1);
+        if (!lastUserMessage.singleText().equals(previousUserMessage)) {
+            log.info("appId: {} 的对话记忆与对话历史不一致，改为从数据库加载", appId);
+            return false;
+        }
+        return true;
+    }
 }
 
@@ -0,0 +1,211 @@
+package com.hz.aicodelessappbuilder.ai.cache;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * 提示词结果缓存（本地 Caffeine + Redis 两级）
+ * 用于类型路由、应用名称生成等只依赖用户提示词的模型调用：按归一化后的提示词指纹缓存结果，
+ * 近似重复的提示词（空白、标点、全半角、大小写不同）直接返回缓存结果，不再调用模型。
+ * 只缓存通过校验的结果，Redis 不可用时直接调用模型。
+ * 指标：
+ * - ai_prompt_cache_total{kind,result=local_hit|redis_hit|miss}
+ * - ai_prompt_cache_hit_ratio{kind}：命中率（本地 + Redis）
+ * - ai_prompt_cache_rejected_total{kind}：未通过校验、没有缓存的结果数
+ */
+@Slf4j
+@Component
+public class PromptResultCache {
+
+    /**
+     * 代码生成类型路由
+     */
+    public static final String KIND_ROUTING = "routing";
+
+    /**
+     * 应用名称生成
+     */
+    public static final String KIND_APP_NAME = "app_name";
+
+    private static final String KEY_PREFIX = "prompt_result:";
+
+    /**
+     * 归一化时去掉的字符：空白、标点、符号
+     */
+    private static final Pattern IGNORED_CHARS = Pattern.compile("[\\p{P}\\p{S}\\p{Z}\\s]+");
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本地缓存的最大条数
+     */
+    @Value("${prompt-cache.local.maximum-size:10000}")
+    private long localMaximumSize;
+
+    /**
+     * 本地缓存写入后的过期时间（分钟）
+     */
+    @Value("${prompt-cache.local.expire-minutes:60}")
+    private long localExpireMinutes;
+
+    /**
+     * Redis 中结果的过期时间（小时）
+     */
+    @Value("${prompt-cache.redis.ttl-hours:24}")
+    private long redisTtlHours;
+
+    private Cache<String, String> localCache;
+
+    private final Map<String, KindMetrics> metricsByKind = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(Duration.ofMinutes(localExpireMinutes))
+                .build();
+        registerMetrics(KIND_ROUTING);
+        registerMetrics(KIND_APP_NAME);
+    }
+
+    /**
+     * 获取缓存结果，未命中时调用模型并缓存通过校验的结果
+     *
+     * @param kind      结果类型（KIND_ROUTING / KIND_APP_NAME）
+     * @param prompt    用户提示词
+     * @param loader    调用模型获取结果
+     * @param validator 校验并规范化结果，返回 null 表示结果不可缓存
+     * @return 缓存或模型返回的结果（通过校验时为规范化后的结果）
+     */
+    public String get(String kind, String prompt, Supplier<String> loader, UnaryOperator<String> validator) {
+        KindMetrics metrics = registerMetrics(kind);
+        String fingerprint = fingerprint(prompt);
+        if (fingerprint == null) {
+            return loader.get();
+        }
+        String key = KEY_PREFIX + kind + ":" + fingerprint;
+        String cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            metrics.localHit.increment();
+            return cached;
+        }
+        cached = readRedis(key);
+        if (cached != null) {
+            metrics.redisHit.increment();
+            localCache.put(key, cached);
+            return cached;
+        }
+        metrics.miss.increment();
+        String result = loader.get();
+        String validated = result == null ? null : validator.apply(result);
+        if (validated == null) {
+            metrics.rejected.increment();
+            return result;
+        }
+        localCache.put(key, validated);
+        writeRedis(key, validated);
+        return validated;
+    }
+
+    /**
+     * 提示词指纹：NFKC 归一化（全角转半角）、转小写、去掉空白和标点后取 SHA-256；归一化后为空时返回 null
+     */
+    public static String fingerprint(String prompt) {
+        if (StrUtil.isBlank(prompt)) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        normalized = IGNORED_CHARS.matcher(normalized).replaceAll("");
+        return normalized.isEmpty() ? null : DigestUtil.sha256Hex(normalized);
+    }
+
+    private String readRedis(String key) {
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(key, StringCodec.INSTANCE);
+            return bucket.get();
+        } catch (Exception e) {
+            log.warn("读取提示词结果缓存失败, key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, String value) {
+        try {
+            RBucket<String> bucket = redissonClient.getBucket(key, StringCodec.INSTANCE);
+            bucket.set(value, Duration.ofHours(redisTtlHours));
+        } catch (Exception e) {
+            log.warn("写入提示词结果缓存失败, key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    private KindMetrics registerMetrics(String kind) {
+        return metricsByKind.computeIfAbsent(kind, k -> {
+            KindMetrics metrics = new KindMetrics(
+                    resultCounter(k, "local_hit"),
+                    resultCounter(k, "redis_hit"),
+                    resultCounter(k, "miss"),
+                    Counter.builder("ai_prompt_cache_rejected_total")
+                            .description("未通过校验、没有缓存的模型结果数")
+                            .tag("kind", k)
+                            .register(meterRegistry));
+            Gauge.builder("ai_prompt_cache_hit_ratio", metrics, KindMetrics::hitRatio)
+                    .description("提示词结果缓存命中率（本地 + Redis）")
+                    .tag("kind", k)
+                    .register(meterRegistry);
+            return metrics;
+        });
+    }
+
+    private Counter resultCounter(String kind, String result) {
+        return Counter.builder("ai_prompt_cache_total")
+                .description("提示词结果缓存的查询次数")
+                .tag("kind", kind)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @AllArgsConstructor
+    private static class KindMetrics {
+
+        private final Counter localHit;
+
+        private final Counter redisHit;
+
+        private final Counter miss;
+
+        private final Counter rejected;
+
+        double hitRatio() {
+            double hits = localHit.count() + redisHit.count();
+            double total = hits + miss.count();
+            return total == 0 ? 0 : hits / total;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.openai.OpenAiTokenCountEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对话记忆压缩器
+ * 按 token 预算而不是消息条数控制对话记忆，减少后续每轮的提示词长度。只在超出预算时改写历史：
+ * - 文件内容引用化：之前轮次中写入、修改、批量编辑、读取的文件内容以及历史回复中的代码块，替换为"路径 + 内容哈希"的简短引用，
+ *   需要时模型可以重新读取文件（仅用于有文件读取工具的 VUE_PROJECT）
+ * - 旧轮次摘要：引用化后仍高于低水位时，从最早的轮次开始移出记忆，合并为一条摘要消息，直到降到低水位
+ * - 始终保留系统消息和最近一轮（当前工具调用循环）的完整内容，按整轮移出，不会拆开工具调用和结果
+ * 一次压缩到低水位，之后的多轮只在末尾追加消息，提示词前缀逐字节不变，可以命中模型服务的前缀缓存。
+ * 指标：
+ * - ai_chat_memory_saved_tokens：每次模型请求因压缩少发送的提示词 token 数（压缩累计移除的 token 数，
+ *   不压缩时这些内容会出现在之后的每次请求中），由 {@link CompactingChatMemory} 在每次请求读取记忆时记录
+ * - ai_chat_memory_tokens：压缩后记忆的 token 数
+ */
+@Slf4j
+@Component
+public class ChatMemoryCompactor {
+
+    /**
+     * 摘要消息的前缀，用于识别已有摘要
+     */
+    static final String SUMMARY_PREFIX = "[历史对话摘要]";
+
+    private static final Set<String> FILE_CONTENT_TOOLS = Set.of("writeFile", "modifyFile");
+
+    private static final String BATCH_EDIT_TOOL = "batchEditFiles";
+
+    /**
+     * 批量编辑的操作类型对应的单文件工具，用于摘要
+     */
+    private static final Map<String, String> BATCH_EDIT_TOOL_NAMES = Map.of(
+            "WRITE", "writeFile", "REPLACE", "modifyFile", "DELETE", "deleteFile");
+
+    private static final Set<String> FILE_CONTENT_ARGUMENTS = Set.of("content", "oldContent", "newContent");
+
+    private static final String READ_FILE_TOOL = "readFile";
+
+    /**
+     * 写入类工具结果中的内容哈希，读取工具收到已知哈希且文件未变化时不再返回内容
+     */
+    private static final Pattern CONTENT_HASH_PATTERN = Pattern.compile("（内容哈希: [0-9a-f]+）");
+
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```([^\\n`]*)\\n(.*?)```", Pattern.DOTALL);
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 对话记忆的 token 预算
+     */
+    @Value("${chat-memory.max-tokens:24000}")
+    private int maxTokens;
+
+    /**
+     * 超出预算后压缩到预算的比例（低水位），避免每条消息都触发摘要
+     */
+    @Value("${chat-memory.low-water-ratio:0.75}")
+    private double lowWaterRatio;
+
+    /**
+     * 超过该长度的文件内容才替换为引用
+     */
+    @Value("${chat-memory.compact-min-chars:256}")
+    private int compactMinChars;
+
+    /**
+     * 摘要最多保留的条数（每条对应一轮对话）
+     */
+    @Value("${chat-memory.summary-max-turns:20}")
+    private int summaryMaxTurns;
+
+    private final TokenCountEstimator tokenCountEstimator = new OpenAiTokenCountEstimator("gpt-4o");
+
+    /**
+     * 单条消息的 token 数缓存，消息不可变，按对象引用缓存
+     */
+    private final Cache<ChatMessage, Integer> tokenCountCache = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(100_000)
+            .build();
+
+    private DistributionSummary savedTokensSummary;
+
+    private DistributionSummary memoryTokensSummary;
+
+    @PostConstruct
+    public void initMetrics() {
+        savedTokensSummary = DistributionSummary.builder("ai_chat_memory_saved_tokens")
+                .description("每次模型请求因压缩对话记忆少发送的提示词 token 数")
+                .register(meterRegistry);
+        memoryTokensSummary = DistributionSummary.builder("ai_chat_memory_tokens")
+                .description("压缩后对话记忆的 token 数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 压缩对话记忆，未超出预算时原样返回
+     *
+     * @param memoryId          记忆ID
+     * @param messages          消息列表（系统消息在最前）
+     * @param compactFileBodies 是否将之前轮次的文件内容替换为引用
+     * @return 压缩后的消息列表
+     */
+    public List<ChatMessage> compact(Object memoryId, List<ChatMessage> messages, boolean compactFileBodies) {
+        int tokensBefore = countTokens(messages);
+        if (tokensBefore <= maxTokens) {
+            return messages;
+        }
+        List<ChatMessage> result = messages;
+        if (compactFileBodies) {
+            result = referenceStaleFileBodies(result);
+        }
+        if (countTokens(result) > maxTokens * lowWaterRatio) {
+            result = summarizeOldTurns(result);
+        }
+        int tokensAfter = countTokens(result);
+        memoryTokensSummary.record(tokensAfter);
+        if (tokensAfter < tokensBefore) {
+            log.info("对话记忆已压缩, memoryId: {}, tokens: {} -> {}", memoryId, tokensBefore, tokensAfter);
+        }
+        if (tokensAfter > maxTokens) {
+            log.warn("对话记忆最近一轮已超出 token 预算, memoryId: {}, tokens: {}", memoryId, tokensAfter);
+        }
+        return result;
+    }
+
+    /**
+     * 记录一次模型请求因压缩少发送的 token 数
+     *
+     * @param savedTokens 记忆累计被压缩移除的 token 数
+     */
+    public void recordRequestSavings(long savedTokens) {
+        savedTokensSummary.record(savedTokens);
+    }
+
+    /**
+     * 估算消息列表的 token 数
+     */
+    public int countTokens(List<ChatMessage> messages) {
+        int total = 0;
+        for (ChatMessage message : messages) {
+            total += tokenCountCache.get(message, tokenCountEstimator::estimateTokenCountInMessage);
+        }
+        return total;
+    }
+
+    /**
+     * 将最近一轮之前的文件内容替换为引用
+     */
+    private List<ChatMessage> referenceStaleFileBodies(List<ChatMessage> messages) {
+        int latestTurnStart = findLatestTurnStart(messages);
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        // 工具调用 ID -> 文件路径，用于标注读取结果
+        Map<String, String> filePathByToolId = new HashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            if (i >= latestTurnStart) {
+                result.add(message);
+                continue;
+            }
+            ChatMessage compacted = switch (message) {
+                case AiMessage aiMessage -> referenceAiMessage(aiMessage, filePathByToolId);
+                case ToolExecutionResultMessage resultMessage -> referenceToolResult(resultMessage, filePathByToolId);
+                default -> message;
+            };
+            result.add(compacted);
+        }
+        return result;
+    }
+
+    private ChatMessage referenceAiMessage(AiMessage aiMessage, Map<String, String> filePathByToolId) {
+        boolean changed = false;
+        String text = aiMessage.text();
+        if (StrUtil.isNotEmpty(text)) {
+            String referencedText = referenceCodeBlocks(text);
+            changed = !referencedText.equals(text);
+            text = referencedText;
+        }
+        List<ToolExecutionRequest> requests = aiMessage.toolExecutionRequests();
+        List<ToolExecutionRequest> referencedRequests = new ArrayList<>(requests.size());
+        for (ToolExecutionRequest request : requests) {
+            ToolExecutionRequest referencedRequest = referenceToolRequest(request, filePathByToolId);
+            changed |= referencedRequest != request;
+            referencedRequests.add(referencedRequest);
+        }
+        if (!changed) {
+            return aiMessage;
+        }
+        return AiMessage.builder()
+                .text(text)
+                .thinking(aiMessage.thinking())
+                .toolExecutionRequests(referencedRequests)
+                .attributes(aiMessage.attributes())
+                .build();
+    }
+
+    private ToolExecutionRequest referenceToolRequest(ToolExecutionRequest request, Map<String, String> filePathByToolId) {
+        boolean batchEdit = BATCH_EDIT_TOOL.equals(request.name());
+        if (!batchEdit && !FILE_CONTENT_TOOLS.contains(request.name()) && !READ_FILE_TOOL.equals(request.name())) {
+            return request;
+        }
+        JSONObject arguments;
+        try {
+            arguments = JSONUtil.parseObj(request.arguments());
+        } catch (Exception e) {
+            return request;
+        }
+        boolean changed = false;
+        if (batchEdit) {
+            // 批量编辑的每个操作都可能带有文件内容
+            JSONArray edits = arguments.getJSONArray("edits");
+            if (edits != null) {
+                for (int i = 0; i < edits.size(); i++) {
+                    if (edits.get(i) instanceof JSONObject edit) {
+                        changed |= referenceFileContents(edit);
+                    }
+                }
+            }
+        } else {
+            filePathByToolId.put(request.id(), arguments.getStr("relativeFilePath"));
+            changed = referenceFileContents(arguments);
+        }
+        if (!changed) {
+            return request;
+        }
+        return ToolExecutionRequest.builder()
+                .id(request.id())
+                .name(request.name())
+                .arguments(arguments.toString())
+                .build();
+    }
+
+    /**
+     * 将参数中较长的文件内容替换为引用
+     *
+     * @return 是否有替换
+     */
+    private boolean referenceFileContents(JSONObject arguments) {
+        boolean changed = false;
+        for (String name : FILE_CONTENT_ARGUMENTS) {
+            String value = arguments.getStr(name);
+            if (value != null && value.length() >= compactMinChars) {
+                arguments.set(name, toReference(value));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private ChatMessage referenceToolResult(ToolExecutionResultMessage resultMessage, Map<String, String> filePathByToolId) {
+        String text = resultMessage.text();
+        boolean readFile = READ_FILE_TOOL.equals(resultMessage.toolName());
+        if (text == null || !readFile && !FILE_CONTENT_TOOLS.contains(resultMessage.toolName())
+                && !BATCH_EDIT_TOOL.equals(resultMessage.toolName())) {
+            return resultMessage;
+        }
+        if (!readFile || text.length() < compactMinChars) {
+            // 写入结果和"文件未变化"回复对应的内容可能已替换为引用，去掉其中的哈希，
+            // 避免模型凭哈希得到"文件未变化"却看不到内容；完整读取结果的哈希和内容在一起，格式不同，不受影响
+            String stripped = CONTENT_HASH_PATTERN.matcher(text).replaceAll("");
+            return stripped.equals(text) ? resultMessage
+                    : ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(), stripped);
+        }
+        String filePath = StrUtil.nullToDefault(filePathByToolId.get(resultMessage.id()), "");
+        String reference = String.format("[文件内容已省略] %s %s，如需查看请重新读取", filePath, toReference(text));
+        return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(), reference);
+    }
+
+    /**
+     * 替换历史回复中的长代码块（从数据库加载的工具调用记录）
+     */
+    private String referenceCodeBlocks(String text) {
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+        StringBuilder builder = new StringBuilder();
+        while (matcher.find()) {
+            String body = matcher.group(2);
+            String replacement = body.length() < compactMinChars
+                    ? matcher.group()
+                    : "```" + matcher.group(1) + "\n" + toReference(body) + "\n```";
+            matcher.appendReplacement(builder, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(builder);
+        return builder.toString();
+    }
+
+    private String toReference(String content) {
+        return String.format("[已省略 %d 字符 sha256:%s]", content.length(), DigestUtil.sha256Hex(content).substring(0, 12));
+    }
+
+    /**
+     * 从最早的轮次开始移出记忆并合并为摘要，直到降到低水位
+     */
+    private List<ChatMessage> summarizeOldTurns(List<ChatMessage> messages) {
+        int lowWaterTokens = (int) (maxTokens * lowWaterRatio);
+        SystemMessage systemMessage = null;
+        UserMessage summaryMessage = null;
+        List<ChatMessage> body = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage system) {
+                systemMessage = system;
+            } else if (isSummary(message)) {
+                summaryMessage = (UserMessage) message;
+            } else {
+                body.add(message);
+            }
+        }
+        List<List<ChatMessage>> turns = splitTurns(body);
+        List<String> summaryLines = new ArrayList<>();
+        if (summaryMessage != null) {
+            summaryLines.addAll(StrUtil.split(summaryMessage.singleText(), '\n'));
+            summaryLines.removeFirst();
+        }
+        int tokens = countTokens(messages);
+        // 最近一轮始终保留
+        while (turns.size() > 1 && tokens > lowWaterTokens) {
+            List<ChatMessage> turn = turns.removeFirst();
+            tokens -= countTokens(turn);
+            summaryLines.add(summarizeTurn(turn));
+        }
+        while (summaryLines.size() > summaryMaxTurns) {
+            summaryLines.removeFirst();
+        }
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        if (systemMessage != null) {
+            result.add(systemMessage);
+        }
+        if (!summaryLines.isEmpty()) {
+            result.add(UserMessage.from(SUMMARY_PREFIX + "\n" + String.join("\n", summaryLines)));
+        }
+        turns.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * 一轮对话的摘要：用户请求、涉及的文件和最终回复
+     */
+    private String summarizeTurn(List<ChatMessage> turn) {
+        String request = "";
+        String reply = "";
+        Set<String> files = new LinkedHashSet<>();
+        for (ChatMessage message : turn) {
+            if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+                request = userMessage.singleText();
+            } else if (message instanceof AiMessage aiMessage) {
+                if (StrUtil.isNotBlank(aiMessage.text())) {
+                    reply = aiMessage.text();
+                }
+                for (ToolExecutionRequest toolRequest : aiMessage.toolExecutionRequests()) {
+                    if (FILE_CONTENT_TOOLS.contains(toolRequest.name()) || "deleteFile".equals(toolRequest.name())) {
+                        try {
+                            files.add(toolRequest.name() + " " + JSONUtil.parseObj(toolRequest.arguments()).getStr("relativeFilePath"));
+                        } catch (Exception ignored) {
+                            files.add(toolRequest.name());
+                        }
+                    } else if (BATCH_EDIT_TOOL.equals(toolRequest.name())) {
+                        addBatchEditFiles(toolRequest, files);
+                    }
+                }
+            }
+        }
+        StringBuilder line = new StringBuilder("- 用户：").append(StrUtil.maxLength(oneLine(request), 100));
+        if (!files.isEmpty()) {
+            line.append("；操作：").append(String.join("、", files));
+        }
+        if (StrUtil.isNotBlank(reply)) {
+            line.append("；回复：").append(StrUtil.maxLength(oneLine(referenceCodeBlocks(reply)), 100));
+        }
+        return line.toString();
+    }
+
+    /**
+     * 批量编辑的每个操作按对应的单文件工具名记入摘要
+     */
+    private static void addBatchEditFiles(ToolExecutionRequest toolRequest, Set<String> files) {
+        try {
+            JSONArray edits = JSONUtil.parseObj(toolRequest.arguments()).getJSONArray("edits");
+            for (int i = 0; edits != null && i < edits.size(); i++) {
+                JSONObject edit = edits.getJSONObject(i);
+                String toolName = BATCH_EDIT_TOOL_NAMES.getOrDefault(edit.getStr("type"), BATCH_EDIT_TOOL);
+                files.add(toolName + " " + edit.getStr("relativeFilePath"));
+            }
+        } catch (Exception ignored) {
+            files.add(toolRequest.name());
+        }
+    }
+
+    /**
+     * 按用户消息切分轮次，第一条用户消息之前的消息归入第一轮
+     */
+    static List<List<ChatMessage>> splitTurns(List<ChatMessage> body) {
+        List<List<ChatMessage>> turns = new ArrayList<>();
+        List<ChatMessage> current = new ArrayList<>();
+        for (ChatMessage message : body) {
+            if (message instanceof UserMessage && !current.isEmpty() && containsUserMessage(current)) {
+                turns.add(current);
+                current = new ArrayList<>();
+            }
+            current.add(message);
+        }
+        if (!current.isEmpty()) {
+            turns.add(current);
+        }
+        return turns;
+    }
+
+    private int findLatestTurnStart(List<ChatMessage> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage && !isSummary(messages.get(i))) {
+                return i;
+            }
+        }
+        return messages.size();
+    }
+
+    private static boolean containsUserMessage(List<ChatMessage> messages) {
+        return messages.stream().anyMatch(message -> message instanceof UserMessage);
+    }
+
+    public static boolean isSummary(ChatMessage message) {
+        return message instanceof UserMessage userMessage
+                && userMessage.hasSingleText()
+                && userMessage.singleText().startsWith(SUMMARY_PREFIX);
+    }
+
+    private static String oneLine(String text) {
+        return StrUtil.trim(text.replaceAll("\\s+", " "));
+    }
+}
@@ -0,0 +1,93 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 token 预算压缩的对话记忆
+ * 替代按消息条数淘汰的 MessageWindowChatMemory：每次添加消息后交给 {@link ChatMemoryCompactor}，
+ * 超出预算时将之前轮次的文件内容替换为引用、把最早的轮次合并为摘要，其余时间只在末尾追加。
+ * 系统消息只保留一条，固定在最前。
+ * 记录压缩累计移除的 token 数，每次模型请求读取记忆时上报为本次请求少发送的 token 数。
+ */
+public class CompactingChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final ChatMemoryCompactor compactor;
+
+    /**
+     * 是否将之前轮次的文件内容替换为引用（需要模型能重新读取文件）
+     */
+    private final boolean compactFileBodies;
+
+    /**
+     * 压缩累计移除的 token 数（本对象创建以来）
+     */
+    private final AtomicLong compactedTokens = new AtomicLong();
+
+    public CompactingChatMemory(Object id, ChatMemoryStore store, ChatMemoryCompactor compactor, boolean compactFileBodies) {
+        this.id = id;
+        this.store = store;
+        this.compactor = compactor;
+        this.compactFileBodies = compactFileBodies;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int systemIndex = findSystemMessageIndex(messages);
+            if (systemIndex >= 0) {
+                if (messages.get(systemIndex).equals(message)) {
+                    return;
+                }
+                messages.remove(systemIndex);
+            }
+            messages.addFirst(message);
+        } else {
+            messages.add(message);
+        }
+        List<ChatMessage> compacted = compactor.compact(id, messages, compactFileBodies);
+        if (compacted != messages) {
+            compactedTokens.addAndGet(compactor.countTokens(messages) - compactor.countTokens(compacted));
+        }
+        store.updateMessages(id, compacted);
+    }
+
+    /**
+     * 读取记忆，langchain4j 在每次请求模型前调用
+     */
+    @Override
+    public List<ChatMessage> messages() {
+        compactor.recordRequestSavings(compactedTokens.get());
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    private static int findSystemMessageIndex(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,465 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import cn.hutool.core.util.IdUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 两级对话记忆存储：本地 Caffeine 缓存 + Redis
+ * MessageWindowChatMemory 每次添加消息都会读出并整体写回消息列表，工具调用较多的一轮对话会把整份文件内容反复写入 Redis。
+ * 这里按增量写入：
+ * - 读取优先命中本地缓存，未命中时从 Redis 加载
+ * - 写入时与本地缓存比较，新列表只是在旧列表基础上淘汰开头、追加末尾时，只在 Redis 中裁剪列表并追加新消息；否则整体重写
+ * - Redis 中以版本号校验增量写入的基准，版本不一致（其他节点写过）时改为整体重写
+ * - 写入脚本中同时发布失效通知，其他节点收到后清除本地缓存
+ * - 版本号只增不减（删除记忆时也递增），同一节点并发写入时本地缓存只接受版本号不低于当前的结果；
+ *   key 过期后版本号从 Redis 当前时间（微秒）重新开始，仍大于过期前的版本号，本地缓存中过期前的记忆不会压过新写入
+ * - 系统消息单独存放并固定排在最前，消息窗口淘汰旧消息时才能表示为裁剪列表开头
+ * Redis 结构（同一记忆的 key 使用相同的 hash tag）：
+ * - chat_memory:{id}:system：系统消息
+ * - chat_memory:{id}:messages：其余消息列表
+ * - chat_memory:{id}:version：版本号
+ */
+@Slf4j
+@Component
+public class TieredChatMemoryStore implements ChatMemoryStore {
+
+    private static final String KEY_PREFIX = "chat_memory:{";
+
+    private static final String INVALIDATE_TOPIC = "chat_memory:invalidate";
+
+    /**
+     * 递增版本号；版本号不存在（从未写入或已过期）时从当前时间（微秒）开始
+     * 按字符串拼接，避免 Lua 数字转字符串时变成科学计数法
+     */
+    private static final String NEXT_VERSION_FUNCTION = """
+            local function nextVersion(key)
+                if redis.call('exists', key) == 0 then
+                    local now = redis.call('time')
+                    redis.call('set', key, now[1] .. string.format('%06d', tonumber(now[2])))
+                end
+                return redis.call('incr', key)
+            end
+            """;
+
+    /**
+     * 增量写入：版本号一致时裁剪列表开头并追加新消息，返回新版本号；不一致返回 -1
+     * KEYS: messages, system, version；ARGV: 期望版本号, 裁剪条数, 系统消息（空串表示不变）, 过期秒数, 失效通知, 追加的消息...
+     */
+    private static final String APPEND_SCRIPT = NEXT_VERSION_FUNCTION + """
+            local version = tonumber(redis.call('get', KEYS[3]) or '0')
+            if version ~= tonumber(ARGV[1]) then
+                return -1
+            end
+            if tonumber(ARGV[2]) > 0 then
+                redis.call('ltrim', KEYS[1], ARGV[2], -1)
+            end
+            for i = 6, #ARGV do
+                redis.call('rpush', KEYS[1], ARGV[i])
+            end
+            if ARGV[3] ~= '' then
+                redis.call('set', KEYS[2], ARGV[3])
+            end
+            version = nextVersion(KEYS[3])
+            for i = 1, 3 do
+                redis.call('expire', KEYS[i], ARGV[4])
+            end
+            redis.call('publish', 'chat_memory:invalidate', ARGV[5])
+            return version
+            """;
+
+    /**
+     * 整体重写，返回新版本号
+     * KEYS: messages, system, version；ARGV: 系统消息（空串表示没有）, 过期秒数, 失效通知, 消息...
+     */
+    private static final String REWRITE_SCRIPT = NEXT_VERSION_FUNCTION + """
+            redis.call('del', KEYS[1], KEYS[2])
+            for i = 4, #ARGV do
+                redis.call('rpush', KEYS[1], ARGV[i])
+            end
+            if ARGV[1] ~= '' then
+                redis.call('set', KEYS[2], ARGV[1])
+            end
+            local version = nextVersion(KEYS[3])
+            for i = 1, 3 do
+                redis.call('expire', KEYS[i], ARGV[2])
+            end
+            redis.call('publish', 'chat_memory:invalidate', ARGV[3])
+            return version
+            """;
+
+    /**
+     * 删除消息，版本号继续递增（不删除），返回新版本号
+     * KEYS: messages, system, version；ARGV: 过期秒数, 失效通知
+     */
+    private static final String DELETE_SCRIPT = NEXT_VERSION_FUNCTION + """
+            redis.call('del', KEYS[1], KEYS[2])
+            local version = nextVersion(KEYS[3])
+            redis.call('expire', KEYS[3], ARGV[1])
+            redis.call('publish', 'chat_memory:invalidate', ARGV[2])
+            return version
+            """;
+
+    /**
+     * 读取：返回 [版本号, 系统消息, 消息...]
+     */
+    private static final String READ_SCRIPT = """
+            local result = {redis.call('get', KEYS[3]) or '0', redis.call('get', KEYS[2]) or ''}
+            for _, message in ipairs(redis.call('lrange', KEYS[1], 0, -1)) do
+                table.insert(result, message)
+            end
+            return result
+            """;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Redis 中记忆的过期时间（秒）
+     */
+    @Value("${spring.data.redis.ttl:3600}")
+    private long ttlSeconds;
+
+    /**
+     * 本地缓存的最大记忆数
+     */
+    @Value("${chat-memory.local-cache.maximum-size:2000}")
+    private long localCacheMaximumSize;
+
+    /**
+     * 本地缓存访问后的过期时间（分钟）
+     */
+    @Value("${chat-memory.local-cache.expire-after-access-minutes:10}")
+    private long localCacheExpireMinutes;
+
+    /**
+     * 当前节点标识，忽略自己发出的失效通知
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private Cache<String, CachedMemory> localCache;
+
+    private RTopic invalidateTopic;
+
+    private int listenerId;
+
+    private Counter localHitCounter;
+
+    private Counter localMissCounter;
+
+    private Counter appendCounter;
+
+    private Counter rewriteCounter;
+
+    private Counter writeBytesCounter;
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localCacheMaximumSize)
+                .expireAfterAccess(Duration.ofMinutes(localCacheExpireMinutes))
+                .build();
+        invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC, StringCodec.INSTANCE);
+        listenerId = invalidateTopic.addListener(String.class, (channel, message) -> onInvalidate(message));
+        localHitCounter = Counter.builder("ai_chat_memory_local_cache_total")
+                .tag("result", "hit")
+                .description("对话记忆本地缓存的命中次数")
+                .register(meterRegistry);
+        localMissCounter = Counter.builder("ai_chat_memory_local_cache_total")
+                .tag("result", "miss")
+                .description("对话记忆本地缓存的未命中次数")
+                .register(meterRegistry);
+        appendCounter = Counter.builder("ai_chat_memory_write_total")
+                .tag("mode", "append")
+                .description("对话记忆增量写入的次数")
+                .register(meterRegistry);
+        rewriteCounter = Counter.builder("ai_chat_memory_write_total")
+                .tag("mode", "rewrite")
+                .description("对话记忆整体重写的次数")
+                .register(meterRegistry);
+        writeBytesCounter = Counter.builder("ai_chat_memory_redis_write_bytes_total")
+                .description("写入 Redis 的对话记忆字节数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        invalidateTopic.removeListener(listenerId);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        String id = String.valueOf(memoryId);
+        CachedMemory cachedMemory = localCache.getIfPresent(id);
+        if (cachedMemory != null) {
+            localHitCounter.increment();
+            return cachedMemory.getMessages();
+        }
+        localMissCounter.increment();
+        cachedMemory = load(id);
+        cache(id, cachedMemory);
+        return cachedMemory.getMessages();
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        String id = String.valueOf(memoryId);
+        CachedMemory cachedMemory = localCache.getIfPresent(id);
+        if (cachedMemory == null) {
+            cachedMemory = load(id);
+        }
+        List<ChatMessage> newMessages = systemMessageFirst(messages);
+        if (newMessages.equals(cachedMemory.getMessages())) {
+            cache(id, cachedMemory);
+            return;
+        }
+        int trimCount = findTrimCount(cachedMemory.getMessages(), newMessages);
+        long version = append(id, cachedMemory, newMessages, trimCount);
+        if (version < 0) {
+            version = rewrite(id, newMessages);
+        }
+        cache(id, new CachedMemory(version, newMessages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        String id = String.valueOf(memoryId);
+        Long version = redissonClient.getScript(StringCodec.INSTANCE).eval(id, RScript.Mode.READ_WRITE, DELETE_SCRIPT,
+                RScript.ReturnType.INTEGER, keys(id), String.valueOf(ttlSeconds), invalidateMessage(id));
+        // 本地直接记为空记忆
+        cache(id, new CachedMemory(version, List.of()));
+    }
+
+    /**
+     * 写入本地缓存，同一记忆并发写入时保留版本号较新的结果，避免本地缓存落后于 Redis
+     */
+    private void cache(String id, CachedMemory cachedMemory) {
+        localCache.asMap().merge(id, cachedMemory,
+                (current, candidate) -> candidate.getVersion() >= current.getVersion() ? candidate : current);
+    }
+
+    /**
+     * 计算新列表相对旧列表需要从开头淘汰的消息数（系统消息单独比较）
+     * 保留的部分从新列表的第一条开始：在旧列表中定位这一条，再校验一遍之后的消息，总共只扫描一遍
+     *
+     * @return 淘汰条数，找不到可保留的部分时淘汰全部旧消息
+     */
+    private int findTrimCount(List<ChatMessage> oldMessages, List<ChatMessage> newMessages) {
+        List<ChatMessage> oldBody = withoutSystemMessage(oldMessages);
+        List<ChatMessage> newBody = withoutSystemMessage(newMessages);
+        if (newBody.isEmpty()) {
+            return oldBody.size();
+        }
+        // 保留的消息不能多于新列表
+        int minTrimCount = Math.max(oldBody.size() - newBody.size(), 0);
+        int trimCount = indexOf(oldBody, newBody.getFirst(), minTrimCount);
+        if (trimCount < 0 || !isSameMessages(oldBody.subList(trimCount, oldBody.size()),
+                newBody.subList(0, oldBody.size() - trimCount))) {
+            return oldBody.size();
+        }
+        return trimCount;
+    }
+
+    /**
+     * 从指定位置开始查找消息，未变化的消息通常是同一个对象，先按引用查找
+     */
+    private static int indexOf(List<ChatMessage> messages, ChatMessage target, int fromIndex) {
+        for (int i = fromIndex; i < messages.size(); i++) {
+            if (messages.get(i) == target) {
+                return i;
+            }
+        }
+        for (int i = fromIndex; i < messages.size(); i++) {
+            if (messages.get(i).equals(target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long append(String id, CachedMemory cachedMemory, List<ChatMessage> newMessages, int trimCount) {
+        List<ChatMessage> oldBody = withoutSystemMessage(cachedMemory.getMessages());
+        List<ChatMessage> newBody = withoutSystemMessage(newMessages);
+        SystemMessage oldSystemMessage = findSystemMessage(cachedMemory.getMessages());
+        SystemMessage newSystemMessage = findSystemMessage(newMessages);
+        if (oldSystemMessage != null && newSystemMessage == null) {
+            // 系统消息被移除，交给整体重写
+            return -1;
+        }
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(cachedMemory.getVersion()));
+        args.add(String.valueOf(trimCount));
+        boolean systemChanged = newSystemMessage != null && !newSystemMessage.equals(oldSystemMessage);
+        args.add(systemChanged ? ChatMessageSerializer.messageToJson(newSystemMessage) : "");
+        args.add(String.valueOf(ttlSeconds));
+        args.add(invalidateMessage(id));
+        int keptCount = oldBody.size() - trimCount;
+        for (ChatMessage message : newBody.subList(keptCount, newBody.size())) {
+            args.add(ChatMessageSerializer.messageToJson(message));
+        }
+        Long version = redissonClient.getScript(StringCodec.INSTANCE).eval(id, RScript.Mode.READ_WRITE, APPEND_SCRIPT,
+                RScript.ReturnType.INTEGER, keys(id), args.toArray());
+        if (version == null || version < 0) {
+            log.debug("对话记忆版本不一致，改为整体重写, memoryId: {}", id);
+            return -1;
+        }
+        appendCounter.increment();
+        recordWriteBytes(args);
+        return version;
+    }
+
+    private long rewrite(String id, List<ChatMessage> messages) {
+        SystemMessage systemMessage = findSystemMessage(messages);
+        List<Object> args = new ArrayList<>();
+        args.add(systemMessage == null ? "" : ChatMessageSerializer.messageToJson(systemMessage));
+        args.add(String.valueOf(ttlSeconds));
+        args.add(invalidateMessage(id));
+        for (ChatMessage message : withoutSystemMessage(messages)) {
+            args.add(ChatMessageSerializer.messageToJson(message));
+        }
+        Long version = redissonClient.getScript(StringCodec.INSTANCE).eval(id, RScript.Mode.READ_WRITE, REWRITE_SCRIPT,
+                RScript.ReturnType.INTEGER, keys(id), args.toArray());
+        rewriteCounter.increment();
+        recordWriteBytes(args);
+        return version;
+    }
+
+    private CachedMemory load(String id) {
+        List<Object> result = redissonClient.getScript(StringCodec.INSTANCE).eval(id, RScript.Mode.READ_ONLY, READ_SCRIPT,
+                RScript.ReturnType.MULTI, keys(id));
+        long version = Long.parseLong(String.valueOf(result.get(0)));
+        List<ChatMessage> messages = new ArrayList<>(result.size());
+        String systemJson = String.valueOf(result.get(1));
+        if (!systemJson.isEmpty()) {
+            messages.add(ChatMessageDeserializer.messageFromJson(systemJson));
+        }
+        for (Object json : result.subList(2, result.size())) {
+            messages.add(ChatMessageDeserializer.messageFromJson(String.valueOf(json)));
+        }
+        return new CachedMemory(version, List.copyOf(messages));
+    }
+
+    /**
+     * 收到其他节点的写入通知，清除本地缓存
+     */
+    private void onInvalidate(String message) {
+        int separatorIndex = message.indexOf(':');
+        if (separatorIndex < 0 || message.substring(0, separatorIndex).equals(nodeId)) {
+            return;
+        }
+        localCache.invalidate(message.substring(separatorIndex + 1));
+    }
+
+    private String invalidateMessage(String id) {
+        return nodeId + ":" + id;
+    }
+
+    private void recordWriteBytes(List<Object> args) {
+        long bytes = 0;
+        for (Object arg : args) {
+            bytes += String.valueOf(arg).getBytes(StandardCharsets.UTF_8).length;
+        }
+        writeBytesCounter.increment(bytes);
+    }
+
+    private static boolean isSameMessages(List<ChatMessage> left, List<ChatMessage> right) {
+        for (int i = 0; i < left.size(); i++) {
+            // 未变化的消息通常是同一个对象，先比较引用
+            if (left.get(i) != right.get(i) && !left.get(i).equals(right.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 调整为系统消息在最前，返回不可变列表
+     */
+    private static List<ChatMessage> systemMessageFirst(List<ChatMessage> messages) {
+        SystemMessage systemMessage = findSystemMessage(messages);
+        if (systemMessage == null || messages.getFirst() == systemMessage) {
+            return List.copyOf(messages);
+        }
+        List<ChatMessage> ordered = new ArrayList<>(messages.size());
+        ordered.add(systemMessage);
+        ordered.addAll(withoutSystemMessage(messages));
+        return List.copyOf(ordered);
+    }
+
+    private static List<ChatMessage> withoutSystemMessage(List<ChatMessage> messages) {
+        if (findSystemMessage(messages) == null) {
+            return messages;
+        }
+        return messages.stream().filter(message -> !(message instanceof SystemMessage)).toList();
+    }
+
+    private static List<Object> keys(String id) {
+        return List.of(messagesKey(id), systemKey(id), versionKey(id));
+    }
+
+    private static String messagesKey(String id) {
+        return KEY_PREFIX + id + "}:messages";
+    }
+
+    private static String systemKey(String id) {
+        return KEY_PREFIX + id + "}:system";
+    }
+
+    private static String versionKey(String id) {
+        return KEY_PREFIX + id + "}:version";
+    }
+
+    /**
+     * 本地缓存的记忆
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class CachedMemory {
+
+        /**
+         * 对应 Redis 中的版本号
+         */
+        private final long version;
+
+        /**
+         * 消息列表（不可变）
+         */
+        private final List<ChatMessage> messages;
+    }
+}
@@ -0,0 +1,46 @@
+package com.hz.aicodelessappbuilder.ai.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import dev.langchain4j.model.output.structured.Description;
+import lombok.Data;
+import lombok.Getter;
+
+/**
+ * 批量编辑工具中的单个编辑操作
+ * 字段名与单文件工具的参数一致，便于复用各工具的结果展示格式；只在部分操作类型使用的字段标记为非必填
+ */
+@Data
+public class FileEdit {
+
+    @Description("操作类型：WRITE 写入（创建或完全重写文件），REPLACE 替换文件中的部分内容，DELETE 删除文件")
+    private EditType type;
+
+    @Description("文件的相对路径")
+    private String relativeFilePath;
+
+    @Description("WRITE 时要写入的完整文件内容")
+    @JsonProperty(required = false)
+    private String content;
+
+    @Description("REPLACE 时要替换的旧内容")
+    @JsonProperty(required = false)
+    private String oldContent;
+
+    @Description("REPLACE 时替换后的新内容")
+    @JsonProperty(required = false)
+    private String newContent;
+
+    @Getter
+    public enum EditType {
+
+        WRITE("写入"),
+        REPLACE("替换"),
+        DELETE("删除");
+
+        private final String text;
+
+        EditType(String text) {
+            this.text = text;
+        }
+    }
+}
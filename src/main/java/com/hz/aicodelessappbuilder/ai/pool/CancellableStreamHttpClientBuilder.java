@@ -0,0 +1,112 @@
+package com.hz.aicodelessappbuilder.ai.pool;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpClientBuilderLoader;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import org.apache.hc.core5.http.io.EofSensorInputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * 可在首个 token 之前断开流式响应的 HTTP 客户端
+ * langchain4j 只在首个输出事件中提供 StreamingHandle，之前无法取消请求；这里包装 SSE 解析器，
+ * 收到响应头、开始解析时把断开响应流的操作交给发起请求的线程登记的回调。
+ * 模型池用它断开落败的对冲请求，不必等到落败方输出首个 token
+ */
+public class CancellableStreamHttpClientBuilder implements HttpClientBuilder {
+
+    /**
+     * 当前线程发起的流式请求打开响应流时的回调，参数为断开响应流的操作
+     */
+    private static final ThreadLocal<Consumer<Closeable>> STREAM_OPENED = new ThreadLocal<>();
+
+    private final HttpClientBuilder delegate;
+
+    public CancellableStreamHttpClientBuilder() {
+        this(HttpClientBuilderLoader.loadHttpClientBuilder());
+    }
+
+    public CancellableStreamHttpClientBuilder(HttpClientBuilder delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 在当前线程上发起请求，其间发出的流式请求打开响应流时调用 onStreamOpened（在解析响应的线程上）
+     *
+     * @param onStreamOpened 响应流打开时的回调，参数为断开响应流的操作
+     * @param request        发起请求
+     */
+    static void send(Consumer<Closeable> onStreamOpened, Runnable request) {
+        STREAM_OPENED.set(onStreamOpened);
+        try {
+            request.run();
+        } finally {
+            STREAM_OPENED.remove();
+        }
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration timeout) {
+        delegate.connectTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return delegate.readTimeout();
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration timeout) {
+        delegate.readTimeout(timeout);
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        HttpClient client = delegate.build();
+        return new HttpClient() {
+            @Override
+            public SuccessfulHttpResponse execute(HttpRequest request) {
+                return client.execute(request);
+            }
+
+            @Override
+            public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+                Consumer<Closeable> onStreamOpened = STREAM_OPENED.get();
+                if (onStreamOpened == null) {
+                    client.execute(request, parser, listener);
+                    return;
+                }
+                client.execute(request, (inputStream, eventListener) -> {
+                    onStreamOpened.accept(() -> disconnect(inputStream));
+                    parser.parse(inputStream, eventListener);
+                }, listener);
+            }
+        };
+    }
+
+    /**
+     * 断开响应流；Apache HttpClient 关闭响应流时会先读完剩余内容以复用连接，需要中止才会立即断开
+     */
+    private static void disconnect(InputStream inputStream) throws IOException {
+        if (inputStream instanceof EofSensorInputStream eofSensorInputStream) {
+            eofSensorInputStream.abort();
+        } else {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.hz.aicodelessappbuilder.ai.pool;
+
+import dev.langchain4j.model.chat.StreamingChatModel;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模型池中的一个后端（一个 OpenAI 兼容端点）
+ * 记录首个 token 延迟的指数加权移动平均（EWMA）、进行中的请求数和连续失败次数，供模型池路由使用
+ * EWMA 按距上次样本的时间衰减（每个半衰期减半），变慢后不再被选中的后端最终会被重新试探，恢复后回到正常路由
+ */
+public class ModelBackend {
+
+    @Getter
+    private final String name;
+
+    @Getter
+    private final StreamingChatModel model;
+
+    /**
+     * EWMA 平滑系数，越大越偏向最近的样本
+     */
+    private final double alpha;
+
+    /**
+     * EWMA 衰减的半衰期（纳秒），0 表示不衰减
+     */
+    private final long decayHalfLifeNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 首个 token 延迟的 EWMA（毫秒），小于 0 表示还没有样本
+     */
+    private volatile double ewmaTtftMillis = -1;
+
+    /**
+     * 最近一次样本的时间（System.nanoTime）
+     */
+    private volatile long lastSampleNanos;
+
+    /**
+     * 连续失败后暂停路由到该后端，直到此时间（毫秒时间戳）
+     */
+    private volatile long openUntilMillis;
+
+    /**
+     * @param name                后端名称（指标标签）
+     * @param model               流式模型
+     * @param alpha               EWMA 平滑系数
+     * @param decayHalfLifeMillis EWMA 衰减的半衰期（毫秒），0 表示不衰减
+     */
+    public ModelBackend(String name, StreamingChatModel model, double alpha, long decayHalfLifeMillis) {
+        this.name = name;
+        this.model = model;
+        this.alpha = alpha;
+        this.decayHalfLifeNanos = TimeUnit.MILLISECONDS.toNanos(decayHalfLifeMillis);
+    }
+
+    /**
+     * 记录一次首个 token 延迟，与衰减后的 EWMA 加权
+     */
+    public synchronized void recordTtft(double ttftMillis) {
+        long nowNanos = System.nanoTime();
+        ewmaTtftMillis = ewmaTtftMillis < 0 ? ttftMillis : alpha * ttftMillis + (1 - alpha) * decayedEwma(nowNanos);
+        lastSampleNanos = nowNanos;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * 记录一次失败，连续失败达到阈值后暂停路由
+     */
+    public void recordFailure(int failureThreshold, long openMillis) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntilMillis = System.currentTimeMillis() + openMillis;
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= openUntilMillis;
+    }
+
+    /**
+     * 路由得分，越小越优先：预计首个 token 延迟 × (进行中的请求数 + 1)；没有样本的后端优先试用
+     */
+    public double score() {
+        return decayedEwma(System.nanoTime()) * (inFlight.get() + 1);
+    }
+
+    /**
+     * 首个 token 延迟的 EWMA（毫秒，已衰减），没有样本时为 0
+     */
+    public double getEwmaTtftMillis() {
+        return decayedEwma(System.nanoTime());
+    }
+
+    private double decayedEwma(long nowNanos) {
+        double ewma = ewmaTtftMillis;
+        if (ewma <= 0 || decayHalfLifeNanos <= 0) {
+            return Math.max(ewma, 0);
+        }
+        return ewma * Math.pow(0.5, (double) (nowNanos - lastSampleNanos) / decayHalfLifeNanos);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+}
@@ -0,0 +1,514 @@
+package com.hz.aicodelessappbuilder.ai.pool;
+
+import cn.hutool.core.io.IoUtil;
+import com.hz.aicodelessappbuilder.monitor.MonitorContext;
+import com.hz.aicodelessappbuilder.monitor.MonitorContextHolder;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多端点流式模型池
+ * - 路由：按首个 token 延迟的 EWMA 和进行中的请求数选择后端，连续失败的后端暂停一段时间
+ * - 对冲：开启后（hedgeDelayMillis > 0），首个 token 在阈值内未到达时，向另一个后端发送相同请求，先输出的一方胜出，另一方被取消
+ * - 故障转移：尚未输出任何内容就失败时，换一个后端重试
+ * 胜出的后端确定后，只转发它的事件（包括可用于取消的 StreamingHandle）；一旦开始输出，失败不再重试
+ * 落败的尝试还没有 StreamingHandle 时直接断开它的响应流（后端模型使用 {@link CancellableStreamHttpClientBuilder} 时），
+ * 否则在它首次输出时取消
+ * 各后端自带监听器（监控指标），模型池本身不注册监听器，避免重复统计
+ * 指标：
+ * - ai_model_backend_ttft_seconds{pool,backend}：各后端首个 token 延迟
+ * - ai_model_backend_ewma_ttft_seconds{pool,backend}、ai_model_backend_in_flight{pool,backend}
+ * - ai_model_pool_hedge_total{pool,result=fired|won}、ai_model_pool_failover_total{pool}
+ */
+@Slf4j
+public class StreamingChatModelPool implements StreamingChatModel {
+
+    private static final ScheduledExecutorService HEDGE_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("model-pool-hedge").daemon().factory());
+
+    private final String poolName;
+
+    private final List<ModelBackend> backends;
+
+    private final long hedgeDelayMillis;
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final Map<ModelBackend, Timer> ttftTimers = new HashMap<>();
+
+    private final Counter hedgeFiredCounter;
+
+    private final Counter hedgeWonCounter;
+
+    private final Counter failoverCounter;
+
+    /**
+     * @param poolName         模型池名称（指标标签）
+     * @param backends         后端列表，至少一个
+     * @param hedgeDelayMillis 对冲阈值（毫秒），0 表示不对冲
+     * @param failureThreshold 连续失败多少次后暂停路由
+     * @param openMillis       暂停路由的时长（毫秒）
+     * @param meterRegistry    指标注册表
+     */
+    public StreamingChatModelPool(String poolName, List<ModelBackend> backends, long hedgeDelayMillis,
+                                  int failureThreshold, long openMillis, MeterRegistry meterRegistry) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("模型池 " + poolName + " 没有可用的后端");
+        }
+        this.poolName = poolName;
+        this.backends = List.copyOf(backends);
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        for (ModelBackend backend : this.backends) {
+            ttftTimers.put(backend, Timer.builder("ai_model_backend_ttft_seconds")
+                    .description("模型后端首个 token 延迟")
+                    .tag("pool", poolName)
+                    .tag("backend", backend.getName())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("ai_model_backend_ewma_ttft_seconds", backend, b -> b.getEwmaTtftMillis() / 1000)
+                    .description("模型后端首个 token 延迟的 EWMA")
+                    .tag("pool", poolName)
+                    .tag("backend", backend.getName())
+                    .register(meterRegistry);
+            Gauge.builder("ai_model_backend_in_flight", backend, ModelBackend::getInFlight)
+                    .description("模型后端进行中的请求数")
+                    .tag("pool", poolName)
+                    .tag("backend", backend.getName())
+                    .register(meterRegistry);
+        }
+        hedgeFiredCounter = Counter.builder("ai_model_pool_hedge_total")
+                .description("对冲请求次数（fired 发出，won 对冲请求胜出）")
+                .tag("pool", poolName)
+                .tag("result", "fired")
+                .register(meterRegistry);
+        hedgeWonCounter = Counter.builder("ai_model_pool_hedge_total")
+                .description("对冲请求次数（fired 发出，won 对冲请求胜出）")
+                .tag("pool", poolName)
+                .tag("result", "won")
+                .register(meterRegistry);
+        failoverCounter = Counter.builder("ai_model_pool_failover_total")
+                .description("后端失败后换用其他后端的次数")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+        log.info("模型池 {} 初始化完成，后端: {}，对冲阈值: {}ms", poolName,
+                this.backends.stream().map(ModelBackend::getName).toList(), hedgeDelayMillis);
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new PooledRequest(chatRequest, handler).start();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return backends.getFirst().getModel().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return backends.getFirst().getModel().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return backends.getFirst().getModel().supportedCapabilities();
+    }
+
+    public List<ModelBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * 选择得分最低的后端；所有后端都暂停时也从中选择，不直接失败
+     */
+    private ModelBackend select(List<Attempt> tried) {
+        ModelBackend best = null;
+        boolean bestAvailable = false;
+        for (ModelBackend backend : backends) {
+            if (tried.stream().anyMatch(attempt -> attempt.backend == backend)) {
+                continue;
+            }
+            boolean available = backend.isAvailable();
+            if (best == null
+                    || (available && !bestAvailable)
+                    || (available == bestAvailable && backend.score() < best.score())) {
+                best = backend;
+                bestAvailable = available;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 一次经过模型池的请求，可能包含多次尝试（对冲或故障转移）
+     */
+    private class PooledRequest {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        /**
+         * 请求线程的监控上下文，对冲请求在调度线程发出时需要恢复
+         */
+        private final MonitorContext monitorContext = MonitorContextHolder.getContext();
+
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        private Attempt winner;
+
+        private boolean finished;
+
+        private ScheduledFuture<?> hedgeFuture;
+
+        PooledRequest(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+        }
+
+        void start() {
+            Attempt attempt;
+            synchronized (this) {
+                attempt = newAttempt(select(attempts), false);
+                if (hedgeDelayMillis > 0 && backends.size() > 1) {
+                    hedgeFuture = HEDGE_SCHEDULER.schedule(this::hedge, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            attempt.send();
+        }
+
+        private Attempt newAttempt(ModelBackend backend, boolean hedged) {
+            Attempt attempt = new Attempt(this, backend, hedged);
+            attempts.add(attempt);
+            backend.acquire();
+            return attempt;
+        }
+
+        /**
+         * 首个 token 超过阈值仍未到达，向另一个后端发出相同请求
+         */
+        private void hedge() {
+            Attempt primary;
+            Attempt attempt;
+            synchronized (this) {
+                if (winner != null || finished || attempts.size() > 1) {
+                    return;
+                }
+                ModelBackend backend = select(attempts);
+                if (backend == null) {
+                    return;
+                }
+                primary = attempts.getFirst();
+                attempt = newAttempt(backend, true);
+            }
+            hedgeFiredCounter.increment();
+            log.info("模型池 {}: {} 超过 {}ms 未输出，对冲到 {}", poolName, primary.backend.getName(),
+                    hedgeDelayMillis, attempt.backend.getName());
+            attempt.send();
+        }
+
+        /**
+         * 尝试收到事件时调用，返回是否由它输出（首个输出的尝试胜出）
+         */
+        boolean accept(Attempt attempt, StreamingHandle streamingHandle) {
+            List<Attempt> losers = List.of();
+            boolean forward;
+            synchronized (this) {
+                if (streamingHandle != null) {
+                    attempt.streamingHandle = streamingHandle;
+                }
+                if (!attempt.signalled) {
+                    attempt.signalled = true;
+                    long ttftNanos = System.nanoTime() - attempt.startNanos;
+                    attempt.backend.recordTtft(ttftNanos / 1_000_000.0);
+                    ttftTimers.get(attempt.backend).record(ttftNanos, TimeUnit.NANOSECONDS);
+                }
+                if (winner == null && !finished && !attempt.done) {
+                    winner = attempt;
+                    if (hedgeFuture != null) {
+                        hedgeFuture.cancel(false);
+                    }
+                    if (attempt.hedged) {
+                        hedgeWonCounter.increment();
+                    }
+                    losers = attempts.stream().filter(other -> other != attempt && !other.done).toList();
+                    losers.forEach(this::abandon);
+                }
+                forward = winner == attempt;
+            }
+            if (!forward) {
+                attempt.cancel();
+            }
+            losers.forEach(Attempt::cancel);
+            return forward;
+        }
+
+        /**
+         * 放弃落败的尝试：尚未输出时，已等待的时间作为它首个 token 延迟的下限计入 EWMA
+         */
+        private void abandon(Attempt attempt) {
+            attempt.done = true;
+            attempt.backend.release();
+            if (!attempt.signalled) {
+                double waitedMillis = (System.nanoTime() - attempt.startNanos) / 1_000_000.0;
+                if (waitedMillis > attempt.backend.getEwmaTtftMillis()) {
+                    attempt.backend.recordTtft(waitedMillis);
+                }
+            }
+        }
+
+        /**
+         * 尝试的响应流打开时调用，尝试已结束（落败或被取消）时返回 false，由调用方立即断开
+         */
+        synchronized boolean streamOpened(Attempt attempt, Closeable disconnect) {
+            if (attempt.done) {
+                return false;
+            }
+            attempt.disconnect = disconnect;
+            return true;
+        }
+
+        /**
+         * 下游通过 StreamingHandle 取消胜出的尝试
+         */
+        void cancel(Attempt attempt) {
+            synchronized (this) {
+                finished = true;
+                if (!attempt.done) {
+                    attempt.done = true;
+                    attempt.backend.release();
+                }
+            }
+            attempt.cancel();
+        }
+
+        void complete(Attempt attempt, ChatResponse chatResponse) {
+            if (!accept(attempt, null)) {
+                return;
+            }
+            synchronized (this) {
+                finished = true;
+                attempt.done = true;
+            }
+            attempt.backend.release();
+            attempt.backend.recordSuccess();
+            handler.onCompleteResponse(chatResponse);
+        }
+
+        void fail(Attempt attempt, Throwable error) {
+            Attempt failover = null;
+            boolean forward;
+            synchronized (this) {
+                if (attempt.done || finished) {
+                    return;
+                }
+                attempt.done = true;
+                attempt.backend.release();
+                attempt.backend.recordFailure(failureThreshold, openMillis);
+                if (winner == attempt) {
+                    // 已经开始输出，无法换后端重试
+                    finished = true;
+                    forward = true;
+                } else if (attempts.stream().anyMatch(other -> !other.done)) {
+                    // 还有进行中的尝试（对冲），等待它的结果
+                    forward = false;
+                } else {
+                    ModelBackend backend = select(attempts);
+                    if (backend != null) {
+                        failover = newAttempt(backend, false);
+                        forward = false;
+                    } else {
+                        finished = true;
+                        forward = true;
+                    }
+                }
+            }
+            log.warn("模型池 {}: 后端 {} 请求失败: {}", poolName, attempt.backend.getName(), error.getMessage());
+            if (failover != null) {
+                failoverCounter.increment();
+                log.info("模型池 {}: 换用后端 {}", poolName, failover.backend.getName());
+                failover.send();
+            } else if (forward) {
+                handler.onError(error);
+            }
+        }
+    }
+
+    /**
+     * 向某个后端的一次尝试，作为该后端的响应处理器，只转发胜出尝试的事件
+     */
+    private static class Attempt implements StreamingChatResponseHandler {
+
+        private final PooledRequest request;
+
+        private final ModelBackend backend;
+
+        /**
+         * 是否为对冲发出的请求
+         */
+        private final boolean hedged;
+
+        private final long startNanos = System.nanoTime();
+
+        // 以下字段由 PooledRequest 的锁保护
+        private boolean signalled;
+
+        private boolean done;
+
+        private volatile StreamingHandle streamingHandle;
+
+        /**
+         * 断开响应流，尚未收到 StreamingHandle 时用它取消
+         */
+        private volatile Closeable disconnect;
+
+        /**
+         * 交给下游的取消句柄，取消时同时释放后端的进行中计数
+         */
+        private final StreamingHandle pooledHandle = new StreamingHandle() {
+            @Override
+            public void cancel() {
+                request.cancel(Attempt.this);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                StreamingHandle handle = streamingHandle;
+                return handle != null && handle.isCancelled();
+            }
+        };
+
+        Attempt(PooledRequest request, ModelBackend backend, boolean hedged) {
+            this.request = request;
+            this.backend = backend;
+            this.hedged = hedged;
+        }
+
+        void send() {
+            MonitorContext previous = MonitorContextHolder.getContext();
+            boolean restoreContext = previous == null && request.monitorContext != null;
+            if (restoreContext) {
+                MonitorContextHolder.setContext(request.monitorContext);
+            }
+            try {
+                CancellableStreamHttpClientBuilder.send(this::onStreamOpened,
+                        () -> backend.getModel().chat(request.chatRequest, this));
+            } catch (Exception e) {
+                request.fail(this, e);
+            } finally {
+                if (restoreContext) {
+                    MonitorContextHolder.clearContext();
+                }
+            }
+        }
+
+        void cancel() {
+            StreamingHandle handle = streamingHandle;
+            if (handle != null) {
+                if (!handle.isCancelled()) {
+                    handle.cancel();
+                }
+            } else {
+                IoUtil.close(disconnect);
+            }
+        }
+
+        private void onStreamOpened(Closeable disconnect) {
+            if (!request.streamOpened(this, disconnect)) {
+                IoUtil.close(disconnect);
+            }
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (request.accept(this, null)) {
+                request.handler.onPartialResponse(partialResponse);
+            }
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            if (request.accept(this, context.streamingHandle())) {
+                request.handler.onPartialResponse(partialResponse, new PartialResponseContext(pooledHandle));
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            if (request.accept(this, null)) {
+                request.handler.onPartialThinking(partialThinking);
+            }
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            if (request.accept(this, context.streamingHandle())) {
+                request.handler.onPartialThinking(partialThinking, new PartialThinkingContext(pooledHandle));
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            if (request.accept(this, null)) {
+                request.handler.onPartialToolCall(partialToolCall);
+            }
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            if (request.accept(this, context.streamingHandle())) {
+                request.handler.onPartialToolCall(partialToolCall, new PartialToolCallContext(pooledHandle));
+            }
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            if (request.accept(this, null)) {
+                request.handler.onCompleteToolCall(completeToolCall);
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse chatResponse) {
+            request.complete(this, chatResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            request.fail(this, error);
+        }
+    }
+}
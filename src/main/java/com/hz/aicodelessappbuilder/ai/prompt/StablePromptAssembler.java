@@ -0,0 +1,175 @@
+package com.hz.aicodelessappbuilder.ai.prompt;
+
+import cn.hutool.core.util.HashUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * 提示词组装：保证同一应用相邻两次请求的提示词前缀逐字节一致，以命中模型服务的前缀缓存
+ * 作为 AiServices 的 chatRequestTransformer，工具调用循环中的每次请求都会经过这里：
+ * - 工具定义按名称排序，不依赖 Bean 注册或反射返回的顺序
+ * - 系统消息统一换行符、去掉 BOM 和行尾空白，并固定在最前且只有一条
+ * - 历史消息保持原样（只在超出 token 预算时由对话记忆压缩改写），每次请求的动态内容只能出现在末尾的用户消息中
+ * 同时记录与上一次请求相比前缀是否完整复用：
+ * - ai_prompt_prefix_total{result=reused|changed|new}
+ */
+@Slf4j
+@Component
+public class StablePromptAssembler implements BiFunction<ChatRequest, Object, ChatRequest> {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 单条消息的哈希缓存，消息不可变，按对象引用缓存
+     */
+    private final Cache<ChatMessage, Long> messageHashCache = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(100_000)
+            .build();
+
+    /**
+     * 每个记忆ID上一次请求的前缀哈希（工具定义 + 各条消息）
+     */
+    private final Cache<Object, long[]> lastPrefixCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    private Counter reusedCounter;
+
+    private Counter changedCounter;
+
+    private Counter newCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        reusedCounter = prefixCounter("reused");
+        changedCounter = prefixCounter("changed");
+        newCounter = prefixCounter("new");
+    }
+
+    private Counter prefixCounter(String result) {
+        return Counter.builder("ai_prompt_prefix_total")
+                .tag("result", result)
+                .description("与上一次请求相比提示词前缀的复用情况")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ChatRequest apply(ChatRequest chatRequest, Object memoryId) {
+        List<ToolSpecification> toolSpecifications = sortTools(chatRequest.toolSpecifications());
+        List<ChatMessage> messages = normalizeMessages(chatRequest.messages());
+        if (memoryId != null) {
+            trackPrefix(memoryId, toolSpecifications, messages);
+        }
+        ChatRequest.Builder builder = chatRequest.toBuilder().messages(messages);
+        if (toolSpecifications != chatRequest.toolSpecifications()) {
+            // 工具定义在请求参数中，覆盖参数以保留模型特有的配置
+            builder.parameters(chatRequest.parameters().overrideWith(ChatRequestParameters.builder()
+                    .toolSpecifications(toolSpecifications)
+                    .build()));
+        }
+        return builder.build();
+    }
+
+    private static List<ToolSpecification> sortTools(List<ToolSpecification> toolSpecifications) {
+        if (toolSpecifications == null || toolSpecifications.size() < 2) {
+            return toolSpecifications;
+        }
+        List<ToolSpecification> sorted = new ArrayList<>(toolSpecifications);
+        sorted.sort(Comparator.comparing(ToolSpecification::name));
+        return sorted;
+    }
+
+    /**
+     * 系统消息规范化后放在最前，其余消息保持原有顺序和内容
+     */
+    private static List<ChatMessage> normalizeMessages(List<ChatMessage> messages) {
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        SystemMessage systemMessage = null;
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage system) {
+                // 多条系统消息时保留最后一条，与对话记忆的替换语义一致
+                systemMessage = system;
+            } else {
+                result.add(message);
+            }
+        }
+        if (systemMessage != null) {
+            result.addFirst(normalizeSystemMessage(systemMessage));
+        }
+        return result;
+    }
+
+    static SystemMessage normalizeSystemMessage(SystemMessage systemMessage) {
+        String text = systemMessage.text();
+        String normalized = text.replace("\uFEFF", "")
+                .replace("\r\n", "\n")
+                .replace('\r', '\n')
+                .replaceAll("[ \\t]+\\n", "\n")
+                .strip();
+        return normalized.equals(text) ? systemMessage : SystemMessage.from(normalized);
+    }
+
+    /**
+     * 对比上一次请求：上一次请求的全部内容是这一次的前缀时，服务端的前缀缓存可以完整命中
+     */
+    private void trackPrefix(Object memoryId, List<ToolSpecification> toolSpecifications, List<ChatMessage> messages) {
+        long[] hashes = new long[messages.size() + 1];
+        hashes[0] = hashTools(toolSpecifications);
+        for (int i = 0; i < messages.size(); i++) {
+            hashes[i + 1] = messageHashCache.get(messages.get(i), StablePromptAssembler::hashMessage);
+        }
+        long[] lastHashes = lastPrefixCache.asMap().put(memoryId, hashes);
+        if (lastHashes == null) {
+            newCounter.increment();
+            return;
+        }
+        int common = 0;
+        int limit = Math.min(lastHashes.length, hashes.length);
+        while (common < limit && lastHashes[common] == hashes[common]) {
+            common++;
+        }
+        if (common == lastHashes.length) {
+            reusedCounter.increment();
+        } else {
+            changedCounter.increment();
+            log.debug("提示词前缀发生变化, memoryId: {}, 位置: {}/{}", memoryId, common, lastHashes.length);
+        }
+    }
+
+    private static long hashTools(List<ToolSpecification> toolSpecifications) {
+        if (toolSpecifications == null || toolSpecifications.isEmpty()) {
+            return 0L;
+        }
+        return hash(toolSpecifications.toString());
+    }
+
+    private static long hashMessage(ChatMessage message) {
+        return hash(ChatMessageSerializer.messageToJson(message));
+    }
+
+    private static long hash(String text) {
+        return HashUtil.murmur64(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型调用舱壁：限制同类调用的并发数，超过上限时最多等待 maxWaitMillis，仍拿不到许可则直接失败
+ * 指标：
+ * - ai_model_bulkhead_available{name}：剩余许可数
+ * - ai_model_bulkhead_rejected_total{name}：被拒绝的调用数
+ */
+public class Bulkhead {
+
+    @Getter
+    private final String name;
+
+    private final Semaphore semaphore;
+
+    private final long maxWaitMillis;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * @param name          舱壁名称（指标标签）
+     * @param maxConcurrent 最大并发调用数
+     * @param maxWaitMillis 许可不足时的最长等待时间（毫秒），0 表示不等待
+     * @param meterRegistry 指标注册表
+     */
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.semaphore = new Semaphore(maxConcurrent);
+        this.maxWaitMillis = maxWaitMillis;
+        Gauge.builder("ai_model_bulkhead_available", semaphore, Semaphore::availablePermits)
+                .description("模型调用舱壁的剩余许可数")
+                .tag("name", name)
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai_model_bulkhead_rejected_total")
+                .description("模型调用舱壁已满被拒绝的调用数")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 申请许可，成功后必须调用 release
+     */
+    public boolean tryAcquire() {
+        boolean acquired;
+        try {
+            acquired = maxWaitMillis > 0
+                    ? semaphore.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)
+                    : semaphore.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+        }
+        return acquired;
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    public int getAvailablePermits() {
+        return semaphore.availablePermits();
+    }
+}
@@ -0,0 +1,239 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 模型调用熔断器
+ * - 关闭：统计最近 windowSize 次调用，调用数达到 minimumCalls 且失败率（含慢调用）达到阈值时打开
+ * - 打开：直接拒绝调用，openMillis 后进入半开
+ * - 半开：最多放行 halfOpenProbes 个探测调用，全部成功后关闭，任一失败重新打开
+ * 每次状态切换递增代数，调用结果按获得许可时的代数和身份记入：只有半开时放行的探测调用计入探测结果，
+ * 状态切换之前放行的调用结束时不再计入（例如关闭时放行、半开后才结束的调用）
+ * 指标：
+ * - ai_model_circuit_state{name}：0 关闭，1 打开，2 半开
+ * - ai_model_circuit_calls_total{name,result=success|failure|slow|rejected}
+ * - ai_model_circuit_transitions_total{name,state}
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Getter
+    private final String name;
+
+    private final int minimumCalls;
+
+    private final double failureRateThreshold;
+
+    private final long openMillis;
+
+    private final int halfOpenProbes;
+
+    /**
+     * 最近调用结果的环形缓冲区，true 表示失败
+     */
+    private final boolean[] window;
+
+    private int windowIndex;
+
+    private int windowCalls;
+
+    private int windowFailures;
+
+    @Getter
+    private volatile State state = State.CLOSED;
+
+    private long openUntilMillis;
+
+    private int probesInFlight;
+
+    private int probesSucceeded;
+
+    /**
+     * 状态代数，每次状态切换加一
+     */
+    private long generation;
+
+    private final Counter successCounter;
+
+    private final Counter failureCounter;
+
+    private final Counter slowCounter;
+
+    private final Counter rejectedCounter;
+
+    private final Map<State, Counter> transitionCounters = new EnumMap<>(State.class);
+
+    /**
+     * @param name                 熔断器名称（指标标签）
+     * @param windowSize           统计的最近调用数
+     * @param minimumCalls         计算失败率需要的最少调用数
+     * @param failureRateThreshold 打开熔断的失败率
+     * @param openMillis           打开后到半开的时长（毫秒）
+     * @param halfOpenProbes       半开时放行的探测调用数
+     * @param meterRegistry        指标注册表
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMillis, int halfOpenProbes, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        Gauge.builder("ai_model_circuit_state", this, breaker -> breaker.state.ordinal())
+                .description("模型调用熔断器状态（0 关闭，1 打开，2 半开）")
+                .tag("name", name)
+                .register(meterRegistry);
+        successCounter = callCounter(meterRegistry, "success");
+        failureCounter = callCounter(meterRegistry, "failure");
+        slowCounter = callCounter(meterRegistry, "slow");
+        rejectedCounter = callCounter(meterRegistry, "rejected");
+        for (State target : State.values()) {
+            transitionCounters.put(target, Counter.builder("ai_model_circuit_transitions_total")
+                    .description("模型调用熔断器状态切换次数")
+                    .tag("name", name)
+                    .tag("state", target.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 申请调用许可，返回 null 时应直接失败；获得许可后必须以该许可调用 onSuccess / onFailure / onIgnored 之一
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntilMillis) {
+                rejectedCounter.increment();
+                return null;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= halfOpenProbes) {
+                rejectedCounter.increment();
+                return null;
+            }
+            probesInFlight++;
+            return new Permission(generation, true);
+        }
+        return new Permission(generation, false);
+    }
+
+    public synchronized void onSuccess(Permission permission) {
+        successCounter.increment();
+        if (isStale(permission)) {
+            return;
+        }
+        if (permission.probe) {
+            probesInFlight--;
+            if (++probesSucceeded >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else {
+            record(false);
+        }
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param slow 是否为慢调用（调用本身成功，但耗时超过阈值）
+     */
+    public synchronized void onFailure(Permission permission, boolean slow) {
+        (slow ? slowCounter : failureCounter).increment();
+        if (isStale(permission)) {
+            return;
+        }
+        if (permission.probe) {
+            transitionTo(State.OPEN);
+        } else {
+            record(true);
+        }
+    }
+
+    /**
+     * 调用结束但不计入统计（例如调用方取消、请求参数错误），只归还半开时的探测许可
+     */
+    public synchronized void onIgnored(Permission permission) {
+        if (!isStale(permission) && permission.probe) {
+            probesInFlight--;
+        }
+    }
+
+    /**
+     * 许可是否在上一次状态切换之前获得；代数相同时，探测许可对应半开，其余对应关闭
+     */
+    private boolean isStale(Permission permission) {
+        return permission.generation != generation;
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+        if (windowCalls >= minimumCalls && (double) windowFailures / windowCalls >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State target) {
+        State previous = state;
+        state = target;
+        if (target == State.OPEN) {
+            openUntilMillis = System.currentTimeMillis() + openMillis;
+        }
+        if (target == State.CLOSED || target == State.OPEN) {
+            windowIndex = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+        }
+        probesInFlight = 0;
+        probesSucceeded = 0;
+        generation++;
+        transitionCounters.get(target).increment();
+        log.warn("熔断器 {} 状态切换: {} -> {}", name, previous, target);
+    }
+
+    /**
+     * 调用许可：获得许可时的状态代数，以及是否为半开时的探测调用
+     */
+    public static final class Permission {
+
+        private final long generation;
+
+        private final boolean probe;
+
+        private Permission(long generation, boolean probe) {
+            this.generation = generation;
+            this.probe = probe;
+        }
+    }
+
+    private Counter callCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("ai_model_circuit_calls_total")
+                .description("经过熔断器的模型调用次数")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
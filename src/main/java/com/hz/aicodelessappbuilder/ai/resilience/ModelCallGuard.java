@@ -0,0 +1,117 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import dev.langchain4j.exception.NonRetriableException;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次模型调用的舱壁 + 熔断检查
+ * 先检查熔断器（打开时不占用舱壁许可），再申请舱壁许可，任一失败都直接抛出 SERVICE_UNAVAILABLE。
+ * 请求本身有误（NonRetriableException，如参数错误、鉴权失败）不计入熔断统计。
+ */
+public class ModelCallGuard {
+
+    @Getter
+    private final Bulkhead bulkhead;
+
+    @Getter
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * 慢调用阈值（毫秒），超过时即使成功也按失败计入熔断统计，0 表示不统计慢调用
+     */
+    private final long slowCallMillis;
+
+    public ModelCallGuard(Bulkhead bulkhead, CircuitBreaker circuitBreaker, long slowCallMillis) {
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    /**
+     * 申请调用许可
+     *
+     * @throws BusinessException 熔断打开或舱壁已满
+     */
+    public Permit acquire() {
+        CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+        if (permission == null) {
+            throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "AI 服务暂时不可用，请稍后重试");
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.onIgnored(permission);
+            throw new BusinessException(ErrorCode.SERVICE_UNAVAILABLE, "AI 服务繁忙，请稍后重试");
+        }
+        return new Permit(permission);
+    }
+
+    /**
+     * 调用许可，结束时调用 success / failure / ignore 之一，重复调用只有第一次生效
+     */
+    public class Permit {
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private final CircuitBreaker.Permission permission;
+
+        private Permit(CircuitBreaker.Permission permission) {
+            this.permission = permission;
+        }
+
+        /**
+         * 调用成功；流式调用按首个 token 延迟判断慢调用，由调用方传入
+         */
+        public void success(long latencyMillis) {
+            if (release()) {
+                if (slowCallMillis > 0 && latencyMillis > slowCallMillis) {
+                    circuitBreaker.onFailure(permission, true);
+                } else {
+                    circuitBreaker.onSuccess(permission);
+                }
+            }
+        }
+
+        /**
+         * 调用成功，按调用总耗时判断慢调用
+         */
+        public void success() {
+            success(getElapsedMillis());
+        }
+
+        public void failure(Throwable error) {
+            if (release()) {
+                if (error instanceof NonRetriableException) {
+                    circuitBreaker.onIgnored(permission);
+                } else {
+                    circuitBreaker.onFailure(permission, false);
+                }
+            }
+        }
+
+        /**
+         * 调用方取消等情况，不计入熔断统计
+         */
+        public void ignore() {
+            if (release()) {
+                circuitBreaker.onIgnored(permission);
+            }
+        }
+
+        public long getElapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        private boolean release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * 带舱壁和熔断的同步模型
+ * 监听器由被包装的模型触发，这里不注册监听器，避免重复统计
+ */
+public class ResilientChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final ModelCallGuard guard;
+
+    public ResilientChatModel(ChatModel delegate, ModelCallGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        ModelCallGuard.Permit permit = guard.acquire();
+        try {
+            ChatResponse chatResponse = delegate.chat(chatRequest);
+            permit.success();
+            return chatResponse;
+        } catch (RuntimeException e) {
+            permit.failure(e);
+            throw e;
+        } catch (Error e) {
+            permit.ignore();
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    public ModelCallGuard getGuard() {
+        return guard;
+    }
+
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import com.hz.aicodelessappbuilder.config.ModelResilienceConfig;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 为模型 Bean 加上舱壁和熔断（见 ModelResilienceConfig）
+ * 配置通过 ObjectProvider 延迟获取，避免后处理器提前初始化指标注册表等 Bean
+ */
+@Component
+public class ResilientModelPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<ModelResilienceConfig> modelResilienceConfig;
+
+    public ResilientModelPostProcessor(ObjectProvider<ModelResilienceConfig> modelResilienceConfig) {
+        this.modelResilienceConfig = modelResilienceConfig;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ChatModel || bean instanceof StreamingChatModel) {
+            return modelResilienceConfig.getObject().wrap(beanName, bean);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,180 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialThinkingContext;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.PartialToolCallContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.util.Set;
+
+/**
+ * 带舱壁和熔断的流式模型
+ * 许可在响应完成、出错或下游通过 StreamingHandle 取消时归还；慢调用按首个 token 延迟判断。
+ * 被拒绝时通过 handler.onError 返回 SERVICE_UNAVAILABLE，不抛出异常。
+ * 监听器由被包装的模型触发，这里不注册监听器，避免重复统计
+ */
+public class ResilientStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final ModelCallGuard guard;
+
+    public ResilientStreamingChatModel(StreamingChatModel delegate, ModelCallGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        ModelCallGuard.Permit permit;
+        try {
+            permit = guard.acquire();
+        } catch (BusinessException e) {
+            handler.onError(e);
+            return;
+        }
+        GuardedHandler guardedHandler = new GuardedHandler(handler, permit);
+        try {
+            delegate.chat(chatRequest, guardedHandler);
+        } catch (RuntimeException e) {
+            guardedHandler.onError(e);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    public ModelCallGuard getGuard() {
+        return guard;
+    }
+
+    /**
+     * 转发事件，记录首个 token 延迟，结束时归还许可
+     */
+    private static class GuardedHandler implements StreamingChatResponseHandler {
+
+        private final StreamingChatResponseHandler handler;
+
+        private final ModelCallGuard.Permit permit;
+
+        /**
+         * 首个 token 延迟（毫秒），小于 0 表示还没有输出
+         */
+        private volatile long firstTokenMillis = -1;
+
+        private volatile StreamingHandle streamingHandle;
+
+        /**
+         * 交给下游的取消句柄，取消时归还许可
+         */
+        private final StreamingHandle guardedHandle = new StreamingHandle() {
+            @Override
+            public void cancel() {
+                permit.ignore();
+                StreamingHandle handle = streamingHandle;
+                if (handle != null) {
+                    handle.cancel();
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                StreamingHandle handle = streamingHandle;
+                return handle != null && handle.isCancelled();
+            }
+        };
+
+        GuardedHandler(StreamingChatResponseHandler handler, ModelCallGuard.Permit permit) {
+            this.handler = handler;
+            this.permit = permit;
+        }
+
+        private void signal(StreamingHandle handle) {
+            if (handle != null) {
+                streamingHandle = handle;
+            }
+            if (firstTokenMillis < 0) {
+                firstTokenMillis = permit.getElapsedMillis();
+            }
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            signal(null);
+            handler.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+            signal(context.streamingHandle());
+            handler.onPartialResponse(partialResponse, new PartialResponseContext(guardedHandle));
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking) {
+            signal(null);
+            handler.onPartialThinking(partialThinking);
+        }
+
+        @Override
+        public void onPartialThinking(PartialThinking partialThinking, PartialThinkingContext context) {
+            signal(context.streamingHandle());
+            handler.onPartialThinking(partialThinking, new PartialThinkingContext(guardedHandle));
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall) {
+            signal(null);
+            handler.onPartialToolCall(partialToolCall);
+        }
+
+        @Override
+        public void onPartialToolCall(PartialToolCall partialToolCall, PartialToolCallContext context) {
+            signal(context.streamingHandle());
+            handler.onPartialToolCall(partialToolCall, new PartialToolCallContext(guardedHandle));
+        }
+
+        @Override
+        public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+            signal(null);
+            handler.onCompleteToolCall(completeToolCall);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse chatResponse) {
+            long latencyMillis = firstTokenMillis;
+            permit.success(latencyMillis < 0 ? permit.getElapsedMillis() : latencyMillis);
+            handler.onCompleteResponse(chatResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            permit.failure(error);
+            handler.onError(error);
+        }
+    }
+}
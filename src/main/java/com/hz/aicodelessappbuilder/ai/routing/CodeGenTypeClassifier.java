@@ -0,0 +1,226 @@
+package com.hz.aicodelessappbuilder.ai.routing;
+
+import cn.hutool.core.util.StrUtil;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.text.Normalizer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 代码生成类型的本地分类器（朴素贝叶斯）
+ * 特征为提示词中的英文单词和中文字符的二元、三元组（每个特征在一条提示词中只计一次），
+ * 用已有应用的初始提示词和生成类型训练，另外内置少量关键词样本，保证训练数据少时常见的技术关键词也能识别。
+ * 训练后不可变，可以在多个线程中并发使用。
+ */
+public class CodeGenTypeClassifier {
+
+    /**
+     * 拉普拉斯平滑系数
+     */
+    private static final double SMOOTHING = 1.0;
+
+    /**
+     * 内置关键词样本的权重（相当于重复出现的次数）
+     */
+    private static final int SEED_WEIGHT = 5;
+
+    /**
+     * 内置关键词样本，与路由系统提示词中的判断规则一致
+     */
+    private static final Map<CodeGenTypeEnum, List<String>> SEED_KEYWORDS = Map.of(
+            CodeGenTypeEnum.HTML, List.of("单个页面", "一个页面", "单页面", "落地页", "个人主页", "个人简介",
+                    "展示页", "静态页面", "介绍页", "简单的页面", "html 页面", "一个 html 文件"),
+            CodeGenTypeEnum.MULTI_FILE, List.of("多个页面", "多页面", "几个页面", "多文件", "html css js 分离",
+                    "分离 css 和 js", "首页 关于 联系", "独立的 css 文件"),
+            CodeGenTypeEnum.VUE_PROJECT, List.of("vue", "vue3", "vue 项目", "组件", "路由", "状态管理", "后台管理系统",
+                    "管理系统", "登录注册", "数据管理", "购物车", "增删改查", "单页应用", "复杂交互", "前端工程")
+    );
+
+    /**
+     * 各类型的样本数（含关键词样本权重）
+     */
+    private final Map<CodeGenTypeEnum, Double> classCounts = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 各类型下每个特征出现的样本数
+     */
+    private final Map<CodeGenTypeEnum, Map<String, Double>> featureCounts = new EnumMap<>(CodeGenTypeEnum.class);
+
+    /**
+     * 各类型下所有特征的出现次数之和
+     */
+    private final Map<CodeGenTypeEnum, Double> featureTotals = new EnumMap<>(CodeGenTypeEnum.class);
+
+    private final Set<String> vocabulary = new HashSet<>();
+
+    /**
+     * 训练样本数（不含关键词样本）
+     */
+    @Getter
+    private final int sampleCount;
+
+    private CodeGenTypeClassifier(List<Sample> samples) {
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            classCounts.put(codeGenType, 0.0);
+            featureCounts.put(codeGenType, new HashMap<>());
+            featureTotals.put(codeGenType, 0.0);
+        }
+        SEED_KEYWORDS.forEach((codeGenType, keywords) ->
+                keywords.forEach(keyword -> add(codeGenType, keyword, SEED_WEIGHT)));
+        int count = 0;
+        for (Sample sample : samples) {
+            if (sample.getCodeGenType() != null && StrUtil.isNotBlank(sample.getPrompt())) {
+                add(sample.getCodeGenType(), sample.getPrompt(), 1);
+                count++;
+            }
+        }
+        this.sampleCount = count;
+    }
+
+    /**
+     * 根据样本训练分类器
+     */
+    public static CodeGenTypeClassifier train(List<Sample> samples) {
+        return new CodeGenTypeClassifier(samples);
+    }
+
+    /**
+     * 对提示词分类
+     *
+     * @return 概率最高的类型及其后验概率；提示词中没有任何已知特征时返回 null
+     */
+    public Prediction classify(String prompt) {
+        Set<String> features = extractFeatures(prompt);
+        features.retainAll(vocabulary);
+        if (features.isEmpty()) {
+            return null;
+        }
+        double totalSamples = classCounts.values().stream().mapToDouble(Double::doubleValue).sum();
+        Map<CodeGenTypeEnum, Double> logScores = new EnumMap<>(CodeGenTypeEnum.class);
+        double maxLogScore = Double.NEGATIVE_INFINITY;
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            double logScore = Math.log((classCounts.get(codeGenType) + SMOOTHING)
+                    / (totalSamples + SMOOTHING * CodeGenTypeEnum.values().length));
+            Map<String, Double> counts = featureCounts.get(codeGenType);
+            double denominator = featureTotals.get(codeGenType) + SMOOTHING * vocabulary.size();
+            for (String feature : features) {
+                logScore += Math.log((counts.getOrDefault(feature, 0.0) + SMOOTHING) / denominator);
+            }
+            logScores.put(codeGenType, logScore);
+            maxLogScore = Math.max(maxLogScore, logScore);
+        }
+        // 对数得分转为后验概率（减去最大值避免下溢）
+        CodeGenTypeEnum best = null;
+        double bestProbability = 0;
+        double normalizer = 0;
+        for (Map.Entry<CodeGenTypeEnum, Double> entry : logScores.entrySet()) {
+            double probability = Math.exp(entry.getValue() - maxLogScore);
+            normalizer += probability;
+            if (probability > bestProbability) {
+                bestProbability = probability;
+                best = entry.getKey();
+            }
+        }
+        return new Prediction(best, bestProbability / normalizer, features.size());
+    }
+
+    private void add(CodeGenTypeEnum codeGenType, String prompt, double weight) {
+        Set<String> features = extractFeatures(prompt);
+        if (features.isEmpty()) {
+            return;
+        }
+        classCounts.merge(codeGenType, weight, Double::sum);
+        Map<String, Double> counts = featureCounts.get(codeGenType);
+        for (String feature : features) {
+            counts.merge(feature, weight, Double::sum);
+        }
+        featureTotals.merge(codeGenType, weight * features.size(), Double::sum);
+        vocabulary.addAll(features);
+    }
+
+    /**
+     * 提取特征：NFKC 归一化并转小写后，英文和数字按单词切分，其余文字按连续片段取二元、三元组，忽略空白和标点
+     */
+    static Set<String> extractFeatures(String prompt) {
+        Set<String> features = new HashSet<>();
+        if (StrUtil.isBlank(prompt)) {
+            return features;
+        }
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                addRun(features, run);
+                word.append(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                addWord(features, word);
+                run.append(c);
+            } else {
+                addWord(features, word);
+                addRun(features, run);
+            }
+        }
+        addWord(features, word);
+        addRun(features, run);
+        return features;
+    }
+
+    private static void addWord(Set<String> features, StringBuilder word) {
+        if (!word.isEmpty()) {
+            features.add("w:" + word);
+            word.setLength(0);
+        }
+    }
+
+    private static void addRun(Set<String> features, StringBuilder run) {
+        for (int i = 0; i + 2 <= run.length(); i++) {
+            features.add(run.substring(i, i + 2));
+            if (i + 3 <= run.length()) {
+                features.add(run.substring(i, i + 3));
+            }
+        }
+        run.setLength(0);
+    }
+
+    /**
+     * 训练样本：初始提示词和对应的生成类型
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Sample {
+
+        private final String prompt;
+
+        private final CodeGenTypeEnum codeGenType;
+    }
+
+    /**
+     * 分类结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Prediction {
+
+        private final CodeGenTypeEnum codeGenType;
+
+        /**
+         * 后验概率
+         */
+        private final double confidence;
+
+        /**
+         * 提示词中命中的已知特征数
+         */
+        private final int knownFeatures;
+    }
+}
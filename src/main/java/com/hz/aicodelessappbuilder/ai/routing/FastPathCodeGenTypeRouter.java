@@ -0,0 +1,308 @@
+package com.hz.aicodelessappbuilder.ai.routing;
+
+import cn.hutool.core.util.ReUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hz.aicodelessappbuilder.ai.AiCodeGenTypeRoutingService;
+import com.hz.aicodelessappbuilder.mapper.AppMapper;
+import com.hz.aicodelessappbuilder.model.entity.App;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeSourceEnum;
+import com.mybatisflex.core.query.QueryWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 代码生成类型快速路由
+ * 先用本地分类器（{@link CodeGenTypeClassifier}）对提示词分类，置信度足够时直接返回，不调用模型；
+ * 置信度不足、训练样本不足或提示词包含网址（需要模型按特殊规则回复）时交给模型路由。
+ * 分类器用 app 表中已有应用的初始提示词和生成类型训练，启动后在后台训练并定时重新训练。
+ * 只使用来源可信的类型（codeGenTypeSource 为模型路由，或快速路由后经抽样复核一致），
+ * 快速路由未经复核的结果和路由失败时的默认类型不参与训练，避免分类器用自己的判断训练自己。
+ * 与模型结果的一致率有两个来源：交给模型路由的提示词（分类器的猜测与模型结果比较），
+ * 以及按比例抽样、在后台用模型复核的快速路由结果。
+ * 指标：
+ * - ai_routing_classifier_total{result=fast_path|fallthrough}、ai_routing_classifier_fallthrough_ratio
+ * - ai_routing_classifier_agreement_total{source=shadow|fallthrough,result=agree|disagree|invalid}、
+ * ai_routing_classifier_agreement_ratio{source}
+ * - ai_routing_classifier_seconds：本地分类耗时
+ * - ai_routing_classifier_training_samples：当前模型的训练样本数
+ */
+@Slf4j
+@Component
+public class FastPathCodeGenTypeRouter {
+
+    private static final String URL_REGEX = "(?i)https?://";
+
+    /**
+     * 参与训练的类型来源
+     */
+    private static final List<String> TRAINING_SOURCES = List.of(
+            CodeGenTypeSourceEnum.LLM.getValue(), CodeGenTypeSourceEnum.SHADOW.getValue());
+
+    @Resource
+    private AppMapper appMapper;
+
+    @Resource
+    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用快速路由（关闭时全部交给模型，仍统计一致率）
+     */
+    @Value("${routing-classifier.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 快速路由需要的最低置信度（后验概率）
+     */
+    @Value("${routing-classifier.confidence-threshold:0.9}")
+    private double confidenceThreshold;
+
+    /**
+     * 启用快速路由需要的最少训练样本数
+     */
+    @Value("${routing-classifier.min-training-samples:200}")
+    private int minTrainingSamples;
+
+    /**
+     * 最多读取的训练样本数（按应用 id 倒序）
+     */
+    @Value("${routing-classifier.max-training-samples:50000}")
+    private int maxTrainingSamples;
+
+    /**
+     * 重新训练的间隔（分钟）
+     */
+    @Value("${routing-classifier.retrain-minutes:60}")
+    private long retrainMinutes;
+
+    /**
+     * 快速路由结果交给模型复核的比例
+     */
+    @Value("${routing-classifier.shadow-sample-rate:0.05}")
+    private double shadowSampleRate;
+
+    private volatile CodeGenTypeClassifier classifier;
+
+    private ScheduledExecutorService trainScheduler;
+
+    private final ExecutorService shadowExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Counter fastPathCounter;
+
+    private Counter fallthroughCounter;
+
+    private Timer classifyTimer;
+
+    private AgreementMetrics shadowAgreement;
+
+    private AgreementMetrics fallthroughAgreement;
+
+    @PostConstruct
+    public void init() {
+        fastPathCounter = routeCounter("fast_path");
+        fallthroughCounter = routeCounter("fallthrough");
+        Gauge.builder("ai_routing_classifier_fallthrough_ratio", this, router -> ratio(
+                        router.fallthroughCounter.count(), router.fastPathCounter.count() + router.fallthroughCounter.count()))
+                .description("交给模型路由的提示词比例")
+                .register(meterRegistry);
+        classifyTimer = Timer.builder("ai_routing_classifier_seconds")
+                .description("本地分类器的分类耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("ai_routing_classifier_training_samples", this,
+                        router -> router.classifier == null ? 0 : router.classifier.getSampleCount())
+                .description("本地分类器的训练样本数")
+                .register(meterRegistry);
+        shadowAgreement = new AgreementMetrics("shadow");
+        fallthroughAgreement = new AgreementMetrics("fallthrough");
+        trainScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("routing-classifier-train").daemon().factory());
+        trainScheduler.scheduleWithFixedDelay(this::retrain, 0, retrainMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        trainScheduler.shutdownNow();
+        shadowExecutor.shutdownNow();
+    }
+
+    /**
+     * 路由代码生成类型，置信度不足时调用模型路由
+     *
+     * @param userPrompt 用户提示词
+     * @return 路由结果
+     */
+    public RoutingDecision route(String userPrompt) {
+        return route(userPrompt, () -> aiCodeGenTypeRoutingService.routeCodeGenType(userPrompt));
+    }
+
+    /**
+     * 路由代码生成类型
+     *
+     * @param userPrompt 用户提示词
+     * @param llmRouter  模型路由
+     * @return 路由结果
+     */
+    public RoutingDecision route(String userPrompt, Supplier<String> llmRouter) {
+        CodeGenTypeClassifier current = classifier;
+        CodeGenTypeClassifier.Prediction prediction = classify(current, userPrompt);
+        if (prediction != null && isConfident(current, prediction)) {
+            fastPathCounter.increment();
+            CompletableFuture<Boolean> shadowCheck = null;
+            if (ThreadLocalRandom.current().nextDouble() < shadowSampleRate) {
+                shadowCheck = CompletableFuture.supplyAsync(() -> shadowCheck(prediction, llmRouter), shadowExecutor);
+            }
+            return new RoutingDecision(prediction.getCodeGenType().name(), CodeGenTypeSourceEnum.FAST_PATH, shadowCheck);
+        }
+        fallthroughCounter.increment();
+        String result = llmRouter.get();
+        if (prediction != null) {
+            fallthroughAgreement.record(prediction, result);
+        }
+        return new RoutingDecision(result, CodeGenTypeSourceEnum.LLM, null);
+    }
+
+    /**
+     * 从 app 表读取样本重新训练
+     */
+    public void retrain() {
+        try {
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .select(App::getInitPrompt, App::getCodeGenType)
+                    .in(App::getCodeGenTypeSource, TRAINING_SOURCES)
+                    .orderBy(App::getId, false)
+                    .limit(maxTrainingSamples);
+            List<CodeGenTypeClassifier.Sample> samples = appMapper.selectListByQuery(queryWrapper).stream()
+                    .map(app -> new CodeGenTypeClassifier.Sample(app.getInitPrompt(),
+                            CodeGenTypeEnum.getEnumByValue(app.getCodeGenType())))
+                    .toList();
+            long startNanos = System.nanoTime();
+            classifier = CodeGenTypeClassifier.train(samples);
+            log.info("代码生成类型分类器训练完成, 样本数: {}, 耗时: {}ms", classifier.getSampleCount(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (Exception e) {
+            log.warn("代码生成类型分类器训练失败: {}", e.getMessage());
+        }
+    }
+
+    private CodeGenTypeClassifier.Prediction classify(CodeGenTypeClassifier current, String userPrompt) {
+        if (current == null || StrUtil.isBlank(userPrompt) || ReUtil.contains(URL_REGEX, userPrompt)) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        CodeGenTypeClassifier.Prediction prediction = current.classify(userPrompt);
+        classifyTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return prediction;
+    }
+
+    private boolean isConfident(CodeGenTypeClassifier current, CodeGenTypeClassifier.Prediction prediction) {
+        return enabled
+                && current.getSampleCount() >= minTrainingSamples
+                && prediction.getConfidence() >= confidenceThreshold;
+    }
+
+    /**
+     * 用模型复核快速路由结果
+     *
+     * @return 模型结果是否一致，复核失败或模型结果无效时返回 false
+     */
+    private boolean shadowCheck(CodeGenTypeClassifier.Prediction prediction, Supplier<String> llmRouter) {
+        try {
+            return shadowAgreement.record(prediction, llmRouter.get());
+        } catch (Exception e) {
+            log.warn("快速路由结果复核失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private Counter routeCounter(String result) {
+        return Counter.builder("ai_routing_classifier_total")
+                .description("代码生成类型路由次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static double ratio(double part, double total) {
+        return total == 0 ? 0 : part / total;
+    }
+
+    /**
+     * 分类器与模型结果的一致率
+     */
+    private class AgreementMetrics {
+
+        private final Counter agree;
+
+        private final Counter disagree;
+
+        private final Counter invalid;
+
+        AgreementMetrics(String source) {
+            agree = agreementCounter(source, "agree");
+            disagree = agreementCounter(source, "disagree");
+            invalid = agreementCounter(source, "invalid");
+            Gauge.builder("ai_routing_classifier_agreement_ratio", this,
+                            metrics -> ratio(metrics.agree.count(), metrics.agree.count() + metrics.disagree.count()))
+                    .description("本地分类器与模型路由结果的一致率")
+                    .tag("source", source)
+                    .register(meterRegistry);
+        }
+
+        boolean record(CodeGenTypeClassifier.Prediction prediction, String llmResult) {
+            CodeGenTypeEnum llmCodeGenType = parseCodeGenType(llmResult);
+            if (llmCodeGenType == null) {
+                invalid.increment();
+                return false;
+            }
+            if (llmCodeGenType == prediction.getCodeGenType()) {
+                agree.increment();
+                return true;
+            }
+            disagree.increment();
+            log.debug("分类器与模型路由结果不一致, 分类器: {} ({}), 模型: {}", prediction.getCodeGenType(),
+                    prediction.getConfidence(), llmCodeGenType);
+            return false;
+        }
+
+        private Counter agreementCounter(String source, String result) {
+            return Counter.builder("ai_routing_classifier_agreement_total")
+                    .description("本地分类器与模型路由结果的比较次数")
+                    .tag("source", source)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static CodeGenTypeEnum parseCodeGenType(String result) {
+        if (result == null) {
+            return null;
+        }
+        String name = result.trim();
+        for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+            if (codeGenType.name().equals(name)) {
+                return codeGenType;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hz.aicodelessappbuilder.ai.routing;
+
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeSourceEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 代码生成类型路由结果
+ */
+@Getter
+@AllArgsConstructor
+public class RoutingDecision {
+
+    /**
+     * 生成类型的枚举名，或模型返回的内容（可能不是合法的枚举名）
+     */
+    private final String result;
+
+    /**
+     * 结果来源：模型路由或本地分类器快速路由
+     */
+    private final CodeGenTypeSourceEnum source;
+
+    /**
+     * 快速路由结果被抽样复核时，复核完成后得到模型结果是否一致；未抽样时为 null
+     */
+    private final CompletableFuture<Boolean> shadowCheck;
+}
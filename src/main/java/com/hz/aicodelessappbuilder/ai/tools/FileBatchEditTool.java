@@ -0,0 +1,238 @@
+package com.hz.aicodelessappbuilder.ai.tools;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import com.hz.aicodelessappbuilder.ai.model.FileEdit;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 批量文件编辑工具
+ * 一次调用按顺序执行多个文件的写入、替换、删除操作，全部成功才生效，减少模型的工具调用轮次。
+ * 指标：
+ * - ai_tool_batch_edit_total：批量编辑调用次数（result=success/failed）
+ * - ai_tool_batch_edit_operations：每次调用的操作数
+ * - ai_tool_batch_edit_turns_saved_total：节省的工具调用轮次估算（成功调用的操作数 - 1，假设每个操作原本需要单独一轮）
+ */
+@Slf4j
+@Component
+public class FileBatchEditTool extends BaseTool {
+
+    /**
+     * 单次调用的最大操作数
+     */
+    private static final int MAX_EDITS = 50;
+
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
+    @Resource
+    private FileWriteTool fileWriteTool;
+
+    @Resource
+    private FileModifyTool fileModifyTool;
+
+    @Resource
+    private FileDeleteTool fileDeleteTool;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter successCounter;
+
+    private Counter failedCounter;
+
+    private Counter turnsSavedCounter;
+
+    private DistributionSummary operationsSummary;
+
+    @PostConstruct
+    public void init() {
+        successCounter = Counter.builder("ai_tool_batch_edit_total")
+                .description("批量编辑文件调用次数")
+                .tag("result", "success")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("ai_tool_batch_edit_total")
+                .description("批量编辑文件调用次数")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        turnsSavedCounter = Counter.builder("ai_tool_batch_edit_turns_saved_total")
+                .description("批量编辑节省的工具调用轮次估算")
+                .register(meterRegistry);
+        operationsSummary = DistributionSummary.builder("ai_tool_batch_edit_operations")
+                .description("每次批量编辑的操作数")
+                .register(meterRegistry);
+    }
+
+    @Tool("批量编辑文件：按顺序执行一组写入（WRITE）、替换（REPLACE）、删除（DELETE）操作，全部成功才生效，任一操作失败则全部不生效。"
+            + "需要修改多个文件或同一文件的多处内容时，优先用本工具一次完成")
+    public String batchEditFiles(
+            @P("按顺序执行的编辑操作列表")
+            List<FileEdit> edits,
+            @ToolMemoryId Long appId
+    ) {
+        if (CollUtil.isEmpty(edits)) {
+            return "错误：编辑操作列表为空";
+        }
+        if (edits.size() > MAX_EDITS) {
+            return "错误：单次最多执行 " + MAX_EDITS + " 个编辑操作，当前 " + edits.size() + " 个";
+        }
+        String[] results = new String[edits.size()];
+        try {
+            ProjectWorkspace workspace = projectWorkspaceManager.get(appId);
+            boolean committed = workspace.transaction(ws -> {
+                for (int i = 0; i < edits.size(); i++) {
+                    String error = applyEdit(ws, edits.get(i));
+                    if (error != null) {
+                        results[i] = "失败 - " + error;
+                        return false;
+                    }
+                    results[i] = "成功";
+                }
+                // 写入和替换的文件附带最终内容哈希，之后读取时可以传入
+                for (int i = 0; i < edits.size(); i++) {
+                    String hash = edits.get(i).getType() == FileEdit.EditType.DELETE
+                            ? null : ws.contentHash(ws.resolve(edits.get(i).getRelativeFilePath()));
+                    if (hash != null) {
+                        results[i] = "成功（内容哈希: " + hash + "）";
+                    }
+                }
+                return true;
+            });
+            operationsSummary.record(edits.size());
+            if (committed) {
+                successCounter.increment();
+                turnsSavedCounter.increment(edits.size() - 1);
+                log.info("批量编辑文件成功, appId: {}, 操作数: {}", appId, edits.size());
+            } else {
+                failedCounter.increment();
+            }
+            return formatResults(committed, edits, results);
+        } catch (RuntimeException e) {
+            failedCounter.increment();
+            String errorMessage = "批量编辑文件失败，所有操作均未生效, 错误: " + e.getMessage();
+            log.error(errorMessage, e);
+            return errorMessage;
+        }
+    }
+
+    /**
+     * 执行单个编辑操作
+     *
+     * @return 失败原因，成功时返回 null
+     */
+    private String applyEdit(ProjectWorkspace workspace, FileEdit edit) {
+        if (edit == null || edit.getType() == null || StrUtil.isBlank(edit.getRelativeFilePath())) {
+            return "缺少操作类型或文件路径";
+        }
+        String path;
+        try {
+            path = workspace.resolve(edit.getRelativeFilePath());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        switch (edit.getType()) {
+            case WRITE -> {
+                if (edit.getContent() == null) {
+                    return "写入内容为空";
+                }
+                try {
+                    workspace.writeString(path, edit.getContent());
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+            }
+            case REPLACE -> {
+                if (!workspace.isFile(path)) {
+                    return "文件不存在或不是文件";
+                }
+                if (StrUtil.isEmpty(edit.getOldContent())) {
+                    return "要替换的旧内容为空";
+                }
+                String originalContent = workspace.readString(path);
+                if (!originalContent.contains(edit.getOldContent())) {
+                    return "文件中未找到要替换的内容";
+                }
+                String newContent = StrUtil.nullToEmpty(edit.getNewContent());
+                workspace.writeString(path, originalContent.replace(edit.getOldContent(), newContent));
+            }
+            case DELETE -> {
+                if (!workspace.isFile(path)) {
+                    return "文件不存在或不是文件";
+                }
+                if (FileDeleteTool.isImportantFile(FileUtil.getName(path))) {
+                    return "不允许删除重要文件";
+                }
+                workspace.delete(path);
+            }
+        }
+        return null;
+    }
+
+    private String formatResults(boolean committed, List<FileEdit> edits, String[] results) {
+        StringBuilder builder = new StringBuilder();
+        if (committed) {
+            builder.append("批量编辑成功，共 ").append(edits.size()).append(" 个操作：\n");
+        } else {
+            builder.append("批量编辑失败，所有操作均未生效，请修正失败的操作后重新提交整批：\n");
+        }
+        for (int i = 0; i < edits.size(); i++) {
+            FileEdit edit = edits.get(i);
+            String type = edit == null || edit.getType() == null ? "未知操作" : edit.getType().getText();
+            String path = edit == null ? "" : edit.getRelativeFilePath();
+            String result = results[i] == null ? "未执行" : results[i];
+            if (!committed && result.startsWith("成功")) {
+                result = "成功（已撤销）";
+            }
+            builder.append(i + 1).append(". ").append(type).append(' ').append(path).append("：").append(result).append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String getToolName() {
+        return "batchEditFiles";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "批量编辑文件";
+    }
+
+    @Override
+    public String generateToolExecutedResult(JSONObject arguments) {
+        JSONArray edits = arguments.getJSONArray("edits");
+        int size = edits == null ? 0 : edits.size();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("[工具调用] %s 共 %d 个操作", getDisplayName(), size));
+        for (int i = 0; i < size; i++) {
+            JSONObject edit = edits.getJSONObject(i);
+            // 每个操作按对应单文件工具的格式展示
+            BaseTool tool = switch (StrUtil.nullToEmpty(edit.getStr("type"))) {
+                case "WRITE" -> fileWriteTool;
+                case "REPLACE" -> fileModifyTool;
+                case "DELETE" -> fileDeleteTool;
+                default -> null;
+            };
+            if (tool != null) {
+                builder.append("\n\n").append(tool.generateToolExecutedResult(edit));
+            }
+        }
+        return builder.toString();
+    }
+}
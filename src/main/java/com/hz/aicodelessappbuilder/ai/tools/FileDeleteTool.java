@@ -1,18 +1,16 @@
 package com.hz.aicodelessappbuilder.ai.tools;
 
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
-import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 /**
  * 文件删除工具
  * 支持 AI 通过工具调用的方式删除文件
@@ -21,6 +19,9 @@ import java.nio.file.Paths;
 @Component
 public class FileDeleteTool extends BaseTool {
 
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
     @Tool("删除指定路径的文件")
     public String deleteFile(
             @P("文件的相对路径")
@@ -28,27 +29,23 @@ public class FileDeleteTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
-            Path path = Paths.get(relativeFilePath);
-            if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeFilePath);
+            ProjectWorkspace workspace = projectWorkspaceManager.get(appId);
+            String path = workspace.resolve(relativeFilePath);
+            if (workspace.isDirectory(path)) {
+                return "错误：指定路径不是文件，无法删除 - " + relativeFilePath;
             }
-            if (!Files.exists(path)) {
+            if (!workspace.isFile(path)) {
                 return "警告：文件不存在，无需删除 - " + relativeFilePath;
             }
-            if (!Files.isRegularFile(path)) {
-                return "错误：指定路径不是文件，无法删除 - " + relativeFilePath;
-            }
             // 安全检查：避免删除重要文件
-            String fileName = path.getFileName().toString();
+            String fileName = FileUtil.getName(path);
             if (isImportantFile(fileName)) {
                 return "错误：不允许删除重要文件 - " + fileName;
             }
-            Files.delete(path);
-            log.info("成功删除文件: {}", path.toAbsolutePath());
+            workspace.delete(path);
+            log.info("成功删除文件: {}", path);
             return "文件删除成功: " + relativeFilePath;
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
             String errorMessage = "删除文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
             log.error(errorMessage, e);
             return errorMessage;
@@ -58,7 +55,7 @@ public class FileDeleteTool extends BaseTool {
     /**
      * 判断是否是重要文件，不允许删除
      */
-    private boolean isImportantFile(String fileName) {
+    static boolean isImportantFile(String fileName) {
         String[] importantFiles = {
                 "package.json", "package-lock.json", "yarn.lock", "pnpm-lock.yaml",
                 "vite.config.js", "vite.config.ts", "vue.config.js",
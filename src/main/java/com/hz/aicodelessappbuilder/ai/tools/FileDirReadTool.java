@@ -3,27 +3,28 @@ package com.hz.aicodelessappbuilder.ai.tools;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
-import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
 import java.util.Set;
 
 /**
  * 文件目录读取工具
- * 使用 Hutool 简化文件操作
+ * 从项目工作区的目录索引生成目录结构，写入、修改、删除工具和外部修改监听负责维护索引
  */
 @Slf4j
 @Component
 public class FileDirReadTool extends BaseTool {
 
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
     /**
      * 需要忽略的文件和目录
      */
@@ -46,35 +47,19 @@ public class FileDirReadTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
-            Path path = Paths.get(relativeDirPath == null ? "" : relativeDirPath);
-            if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeDirPath == null ? "" : relativeDirPath);
-            }
-            File targetDir = path.toFile();
-            if (!targetDir.exists() || !targetDir.isDirectory()) {
+            ProjectWorkspace workspace = projectWorkspaceManager.get(appId);
+            String dirPath = workspace.resolve(relativeDirPath);
+            if (!workspace.isDirectory(dirPath)) {
                 return "错误：目录不存在或不是目录 - " + relativeDirPath;
             }
             StringBuilder structure = new StringBuilder();
             structure.append("项目目录结构:\n");
-            // 使用 Hutool 递归获取所有文件
-            List<File> allFiles = FileUtil.loopFiles(targetDir, file -> !shouldIgnore(file.getName()));
-            // 按路径深度和名称排序显示
-            allFiles.stream()
-                    .sorted((f1, f2) -> {
-                        int depth1 = getRelativeDepth(targetDir, f1);
-                        int depth2 = getRelativeDepth(targetDir, f2);
-                        if (depth1 != depth2) {
-                            return Integer.compare(depth1, depth2);
-                        }
-                        return f1.getPath().compareTo(f2.getPath());
-                    })
-                    .forEach(file -> {
-                        int depth = getRelativeDepth(targetDir, file);
-                        String indent = "  ".repeat(depth);
-                        structure.append(indent).append(file.getName());
-                    });
+            // 按目录索引逐层列出文件（浅层在前、同层按名称排序），被忽略的目录整棵跳过，不遍历磁盘
+            int baseDepth = dirPath.isEmpty() ? 0 : StrUtil.count(dirPath, '/') + 1;
+            for (String file : workspace.walkFiles(dirPath, this::shouldIgnore)) {
+                String indent = "  ".repeat(StrUtil.count(file, '/') - baseDepth);
+                structure.append(indent).append(FileUtil.getName(file)).append('\n');
+            }
             return structure.toString();
 
         } catch (Exception e) {
@@ -84,15 +69,6 @@ public class FileDirReadTool extends BaseTool {
         }
     }
 
-    /**
-     * 计算文件相对于根目录的深度
-     */
-    private int getRelativeDepth(File root, File file) {
-        Path rootPath = root.toPath();
-        Path filePath = file.toPath();
-        return rootPath.relativize(filePath).getNameCount() - 1;
-    }
-
     /**
      * 判断是否应该忽略该文件或目录
      */
@@ -103,7 +79,8 @@ public class FileDirReadTool extends BaseTool {
         }
 
         // 检查文件扩展名
-        return IGNORED_EXTENSIONS.stream().anyMatch(fileName::endsWith);
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex >= 0 && IGNORED_EXTENSIONS.contains(fileName.substring(dotIndex));
     }
 
     @Override
@@ -1,44 +1,122 @@
 package com.hz.aicodelessappbuilder.ai.tools;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
-import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * 文件读取工具
- * 支持 AI 通过工具调用的方式读取文件内容
+ * 支持 AI 通过工具调用的方式读取文件内容。
+ * 完整读取时附带内容哈希（写入、修改工具也会返回），模型再次读取时传入已知哈希，文件未变化则只回复未变化，不再重复返回内容；
+ * 只需要部分内容时可以按行号范围读取，范围读取不返回哈希，避免模型只看过部分内容却凭哈希跳过完整读取。
+ * 对话记忆压缩掉文件内容时会一并去掉对应的哈希（见 ChatMemoryCompactor），记忆中仍有的哈希都对应模型能看到的内容。
+ * 指标：
+ * - ai_tool_read_file_total：读取次数（result=full/range/unchanged）
+ * - ai_tool_read_file_bytes_saved_total：与返回完整文件相比少返回的字节数（reason=range/unchanged）
  */
 @Slf4j
 @Component
 public class FileReadTool extends BaseTool {
 
-    @Tool("读取指定路径的文件内容")
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter fullCounter;
+
+    private Counter rangeCounter;
+
+    private Counter unchangedCounter;
+
+    private Counter rangeBytesSavedCounter;
+
+    private Counter unchangedBytesSavedCounter;
+
+    @PostConstruct
+    public void init() {
+        fullCounter = readCounter("full");
+        rangeCounter = readCounter("range");
+        unchangedCounter = readCounter("unchanged");
+        rangeBytesSavedCounter = bytesSavedCounter("range");
+        unchangedBytesSavedCounter = bytesSavedCounter("unchanged");
+    }
+
+    private Counter readCounter(String result) {
+        return Counter.builder("ai_tool_read_file_total")
+                .description("读取文件工具调用次数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter bytesSavedCounter(String reason) {
+        return Counter.builder("ai_tool_read_file_bytes_saved_total")
+                .description("读取文件时与返回完整文件相比少返回的字节数")
+                .baseUnit("bytes")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Tool("读取指定路径的文件内容，完整读取的结果附带内容哈希。只需要部分内容时传入行号范围；"
+            + "之前读取或写入过的文件传入上次得到的内容哈希，文件未变化时不会重复返回内容")
     public String readFile(
             @P("文件的相对路径")
             String relativeFilePath,
+            @P(value = "起始行号（从 1 开始），不传则从第一行开始", required = false)
+            Integer startLine,
+            @P(value = "结束行号（包含），不传则读到最后一行", required = false)
+            Integer endLine,
+            @P(value = "之前读取或写入该文件时得到的内容哈希", required = false)
+            String knownHash,
             @ToolMemoryId Long appId
     ) {
         try {
-            Path path = Paths.get(relativeFilePath);
-            if (!path.isAbsolute()) {
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeFilePath);
-            }
-            if (!Files.exists(path) || !Files.isRegularFile(path)) {
+            ProjectWorkspace workspace = projectWorkspaceManager.get(appId);
+            String path = workspace.resolve(relativeFilePath);
+            if (!workspace.isFile(path)) {
                 return "错误：文件不存在或不是文件 - " + relativeFilePath;
             }
-            return Files.readString(path);
-        } catch (IOException e) {
+            String content = workspace.readString(path);
+            String hash = workspace.contentHash(path);
+            String[] lines = content.split("\n", -1);
+            // 以换行结尾时最后一个空串不算一行
+            int lineCount = content.endsWith("\n") ? lines.length - 1 : lines.length;
+            boolean ranged = startLine != null || endLine != null;
+            int start = startLine == null ? 1 : Math.max(startLine, 1);
+            int end = endLine == null ? lineCount : Math.min(endLine, lineCount);
+            if (ranged && (start > lineCount || end < start)) {
+                return String.format("错误：行号范围无效，文件共 %d 行 - %s", lineCount, relativeFilePath);
+            }
+            String body = ranged ? String.join("\n", Arrays.copyOfRange(lines, start - 1, end)) : content;
+            long fullBytes = content.getBytes(StandardCharsets.UTF_8).length;
+            if (hash.equals(StrUtil.trim(knownHash))) {
+                unchangedCounter.increment();
+                unchangedBytesSavedCounter.increment(fullBytes);
+                return String.format("文件未变化（内容哈希: %s），请使用之前得到的内容 - %s", hash, relativeFilePath);
+            }
+            if (!ranged) {
+                fullCounter.increment();
+                return String.format("文件 %s（内容哈希: %s，共 %d 行）：\n%s", relativeFilePath, hash, lineCount, body);
+            }
+            rangeCounter.increment();
+            rangeBytesSavedCounter.increment(fullBytes - body.getBytes(StandardCharsets.UTF_8).length);
+            return String.format("文件 %s 第 %d-%d 行（共 %d 行）：\n%s",
+                    relativeFilePath, start, end, lineCount, body);
+        } catch (RuntimeException e) {
             String errorMessage = "读取文件失败: " + relativeFilePath + ", 错误: " + e.getMessage();
             log.error(errorMessage, e);
             return errorMessage;
@@ -58,7 +136,12 @@ public class FileReadTool extends BaseTool {
     @Override
     public String generateToolExecutedResult(JSONObject arguments) {
         String relativeFilePath = arguments.getStr("relativeFilePath");
-        return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
+        Integer startLine = arguments.getInt("startLine");
+        Integer endLine = arguments.getInt("endLine");
+        if (startLine == null && endLine == null) {
+            return String.format("[工具调用] %s %s", getDisplayName(), relativeFilePath);
+        }
+        return String.format("[工具调用] %s %s 第 %s-%s 行", getDisplayName(), relativeFilePath,
+                startLine == null ? 1 : startLine, endLine == null ? "末尾" : endLine);
     }
 }
-
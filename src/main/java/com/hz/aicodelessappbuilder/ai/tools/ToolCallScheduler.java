@@ -0,0 +1,279 @@
+package com.hz.aicodelessappbuilder.ai.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSON;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.invocation.InvocationContext;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutionResult;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 同一轮模型响应中的工具调用并发执行器（Vue 项目）
+ * 作为 AiServices 的工具执行器使用：模型一次返回多个工具调用时，流式处理器按调用顺序提交到这里，每个调用在独立的虚拟线程上执行，
+ * 结果仍由 langchain4j 按调用顺序返回给模型。
+ * 操作同一路径的调用保持串行：提交时按顺序分配序号，工具执行前从参数中取出应用和路径，
+ * 等待序号更小、路径有重叠（相同文件，或目录与其下的文件）的调用执行完成；参数无法解析时与所有调用冲突。
+ * 序号更小的调用尚未解析出路径时也需要等待，这段时间很短（虚拟线程启动到工具执行前）。
+ * 指标：
+ * - ai_tool_calls_running：执行中的工具调用数
+ * - ai_tool_calls_serialized_total：因路径冲突等待前序调用的次数
+ */
+public class ToolCallScheduler implements Executor {
+
+    /**
+     * 参数中表示文件路径和目录路径的字段
+     */
+    private static final String FILE_PATH_KEY = "relativeFilePath";
+
+    private static final String DIR_PATH_KEY = "relativeDirPath";
+
+    private static final String READ_DIR_TOOL_NAME = "readDir";
+
+    /**
+     * 尚未解析出路径的调用
+     */
+    private static final List<Path> UNKNOWN = Collections.unmodifiableList(new ArrayList<>());
+
+    /**
+     * 当前线程执行的调用序号
+     */
+    private static final ThreadLocal<Long> CURRENT_TICKET = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * 未完成的调用：序号 -> 涉及的路径（UNKNOWN 表示尚未解析），路径为 null 表示不涉及文件
+     */
+    private final TreeMap<Long, List<Path>> pending = new TreeMap<>();
+
+    private long nextTicket;
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final Counter serializedCounter;
+
+    public ToolCallScheduler(MeterRegistry meterRegistry) {
+        Gauge.builder("ai_tool_calls_running", running, AtomicInteger::get)
+                .description("执行中的工具调用数")
+                .register(meterRegistry);
+        serializedCounter = Counter.builder("ai_tool_calls_serialized_total")
+                .description("因路径冲突等待前序工具调用的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为工具对象的 @Tool 方法创建执行器（与 AiServices 默认创建方式一致），并加上路径串行控制
+     */
+    public Map<ToolSpecification, ToolExecutor> wrapTools(Object... tools) {
+        Map<ToolSpecification, ToolExecutor> toolExecutors = new LinkedHashMap<>();
+        for (Object tool : tools) {
+            for (Method method : tool.getClass().getDeclaredMethods()) {
+                if (!method.isAnnotationPresent(Tool.class)) {
+                    continue;
+                }
+                ToolExecutor delegate = DefaultToolExecutor.builder()
+                        .object(tool)
+                        .originalMethod(method)
+                        .methodToInvoke(method)
+                        .wrapToolArgumentsExceptions(true)
+                        .propagateToolExecutionExceptions(true)
+                        .build();
+                toolExecutors.put(ToolSpecifications.toolSpecificationFrom(method), new PathOrderedToolExecutor(delegate));
+            }
+        }
+        return toolExecutors;
+    }
+
+    /**
+     * langchain4j 按工具调用顺序提交任务
+     */
+    @Override
+    public void execute(Runnable command) {
+        long ticket;
+        lock.lock();
+        try {
+            ticket = nextTicket++;
+            pending.put(ticket, UNKNOWN);
+        } finally {
+            lock.unlock();
+        }
+        Thread.ofVirtual().name("tool-call-", ticket).start(() -> {
+            CURRENT_TICKET.set(ticket);
+            running.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                running.decrementAndGet();
+                CURRENT_TICKET.remove();
+                finish(ticket);
+            }
+        });
+    }
+
+    /**
+     * 登记调用涉及的路径，等待与之冲突的前序调用完成
+     */
+    void awaitTurn(long ticket, List<Path> paths) throws InterruptedException {
+        lock.lock();
+        try {
+            pending.put(ticket, paths);
+            changed.signalAll();
+            boolean waited = false;
+            while (hasEarlierConflict(ticket, paths)) {
+                waited = true;
+                changed.await();
+            }
+            if (waited) {
+                serializedCounter.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(long ticket) {
+        lock.lock();
+        try {
+            pending.remove(ticket);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasEarlierConflict(long ticket, List<Path> paths) {
+        for (List<Path> earlier : pending.headMap(ticket).values()) {
+            if (earlier == UNKNOWN || conflicts(earlier, paths)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 两组路径是否重叠，null 表示不涉及文件
+     */
+    private static boolean conflicts(List<Path> first, List<Path> second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        for (Path a : first) {
+            for (Path b : second) {
+                if (a.startsWith(b) || b.startsWith(a)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从工具参数中取出涉及的路径（解析为项目目录下的绝对路径）
+     *
+     * @return 不涉及文件时返回 null；参数无法解析时返回项目根目录（与该应用的所有调用冲突）
+     */
+    static List<Path> extractPaths(ToolExecutionRequest request, Object memoryId) {
+        Path root = memoryId instanceof Long appId
+                ? ProjectWorkspaceManager.getProjectRoot(appId).toAbsolutePath().normalize()
+                : Paths.get("").toAbsolutePath();
+        List<Path> paths = new ArrayList<>();
+        try {
+            collectPaths(JSONUtil.parse(StrUtil.blankToDefault(request.arguments(), "{}")), root, paths);
+        } catch (Exception e) {
+            return List.of(root);
+        }
+        if (paths.isEmpty() && READ_DIR_TOOL_NAME.equals(request.name())) {
+            // 读取目录时省略路径表示整个项目
+            return List.of(root);
+        }
+        return paths.isEmpty() ? null : paths;
+    }
+
+    private static void collectPaths(JSON json, Path root, List<Path> paths) {
+        if (json instanceof JSONArray array) {
+            for (Object item : array) {
+                if (item instanceof JSON child) {
+                    collectPaths(child, root, paths);
+                }
+            }
+            return;
+        }
+        JSONObject object = (JSONObject) json;
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (FILE_PATH_KEY.equals(key) || DIR_PATH_KEY.equals(key)) {
+                // 目录路径为空表示整个项目
+                String path = value == null ? "" : value.toString();
+                paths.add(root.resolve(path).normalize());
+            } else if (value instanceof JSON child) {
+                collectPaths(child, root, paths);
+            }
+        }
+    }
+
+    /**
+     * 执行前按路径等待冲突的前序调用
+     */
+    private class PathOrderedToolExecutor implements ToolExecutor {
+
+        private final ToolExecutor delegate;
+
+        private PathOrderedToolExecutor(ToolExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String execute(ToolExecutionRequest request, Object memoryId) {
+            awaitTurn(request, memoryId);
+            return delegate.execute(request, memoryId);
+        }
+
+        @Override
+        public ToolExecutionResult executeWithContext(ToolExecutionRequest request, InvocationContext invocationContext) {
+            awaitTurn(request, invocationContext == null ? null : invocationContext.chatMemoryId());
+            return delegate.executeWithContext(request, invocationContext);
+        }
+
+        private void awaitTurn(ToolExecutionRequest request, Object memoryId) {
+            Long ticket = CURRENT_TICKET.get();
+            if (ticket == null) {
+                // 不是通过本执行器提交的调用（顺序执行），无需等待
+                return;
+            }
+            try {
+                ToolCallScheduler.this.awaitTurn(ticket, extractPaths(request, memoryId));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("工具调用被中断", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.hz.aicodelessappbuilder.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.hz.aicodelessappbuilder.ai.pool.CancellableStreamHttpClientBuilder;
+import com.hz.aicodelessappbuilder.ai.pool.ModelBackend;
+import com.hz.aicodelessappbuilder.ai.pool.StreamingChatModelPool;
+import com.hz.aicodelessappbuilder.monitor.AiModelMonitorListener;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 流式模型池配置
+ * 在 model-pool.streaming（HTML / 多文件生成）和 model-pool.reasoning（Vue 项目生成）下配置多个 OpenAI 兼容端点，
+ * 未配置时使用原有的单个端点
+ */
+@Configuration
+@ConfigurationProperties(prefix = "model-pool")
+@Data
+public class ModelPoolConfig {
+
+    /**
+     * 对冲阈值（毫秒）：首个 token 超过该时间未到达时向另一个端点发送相同请求，0 表示不对冲
+     */
+    private long hedgeDelayMs = 0;
+
+    /**
+     * 首个 token 延迟 EWMA 的平滑系数
+     */
+    private double ewmaAlpha = 0.3;
+
+    /**
+     * 首个 token 延迟 EWMA 的衰减半衰期（秒），变慢后不再被选中的端点隔一段时间会被重新试探，0 表示不衰减
+     */
+    private long ewmaDecayHalfLifeSeconds = 30;
+
+    /**
+     * 连续失败多少次后暂停路由到该端点
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 暂停路由的时长（秒）
+     */
+    private long openSeconds = 30;
+
+    /**
+     * HTML / 多文件生成使用的端点
+     */
+    private List<Endpoint> streaming = new ArrayList<>();
+
+    /**
+     * Vue 项目生成使用的端点
+     */
+    private List<Endpoint> reasoning = new ArrayList<>();
+
+    @Resource
+    private AiModelMonitorListener aiModelMonitorListener;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 自动配置的单端点流式模型（langchain4j.open-ai.streaming-chat-model）
+     */
+    @Resource
+    private StreamingChatModel openAiStreamingChatModel;
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * 端点名称（指标标签），不配置时使用 baseUrl 的主机名
+         */
+        private String name;
+
+        private String baseUrl;
+
+        private String apiKey;
+
+        private String modelName;
+
+        private Integer maxTokens;
+    }
+
+    /**
+     * 流式模型池（用于 HTML / 多文件生成）
+     */
+    @Bean
+    public StreamingChatModel streamingChatModelPool() {
+        return createPool("streaming", streaming, openAiStreamingChatModel);
+    }
+
+    /**
+     * 根据端点配置创建模型池，未配置端点时只包含默认模型
+     *
+     * @param poolName     模型池名称
+     * @param endpoints    端点配置
+     * @param defaultModel 未配置端点时使用的模型
+     * @throws IllegalArgumentException 端点缺少 base-url、api-key 或 model-name，或名称重复
+     */
+    public StreamingChatModelPool createPool(String poolName, List<Endpoint> endpoints, StreamingChatModel defaultModel) {
+        List<ModelBackend> backends = new ArrayList<>();
+        if (endpoints.isEmpty()) {
+            backends.add(new ModelBackend("default", defaultModel, ewmaAlpha, ewmaDecayHalfLifeSeconds * 1000));
+        }
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(i);
+            String name = validate(poolName, i, endpoint);
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("模型池 " + poolName + " 的端点名称重复: " + name);
+            }
+            StreamingChatModel model = OpenAiStreamingChatModel.builder()
+                    .apiKey(endpoint.getApiKey())
+                    .baseUrl(endpoint.getBaseUrl())
+                    .modelName(endpoint.getModelName())
+                    .maxTokens(endpoint.getMaxTokens())
+                    .httpClientBuilder(new CancellableStreamHttpClientBuilder())
+                    .logRequests(true)
+                    .logResponses(true)
+                    .listeners(List.of(aiModelMonitorListener))
+                    .build();
+            backends.add(new ModelBackend(name, model, ewmaAlpha, ewmaDecayHalfLifeSeconds * 1000));
+        }
+        return new StreamingChatModelPool(poolName, backends, hedgeDelayMs, failureThreshold, openSeconds * 1000, meterRegistry);
+    }
+
+    /**
+     * 校验端点配置，启动时给出明确的错误信息
+     *
+     * @return 端点名称，未配置时使用 baseUrl 的主机名
+     */
+    private static String validate(String poolName, int index, Endpoint endpoint) {
+        String location = "模型池 " + poolName + " 的第 " + (index + 1) + " 个端点";
+        if (StrUtil.isBlank(endpoint.getBaseUrl())) {
+            throw new IllegalArgumentException(location + "缺少 base-url");
+        }
+        if (StrUtil.isBlank(endpoint.getApiKey())) {
+            throw new IllegalArgumentException(location + "缺少 api-key");
+        }
+        if (StrUtil.isBlank(endpoint.getModelName())) {
+            throw new IllegalArgumentException(location + "缺少 model-name");
+        }
+        if (StrUtil.isNotBlank(endpoint.getName())) {
+            return endpoint.getName();
+        }
+        String host;
+        try {
+            host = URI.create(endpoint.getBaseUrl()).getHost();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(location + "的 base-url 无效: " + endpoint.getBaseUrl(), e);
+        }
+        if (host == null) {
+            throw new IllegalArgumentException(location + "的 base-url 无效: " + endpoint.getBaseUrl());
+        }
+        return host;
+    }
+}
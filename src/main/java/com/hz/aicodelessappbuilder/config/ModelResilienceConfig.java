@@ -0,0 +1,169 @@
+package com.hz.aicodelessappbuilder.config;
+
+import com.hz.aicodelessappbuilder.ai.pool.StreamingChatModelPool;
+import com.hz.aicodelessappbuilder.ai.resilience.Bulkhead;
+import com.hz.aicodelessappbuilder.ai.resilience.CircuitBreaker;
+import com.hz.aicodelessappbuilder.ai.resilience.ModelCallGuard;
+import com.hz.aicodelessappbuilder.ai.resilience.ResilientChatModel;
+import com.hz.aicodelessappbuilder.ai.resilience.ResilientStreamingChatModel;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型调用的舱壁和熔断配置
+ * 所有 ChatModel Bean（路由、命名等短调用）共用 utility 舱壁，流式模型池 Bean（代码生成）共用 generation 舱壁，
+ * 每个 Bean 各有一个熔断器。包装由 ResilientModelPostProcessor 在 Bean 初始化后完成。
+ * 代码生成的 AI 服务也会用到同步模型（非流式生成），通过 {@link #forGeneration} 另外包装，不占用短调用的舱壁和慢调用阈值。
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "model-resilience")
+@Data
+public class ModelResilienceConfig {
+
+    /**
+     * 是否启用舱壁和熔断
+     */
+    private boolean enabled = true;
+
+    /**
+     * 流式代码生成调用
+     */
+    private BulkheadSettings generation = new BulkheadSettings(50, 0, 30000);
+
+    /**
+     * 路由、命名等短调用
+     */
+    private BulkheadSettings utility = new BulkheadSettings(20, 2000, 15000);
+
+    private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Bulkhead generationBulkhead;
+
+    private Bulkhead utilityBulkhead;
+
+    @Data
+    public static class BulkheadSettings {
+
+        /**
+         * 最大并发调用数
+         */
+        private int maxConcurrent;
+
+        /**
+         * 许可不足时的最长等待时间（毫秒），0 表示直接失败
+         */
+        private long maxWaitMs;
+
+        /**
+         * 慢调用阈值（毫秒），流式调用按首个 token 延迟计算，0 表示不统计慢调用
+         */
+        private long slowCallMs;
+
+        public BulkheadSettings() {
+        }
+
+        public BulkheadSettings(int maxConcurrent, long maxWaitMs, long slowCallMs) {
+            this.maxConcurrent = maxConcurrent;
+            this.maxWaitMs = maxWaitMs;
+            this.slowCallMs = slowCallMs;
+        }
+    }
+
+    @Data
+    public static class CircuitBreakerSettings {
+
+        /**
+         * 统计的最近调用数
+         */
+        private int windowSize = 20;
+
+        /**
+         * 计算失败率需要的最少调用数
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * 打开熔断的失败率（含慢调用）
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * 打开后到半开的时长（秒）
+         */
+        private long openSeconds = 30;
+
+        /**
+         * 半开时放行的探测调用数
+         */
+        private int halfOpenProbes = 2;
+    }
+
+    /**
+     * 包装模型 Bean，不需要包装时原样返回
+     *
+     * @param beanName Bean 名称（熔断器名称）
+     * @param bean     Bean 实例
+     */
+    public Object wrap(String beanName, Object bean) {
+        if (!enabled) {
+            return bean;
+        }
+        if (bean instanceof ChatModel chatModel && !(bean instanceof ResilientChatModel)) {
+            log.info("模型 {} 启用舱壁和熔断（utility）", beanName);
+            return new ResilientChatModel(chatModel, createGuard(beanName, getUtilityBulkhead(), utility.getSlowCallMs()));
+        }
+        if (bean instanceof StreamingChatModelPool pool) {
+            log.info("模型 {} 启用舱壁和熔断（generation）", beanName);
+            return new ResilientStreamingChatModel(pool,
+                    createGuard(beanName, getGenerationBulkhead(), generation.getSlowCallMs()));
+        }
+        return bean;
+    }
+
+    /**
+     * 代码生成使用的同步模型：取出短调用包装内的模型，改用 generation 舱壁和单独的熔断器
+     * 同步生成按总耗时计算，以分钟计，不统计慢调用；每个名称只应调用一次
+     *
+     * @param name      熔断器名称
+     * @param chatModel 模型 Bean（可能已按短调用包装）
+     */
+    public ChatModel forGeneration(String name, ChatModel chatModel) {
+        ChatModel delegate = chatModel instanceof ResilientChatModel resilient ? resilient.getDelegate() : chatModel;
+        if (!enabled) {
+            return delegate;
+        }
+        log.info("模型 {} 启用舱壁和熔断（generation）", name);
+        return new ResilientChatModel(delegate, createGuard(name, getGenerationBulkhead(), 0));
+    }
+
+    private ModelCallGuard createGuard(String name, Bulkhead bulkhead, long slowCallMs) {
+        CircuitBreaker breaker = new CircuitBreaker(name, circuitBreaker.getWindowSize(),
+                circuitBreaker.getMinimumCalls(), circuitBreaker.getFailureRateThreshold(),
+                circuitBreaker.getOpenSeconds() * 1000, circuitBreaker.getHalfOpenProbes(), meterRegistry);
+        return new ModelCallGuard(bulkhead, breaker, slowCallMs);
+    }
+
+    private synchronized Bulkhead getGenerationBulkhead() {
+        if (generationBulkhead == null) {
+            generationBulkhead = new Bulkhead("generation", generation.getMaxConcurrent(), generation.getMaxWaitMs(), meterRegistry);
+        }
+        return generationBulkhead;
+    }
+
+    private synchronized Bulkhead getUtilityBulkhead() {
+        if (utilityBulkhead == null) {
+            utilityBulkhead = new Bulkhead("utility", utility.getMaxConcurrent(), utility.getMaxWaitMs(), meterRegistry);
+        }
+        return utilityBulkhead;
+    }
+}
@@ -24,11 +24,19 @@ public class ReasoningStreamingChatModelConfig {
     @Resource
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Resource
+    private ModelPoolConfig modelPoolConfig;
+
     /**
      * 推理流式模型（用于 Vue 项目生成，带工具调用）
+     * 配置了 model-pool.reasoning 端点时在多个端点间路由，否则只使用下面的默认端点
      */
     @Bean
     public StreamingChatModel reasoningStreamingChatModel() {
+        return modelPoolConfig.createPool("reasoning", modelPoolConfig.getReasoning(), defaultReasoningStreamingChatModel());
+    }
+
+    private StreamingChatModel defaultReasoningStreamingChatModel() {
         // 为了测试方便临时修改
         final String modelName = "deepseek-chat";
         final int maxTokens = 8192;
@@ -46,4 +54,3 @@ public class ReasoningStreamingChatModelConfig {
                 .build();
     }
 }
-
@@ -1,34 +0,0 @@
-package com.hz.aicodelessappbuilder.config;
-
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
-import lombok.Data;
-import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-@Configuration
-@ConfigurationProperties(prefix = "spring.data.redis")
-@Data
-public class RedisChatMemoryStoreConfig {
-
-    private String host;
-
-    private int port;
-
-    private String username;
-
-    private String password;
-
-    private long ttl;
-
-    @Bean
-    public RedisChatMemoryStore redisChatMemoryStore() {
-        return RedisChatMemoryStore.builder()
-                .host(host)
-                .port(port)
-                .user(username)
-                .password(password)
-                .ttl(ttl)
-                .build();
-    }
-}
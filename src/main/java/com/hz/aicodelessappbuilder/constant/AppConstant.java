@@ -17,6 +17,11 @@ public interface AppConstant {
      */
     String CODE_OUTPUT_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_output";
 
+    /**
+     * Vue 项目构建目录（源码快照和依赖）
+     */
+    String CODE_BUILD_ROOT_DIR = System.getProperty("user.dir") + "/tmp/code_build";
+
     /**
      * 应用部署目录
      */
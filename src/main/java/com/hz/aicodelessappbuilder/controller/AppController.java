@@ -1,6 +1,7 @@
 package com.hz.aicodelessappbuilder.controller;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.hz.aicodelessappbuilder.annotation.AuthCheck;
@@ -9,13 +10,20 @@ import com.hz.aicodelessappbuilder.common.DeleteRequest;
 import com.hz.aicodelessappbuilder.common.ResultUtils;
 import com.hz.aicodelessappbuilder.constant.AppConstant;
 import com.hz.aicodelessappbuilder.constant.UserConstant;
+import com.hz.aicodelessappbuilder.core.builder.BuildJob;
+import com.hz.aicodelessappbuilder.core.session.GenerationEvent;
+import com.hz.aicodelessappbuilder.core.session.GenerationSession;
+import com.hz.aicodelessappbuilder.core.session.GenerationSessionManager;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.exception.ThrowUtils;
 import com.hz.aicodelessappbuilder.model.dto.app.*;
 import com.hz.aicodelessappbuilder.model.vo.AppVO;
+import com.hz.aicodelessappbuilder.model.vo.BuildJobVO;
+import com.hz.aicodelessappbuilder.monitor.SseMetricsCollector;
 import com.hz.aicodelessappbuilder.ratelimiter.annotation.RateLimit;
 import com.hz.aicodelessappbuilder.ratelimiter.enums.RateLimitType;
+import com.hz.aicodelessappbuilder.service.BuildJobService;
 import com.hz.aicodelessappbuilder.service.ProjectDownloadService;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
@@ -32,7 +40,6 @@ import com.hz.aicodelessappbuilder.model.entity.User;
 import com.hz.aicodelessappbuilder.service.AppService;
 import com.hz.aicodelessappbuilder.service.UserService;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -56,6 +63,15 @@ public class AppController {
     @Resource
     private ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private SseMetricsCollector sseMetricsCollector;
+
+    @Resource
+    private GenerationSessionManager generationSessionManager;
+
+    @Resource
+    private BuildJobService buildJobService;
+
     /**
      * 创建应用
      *
@@ -282,44 +298,147 @@ public class AppController {
 
     /**
      * 应用聊天生成代码（SSE流式返回）
+     * 生成在服务端独立运行，连接断开不影响生成；浏览器自动重连时携带 Last-Event-ID，直接续传而不重新生成
      *
-     * @param appId 应用ID
-     * @param message 用户消息
-     * @param request 请求
+     * @param appId       应用ID
+     * @param message     用户消息
+     * @param lastEventId 客户端最后收到的事件ID（断线重连时由浏览器携带）
+     * @param request     请求
      * @return 代码生成结果
      */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @RateLimit(limitType = RateLimitType.IP, rate = 5, rateInterval = 60, message = "AI 对话请求过于频繁，请稍后再试")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务生成代码（流式）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-        // 转换为 ServerSentEvent 格式
-        return contentFlux
-                .map(chunk -> {
-                    // 将内容包装成JSON对象
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
-                .concatWith(Mono.just(
-                        // 发送结束事件
-                        ServerSentEvent.<String>builder()
-                                .event("done")
-                                .data("")
-                                .build()
-                ));
+        // 断线重连：会话仍在则续传，不重新生成
+        if (lastEventId != null) {
+            GenerationSession session = generationSessionManager.getSession(appId, message);
+            ThrowUtils.throwIf(session == null, ErrorCode.NOT_FOUND_ERROR, "生成已结束，请刷新页面");
+            ThrowUtils.throwIf(session.getUserId() != loginUser.getId(), ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+            return toServerSentEvents(generationSessionManager.resume(session, lastEventId));
+        }
+        // 重复提交：相同消息的生成仍在进行，直接接入其实时流
+        GenerationSession runningSession = generationSessionManager.findRunningSession(appId, loginUser.getId(), message);
+        if (runningSession != null) {
+            return toServerSentEvents(runningSession.attach(0));
+        }
+        // 排队前先校验应用权限，无权限的请求直接返回错误
+        checkAppOwner(appId, request);
+        // 在服务端启动生成会话，与当前连接解耦；先获取应用生成租约再经调度器排队，获得名额后调用服务生成代码（流式，连续的响应片段已按时间窗口合并）
+        GenerationSession session = generationSessionManager.start(appId, loginUser.getId(), message,
+                generationLease -> appService.chatToGenCode(appId, message, loginUser, generationLease));
+        return toServerSentEvents(session.attach(0));
+    }
+
+    /**
+     * 恢复生成（SSE流式返回）
+     * 页面刷新后重新连接应用最近一次的生成，回放缺失的内容并继续接收实时内容
+     *
+     * @param appId       应用ID
+     * @param lastEventId 已收到的最后一个事件ID，不传则从头回放
+     * @param request     请求
+     * @return 代码生成结果
+     */
+    @GetMapping(value = "/chat/gen/code/resume", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> resumeGenCode(@RequestParam Long appId,
+                                                       @RequestParam(required = false) Long lastEventId,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+                                                       HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        GenerationSession session = generationSessionManager.getSession(appId);
+        ThrowUtils.throwIf(session == null, ErrorCode.NOT_FOUND_ERROR, "没有可恢复的生成");
+        ThrowUtils.throwIf(session.getUserId() != loginUser.getId(), ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+        // 浏览器自动重连携带的请求头优先
+        long fromEventId = ObjectUtil.defaultIfNull(lastEventIdHeader, ObjectUtil.defaultIfNull(lastEventId, 0L));
+        return toServerSentEvents(generationSessionManager.resume(session, fromEventId));
+    }
+
+    /**
+     * 将生成事件编码为 ServerSentEvent，事件ID用于断线续传
+     */
+    private Flux<ServerSentEvent<String>> toServerSentEvents(Flux<GenerationEvent> eventFlux) {
+        return eventFlux.map(event -> {
+            if (GenerationEvent.EVENT_DONE.equals(event.getEvent())) {
+                // 发送结束事件
+                return ServerSentEvent.<String>builder()
+                        .id(String.valueOf(event.getId()))
+                        .event(GenerationEvent.EVENT_DONE)
+                        .data("")
+                        .build();
+            }
+            if (GenerationEvent.EVENT_QUEUE.equals(event.getEvent())) {
+                // 发送排队位置事件
+                return ServerSentEvent.<String>builder()
+                        .id(String.valueOf(event.getId()))
+                        .event(GenerationEvent.EVENT_QUEUE)
+                        .data(JSONUtil.toJsonStr(Map.of("position", Integer.parseInt(event.getData()))))
+                        .build();
+            }
+            // 将内容包装成JSON对象
+            Map<String, String> wrapper = Map.of("d", event.getData());
+            String jsonData = JSONUtil.toJsonStr(wrapper);
+            sseMetricsCollector.recordEvent(jsonData);
+            return ServerSentEvent.<String>builder()
+                    .id(String.valueOf(event.getId()))
+                    .data(jsonData)
+                    .build();
+        });
     }
 
 
+    /**
+     * 查询应用最近一次的构建状态
+     *
+     * @param appId   应用ID
+     * @param request 请求
+     * @return 构建状态，没有构建记录时返回 null
+     */
+    @GetMapping("/build/status")
+    public BaseResponse<BuildJobVO> getBuildStatus(@RequestParam Long appId, HttpServletRequest request) {
+        checkAppOwner(appId, request);
+        BuildJob buildJob = buildJobService.getLatestJob(appId);
+        return ResultUtils.success(buildJobService.getBuildJobVO(buildJob));
+    }
+
+    /**
+     * 构建进度（SSE流式返回）
+     * 推送应用最近一次构建的状态、步骤和日志，构建结束后关闭
+     *
+     * @param appId   应用ID
+     * @param request 请求
+     * @return 构建事件
+     */
+    @GetMapping(value = "/build/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamBuildEvents(@RequestParam Long appId, HttpServletRequest request) {
+        checkAppOwner(appId, request);
+        BuildJob buildJob = buildJobService.getLatestJob(appId);
+        ThrowUtils.throwIf(buildJob == null, ErrorCode.NOT_FOUND_ERROR, "没有构建任务");
+        return buildJob.events()
+                .map(event -> ServerSentEvent.<String>builder()
+                        .event(event.getType().getValue())
+                        .data(JSONUtil.toJsonStr(Map.of("d", event.getContent())))
+                        .build());
+    }
+
+    /**
+     * 校验应用存在且属于当前登录用户
+     */
+    private void checkAppOwner(Long appId, HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
+        User loginUser = userService.getLoginUser(request);
+        App app = appService.getById(appId);
+        ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+        ThrowUtils.throwIf(!app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
+    }
+
     /**
      * 应用部署
      *
@@ -1,21 +1,30 @@
 package com.hz.aicodelessappbuilder.core;
 
-import cn.hutool.json.JSONUtil;
 import com.hz.aicodelessappbuilder.ai.AiCodeGeneratorService;
 import com.hz.aicodelessappbuilder.ai.AiCodeGeneratorServiceFactory;
 import com.hz.aicodelessappbuilder.ai.model.HtmlCodeResult;
 import com.hz.aicodelessappbuilder.ai.model.MultiFileCodeResult;
 import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
 import com.hz.aicodelessappbuilder.ai.model.message.ToolExecutedMessage;
 import com.hz.aicodelessappbuilder.ai.model.message.ToolRequestMessage;
-import com.hz.aicodelessappbuilder.constant.AppConstant;
-import com.hz.aicodelessappbuilder.core.builder.VueProjectBuilder;
-import com.hz.aicodelessappbuilder.core.parser.CodeParserExecutor;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBufferFactory;
 import com.hz.aicodelessappbuilder.core.saver.CodeFileSaverExecutor;
+import com.hz.aicodelessappbuilder.core.saver.StreamingCodeFileSaver;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import com.hz.aicodelessappbuilder.service.BuildJobService;
+import com.hz.aicodelessappbuilder.monitor.AiModelMetricsCollector;
+import com.hz.aicodelessappbuilder.monitor.MonitorContext;
+import com.hz.aicodelessappbuilder.monitor.MonitorContextHolder;
+import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
@@ -24,6 +33,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * AI 代码生成外观类，组合生成和保存功能
@@ -36,32 +47,47 @@ public class AiCodeGeneratorFacade {
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private BuildJobService buildJobService;
+
+    @Resource
+    private ResponseBufferFactory responseBufferFactory;
+
+    @Resource
+    private AiModelMetricsCollector aiModelMetricsCollector;
+
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
+    /**
+     * Vue 项目生成使用的模型，取消时用于记录模型名称
+     */
+    @Resource
+    private StreamingChatModel reasoningStreamingChatModel;
 
     /**
      * 通用流式代码处理方法
      *
-     * @param codeStream  代码流
-     * @param codeGenType 代码生成类型
+     * @param codeStream     代码流
+     * @param codeGenType    代码生成类型
+     * @param responseBuffer 本次生成共享的响应缓冲区
      * @return 流式响应
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream.doOnNext(chunk -> {
-            // 实时收集代码片段
-            codeBuilder.append(chunk);
-        }).doOnComplete(() -> {
-            // 流式返回完成后保存代码
-            try {
-                String completeCode = codeBuilder.toString();
-                // 使用执行器解析代码
-                Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                // 使用执行器保存代码
-                File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
-            } catch (Exception e) {
-                log.error("保存失败: {}", e.getMessage());
-            }
+    private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId,
+                                           ResponseBuffer responseBuffer) {
+        return Flux.defer(() -> {
+            // 边接收边解析代码块并写入文件，每个文件完成后即可预览，无需等待生成结束
+            StreamingCodeFileSaver streamingSaver = CodeFileSaverExecutor.openStreamingSaver(codeGenType, appId, responseBuffer);
+            return codeStream.doOnNext(chunk -> {
+                        // 原始响应只在共享缓冲区保留一份，后续对话历史直接读取
+                        responseBuffer.append(chunk);
+                        streamingSaver.append(chunk);
+                    })
+                    .doOnComplete(() -> {
+                        File savedDir = streamingSaver.complete();
+                        log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
+                    })
+                    .doFinally(signalType -> streamingSaver.close())
+                    .<StreamMessage>map(AiResponseMessage::new);
         });
     }
 
@@ -77,15 +103,15 @@ public class AiCodeGeneratorFacade {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
-        // 根据 appId 获取对应的 AI 服务实例
+        // 获取生成类型对应的共享 AI 服务，对话记忆按 appId 区分
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
+                HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML, appId);
             }
             case MULTI_FILE -> {
-                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+                MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
                 yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE, appId);
             }
             default -> {
@@ -101,20 +127,34 @@ public class AiCodeGeneratorFacade {
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        return Flux.using(responseBufferFactory::create,
+                responseBuffer -> generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, responseBuffer),
+                ResponseBuffer::close);
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式），使用调用方提供的共享响应缓冲区
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param responseBuffer  本次生成共享的响应缓冲区，由调用方负责关闭
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                  ResponseBuffer responseBuffer) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
         }
-        // 根据 appId 获取对应的 AI 服务实例
+        // 获取生成类型对应的共享 AI 服务，对话记忆按 appId 区分
         AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
         return switch (codeGenTypeEnum) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId, responseBuffer);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
+                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId, responseBuffer);
             }
             case VUE_PROJECT -> {
                 TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
@@ -128,38 +168,83 @@ public class AiCodeGeneratorFacade {
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为类型化的消息流，并传递工具调用信息
+     * 下游取消订阅时中止模型请求、停止后续工具调用并跳过项目构建
+     * 工具调用都在内存工作区中读写，生成结束（完成、出错或取消）时一次性写回项目目录
      *
      * @param tokenStream TokenStream 对象
-     * @return Flux<String> 流式响应
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream, Long appId) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId) {
         return Flux.create(sink -> {
-            tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+            // 订阅发生在请求线程，先取出监控上下文，取消回调可能在其他线程执行
+            MonitorContext monitorContext = MonitorContextHolder.getContext();
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            // 当前模型请求的流式句柄，仅在收到输出后才能拿到
+            AtomicReference<StreamingHandle> streamingHandleRef = new AtomicReference<>();
+            projectWorkspaceManager.open(appId);
+            sink.onCancel(() -> {
+                if (cancelled.compareAndSet(false, true)) {
+                    StreamingHandle streamingHandle = streamingHandleRef.get();
+                    if (streamingHandle != null) {
+                        streamingHandle.cancel();
+                    }
+                    // 保留已生成的文件
+                    projectWorkspaceManager.flush(appId);
+                    recordCancelled(monitorContext);
+                    log.info("生成已取消，中止模型请求, appId: {}", appId);
+                }
+            });
+            tokenStream.onPartialResponseWithContext((PartialResponse partialResponse, PartialResponseContext context) -> {
+                        StreamingHandle streamingHandle = context.streamingHandle();
+                        streamingHandleRef.set(streamingHandle);
+                        if (cancelled.get()) {
+                            // 工具调用后发起的新一轮请求，收到首个输出时立即中止
+                            streamingHandle.cancel();
+                            return;
+                        }
+                        sink.next(new AiResponseMessage(partialResponse.text()));
                     })
                     //TODO 工具调用流式输出结果待实现
 //                    .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
 //                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-//                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+//                        sink.next(toolRequestMessage);
 //                    })
                     .beforeToolExecution((beforeToolExecution ) ->{
+                        // 已取消则不再执行工具，抛出异常中止工具调用循环
+                        throwIfCancelled(cancelled);
                         //调用工具之前获取工具的信息，用于前端展示
                         ToolRequestMessage toolRequestMessage = new ToolRequestMessage(beforeToolExecution.request());
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(toolRequestMessage);
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
+                        throwIfCancelled(cancelled);
                         ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(toolExecutedMessage);
                     })
                     .onCompleteResponse((ChatResponse response) -> {
-                        // 执行 Vue 项目构建（同步执行，确保预览时项目已就绪）
-                        String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + File.separator + "vue_project_" + appId;
-                        vueProjectBuilder.buildProject(projectPath);
+                        if (cancelled.get()) {
+                            log.info("生成已取消，跳过 Vue 项目构建, appId: {}", appId);
+                            return;
+                        }
+                        // 先写回项目目录，再提交 Vue 项目构建任务，生成结束即关闭对话流，构建进度通过构建接口查询
+                        if (projectWorkspaceManager.flush(appId)) {
+                            try {
+                                buildJobService.submitBuild(appId);
+                            } catch (BusinessException e) {
+                                log.warn("提交构建任务失败, appId: {}, error: {}", appId, e.getMessage());
+                            }
+                        } else {
+                            log.warn("项目工作区写回失败，跳过 Vue 项目构建, appId: {}", appId);
+                        }
                         sink.complete();
                     })
                     .onError((Throwable error) -> {
+                        if (cancelled.get()) {
+                            // 取消导致的中止不是错误
+                            return;
+                        }
+                        projectWorkspaceManager.flush(appId);
                         error.printStackTrace();
                         sink.error(error);
                     })
@@ -167,6 +252,23 @@ public class AiCodeGeneratorFacade {
         });
     }
 
+    private void throwIfCancelled(AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "生成已取消");
+        }
+    }
+
+    /**
+     * 记录取消的生成
+     */
+    private void recordCancelled(MonitorContext monitorContext) {
+        if (monitorContext == null) {
+            return;
+        }
+        String modelName = reasoningStreamingChatModel.defaultRequestParameters().modelName();
+        aiModelMetricsCollector.recordRequest(monitorContext.getUserId(), monitorContext.getAppId(), modelName, "cancelled");
+    }
+
 
 }
 
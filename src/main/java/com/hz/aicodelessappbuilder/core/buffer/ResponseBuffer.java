@@ -0,0 +1,220 @@
+package com.hz.aicodelessappbuilder.core.buffer;
+
+import cn.hutool.core.io.IoUtil;
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * 单次生成共享的响应缓冲区
+ * 一次生成只保留一份完整的 AI 响应，代码保存、对话历史等各阶段共同读取；
+ * 内容超过阈值后转存到临时文件，避免长响应长期占用堆内存；转存后只能通过 {@link #transferTo(Writer)} 流式读取，
+ * 或用 {@link #detachSpillFile()} 把临时文件交给对话历史写入器，不会再整体读回堆内存。
+ * 由 {@link ResponseBufferFactory} 创建，使用完毕后必须调用 {@link #close()}。
+ */
+@Slf4j
+public class ResponseBuffer implements Closeable {
+
+    /**
+     * 每个字符按 UTF-16 估算占用 2 字节
+     */
+    private static final int BYTES_PER_CHAR = 2;
+
+    /**
+     * 转存文件写入缓冲大小（字符，与 BufferedWriter 默认值一致）
+     */
+    private static final int SPILL_WRITER_BUFFER_SIZE = 8192;
+
+    private final long spillThreshold;
+
+    private final Consumer<ResponseBuffer> closeListener;
+
+    private StringBuilder memoryBuilder = new StringBuilder();
+
+    private Path spillFile;
+
+    private Writer spillWriter;
+
+    private long length;
+
+    private volatile long memoryBytes;
+
+    private long peakMemoryBytes;
+
+    private boolean closed;
+
+    /**
+     * 临时文件已交给调用方，缓冲区不再追加也不删除该文件
+     */
+    private boolean detached;
+
+    ResponseBuffer(long spillThreshold, Consumer<ResponseBuffer> closeListener) {
+        this.spillThreshold = spillThreshold;
+        this.closeListener = closeListener;
+    }
+
+    /**
+     * 追加响应内容
+     *
+     * @param content 内容片段
+     */
+    public synchronized void append(CharSequence content) {
+        if (closed || detached || content == null || content.isEmpty()) {
+            return;
+        }
+        try {
+            if (spillFile == null && length + content.length() > spillThreshold) {
+                spill();
+            }
+            if (spillWriter != null) {
+                spillWriter.append(content);
+            } else {
+                memoryBuilder.append(content);
+            }
+            length += content.length();
+            updateMemoryBytes();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入响应缓冲失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取完整响应，仅用于未转存的内容（转存后整体读回会抵消转存节省的内存）
+     *
+     * @return 完整响应内容
+     * @throws IllegalStateException 内容已转存到临时文件
+     */
+    public synchronized String readAll() {
+        if (spillFile != null) {
+            throw new IllegalStateException("响应已转存到临时文件，请使用 transferTo 流式读取");
+        }
+        return memoryBuilder == null ? "" : memoryBuilder.toString();
+    }
+
+    /**
+     * 将完整响应按块写入 writer，转存后从临时文件流式读取，不在堆内存中拼出完整内容
+     *
+     * @param writer 目标
+     */
+    public synchronized void transferTo(Writer writer) throws IOException {
+        if (spillFile == null) {
+            if (memoryBuilder != null) {
+                // 分块复制，避免 append(CharSequence) 先转成完整字符串
+                char[] chunk = new char[SPILL_WRITER_BUFFER_SIZE];
+                for (int start = 0; start < memoryBuilder.length(); start += chunk.length) {
+                    int end = Math.min(memoryBuilder.length(), start + chunk.length);
+                    memoryBuilder.getChars(start, end, chunk, 0);
+                    writer.write(chunk, 0, end - start);
+                }
+            }
+            return;
+        }
+        if (spillWriter != null) {
+            spillWriter.flush();
+        }
+        try (Reader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+            reader.transferTo(writer);
+        }
+    }
+
+    /**
+     * 把转存的临时文件交给调用方，之后由调用方读取和删除；缓冲区不再接收追加
+     *
+     * @return 临时文件（UTF-8），未转存时返回 null
+     */
+    public synchronized Path detachSpillFile() {
+        if (spillFile == null || closed || detached) {
+            return null;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "写入响应缓冲失败: " + e.getMessage());
+        }
+        spillWriter = null;
+        detached = true;
+        updateMemoryBytes();
+        return spillFile;
+    }
+
+    /**
+     * 已写入的字符数
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    /**
+     * 当前占用的堆内存（估算值，字节）
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * 生命周期内占用堆内存的峰值（估算值，字节）
+     */
+    public synchronized long getPeakMemoryBytes() {
+        return peakMemoryBytes;
+    }
+
+    /**
+     * 是否已转存到临时文件
+     */
+    public synchronized boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    /**
+     * 释放内存和临时文件，可重复调用
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        memoryBuilder = null;
+        memoryBytes = 0;
+        if (spillFile != null && !detached) {
+            IoUtil.close(spillWriter);
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("删除响应缓冲临时文件失败: {}", spillFile, e);
+            }
+        }
+        closeListener.accept(this);
+    }
+
+    /**
+     * 将内存中的内容转存到临时文件，之后的追加直接写文件
+     */
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile("ai-response-", ".txt");
+        spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+        spillWriter.append(memoryBuilder);
+        memoryBuilder = null;
+        log.info("响应内容超过 {} 字符，转存到临时文件: {}", spillThreshold, spillFile);
+    }
+
+    private void updateMemoryBytes() {
+        long current;
+        if (spillFile == null) {
+            current = (long) memoryBuilder.capacity() * BYTES_PER_CHAR;
+        } else {
+            current = spillWriter != null ? (long) SPILL_WRITER_BUFFER_SIZE * BYTES_PER_CHAR : 0;
+        }
+        memoryBytes = current;
+        peakMemoryBytes = Math.max(peakMemoryBytes, current);
+    }
+}
@@ -0,0 +1,88 @@
+package com.hz.aicodelessappbuilder.core.buffer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 响应缓冲区工厂
+ * 统一创建单次生成的响应缓冲区，并暴露内存占用指标，用于按并发生成数评估堆大小：
+ * - ai_response_buffer_active：进行中的缓冲区数量
+ * - ai_response_buffer_memory_bytes：进行中的缓冲区占用堆内存总和
+ * - ai_response_buffer_peak_bytes：每次生成的缓冲区堆内存峰值分布
+ * - ai_response_buffer_spill_total：转存到临时文件的次数
+ */
+@Slf4j
+@Component
+public class ResponseBufferFactory {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 内存中最多保留的字符数，超过后转存到临时文件
+     */
+    @Value("${code.response-buffer.spill-threshold:1048576}")
+    private long spillThreshold;
+
+    private final Set<ResponseBuffer> activeBuffers = ConcurrentHashMap.newKeySet();
+
+    private DistributionSummary peakMemorySummary;
+
+    private Counter spillCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_response_buffer_active", activeBuffers, Set::size)
+                .description("进行中的响应缓冲区数量")
+                .register(meterRegistry);
+        Gauge.builder("ai_response_buffer_memory_bytes", activeBuffers, this::sumMemoryBytes)
+                .description("进行中的响应缓冲区占用堆内存（估算）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        peakMemorySummary = DistributionSummary.builder("ai_response_buffer_peak_bytes")
+                .description("单次生成响应缓冲区堆内存峰值（估算）")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        spillCounter = Counter.builder("ai_response_buffer_spill_total")
+                .description("响应缓冲区转存临时文件次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 创建响应缓冲区
+     *
+     * @return 响应缓冲区
+     */
+    public ResponseBuffer create() {
+        ResponseBuffer responseBuffer = new ResponseBuffer(spillThreshold, this::onClose);
+        activeBuffers.add(responseBuffer);
+        return responseBuffer;
+    }
+
+    private void onClose(ResponseBuffer responseBuffer) {
+        activeBuffers.remove(responseBuffer);
+        peakMemorySummary.record(responseBuffer.getPeakMemoryBytes());
+        if (responseBuffer.isSpilled()) {
+            spillCounter.increment();
+        }
+    }
+
+    private double sumMemoryBytes(Set<ResponseBuffer> buffers) {
+        long total = 0;
+        for (ResponseBuffer buffer : buffers) {
+            total += buffer.getMemoryBytes();
+        }
+        return total;
+    }
+}
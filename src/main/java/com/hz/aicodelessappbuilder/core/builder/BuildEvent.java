@@ -0,0 +1,36 @@
+package com.hz.aicodelessappbuilder.core.builder;
+
+import com.hz.aicodelessappbuilder.model.enums.BuildEventTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 构建事件
+ * 构建过程中的状态变更、步骤和日志行，推送给前端展示构建进度
+ */
+@Getter
+@AllArgsConstructor
+public class BuildEvent {
+
+    /**
+     * 事件类型
+     */
+    private final BuildEventTypeEnum type;
+
+    /**
+     * 事件内容：状态值、步骤名称或日志行
+     */
+    private final String content;
+
+    public static BuildEvent status(String status) {
+        return new BuildEvent(BuildEventTypeEnum.STATUS, status);
+    }
+
+    public static BuildEvent step(String step) {
+        return new BuildEvent(BuildEventTypeEnum.STEP, step);
+    }
+
+    public static BuildEvent log(String line) {
+        return new BuildEvent(BuildEventTypeEnum.LOG, line);
+    }
+}
@@ -0,0 +1,133 @@
+package com.hz.aicodelessappbuilder.core.builder;
+
+import com.hz.aicodelessappbuilder.model.enums.BuildEventTypeEnum;
+import com.hz.aicodelessappbuilder.model.enums.BuildStatusEnum;
+import lombok.AccessLevel;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建任务
+ * 记录一次 Vue 项目构建的状态，并将构建事件写入有界回放日志，后连接的客户端也能看到完整进度
+ */
+@Getter
+public class BuildJob {
+
+    /**
+     * 回放日志保留的最大事件数
+     */
+    private static final int EVENT_REPLAY_LIMIT = 2000;
+
+    private final long appId;
+
+    private final String projectPath;
+
+    /**
+     * 同一应用上一个仍在执行的任务，本任务需等待其结束后再构建，避免同一目录并发执行 npm
+     */
+    private final BuildJob previous;
+
+    private final LocalDateTime createTime = LocalDateTime.now();
+
+    private volatile BuildStatusEnum status = BuildStatusEnum.QUEUED;
+
+    private volatile String step;
+
+    private volatile LocalDateTime startTime;
+
+    private volatile LocalDateTime endTime;
+
+    /**
+     * 构建所用源码的版本（见 ProjectWorkspaceManager#getSourceVersion），开始构建前为 -1
+     */
+    private volatile long sourceVersion = -1;
+
+    @Getter(AccessLevel.NONE)
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    @Getter(AccessLevel.NONE)
+    private final Sinks.Many<BuildEvent> eventSink = Sinks.many().replay().limit(EVENT_REPLAY_LIMIT);
+
+    public BuildJob(long appId, String projectPath, BuildJob previous) {
+        this.appId = appId;
+        this.projectPath = projectPath;
+        this.previous = previous;
+        emit(BuildEvent.status(status.getValue()));
+    }
+
+    /**
+     * 构建事件流，结束后完成
+     */
+    public Flux<BuildEvent> events() {
+        return eventSink.asFlux();
+    }
+
+    /**
+     * 等待构建结束
+     *
+     * @param timeoutSeconds 超时时间（秒）
+     * @return 是否构建成功，超时返回 false
+     */
+    public boolean await(long timeoutSeconds) {
+        try {
+            return result.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 构建结束（成功或失败）时完成，结果为是否构建成功
+     */
+    public CompletionStage<Boolean> whenFinished() {
+        return result.minimalCompletionStage();
+    }
+
+    /**
+     * 开始构建
+     *
+     * @param sourceVersion 构建所用源码的版本
+     */
+    public synchronized void markRunning(long sourceVersion) {
+        this.sourceVersion = sourceVersion;
+        status = BuildStatusEnum.RUNNING;
+        startTime = LocalDateTime.now();
+        emit(BuildEvent.status(status.getValue()));
+    }
+
+    /**
+     * 接收构建过程中的步骤和日志事件
+     */
+    public synchronized void onEvent(BuildEvent event) {
+        if (event.getType() == BuildEventTypeEnum.STEP) {
+            step = event.getContent();
+        }
+        emit(event);
+    }
+
+    /**
+     * 构建结束
+     *
+     * @param success 是否构建成功
+     */
+    public synchronized void finish(boolean success) {
+        status = success ? BuildStatusEnum.SUCCESS : BuildStatusEnum.FAILED;
+        endTime = LocalDateTime.now();
+        emit(BuildEvent.status(status.getValue()));
+        eventSink.tryEmitComplete();
+        result.complete(success);
+    }
+
+    private void emit(BuildEvent event) {
+        eventSink.tryEmitNext(event);
+    }
+}
@@ -4,8 +4,14 @@ import cn.hutool.core.util.RuntimeUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Slf4j
 @Component
@@ -36,6 +42,18 @@ public class VueProjectBuilder {
      * @return 是否构建成功
      */
     public boolean buildProject(String projectPath) {
+        return buildProject(projectPath, event -> {
+        });
+    }
+
+    /**
+     * 构建 Vue 项目，并通过回调输出构建步骤和命令日志
+     *
+     * @param projectPath   项目根目录路径
+     * @param eventConsumer 构建事件回调
+     * @return 是否构建成功
+     */
+    public boolean buildProject(String projectPath, Consumer<BuildEvent> eventConsumer) {
         File projectDir = new File(projectPath);
         if (!projectDir.exists() || !projectDir.isDirectory()) {
             log.error("项目目录不存在: {}", projectPath);
@@ -49,12 +67,14 @@ public class VueProjectBuilder {
         }
         log.info("开始构建 Vue 项目: {}", projectPath);
         // 执行 npm install
-        if (!executeNpmInstall(projectDir)) {
+        eventConsumer.accept(BuildEvent.step("npm install"));
+        if (!executeNpmInstall(projectDir, eventConsumer)) {
             log.error("npm install 执行失败");
             return false;
         }
         // 执行 npm run build
-        if (!executeNpmBuild(projectDir)) {
+        eventConsumer.accept(BuildEvent.step("npm run build"));
+        if (!executeNpmBuild(projectDir, eventConsumer)) {
             log.error("npm run build 执行失败");
             return false;
         }
@@ -75,9 +95,10 @@ public class VueProjectBuilder {
      * @param workingDir     工作目录
      * @param command        命令字符串
      * @param timeoutSeconds 超时时间（秒）
+     * @param eventConsumer  构建事件回调，逐行接收命令输出
      * @return 是否执行成功
      */
-    private boolean executeCommand(File workingDir, String command, int timeoutSeconds) {
+    private boolean executeCommand(File workingDir, String command, int timeoutSeconds, Consumer<BuildEvent> eventConsumer) {
         try {
             log.info("在目录 {} 中执行命令: {}", workingDir.getAbsolutePath(), command);
             Process process = RuntimeUtil.exec(
@@ -85,6 +106,9 @@ public class VueProjectBuilder {
                     workingDir,
                     command.split("\\s+") // 命令分割为数组
             );
+            // 持续读取标准输出和错误输出，既推送日志也避免管道写满导致进程阻塞
+            pipeOutput(process.getInputStream(), eventConsumer);
+            pipeOutput(process.getErrorStream(), eventConsumer);
             // 等待进程完成，设置超时
             boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
             if (!finished) {
@@ -109,19 +133,35 @@ public class VueProjectBuilder {
     /**
      * 执行 npm install 命令
      */
-    private boolean executeNpmInstall(File projectDir) {
+    private boolean executeNpmInstall(File projectDir, Consumer<BuildEvent> eventConsumer) {
         log.info("执行 npm install...");
         String command = String.format("%s install", buildCommand("npm"));
-        return executeCommand(projectDir, command, 300); // 5分钟超时
+        return executeCommand(projectDir, command, 300, eventConsumer); // 5分钟超时
     }
 
     /**
      * 执行 npm run build 命令
      */
-    private boolean executeNpmBuild(File projectDir) {
+    private boolean executeNpmBuild(File projectDir, Consumer<BuildEvent> eventConsumer) {
         log.info("执行 npm run build...");
         String command = String.format("%s run build", buildCommand("npm"));
-        return executeCommand(projectDir, command, 180); // 3分钟超时
+        return executeCommand(projectDir, command, 180, eventConsumer); // 3分钟超时
+    }
+
+    /**
+     * 在虚拟线程中逐行读取进程输出
+     */
+    private void pipeOutput(InputStream inputStream, Consumer<BuildEvent> eventConsumer) {
+        Thread.ofVirtual().start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    eventConsumer.accept(BuildEvent.log(line));
+                }
+            } catch (IOException e) {
+                log.debug("读取命令输出结束: {}", e.getMessage());
+            }
+        });
     }
 
 
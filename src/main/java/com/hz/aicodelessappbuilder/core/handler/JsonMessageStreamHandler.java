@@ -7,6 +7,7 @@ import com.hz.aicodelessappbuilder.ai.model.message.*;
 import com.hz.aicodelessappbuilder.ai.tools.BaseTool;
 import com.hz.aicodelessappbuilder.ai.tools.ToolManager;
 import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.core.builder.VueProjectBuilder;
 import com.hz.aicodelessappbuilder.model.entity.User;
 import com.hz.aicodelessappbuilder.model.enums.MessageTypeEnum;
@@ -15,6 +16,8 @@ import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -35,59 +38,53 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按类型处理流式消息并重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param responseBuffer     本次生成共享的响应缓冲区，收集数据用于生成后端记忆格式
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        // 收集数据用于生成后端记忆格式
-        StringBuilder chatHistoryStringBuilder = new StringBuilder();
+                               long appId, User loginUser, ResponseBuffer responseBuffer) {
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(streamMessage -> {
+                    // 按类型处理每条消息，无需 JSON 解析
+                    return handleStreamMessage(streamMessage, responseBuffer, seenToolIds);
                 })
                 .filter(StrUtil::isNotEmpty) // 过滤空字串
-                .doOnComplete(() -> {
-                    // 流式响应完成后，添加 AI 消息到对话历史
-                    String aiResponse = chatHistoryStringBuilder.toString();
-                    chatHistoryService.addChatMessage(appId, aiResponse, MessageTypeEnum.AI.getValue(), loginUser.getId());
-//                    // 异步构造 Vue 项目
-//                    String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
-//                    vueProjectBuilder.buildProjectAsync(projectPath);
-                })
-                .doOnError(error -> {
+                .onErrorResume(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, MessageTypeEnum.AI.getValue(), loginUser.getId());
-                });
+                    return Mono.<String>fromRunnable(() -> chatHistoryService.addChatMessage(appId, errorMessage, MessageTypeEnum.AI.getValue(), loginUser.getId()))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(error));
+                })
+                // 流式响应完成后，添加 AI 消息到对话历史；写入队列满时会等待，放到弹性线程上，记录完成后流才结束
+                .concatWith(Mono.<String>fromRunnable(() -> chatHistoryService.addChatMessage(appId, responseBuffer, MessageTypeEnum.AI.getValue(), loginUser.getId()))
+                        .subscribeOn(Schedulers.boundedElastic()));
+//        // 异步构造 Vue 项目
+//        String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
+//        vueProjectBuilder.buildProjectAsync(projectPath);
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 处理并收集 TokenStream 数据
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    private String handleStreamMessage(StreamMessage streamMessage, ResponseBuffer responseBuffer, Set<String> seenToolIds) {
+        return switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
-                chatHistoryStringBuilder.append(data);
-                return data;
+                responseBuffer.append(data);
+                yield data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -97,14 +94,13 @@ public class JsonMessageStreamHandler {
                     // 根据工具名称获取工具实例
                     BaseTool tool = toolManager.getTool(toolName);
                     // 返回格式化的工具调用信息
-                    return tool.generateToolRequestResponse();
+                    yield tool.generateToolRequestResponse();
                 } else {
                     // 不是第一次调用这个工具，直接返回空
-                    return "";
+                    yield "";
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
                 String toolName = toolExecutedMessage.getName();
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 根据工具名称获取工具实例并生成相应的结果格式
@@ -112,14 +108,9 @@ public class JsonMessageStreamHandler {
                 String result = tool.generateToolExecutedResult(jsonObject);
                 // 输出前端和要持久化的内容
                 String output = String.format("\n\n%s\n\n", result);
-                chatHistoryStringBuilder.append(output);
-                return output;
+                responseBuffer.append(output);
+                yield output;
             }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
-            }
-        }
+        };
     }
 }
-
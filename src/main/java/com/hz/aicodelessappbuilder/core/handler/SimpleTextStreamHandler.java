@@ -1,10 +1,15 @@
 package com.hz.aicodelessappbuilder.core.handler;
 
+import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.model.entity.User;
 import com.hz.aicodelessappbuilder.model.enums.MessageTypeEnum;
 import com.hz.aicodelessappbuilder.service.ChatHistoryService;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * 简单文本流处理器
@@ -15,34 +20,30 @@ public class SimpleTextStreamHandler {
 
     /**
      * 处理传统流（HTML, MULTI_FILE）
-     * 直接收集完整的文本响应
+     * 完整的文本响应已由生成阶段写入共享缓冲区，这里直接读取，不再重复收集
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
      * @param appId              应用ID
      * @param loginUser          登录用户
+     * @param responseBuffer     本次生成共享的响应缓冲区
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<String> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
-                               long appId, User loginUser) {
-        StringBuilder aiResponseBuilder = new StringBuilder();
+                               long appId, User loginUser, ResponseBuffer responseBuffer) {
         return originFlux
-                .map(chunk -> {
-                    // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
-                })
-                .doOnComplete(() -> {
-                    // 流式响应完成后，添加AI消息到对话历史
-                    String aiResponse = aiResponseBuilder.toString();
-                    chatHistoryService.addChatMessage(appId, aiResponse, MessageTypeEnum.AI.getValue(), loginUser.getId());
-                })
-                .doOnError(error -> {
+                .mapNotNull(streamMessage -> streamMessage instanceof AiResponseMessage aiMessage ? aiMessage.getData() : null)
+                .onErrorResume(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
-                    chatHistoryService.addChatMessage(appId, errorMessage, MessageTypeEnum.AI.getValue(), loginUser.getId());
-                });
+                    return Mono.<String>fromRunnable(() -> chatHistoryService.addChatMessage(appId, errorMessage, MessageTypeEnum.AI.getValue(), loginUser.getId()))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.error(error));
+                })
+                // 流式响应完成后，添加AI消息到对话历史；写入队列满时会等待，放到弹性线程上，记录完成后流才结束
+                .concatWith(Mono.<String>fromRunnable(() -> chatHistoryService.addChatMessage(appId, responseBuffer, MessageTypeEnum.AI.getValue(), loginUser.getId()))
+                        .subscribeOn(Schedulers.boundedElastic()));
     }
 }
 
@@ -1,5 +1,7 @@
 package com.hz.aicodelessappbuilder.core.handler;
 
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.model.entity.User;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
 import com.hz.aicodelessappbuilder.service.ChatHistoryService;
@@ -11,8 +13,9 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 1. 传统的文本流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
  * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 两类流都以类型化的 StreamMessage 传递，不做中间序列化
  */
 @Slf4j
 @Component
@@ -29,16 +32,18 @@ public class StreamHandlerExecutor {
      * @param appId              应用ID
      * @param loginUser          登录用户
      * @param codeGenType        代码生成类型
+     * @param responseBuffer     本次生成共享的响应缓冲区
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
-                                  long appId, User loginUser, CodeGenTypeEnum codeGenType) {
+                                  long appId, User loginUser, CodeGenTypeEnum codeGenType,
+                                  ResponseBuffer responseBuffer) {
         return switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
-                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser);
+                    jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser, responseBuffer);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
-                    new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
+                    new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser, responseBuffer);
         };
     }
 }
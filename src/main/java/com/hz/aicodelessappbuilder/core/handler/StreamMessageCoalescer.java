@@ -0,0 +1,185 @@
+package com.hz.aicodelessappbuilder.core.handler;
+
+import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式消息合并器
+ * 模型每次只输出很短的片段，逐个推送时 SSE 帧和 JSON 编码的开销远大于内容本身。
+ * 这里将连续的 AI 响应片段按时间窗口或大小合并为一条消息：
+ * - 窗口内首个片段到达后开始计时，到期即输出
+ * - 累计内容的 UTF-8 字节数达到上限立即输出（生成内容以中文为主，每个字符占 3 个字节，按字符数计会超出预期大小）
+ * - 工具调用等其他消息到达时先输出已累计内容，再原样透传
+ * - 流结束（完成或失败）时输出剩余内容
+ */
+@Slf4j
+@Component
+public class StreamMessageCoalescer {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 合并时间窗口（毫秒），小于等于 0 时不合并
+     */
+    @Value("${code.sse.coalesce.window-ms:30}")
+    private long windowMillis;
+
+    /**
+     * 单条合并消息的最大 UTF-8 字节数
+     */
+    @Value("${code.sse.coalesce.max-bytes:2048}")
+    private int maxBytes;
+
+    private final Scheduler scheduler = Schedulers.parallel();
+
+    private Counter sourceChunkCounter;
+
+    private Counter coalescedChunkCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        sourceChunkCounter = Counter.builder("ai_sse_source_chunks_total")
+                .description("合并前的 AI 响应片段数")
+                .register(meterRegistry);
+        coalescedChunkCounter = Counter.builder("ai_sse_coalesced_chunks_total")
+                .description("合并后输出的 AI 响应消息数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 合并流式消息
+     *
+     * @param source 原始消息流
+     * @return 合并后的消息流，消息顺序与原始流一致
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> source) {
+        if (windowMillis <= 0) {
+            return source;
+        }
+        return Flux.create(sink -> {
+            CoalescingState state = new CoalescingState(sink);
+            Disposable subscription = source.subscribe(state::onNext, state::onError, state::onComplete);
+            // 下游取消时同时取消上游订阅
+            sink.onDispose(() -> {
+                subscription.dispose();
+                state.cancelTimer();
+            });
+        });
+    }
+
+    /**
+     * 单个流的合并状态，上游回调与定时输出在不同线程，统一加锁保证顺序
+     */
+    private class CoalescingState {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * 累计内容的 UTF-8 字节数
+         */
+        private int pendingBytes;
+
+        private Disposable flushTimer;
+
+        private CoalescingState(FluxSink<StreamMessage> sink) {
+            this.sink = sink;
+        }
+
+        private synchronized void onNext(StreamMessage streamMessage) {
+            if (streamMessage instanceof AiResponseMessage aiMessage) {
+                String data = aiMessage.getData();
+                if (data == null || data.isEmpty()) {
+                    return;
+                }
+                sourceChunkCounter.increment();
+                pending.append(data);
+                pendingBytes += utf8Length(data);
+                if (pendingBytes >= maxBytes) {
+                    flush();
+                } else if (flushTimer == null) {
+                    flushTimer = scheduler.schedule(this::onTimer, windowMillis, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            // 工具调用等消息立即输出，保证前端及时展示
+            flush();
+            sink.next(streamMessage);
+        }
+
+        private synchronized void onTimer() {
+            flushTimer = null;
+            flush();
+        }
+
+        private synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        private synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        private synchronized void cancelTimer() {
+            if (flushTimer != null) {
+                flushTimer.dispose();
+                flushTimer = null;
+            }
+            pending.setLength(0);
+            pendingBytes = 0;
+        }
+
+        private void flush() {
+            if (flushTimer != null) {
+                flushTimer.dispose();
+                flushTimer = null;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            coalescedChunkCounter.increment();
+            sink.next(new AiResponseMessage(pending.toString()));
+            pending.setLength(0);
+            pendingBytes = 0;
+        }
+    }
+
+    /**
+     * 计算字符串的 UTF-8 编码字节数，不做实际编码
+     */
+    private static int utf8Length(String text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,237 @@
+package com.hz.aicodelessappbuilder.core.parser;
+
+/**
+ * 流式代码块解析器
+ * 按到达顺序增量识别 ```html / ```css / ```js 等代码围栏，只保留跨块所需的少量状态，
+ * 不缓存也不回扫完整响应。代码块内容的首尾空白会被去除（与 String.trim 相同的空白定义），与正则解析器 trim 后的结果保持一致。
+ */
+public class StreamingCodeParser {
+
+    private static final char FENCE_CHAR = '`';
+
+    private static final int FENCE_LENGTH = 3;
+
+    /**
+     * 围栏语言标识的最大长度，超出后不再收集
+     */
+    private static final int MAX_LANGUAGE_LENGTH = 32;
+
+    private enum State {
+        /**
+         * 代码块外的普通文本
+         */
+        TEXT,
+        /**
+         * 开始围栏后的语言标识
+         */
+        LANGUAGE,
+        /**
+         * 代码块内容
+         */
+        CODE
+    }
+
+    private final CodeBlockHandler handler;
+
+    private final StringBuilder language = new StringBuilder();
+
+    /**
+     * 代码块内暂存的尾部空白，遇到后续非空白内容时才输出
+     */
+    private final StringBuilder pendingWhitespace = new StringBuilder();
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号数量（可能跨越多个片段）
+     */
+    private int pendingFenceChars;
+
+    /**
+     * 当前代码块是否由处理器接收
+     */
+    private boolean accepted;
+
+    /**
+     * 当前代码块是否已输出过非空白内容
+     */
+    private boolean codeStarted;
+
+    public StreamingCodeParser(CodeBlockHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 输入一个流式片段
+     *
+     * @param chunk 片段内容
+     */
+    public void feed(CharSequence chunk) {
+        if (chunk == null) {
+            return;
+        }
+        int length = chunk.length();
+        // 当前待输出区间的起点
+        int segmentStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chunk.charAt(i);
+            if (state == State.LANGUAGE) {
+                if (c == '\n') {
+                    openBlock();
+                    segmentStart = i + 1;
+                } else if (language.length() < MAX_LANGUAGE_LENGTH) {
+                    language.append(c);
+                }
+                continue;
+            }
+            if (c == FENCE_CHAR) {
+                if (pendingFenceChars == 0) {
+                    emit(chunk, segmentStart, i);
+                }
+                pendingFenceChars++;
+                if (pendingFenceChars == FENCE_LENGTH) {
+                    pendingFenceChars = 0;
+                    if (state == State.CODE) {
+                        closeBlock();
+                    } else {
+                        state = State.LANGUAGE;
+                        language.setLength(0);
+                    }
+                }
+                segmentStart = i + 1;
+                continue;
+            }
+            if (pendingFenceChars > 0) {
+                // 不足三个的反引号属于普通内容
+                emitFenceChars();
+                segmentStart = i;
+            }
+        }
+        if (state != State.LANGUAGE && pendingFenceChars == 0) {
+            emit(chunk, segmentStart, length);
+        }
+    }
+
+    /**
+     * 输入结束，未闭合的代码块交给处理器的 onBlockUnclosed
+     */
+    public void finish() {
+        if (pendingFenceChars > 0 && state != State.LANGUAGE) {
+            emitFenceChars();
+        }
+        if (state == State.CODE) {
+            if (accepted) {
+                handler.onBlockUnclosed();
+            }
+            state = State.TEXT;
+            accepted = false;
+        }
+    }
+
+    private void openBlock() {
+        state = State.CODE;
+        codeStarted = false;
+        pendingWhitespace.setLength(0);
+        accepted = handler.onBlockStart(language.toString().trim().toLowerCase());
+    }
+
+    private void closeBlock() {
+        if (accepted) {
+            handler.onBlockEnd();
+        }
+        state = State.TEXT;
+        accepted = false;
+    }
+
+    private void emitFenceChars() {
+        String fenceChars = String.valueOf(FENCE_CHAR).repeat(pendingFenceChars);
+        pendingFenceChars = 0;
+        emit(fenceChars, 0, fenceChars.length());
+    }
+
+    /**
+     * 输出 [start, end) 区间的内容
+     */
+    private void emit(CharSequence seq, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (state == State.TEXT) {
+            handler.onText(seq.subSequence(start, end));
+            return;
+        }
+        if (!accepted) {
+            return;
+        }
+        int lastContent = end - 1;
+        while (lastContent >= start && isTrimmable(seq.charAt(lastContent))) {
+            lastContent--;
+        }
+        if (lastContent < start) {
+            // 全部是空白：开头的空白直接丢弃，中间的空白先暂存
+            if (codeStarted) {
+                pendingWhitespace.append(seq, start, end);
+            }
+            return;
+        }
+        if (!codeStarted) {
+            while (isTrimmable(seq.charAt(start))) {
+                start++;
+            }
+            codeStarted = true;
+        } else if (!pendingWhitespace.isEmpty()) {
+            handler.onCode(pendingWhitespace);
+            pendingWhitespace.setLength(0);
+        }
+        handler.onCode(seq.subSequence(start, lastContent + 1));
+        pendingWhitespace.append(seq, lastContent + 1, end);
+    }
+
+    /**
+     * 与 String.trim 去除的字符一致
+     */
+    private static boolean isTrimmable(char c) {
+        return c <= ' ';
+    }
+
+    /**
+     * 代码块事件处理器
+     */
+    public interface CodeBlockHandler {
+
+        /**
+         * 代码块开始
+         *
+         * @param language 围栏语言标识（小写）
+         * @return 是否接收该代码块的内容
+         */
+        boolean onBlockStart(String language);
+
+        /**
+         * 代码块内容片段（仅对已接收的代码块回调）
+         *
+         * @param code 代码片段，回调返回后不应继续持有
+         */
+        void onCode(CharSequence code);
+
+        /**
+         * 代码块结束（仅对已接收的代码块回调）
+         */
+        void onBlockEnd();
+
+        /**
+         * 输入结束时代码块仍未闭合（仅对已接收的代码块回调），默认按已接收内容结束
+         */
+        default void onBlockUnclosed() {
+            onBlockEnd();
+        }
+
+        /**
+         * 代码块之外的普通文本
+         *
+         * @param text 文本片段
+         */
+        default void onText(CharSequence text) {
+        }
+    }
+}
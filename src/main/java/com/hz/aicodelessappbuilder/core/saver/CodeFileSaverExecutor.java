@@ -2,6 +2,7 @@ package com.hz.aicodelessappbuilder.core.saver;
 
 import com.hz.aicodelessappbuilder.ai.model.HtmlCodeResult;
 import com.hz.aicodelessappbuilder.ai.model.MultiFileCodeResult;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
@@ -33,5 +34,22 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 创建流式代码保存器
+     *
+     * @param codeGenType 代码生成类型
+     * @param appId          应用 ID
+     * @param responseBuffer 本次生成共享的响应缓冲区
+     * @return 流式保存器
+     */
+    public static StreamingCodeFileSaver openStreamingSaver(CodeGenTypeEnum codeGenType, Long appId,
+                                                            ResponseBuffer responseBuffer) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.openStreamingSaver(appId, responseBuffer);
+            case MULTI_FILE -> multiFileCodeFileSaver.openStreamingSaver(appId, responseBuffer);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
 
@@ -4,6 +4,7 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
@@ -39,6 +40,18 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 创建流式保存器，在流式输出过程中边解析边写入文件
+     *
+     * @param appId          应用 ID
+     * @param responseBuffer 本次生成共享的响应缓冲区
+     * @return 流式保存器
+     */
+    public final StreamingCodeFileSaver openStreamingSaver(Long appId, ResponseBuffer responseBuffer) {
+        String baseDirPath = buildSavePath(appId);
+        return new StreamingCodeFileSaver(baseDirPath, this::resolveFileName, getFallbackFileName(), responseBuffer);
+    }
+
     /**
      * 构建保存路径
      *
@@ -74,7 +87,22 @@ public abstract class CodeFileSaverTemplate<T> {
         }
     }
 
+    /**
+     * 未解析到任何代码块时，用于保存完整内容的文件名，为空表示不兜底
+     */
+    protected String getFallbackFileName() {
+        return null;
+    }
+
     protected abstract CodeGenTypeEnum getCodeType();
 
+    /**
+     * 根据代码块语言获取流式保存的文件名
+     *
+     * @param language 代码块语言标识（小写）
+     * @return 文件名，不需要保存时返回 null
+     */
+    protected abstract String resolveFileName(String language);
+
     protected abstract void saveFiles(T result, String baseDirPath);
 }
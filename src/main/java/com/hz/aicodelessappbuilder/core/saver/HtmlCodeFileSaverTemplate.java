@@ -3,8 +3,6 @@ package com.hz.aicodelessappbuilder.core.saver;
 import com.hz.aicodelessappbuilder.ai.model.HtmlCodeResult;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
 
-import java.io.File;
-
 public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeResult> {
 
 
@@ -13,6 +11,16 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         return CodeGenTypeEnum.HTML;
     }
 
+    @Override
+    protected String resolveFileName(String language) {
+        return "html".equals(language) ? "index.html" : null;
+    }
+
+    @Override
+    protected String getFallbackFileName() {
+        return "index.html";
+    }
+
     @Override
     protected void saveFiles(HtmlCodeResult result, String baseDirPath) {
         writeToFile(baseDirPath, "index.html", result.getHtmlCode());
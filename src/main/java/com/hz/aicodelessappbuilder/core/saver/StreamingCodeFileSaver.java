@@ -0,0 +1,260 @@
+package com.hz.aicodelessappbuilder.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
+import com.hz.aicodelessappbuilder.core.parser.StreamingCodeParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 流式代码文件保存器
+ * 在流式输出过程中边解析代码块边写入文件，每个文件在代码块结束时即可预览，无需等待整个响应结束。
+ * 代码块内容先写入同目录的临时文件，结束围栏到达后再重命名为目标文件；取消、失败或未闭合的代码块只删除临时文件，
+ * 上一次生成的页面保持可用。文件选取规则与正则解析器一致：每种文件只取第一个代码块，内容为空或没有结束围栏时不保存。
+ * 由 {@link CodeFileSaverTemplate#openStreamingSaver(Long, ResponseBuffer)} 创建，同一个实例只能用于一次生成。
+ */
+@Slf4j
+public class StreamingCodeFileSaver implements StreamingCodeParser.CodeBlockHandler {
+
+    private final String baseDirPath;
+
+    private final Function<String, String> fileNameResolver;
+
+    private final String fallbackFileName;
+
+    /**
+     * 本次生成共享的响应缓冲区，仅在需要兜底保存完整内容时读取
+     */
+    private final ResponseBuffer responseBuffer;
+
+    private final StreamingCodeParser parser = new StreamingCodeParser(this);
+
+    /**
+     * 已出现过代码块的文件（每种文件只取第一个代码块，与正则解析保持一致）
+     */
+    private final Set<String> seenFileNames = new HashSet<>();
+
+    /**
+     * 已写入目标文件的文件
+     */
+    private final Set<String> savedFileNames = new HashSet<>();
+
+    private Writer currentWriter;
+
+    private Path currentTempFile;
+
+    private String currentFileName;
+
+    /**
+     * 当前代码块是否有非空内容
+     */
+    private boolean currentHasCode;
+
+    private boolean failed;
+
+    StreamingCodeFileSaver(String baseDirPath, Function<String, String> fileNameResolver,
+                           String fallbackFileName, ResponseBuffer responseBuffer) {
+        this.baseDirPath = baseDirPath;
+        this.fileNameResolver = fileNameResolver;
+        this.fallbackFileName = fallbackFileName;
+        this.responseBuffer = responseBuffer;
+    }
+
+    /**
+     * 追加一个流式片段
+     *
+     * @param chunk 片段内容
+     */
+    public void append(String chunk) {
+        if (failed) {
+            return;
+        }
+        try {
+            parser.feed(chunk);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 流式输出完成，丢弃未闭合的代码块并按需写入兜底文件
+     *
+     * @return 保存目录
+     */
+    public File complete() {
+        if (!failed) {
+            try {
+                parser.finish();
+                if (savedFileNames.isEmpty() && fallbackFileName != null) {
+                    saveFallbackFile();
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+        close();
+        return new File(baseDirPath);
+    }
+
+    /**
+     * 释放文件句柄并删除未完成代码块的临时文件，可重复调用
+     */
+    public void close() {
+        // 以临时文件判断：写入器已关闭但重命名失败时，临时文件仍需删除
+        if (currentTempFile == null) {
+            return;
+        }
+        IoUtil.close(currentWriter);
+        currentWriter = null;
+        FileUtil.del(currentTempFile);
+        currentTempFile = null;
+        currentFileName = null;
+    }
+
+    @Override
+    public boolean onBlockStart(String language) {
+        String fileName = fileNameResolver.apply(language);
+        if (fileName == null || !seenFileNames.add(fileName)) {
+            return false;
+        }
+        try {
+            currentTempFile = Files.createTempFile(Paths.get(baseDirPath), "." + fileName + ".", ".tmp");
+            currentWriter = Files.newBufferedWriter(currentTempFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            FileUtil.del(currentTempFile);
+            currentTempFile = null;
+            throw new IllegalStateException("打开文件失败: " + fileName, e);
+        }
+        currentFileName = fileName;
+        currentHasCode = false;
+        return true;
+    }
+
+    @Override
+    public void onCode(CharSequence code) {
+        try {
+            currentWriter.append(code);
+            currentHasCode = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("写入文件失败: " + currentFileName, e);
+        }
+    }
+
+    @Override
+    public void onBlockEnd() {
+        if (!currentHasCode) {
+            // 空代码块不覆盖已有文件，与正则解析一致
+            close();
+            return;
+        }
+        String fileName = currentFileName;
+        try {
+            currentWriter.close();
+            currentWriter = null;
+            Files.move(currentTempFile, Paths.get(baseDirPath, fileName),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            close();
+            throw new IllegalStateException("保存文件失败: " + fileName, e);
+        }
+        currentTempFile = null;
+        currentFileName = null;
+        savedFileNames.add(fileName);
+        log.info("流式写入文件完成: {}", baseDirPath + File.separator + fileName);
+    }
+
+    @Override
+    public void onBlockUnclosed() {
+        // 没有结束围栏的代码块（例如输出被截断）不保存，与正则解析一致
+        close();
+    }
+
+    /**
+     * 没有保存任何代码块（没有代码块或代码块为空），将完整响应作为兜底文件
+     */
+    private void saveFallbackFile() throws IOException {
+        Path tempFile = Files.createTempFile(Paths.get(baseDirPath), "." + fallbackFileName + ".", ".tmp");
+        try {
+            // 从响应缓冲区流式写入（去除首尾空白），长响应不整体读回内存
+            TrimmingWriter writer = new TrimmingWriter(Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8));
+            try (writer) {
+                responseBuffer.transferTo(writer);
+            }
+            if (!writer.hasContent()) {
+                return;
+            }
+            Files.move(tempFile, Paths.get(baseDirPath, fallbackFileName),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtil.del(tempFile);
+        }
+        savedFileNames.add(fallbackFileName);
+    }
+
+    private void fail(Exception e) {
+        failed = true;
+        close();
+        log.error("保存失败: {}", e.getMessage());
+    }
+
+    /**
+     * 去除首尾空白（与 String.trim 相同的空白定义）的 Writer：开头的空白丢弃，中间的空白遇到后续内容时才写出
+     */
+    private static class TrimmingWriter extends Writer {
+
+        private final Writer delegate;
+
+        private final StringBuilder pendingWhitespace = new StringBuilder();
+
+        private boolean started;
+
+        private TrimmingWriter(Writer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                char c = buffer[i];
+                if (c <= ' ') {
+                    if (started) {
+                        pendingWhitespace.append(c);
+                    }
+                    continue;
+                }
+                if (!pendingWhitespace.isEmpty()) {
+                    delegate.append(pendingWhitespace);
+                    pendingWhitespace.setLength(0);
+                }
+                started = true;
+                delegate.write(c);
+            }
+        }
+
+        private boolean hasContent() {
+            return started;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
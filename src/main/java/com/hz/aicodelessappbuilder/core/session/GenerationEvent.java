@@ -0,0 +1,43 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 生成会话事件
+ * 回放日志中的一条记录，id 在会话内单调递增，作为 SSE 的事件 ID 供客户端断线续传
+ */
+@Getter
+@AllArgsConstructor
+public class GenerationEvent {
+
+    /**
+     * 普通内容事件的事件名
+     */
+    public static final String EVENT_MESSAGE = "message";
+
+    /**
+     * 生成结束事件的事件名
+     */
+    public static final String EVENT_DONE = "done";
+
+    /**
+     * 排队位置事件的事件名，内容为从 1 开始的排队位置
+     */
+    public static final String EVENT_QUEUE = "queue";
+
+    /**
+     * 事件 ID（从 1 开始）
+     */
+    private final long id;
+
+    /**
+     * 事件名
+     */
+    private final String event;
+
+    /**
+     * 事件内容
+     */
+    private final String data;
+}
@@ -0,0 +1,67 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+import reactor.core.Disposable;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 应用生成租约
+ * 持有期间同一应用的其他生成请求（包括其他节点）需要排队；租约定期续期，节点宕机时到期自动释放。
+ * 由 {@link GenerationLeaseManager} 获取，生成结束（完成、失败或取消）时必须调用 {@link #release()}，
+ * 生成之后还有异步处理（如项目构建）时改用 {@link #releaseAfter(CompletionStage)} 延后释放。
+ */
+@Slf4j
+public class GenerationLease {
+
+    @Getter
+    private final long appId;
+
+    private final RPermitExpirableSemaphore semaphore;
+
+    private final String permitId;
+
+    private final Disposable renewTask;
+
+    private final Runnable releaseListener;
+
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    GenerationLease(long appId, RPermitExpirableSemaphore semaphore, String permitId,
+                    Disposable renewTask, Runnable releaseListener) {
+        this.appId = appId;
+        this.semaphore = semaphore;
+        this.permitId = permitId;
+        this.renewTask = renewTask;
+        this.releaseListener = releaseListener;
+    }
+
+    /**
+     * 在指定的异步处理结束（成功或失败）后释放租约
+     *
+     * @param stage 异步处理
+     */
+    public void releaseAfter(CompletionStage<?> stage) {
+        stage.whenComplete((result, error) -> release());
+    }
+
+    /**
+     * 释放租约，可重复调用
+     */
+    public void release() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        renewTask.dispose();
+        try {
+            semaphore.tryRelease(permitId);
+        } catch (Exception e) {
+            // 释放失败时等待租约到期自动释放
+            log.warn("释放生成租约失败, appId: {}, error: {}", appId, e.getMessage());
+        }
+        releaseListener.run();
+    }
+}
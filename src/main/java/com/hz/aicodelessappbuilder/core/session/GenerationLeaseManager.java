@@ -0,0 +1,158 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 应用生成租约管理器
+ * 基于 Redisson 的可过期信号量（单许可）实现跨节点的单应用单生成：
+ * 同一应用的对话记忆和代码目录只允许一个生成在写，后到的请求异步排队等待租约释放。
+ * 与线程绑定的分布式锁不同，许可可以在生成结束的任意线程上释放，也可以延后到生成之后的项目构建结束再释放。
+ * 指标：
+ * - ai_generation_lease_held：本节点持有的租约数
+ * - ai_generation_lease_wait_seconds：获取租约的等待时间
+ * - ai_generation_lease_contention_total：获取时租约已被占用的次数
+ * - ai_generation_lease_timeout_total：排队超时的次数
+ */
+@Slf4j
+@Component
+public class GenerationLeaseManager {
+
+    private static final String LEASE_KEY_PREFIX = "generation_lease:";
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 租约时长（秒），持有期间每隔三分之一时长续期一次
+     */
+    @Value("${code.generation-lease.lease-seconds:120}")
+    private long leaseSeconds;
+
+    /**
+     * 排队等待租约的最长时间（秒），租约覆盖生成之后的项目构建，应大于构建耗时
+     */
+    @Value("${code.generation-lease.wait-seconds:600}")
+    private long waitSeconds;
+
+    private final AtomicInteger heldCount = new AtomicInteger();
+
+    private Timer waitTimer;
+
+    private Counter contentionCounter;
+
+    private Counter timeoutCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_generation_lease_held", heldCount, AtomicInteger::get)
+                .description("本节点持有的生成租约数")
+                .register(meterRegistry);
+        waitTimer = Timer.builder("ai_generation_lease_wait_seconds")
+                .description("获取生成租约的等待时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        contentionCounter = Counter.builder("ai_generation_lease_contention_total")
+                .description("获取时生成租约已被占用的次数")
+                .register(meterRegistry);
+        timeoutCounter = Counter.builder("ai_generation_lease_timeout_total")
+                .description("等待生成租约超时的次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 异步获取应用的生成租约，已被占用时排队等待
+     * 等待期间不占用线程；取消订阅后才拿到的许可会立即归还
+     *
+     * @param appId 应用ID
+     * @return 生成租约，排队超时时以 TOO_MANY_REQUEST 错误结束
+     */
+    public Mono<GenerationLease> acquire(long appId) {
+        return Mono.create(sink -> {
+            RPermitExpirableSemaphore semaphore = redissonClient.getPermitExpirableSemaphore(LEASE_KEY_PREFIX + appId);
+            long startNanos = System.nanoTime();
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            AtomicReference<GenerationLease> acquiredLease = new AtomicReference<>();
+            sink.onCancel(() -> {
+                cancelled.set(true);
+                GenerationLease lease = acquiredLease.get();
+                if (lease != null) {
+                    lease.release();
+                }
+            });
+            semaphore.trySetPermitsAsync(1)
+                    .thenCompose(ignored -> semaphore.tryAcquireAsync(0, leaseSeconds, TimeUnit.SECONDS))
+                    .thenCompose(permitId -> {
+                        if (permitId != null) {
+                            return CompletableFuture.completedFuture(permitId);
+                        }
+                        contentionCounter.increment();
+                        log.info("应用正在生成中，排队等待, appId: {}", appId);
+                        return semaphore.tryAcquireAsync(waitSeconds, leaseSeconds, TimeUnit.SECONDS);
+                    })
+                    .whenComplete((permitId, error) -> {
+                        waitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                        if (error != null) {
+                            log.error("获取生成租约失败, appId: {}, error: {}", appId, error.getMessage());
+                            sink.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "获取生成租约失败"));
+                            return;
+                        }
+                        if (permitId == null) {
+                            timeoutCounter.increment();
+                            sink.error(new BusinessException(ErrorCode.TOO_MANY_REQUEST, "该应用正在生成中，请稍后再试"));
+                            return;
+                        }
+                        GenerationLease lease = createLease(appId, semaphore, permitId);
+                        acquiredLease.set(lease);
+                        if (cancelled.get()) {
+                            // 排队期间已取消，拿到的许可直接归还
+                            lease.release();
+                            return;
+                        }
+                        sink.success(lease);
+                    });
+        });
+    }
+
+    private GenerationLease createLease(long appId, RPermitExpirableSemaphore semaphore, String permitId) {
+        long renewIntervalSeconds = Math.max(1, leaseSeconds / 3);
+        Disposable renewTask = Schedulers.parallel().schedulePeriodically(
+                () -> renew(semaphore, permitId, appId),
+                renewIntervalSeconds, renewIntervalSeconds, TimeUnit.SECONDS);
+        heldCount.incrementAndGet();
+        return new GenerationLease(appId, semaphore, permitId, renewTask, heldCount::decrementAndGet);
+    }
+
+    private void renew(RPermitExpirableSemaphore semaphore, String permitId, long appId) {
+        try {
+            if (!semaphore.updateLeaseTime(permitId, leaseSeconds, TimeUnit.SECONDS)) {
+                log.warn("生成租约已失效, appId: {}", appId);
+            }
+        } catch (Exception e) {
+            log.warn("生成租约续期失败, appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+}
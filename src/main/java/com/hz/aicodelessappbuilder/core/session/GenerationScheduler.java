@@ -0,0 +1,251 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * 代码生成调度器
+ * 限制同时进行的生成数，避免突发请求占满模型连接：
+ * - 全局并发上限和单用户并发上限，超出的生成进入有界等待队列，队列满时直接拒绝
+ * - 名额空出时按入队顺序放行，受单用户上限限制的请求不阻塞其他用户
+ * - 排队位置变化时回调通知，由生成会话转为排队事件推送给客户端
+ * - 获得名额的生成在虚拟线程上启动，名额一直占用到生成流结束（包含工具调用循环）
+ * 指标：
+ * - ai_generation_running / ai_generation_waiting：执行中 / 排队中的生成数
+ * - ai_generation_saturation：执行中的生成数占全局上限的比例
+ * - ai_generation_queue_wait_seconds：排队等待时间
+ * - ai_generation_rejected_total：队列满被拒绝的生成数
+ */
+@Slf4j
+@Component
+public class GenerationScheduler {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 全局同时进行的生成数上限
+     */
+    @Value("${code.generation-scheduler.max-concurrent:32}")
+    private int maxConcurrent;
+
+    /**
+     * 单个用户同时进行的生成数上限
+     */
+    @Value("${code.generation-scheduler.max-per-user:2}")
+    private int maxPerUser;
+
+    /**
+     * 等待队列容量
+     */
+    @Value("${code.generation-scheduler.queue-capacity:200}")
+    private int queueCapacity;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 以下状态统一由 this 加锁保护
+     */
+    private final LinkedList<PendingGeneration> waiting = new LinkedList<>();
+
+    private final Set<GenerationTicket> running = new HashSet<>();
+
+    private final Map<Long, Integer> runningByUser = new HashMap<>();
+
+    private Timer queueWaitTimer;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_generation_running", this, GenerationScheduler::getRunningCount)
+                .description("执行中的生成数")
+                .register(meterRegistry);
+        Gauge.builder("ai_generation_waiting", this, GenerationScheduler::getWaitingCount)
+                .description("排队中的生成数")
+                .register(meterRegistry);
+        Gauge.builder("ai_generation_saturation", this, scheduler -> (double) scheduler.getRunningCount() / maxConcurrent)
+                .description("执行中的生成数占全局上限的比例")
+                .register(meterRegistry);
+        queueWaitTimer = Timer.builder("ai_generation_queue_wait_seconds")
+                .description("生成排队等待时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("ai_generation_rejected_total")
+                .description("等待队列已满被拒绝的生成数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交生成
+     *
+     * @param userId           用户ID
+     * @param positionListener 排队位置变化的回调（从 1 开始），直接获得名额时不会回调
+     * @param task             获得名额后在虚拟线程上执行，参数为本次的调度凭证，生成结束时须释放
+     * @return 调度凭证
+     */
+    public GenerationTicket submit(long userId, IntConsumer positionListener, Consumer<GenerationTicket> task) {
+        GenerationTicket ticket = new GenerationTicket(this, userId, positionListener);
+        List<PendingGeneration> dispatched;
+        synchronized (this) {
+            if (waiting.size() >= queueCapacity) {
+                rejectedCounter.increment();
+                log.warn("生成等待队列已满, userId: {}, running: {}, waiting: {}", userId, running.size(), waiting.size());
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "当前生成请求过多，请稍后再试");
+            }
+            waiting.add(new PendingGeneration(ticket, task));
+            dispatched = dispatch();
+        }
+        start(dispatched);
+        notifyPositions();
+        return ticket;
+    }
+
+    /**
+     * 取消排队中的生成
+     *
+     * @return 是否从等待队列中移除
+     */
+    boolean cancel(GenerationTicket ticket) {
+        boolean removed;
+        synchronized (this) {
+            removed = waiting.removeIf(pending -> pending.getTicket() == ticket);
+        }
+        if (removed) {
+            notifyPositions();
+        }
+        return removed;
+    }
+
+    /**
+     * 归还名额并放行排队中的生成
+     */
+    void release(GenerationTicket ticket) {
+        List<PendingGeneration> dispatched;
+        synchronized (this) {
+            if (running.remove(ticket)) {
+                runningByUser.computeIfPresent(ticket.getUserId(), (userId, count) -> count > 1 ? count - 1 : null);
+            } else {
+                waiting.removeIf(pending -> pending.getTicket() == ticket);
+            }
+            dispatched = dispatch();
+        }
+        start(dispatched);
+        notifyPositions();
+    }
+
+    private synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    private synchronized int getWaitingCount() {
+        return waiting.size();
+    }
+
+    /**
+     * 按入队顺序取出可以执行的生成（调用方持有锁）
+     */
+    private List<PendingGeneration> dispatch() {
+        List<PendingGeneration> dispatched = new ArrayList<>();
+        Iterator<PendingGeneration> iterator = waiting.iterator();
+        while (running.size() < maxConcurrent && iterator.hasNext()) {
+            PendingGeneration pending = iterator.next();
+            long userId = pending.getTicket().getUserId();
+            if (runningByUser.getOrDefault(userId, 0) >= maxPerUser) {
+                // 该用户名额已满，后面其他用户的请求可以先执行
+                continue;
+            }
+            iterator.remove();
+            running.add(pending.getTicket());
+            runningByUser.merge(userId, 1, Integer::sum);
+            dispatched.add(pending);
+        }
+        return dispatched;
+    }
+
+    private void start(List<PendingGeneration> dispatched) {
+        for (PendingGeneration pending : dispatched) {
+            GenerationTicket ticket = pending.getTicket();
+            queueWaitTimer.record(Duration.ofNanos(System.nanoTime() - ticket.getEnqueueNanos()));
+            executor.execute(() -> {
+                try {
+                    pending.getTask().accept(ticket);
+                } catch (Exception e) {
+                    log.error("生成任务启动失败, userId: {}", ticket.getUserId(), e);
+                    ticket.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * 通知排队位置发生变化的生成（在锁外回调，避免与会话锁嵌套）
+     */
+    private void notifyPositions() {
+        List<GenerationTicket> changed = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        synchronized (this) {
+            int position = 0;
+            for (PendingGeneration pending : waiting) {
+                position++;
+                if (pending.getTicket().lastPosition != position) {
+                    pending.getTicket().lastPosition = position;
+                    changed.add(pending.getTicket());
+                    positions.add(position);
+                }
+            }
+        }
+        for (int i = 0; i < changed.size(); i++) {
+            changed.get(i).notifyPosition(positions.get(i));
+        }
+    }
+
+    /**
+     * 排队中的生成
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class PendingGeneration {
+
+        /**
+         * 调度凭证
+         */
+        private final GenerationTicket ticket;
+
+        /**
+         * 获得名额后执行的任务
+         */
+        private final Consumer<GenerationTicket> task;
+    }
+}
@@ -0,0 +1,231 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+
+/**
+ * 生成会话
+ * 一次代码生成在服务端独立运行，不依赖 HTTP 连接；产生的事件写入有界回放日志，
+ * 客户端断线后可凭最后收到的事件 ID 重新连接，先回放缺失的事件再接收实时事件；
+ * 所有客户端断开且超时未重连时取消生成，避免无人接收的生成继续消耗 Token。
+ * 由 {@link GenerationSessionManager} 创建和管理。
+ */
+@Slf4j
+public class GenerationSession {
+
+    /**
+     * 会话ID，同一应用排队中和进行中的会话各自独立
+     */
+    @Getter
+    private final long sessionId;
+
+    @Getter
+    private final long appId;
+
+    @Getter
+    private final long userId;
+
+    /**
+     * 触发本次生成的用户消息
+     */
+    @Getter
+    private final String message;
+
+    private final int replayCapacity;
+
+    /**
+     * 有界回放日志：保留最近的事件，新订阅者先收到保留的事件再接收实时事件
+     */
+    private final Sinks.Many<GenerationEvent> replaySink;
+
+    private long lastEventId;
+
+    /**
+     * 当前连接的客户端数
+     */
+    private int subscriberCount;
+
+    /**
+     * 累计连接次数，用于判断断开后是否有客户端重连过
+     */
+    private long attachCount;
+
+    /**
+     * 生成流的订阅，取消时释放
+     */
+    private Disposable upstream;
+
+    /**
+     * 所有客户端断开时的回调（启动超时取消）
+     */
+    private Runnable detachedListener;
+
+    @Getter
+    private volatile boolean finished;
+
+    GenerationSession(long sessionId, long appId, long userId, String message, int replayCapacity) {
+        this.sessionId = sessionId;
+        this.appId = appId;
+        this.userId = userId;
+        this.message = message;
+        this.replayCapacity = replayCapacity;
+        this.replaySink = Sinks.many().replay().limit(replayCapacity);
+    }
+
+    /**
+     * 连接会话
+     *
+     * @param lastEventId 客户端最后收到的事件 ID，首次连接传 0
+     * @return 缺失的事件加上后续实时事件
+     */
+    public Flux<GenerationEvent> attach(long lastEventId) {
+        return Flux.from(subscriber -> {
+            // 检查与订阅回放日志在同一把锁内完成（追加事件也持有这把锁），检查通过后缺失的事件不会再被淘汰
+            synchronized (this) {
+                if (lastEventId + 1 < getOldestRetainedId()) {
+                    // 缺失的事件已被淘汰，无法完整回放
+                    Operators.error(subscriber, new BusinessException(ErrorCode.OPERATION_ERROR, "生成内容已过期，请刷新页面"));
+                    return;
+                }
+                subscriberCount++;
+                attachCount++;
+                replaySink.asFlux()
+                        .filter(event -> event.getId() > lastEventId)
+                        .doFinally(signalType -> onSubscriberDetached())
+                        .subscribe(subscriber);
+            }
+        });
+    }
+
+    /**
+     * 是否没有客户端连接
+     */
+    public synchronized boolean isDetached() {
+        return subscriberCount == 0;
+    }
+
+    synchronized long getAttachCount() {
+        return attachCount;
+    }
+
+    /**
+     * 绑定生成流的订阅，会话已取消时立即释放
+     */
+    void bind(Disposable upstream, Runnable detachedListener) {
+        synchronized (this) {
+            this.detachedListener = detachedListener;
+            if (!finished) {
+                this.upstream = upstream;
+                return;
+            }
+        }
+        upstream.dispose();
+    }
+
+    /**
+     * 绑定排队期间的取消操作，生成流已绑定时忽略
+     */
+    void bindPending(Disposable pending, Runnable detachedListener) {
+        synchronized (this) {
+            if (upstream != null) {
+                return;
+            }
+            this.detachedListener = detachedListener;
+            if (!finished) {
+                this.upstream = pending;
+                return;
+            }
+        }
+        pending.dispose();
+    }
+
+    /**
+     * 取消生成，取消信号沿生成流向上传递到模型请求
+     */
+    void cancel() {
+        Disposable toDispose;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            toDispose = upstream;
+            replaySink.tryEmitError(new BusinessException(ErrorCode.OPERATION_ERROR, "生成已取消"));
+        }
+        // 在锁外释放，取消排队会回调其他会话
+        if (toDispose != null) {
+            toDispose.dispose();
+        }
+    }
+
+    /**
+     * 追加排队位置事件
+     */
+    synchronized void queued(int position) {
+        if (finished) {
+            return;
+        }
+        append(GenerationEvent.EVENT_QUEUE, String.valueOf(position));
+    }
+
+    /**
+     * 追加内容事件
+     */
+    synchronized void emit(String data) {
+        if (finished) {
+            return;
+        }
+        append(GenerationEvent.EVENT_MESSAGE, data);
+    }
+
+    /**
+     * 生成完成，追加结束事件
+     */
+    synchronized void complete() {
+        if (finished) {
+            return;
+        }
+        append(GenerationEvent.EVENT_DONE, "");
+        finished = true;
+        replaySink.tryEmitComplete();
+    }
+
+    /**
+     * 生成失败
+     */
+    synchronized void fail(Throwable error) {
+        if (finished) {
+            return;
+        }
+        log.error("生成会话失败, appId: {}, error: {}", appId, error.getMessage());
+        finished = true;
+        replaySink.tryEmitError(error);
+    }
+
+    private void onSubscriberDetached() {
+        Runnable listener;
+        synchronized (this) {
+            subscriberCount--;
+            if (subscriberCount > 0 || finished || detachedListener == null) {
+                return;
+            }
+            listener = detachedListener;
+        }
+        listener.run();
+    }
+
+    private void append(String event, String data) {
+        lastEventId++;
+        replaySink.tryEmitNext(new GenerationEvent(lastEventId, event, data));
+    }
+
+    private synchronized long getOldestRetainedId() {
+        return Math.max(1, lastEventId - replayCapacity + 1);
+    }
+}
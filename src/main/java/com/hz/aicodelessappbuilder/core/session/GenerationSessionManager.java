@@ -0,0 +1,287 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import com.hz.aicodelessappbuilder.monitor.MonitorContext;
+import com.hz.aicodelessappbuilder.monitor.MonitorContextHolder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 生成会话管理器
+ * 生成流由会话自行订阅，HTTP 连接断开不会立即中断生成；所有客户端断开后等待一段时间，仍无人重连才取消生成。
+ * 生成结束后会话再保留一段时间，供断线的客户端取回剩余内容。
+ * 会话按会话ID记录，同一应用排队等待租约的会话不会覆盖进行中的会话。
+ */
+@Slf4j
+@Component
+public class GenerationSessionManager {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private GenerationScheduler generationScheduler;
+
+    @Resource
+    private GenerationLeaseManager generationLeaseManager;
+
+    /**
+     * 单个会话回放日志保留的最大事件数
+     */
+    @Value("${code.generation-session.replay-capacity:4096}")
+    private int replayCapacity;
+
+    /**
+     * 生成结束后会话的保留时间（秒）
+     */
+    @Value("${code.generation-session.retention-seconds:300}")
+    private long retentionSeconds;
+
+    /**
+     * 所有客户端断开后等待重连的时间（秒），超时取消生成
+     */
+    @Value("${code.generation-session.detach-timeout-seconds:30}")
+    private long detachTimeoutSeconds;
+
+    /**
+     * 会话ID -> 会话
+     */
+    private final Map<Long, GenerationSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextSessionId = new AtomicLong();
+
+    private Counter resumeCounter;
+
+    private Counter cancelCounter;
+
+    private Counter attachCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("ai_generation_session_active", sessions, this::countRunning)
+                .description("进行中的生成会话数")
+                .register(meterRegistry);
+        resumeCounter = Counter.builder("ai_generation_session_resume_total")
+                .description("断线后重新连接生成会话的次数")
+                .register(meterRegistry);
+        attachCounter = Counter.builder("ai_generation_session_attach_total")
+                .description("重复提交时直接接入进行中生成的次数")
+                .register(meterRegistry);
+        cancelCounter = Counter.builder("ai_generation_session_cancel_total")
+                .description("客户端断开后超时未重连而取消的生成次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动生成会话
+     * 先异步获取应用的生成租约（同一应用同时只允许一个生成），拿到租约后再经调度器排队，
+     * 等待租约期间不占用调度器的名额；排队期间向客户端推送排队位置。获得名额后在虚拟线程上创建生成流并在服务端订阅，
+     * 生成流结束（完成、失败或取消）时归还名额，租约由生成流负责释放。
+     * 虚拟线程上恢复调用线程的请求属性和监控上下文；获取租约、排队和创建生成流时的异常（参数校验等）不会抛给调用方，
+     * 而是作为会话的错误事件推送给客户端
+     *
+     * @param appId           应用ID
+     * @param userId          用户ID
+     * @param message         用户消息
+     * @param contentSupplier 创建生成内容流，获得名额后调用，参数为已获取的生成租约，生成流结束时须释放
+     * @return 生成会话
+     */
+    public GenerationSession start(long appId, long userId, String message,
+                                   Function<GenerationLease, Flux<String>> contentSupplier) {
+        GenerationSession session = new GenerationSession(nextSessionId.incrementAndGet(), appId, userId, message, replayCapacity);
+        Runnable detachedListener = () -> scheduleDetachCheck(session);
+        // 线程本地的上下文不会带到虚拟线程，在调用线程上取出
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        // 排队期间（等待租约和等待名额）取消会话时释放对应的等待
+        Disposable.Composite pending = Disposables.composite();
+        sessions.put(session.getSessionId(), session);
+        pending.add(generationLeaseManager.acquire(appId).subscribe(
+                lease -> submit(session, lease, pending, contentSupplier, detachedListener, requestAttributes, monitorContext),
+                error -> {
+                    session.fail(error);
+                    scheduleRemoval(session);
+                }));
+        // 已获得名额并绑定生成流的不再覆盖
+        session.bindPending(pending, detachedListener);
+        // 创建时即开始计时：客户端在连接会话之前就断开时不会触发断开回调，超时仍无人连接则取消
+        scheduleDetachCheck(session);
+        return session;
+    }
+
+    /**
+     * 获得租约后提交到调度器排队
+     */
+    private void submit(GenerationSession session, GenerationLease lease, Disposable.Composite pending,
+                        Function<GenerationLease, Flux<String>> contentSupplier, Runnable detachedListener,
+                        RequestAttributes requestAttributes, MonitorContext monitorContext) {
+        GenerationTicket ticket;
+        try {
+            ticket = generationScheduler.submit(session.getUserId(), session::queued, grantedTicket -> {
+                RequestContextHolder.setRequestAttributes(requestAttributes);
+                MonitorContextHolder.setContext(monitorContext);
+                try {
+                    run(session, contentSupplier, lease, grantedTicket, detachedListener);
+                } finally {
+                    // 订阅已在本线程完成，之后的回调在模型线程上执行，不再依赖本线程的上下文
+                    RequestContextHolder.resetRequestAttributes();
+                    MonitorContextHolder.clearContext();
+                }
+            });
+        } catch (RuntimeException e) {
+            // 等待队列已满
+            lease.release();
+            session.fail(e);
+            scheduleRemoval(session);
+            return;
+        }
+        // 仍在等待名额时取消，移出等待队列并归还租约；已获得名额的由 run 归还
+        pending.add(() -> {
+            if (ticket.cancel()) {
+                lease.release();
+            }
+        });
+    }
+
+    /**
+     * 获得名额后创建并订阅生成流
+     */
+    private void run(GenerationSession session, Function<GenerationLease, Flux<String>> contentSupplier,
+                     GenerationLease lease, GenerationTicket ticket, Runnable detachedListener) {
+        if (session.isFinished()) {
+            // 排队期间已取消
+            ticket.release();
+            lease.release();
+            return;
+        }
+        Flux<String> contentFlux;
+        try {
+            contentFlux = contentSupplier.apply(lease);
+        } catch (RuntimeException e) {
+            ticket.release();
+            lease.release();
+            session.fail(e);
+            scheduleRemoval(session);
+            return;
+        }
+        Disposable upstream = contentFlux
+                .doFinally(signalType -> ticket.release())
+                .subscribe(
+                        session::emit,
+                        error -> {
+                            session.fail(error);
+                            scheduleRemoval(session);
+                        },
+                        () -> {
+                            session.complete();
+                            scheduleRemoval(session);
+                        });
+        session.bind(upstream, detachedListener);
+    }
+
+    /**
+     * 获取应用最近一次生成的会话，用于断线重连
+     *
+     * @param appId 应用ID
+     * @return 生成会话，不存在或已过期时返回 null
+     */
+    public GenerationSession getSession(long appId) {
+        return findLatest(session -> session.getAppId() == appId);
+    }
+
+    /**
+     * 获取应用以指定消息发起的最近一次生成的会话，用于浏览器携带 Last-Event-ID 自动重连
+     *
+     * @param appId   应用ID
+     * @param message 用户消息
+     * @return 生成会话，不存在或已过期时返回 null
+     */
+    public GenerationSession getSession(long appId, String message) {
+        return findLatest(session -> session.getAppId() == appId && session.getMessage().equals(message));
+    }
+
+    /**
+     * 断线重连：从指定事件之后继续接收，调用方需先校验会话属于当前用户
+     *
+     * @param session     生成会话
+     * @param lastEventId 客户端最后收到的事件ID
+     * @return 缺失的事件加上后续实时事件
+     */
+    public Flux<GenerationEvent> resume(GenerationSession session, long lastEventId) {
+        resumeCounter.increment();
+        return session.attach(lastEventId);
+    }
+
+    /**
+     * 查找同一用户以相同消息发起、仍在进行中的生成（重复提交时直接接入，不再排队重新生成）
+     *
+     * @param appId   应用ID
+     * @param userId  用户ID
+     * @param message 用户消息
+     * @return 进行中的生成会话，不存在时返回 null
+     */
+    public GenerationSession findRunningSession(long appId, long userId, String message) {
+        GenerationSession session = findLatest(candidate -> candidate.getAppId() == appId && !candidate.isFinished()
+                && candidate.getUserId() == userId && candidate.getMessage().equals(message));
+        if (session != null) {
+            attachCounter.increment();
+        }
+        return session;
+    }
+
+    /**
+     * 会话创建或所有客户端断开后延迟检查，期间无人连接则取消生成
+     */
+    private void scheduleDetachCheck(GenerationSession session) {
+        long attachCount = session.getAttachCount();
+        Schedulers.parallel().schedule(() -> {
+            // 期间有过重连的，由最近一次断开重新计时
+            if (session.getAttachCount() == attachCount && session.isDetached() && !session.isFinished()) {
+                log.info("生成会话超过 {} 秒无客户端连接，取消生成, appId: {}", detachTimeoutSeconds, session.getAppId());
+                session.cancel();
+                cancelCounter.increment();
+                scheduleRemoval(session);
+            }
+        }, detachTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void scheduleRemoval(GenerationSession session) {
+        Schedulers.parallel().schedule(() -> sessions.remove(session.getSessionId()),
+                retentionSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 满足条件的会话中最近创建的一个
+     */
+    private GenerationSession findLatest(Predicate<GenerationSession> condition) {
+        GenerationSession latest = null;
+        for (GenerationSession session : sessions.values()) {
+            if (condition.test(session) && (latest == null || session.getSessionId() > latest.getSessionId())) {
+                latest = session;
+            }
+        }
+        return latest;
+    }
+
+    private double countRunning(Map<Long, GenerationSession> sessionMap) {
+        return sessionMap.values().stream().filter(session -> !session.isFinished()).count();
+    }
+}
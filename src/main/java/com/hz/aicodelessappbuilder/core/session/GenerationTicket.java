@@ -0,0 +1,65 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * 生成调度凭证
+ * 由 {@link GenerationScheduler} 在提交生成时创建，排队期间可以取消；获得执行名额后，生成结束时须调用 {@link #release()} 归还名额。
+ */
+public class GenerationTicket {
+
+    private final GenerationScheduler scheduler;
+
+    @Getter
+    private final long userId;
+
+    /**
+     * 排队位置变化的回调（参数为从 1 开始的位置）
+     */
+    private final IntConsumer positionListener;
+
+    /**
+     * 入队时间
+     */
+    @Getter
+    private final long enqueueNanos;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * 最近一次通知的排队位置，由调度器在锁内更新
+     */
+    int lastPosition;
+
+    GenerationTicket(GenerationScheduler scheduler, long userId, IntConsumer positionListener) {
+        this.scheduler = scheduler;
+        this.userId = userId;
+        this.positionListener = positionListener;
+        this.enqueueNanos = System.nanoTime();
+    }
+
+    /**
+     * 取消排队，已开始执行的生成不受影响（由生成流的取消负责）
+     *
+     * @return 是否从等待队列中移除（false 表示已获得名额）
+     */
+    public boolean cancel() {
+        return scheduler.cancel(this);
+    }
+
+    /**
+     * 归还执行名额，可重复调用
+     */
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            scheduler.release(this);
+        }
+    }
+
+    void notifyPosition(int position) {
+        positionListener.accept(position);
+    }
+}
@@ -0,0 +1,579 @@
+package com.hz.aicodelessappbuilder.core.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * 一次生成的内存项目工作区（Vue 项目）
+ * 文件工具都在这里读写：文件以「相对路径 -> 字节」保存，另外维护目录索引（目录 -> 直接子项），
+ * 打开时只扫描磁盘上的文件列表，文件内容在首次读取时才加载。生成结束时通过 flush 一次性写回磁盘：
+ * 只写回本次写入或删除过的路径，每个文件先写到同目录的临时文件再重命名替换，读取方不会看到写了一半的文件；
+ * 删除最后进行。项目目录和其中的依赖、构建产物目录不会被移走，预览、部署和下载等不加项目锁的读取方始终能看到它们。
+ * 项目根目录下的依赖和构建产物目录（node_modules、dist 等）不加载到内存，也不允许写入。
+ * 磁盘上的外部修改（例如在编辑器中直接修改项目文件）通过 syncFromDisk 同步到内存，
+ * 工作区里写入或删除过的路径以内存为准。
+ * 文件的内容哈希在首次查询时计算并缓存，文件变化时失效；哈希只由内容决定，不同次生成之间可以直接比较。
+ * 所有方法在工作区对象上同步，flush 之后工作区关闭，不能再读写。首次读取文件时的磁盘读取在锁外进行，
+ * 读取期间其他工具调用可以继续读写工作区。
+ */
+public class ProjectWorkspace {
+
+    /**
+     * 项目根目录下不加载到内存的目录，flush 时不变
+     */
+    public static final Set<String> PRESERVED_DIRS = Set.of(
+            "node_modules", ".git", "dist", "build", "target", ".mvn", ".idea", ".vscode", "coverage"
+    );
+
+    @Getter
+    private final Path root;
+
+    /**
+     * 文件内容，值为 null 表示文件在磁盘上、尚未加载
+     */
+    private final Map<String, byte[]> files = new TreeMap<>();
+
+    /**
+     * 目录索引：目录相对路径（根目录为 ""）-> 直接子项名称
+     */
+    private final Map<String, Set<String>> children = new TreeMap<>();
+
+    /**
+     * 内容哈希缓存：相对路径 -> 哈希
+     */
+    private final Map<String, String> hashes = new HashMap<>();
+
+    /**
+     * 打开后写入或删除过的路径，外部修改不覆盖这些路径
+     */
+    private final Set<String> modified = new HashSet<>();
+
+    /**
+     * 打开后是否有写入或删除
+     */
+    private boolean dirty;
+
+    private boolean closed;
+
+    /**
+     * 每次 syncFromDisk 时递增，锁外读取磁盘期间发生过同步则重新读取
+     */
+    private long diskVersion;
+
+    /**
+     * 事务中每个路径第一次修改前的内容，不在事务中时为 null
+     */
+    private Map<String, byte[]> undoLog;
+
+    /**
+     * undoLog 中表示修改前文件不存在
+     */
+    private static final byte[] ABSENT = new byte[0];
+
+    public ProjectWorkspace(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        children.put("", new TreeSet<>());
+        if (Files.isDirectory(this.root)) {
+            walkDisk(this.root, dir -> {
+            }, path -> {
+                files.put(path, null);
+                addToIndex(path);
+            });
+        }
+    }
+
+    /**
+     * 把工具传入的路径转换为工作区内的相对路径（'/' 分隔，根目录为 ""）
+     *
+     * @throws IllegalArgumentException 路径在项目目录之外
+     */
+    public String resolve(String path) {
+        Path candidate = Paths.get(path == null ? "" : path);
+        Path resolved = (candidate.isAbsolute() ? candidate : root.resolve(candidate)).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IllegalArgumentException("路径不在项目目录内 - " + path);
+        }
+        return root.relativize(resolved).toString().replace('\\', '/');
+    }
+
+    public synchronized boolean isFile(String relativePath) {
+        ensureOpen();
+        return files.containsKey(relativePath);
+    }
+
+    public synchronized boolean isDirectory(String relativePath) {
+        ensureOpen();
+        return children.containsKey(relativePath);
+    }
+
+    public byte[] read(String relativePath) {
+        while (true) {
+            long version;
+            synchronized (this) {
+                ensureOpen();
+                if (!files.containsKey(relativePath)) {
+                    return null;
+                }
+                byte[] content = files.get(relativePath);
+                if (content != null) {
+                    return content;
+                }
+                version = diskVersion;
+            }
+            byte[] loaded;
+            try {
+                loaded = Files.readAllBytes(root.resolve(relativePath));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synchronized (this) {
+                ensureOpen();
+                // 读取期间被写入、删除或已由其他线程加载时以内存为准；磁盘被外部修改过则重新读取
+                if (!files.containsKey(relativePath)) {
+                    return null;
+                }
+                byte[] current = files.get(relativePath);
+                if (current != null) {
+                    return current;
+                }
+                if (version == diskVersion) {
+                    files.put(relativePath, loaded);
+                    return loaded;
+                }
+            }
+        }
+    }
+
+    public String readString(String relativePath) {
+        byte[] content = read(relativePath);
+        return content == null ? null : new String(content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 文件内容哈希（SHA-256 前 16 位十六进制）
+     *
+     * @return 文件不存在时返回 null
+     */
+    public String contentHash(String relativePath) {
+        synchronized (this) {
+            String hash = hashes.get(relativePath);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        byte[] content = read(relativePath);
+        if (content == null) {
+            return null;
+        }
+        String hash = DigestUtil.sha256Hex(content).substring(0, 16);
+        synchronized (this) {
+            // 计算期间内容未变化才缓存
+            if (files.get(relativePath) == content) {
+                hashes.put(relativePath, hash);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 写入文件，父目录不存在时自动创建
+     */
+    public synchronized void write(String relativePath, byte[] content) {
+        ensureOpen();
+        checkWritable(relativePath);
+        recordUndo(relativePath);
+        files.put(relativePath, content);
+        hashes.remove(relativePath);
+        addToIndex(relativePath);
+        modified.add(relativePath);
+        dirty = true;
+    }
+
+    public void writeString(String relativePath, String content) {
+        write(relativePath, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 删除文件，删除后为空的目录一并删除
+     *
+     * @return 文件是否存在
+     */
+    public synchronized boolean delete(String relativePath) {
+        ensureOpen();
+        if (!files.containsKey(relativePath)) {
+            return false;
+        }
+        recordUndo(relativePath);
+        files.remove(relativePath);
+        hashes.remove(relativePath);
+        removeFromIndex(relativePath);
+        modified.add(relativePath);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * 在工作区锁内执行一组修改，action 返回 false 或抛出异常时还原期间写入和删除的文件
+     * 事务期间其他线程不能读写工作区，不支持嵌套
+     *
+     * @return 是否提交
+     */
+    public synchronized boolean transaction(Predicate<ProjectWorkspace> action) {
+        ensureOpen();
+        if (undoLog != null) {
+            throw new IllegalStateException("不支持嵌套事务");
+        }
+        undoLog = new LinkedHashMap<>();
+        Set<String> modifiedBefore = new HashSet<>(modified);
+        boolean dirtyBefore = dirty;
+        boolean committed = false;
+        try {
+            committed = action.test(this);
+            return committed;
+        } finally {
+            Map<String, byte[]> changes = undoLog;
+            undoLog = null;
+            if (!committed) {
+                for (Map.Entry<String, byte[]> entry : changes.entrySet()) {
+                    String path = entry.getKey();
+                    hashes.remove(path);
+                    if (entry.getValue() == ABSENT) {
+                        if (files.containsKey(path)) {
+                            files.remove(path);
+                            removeFromIndex(path);
+                        }
+                    } else {
+                        files.put(path, entry.getValue());
+                        addToIndex(path);
+                    }
+                }
+                modified.retainAll(modifiedBefore);
+                dirty = dirtyBefore;
+            }
+        }
+    }
+
+    /**
+     * 目录下的直接子项名称（按名称排序）
+     */
+    public synchronized List<String> listChildren(String relativeDirPath) {
+        ensureOpen();
+        Set<String> names = children.get(relativeDirPath);
+        return names == null ? List.of() : List.copyOf(names);
+    }
+
+    /**
+     * 目录下（递归）所有文件的相对路径（按路径排序）
+     */
+    public synchronized List<String> listFiles(String relativeDirPath) {
+        ensureOpen();
+        if (relativeDirPath.isEmpty()) {
+            return List.copyOf(files.keySet());
+        }
+        String prefix = relativeDirPath + "/";
+        return ((TreeMap<String, byte[]>) files).subMap(prefix, prefix + Character.MAX_VALUE).keySet().stream().toList();
+    }
+
+    /**
+     * 按目录索引逐层列出目录下的文件（相对项目根目录的路径），浅层在前，同一目录内按名称排序
+     * 不访问磁盘，耗时与目录下的条目数成正比
+     *
+     * @param ignored 名称被忽略的文件或目录（整棵子树）不列出
+     */
+    public synchronized List<String> walkFiles(String relativeDirPath, Predicate<String> ignored) {
+        ensureOpen();
+        List<String> result = new ArrayList<>();
+        if (!children.containsKey(relativeDirPath)) {
+            return result;
+        }
+        Deque<String> dirs = new ArrayDeque<>();
+        dirs.add(relativeDirPath);
+        while (!dirs.isEmpty()) {
+            String dir = dirs.poll();
+            for (String name : children.get(dir)) {
+                if (ignored.test(name)) {
+                    continue;
+                }
+                String path = dir.isEmpty() ? name : dir + "/" + name;
+                if (children.containsKey(path)) {
+                    dirs.add(path);
+                } else {
+                    result.add(path);
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 写回磁盘并关闭工作区；没有修改时只关闭
+     * 中途失败时已替换的文件保留，未处理的路径保持原样
+     *
+     * @return 写回的文件数（写入和删除）
+     */
+    public synchronized int flush() throws IOException {
+        ensureOpen();
+        closed = true;
+        if (!dirty) {
+            return 0;
+        }
+        String tempSuffix = ".flush." + System.nanoTime();
+        List<String> deleted = new ArrayList<>();
+        for (String path : modified) {
+            if (!files.containsKey(path)) {
+                deleted.add(path);
+                continue;
+            }
+            Path target = root.resolve(path);
+            clearConflicts(path, target);
+            Files.createDirectories(target.getParent());
+            Path tempFile = target.resolveSibling("." + target.getFileName() + tempSuffix);
+            try {
+                Files.write(tempFile, files.get(path));
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        // 删除最后进行，删除后为空的目录一并删除
+        for (String path : deleted) {
+            Path target = root.resolve(path);
+            if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+                Files.delete(target);
+            }
+            deleteEmptyParents(target);
+        }
+        return modified.size();
+    }
+
+    /**
+     * 写入前清除磁盘上与目标路径冲突、在工作区中已删除的路径：
+     * 目标的父路径是文件（文件改为目录），或目标是目录（目录中的文件都已删除，改为文件）
+     */
+    private void clearConflicts(String relativePath, Path target) throws IOException {
+        for (int slash = relativePath.indexOf('/'); slash > 0; slash = relativePath.indexOf('/', slash + 1)) {
+            Path parent = root.resolve(relativePath.substring(0, slash));
+            if (Files.isRegularFile(parent, LinkOption.NOFOLLOW_LINKS)) {
+                Files.delete(parent);
+            }
+        }
+        if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+            FileUtil.del(target);
+        }
+    }
+
+    /**
+     * 删除工作区中已不存在的空目录，直到项目根目录
+     */
+    private void deleteEmptyParents(Path target) throws IOException {
+        for (Path dir = target.getParent(); dir != null && !dir.equals(root); dir = dir.getParent()) {
+            String relativeDir = root.relativize(dir).toString().replace('\\', '/');
+            if (children.containsKey(relativeDir) || !Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                return;
+            }
+            try (Stream<Path> entries = Files.list(dir)) {
+                if (entries.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * 丢弃未写回的修改并关闭工作区
+     */
+    public synchronized void discard() {
+        closed = true;
+    }
+
+    /**
+     * 把磁盘上某个路径（文件或目录）的当前状态同步到内存，工作区修改过的路径保持不变
+     * 已加载的未修改文件重新置为未加载，下次读取时从磁盘读
+     *
+     * @param onDirectory 扫描到的每个目录（读取目录内容之前回调），用于注册监听
+     * @return 变化的文件数；工作区已关闭时返回 0
+     */
+    public synchronized int syncFromDisk(String relativePath, Consumer<Path> onDirectory) {
+        if (closed || isPreserved(relativePath) || PRESERVED_DIRS.contains(relativePath)) {
+            return 0;
+        }
+        Path diskPath = root.resolve(relativePath);
+        Set<String> onDisk = new HashSet<>();
+        if (Files.isRegularFile(diskPath)) {
+            onDisk.add(relativePath);
+        } else if (Files.isDirectory(diskPath)) {
+            walkDisk(diskPath, onDirectory, onDisk::add);
+        }
+        List<String> known = new ArrayList<>();
+        if (relativePath.isEmpty()) {
+            known.addAll(files.keySet());
+        } else {
+            if (files.containsKey(relativePath)) {
+                known.add(relativePath);
+            }
+            known.addAll(listFiles(relativePath));
+        }
+        int changes = 0;
+        for (String path : known) {
+            if (!onDisk.contains(path) && !modified.contains(path)) {
+                files.remove(path);
+                hashes.remove(path);
+                removeFromIndex(path);
+                changes++;
+            }
+        }
+        for (String path : onDisk) {
+            if (modified.contains(path)) {
+                continue;
+            }
+            hashes.remove(path);
+            if (!files.containsKey(path)) {
+                files.put(path, null);
+                addToIndex(path);
+                changes++;
+            } else if (files.get(path) != null) {
+                files.put(path, null);
+                changes++;
+            }
+        }
+        // 未加载的文件在磁盘上被修改时不计入变化，但锁外进行中的读取可能读到了旧内容
+        diskVersion++;
+        return changes;
+    }
+
+    /**
+     * 遍历磁盘目录，跳过根目录下的依赖和构建产物目录
+     */
+    private void walkDisk(Path start, Consumer<Path> onDirectory, Consumer<String> onFile) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    boolean preserved = root.equals(dir.getParent()) && PRESERVED_DIRS.contains(dir.getFileName().toString());
+                    if (preserved) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    onDirectory.accept(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        onFile.accept(root.relativize(file).toString().replace('\\', '/'));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // 遍历过程中被删除的文件忽略，由之后的删除事件处理
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addToIndex(String relativePath) {
+        String path = relativePath;
+        int slash;
+        while ((slash = path.lastIndexOf('/')) >= 0) {
+            String dir = path.substring(0, slash);
+            if (!children.computeIfAbsent(dir, k -> new TreeSet<>()).add(path.substring(slash + 1))) {
+                return;
+            }
+            path = dir;
+        }
+        children.get("").add(path);
+    }
+
+    private void removeFromIndex(String relativePath) {
+        String path = relativePath;
+        while (true) {
+            int slash = path.lastIndexOf('/');
+            String dir = slash < 0 ? "" : path.substring(0, slash);
+            Set<String> names = children.get(dir);
+            names.remove(path.substring(slash + 1));
+            if (dir.isEmpty() || !names.isEmpty()) {
+                return;
+            }
+            children.remove(dir);
+            path = dir;
+        }
+    }
+
+    private void recordUndo(String relativePath) {
+        if (undoLog != null && !undoLog.containsKey(relativePath)) {
+            undoLog.put(relativePath, files.containsKey(relativePath) ? files.get(relativePath) : ABSENT);
+        }
+    }
+
+    private static boolean isPreserved(String relativePath) {
+        int slash = relativePath.indexOf('/');
+        return slash > 0 && PRESERVED_DIRS.contains(relativePath.substring(0, slash));
+    }
+
+    private void checkWritable(String relativePath) {
+        if (relativePath.isEmpty() || children.containsKey(relativePath)) {
+            throw new IllegalArgumentException("路径是目录 - " + relativePath);
+        }
+        if (isPreserved(relativePath) || PRESERVED_DIRS.contains(relativePath)) {
+            throw new IllegalArgumentException("不允许写入依赖或构建产物目录 - " + relativePath);
+        }
+        // 父路径不能是已有的文件
+        for (int slash = relativePath.indexOf('/'); slash > 0; slash = relativePath.indexOf('/', slash + 1)) {
+            if (files.containsKey(relativePath.substring(0, slash))) {
+                throw new IllegalArgumentException("父路径是文件 - " + relativePath.substring(0, slash));
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("工作区已关闭 - " + root.getFileName());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectWorkspace[" + root + ", files=" + files.size() + "]";
+    }
+}
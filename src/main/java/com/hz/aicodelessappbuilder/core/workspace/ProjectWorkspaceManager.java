@@ -0,0 +1,296 @@
+package com.hz.aicodelessappbuilder.core.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Vue 项目工作区管理
+ * 每次 Vue 项目生成开始时打开应用的工作区，文件工具通过 appId 找到它，生成结束（完成、出错或取消）时写回磁盘。
+ * 写回和构建都要修改或读取项目目录，二者通过每个应用一把的项目锁互斥。构建不在项目目录中执行：
+ * 持锁复制一份源码快照到构建目录，释放锁后在构建目录执行 npm，构建成功后再持锁把 dist 发布回项目目录，
+ * 写回（在模型回调线程和取消线程上执行）最多等待一次复制，不会等待整个构建。
+ * 打开中的工作区监听磁盘上的外部修改（见 ProjectWorkspaceWatcher），可通过配置关闭。
+ * 每次写回有修改时递增应用的源码版本，构建任务据此判断构建结果是否对应最新源码。
+ * 指标：
+ * - ai_workspace_open：打开中的工作区数
+ * - ai_workspace_flush_seconds：写回耗时
+ * - ai_workspace_flush_files：每次写回的文件数
+ * - ai_workspace_external_changes_total：同步到工作区的外部修改文件数
+ */
+@Slf4j
+@Component
+public class ProjectWorkspaceManager {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否监听工作区的外部修改
+     */
+    @Value("${code.workspace.watch-external-changes:true}")
+    private boolean watchExternalChanges;
+
+    private final Map<Long, ProjectWorkspace> workspaces = new ConcurrentHashMap<>();
+
+    /**
+     * 应用的源码版本，写回有修改时递增
+     */
+    private final Map<Long, AtomicLong> sourceVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 每个应用的项目目录锁，没有持有者和等待者时移除
+     */
+    private final Map<Long, ProjectLock> projectLocks = new ConcurrentHashMap<>();
+
+    private Timer flushTimer;
+
+    private DistributionSummary flushFilesSummary;
+
+    private ProjectWorkspaceWatcher watcher;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ai_workspace_open", workspaces, Map::size)
+                .description("打开中的项目工作区数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ai_workspace_flush_seconds")
+                .description("项目工作区写回磁盘的耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        flushFilesSummary = DistributionSummary.builder("ai_workspace_flush_files")
+                .description("项目工作区每次写回的文件数")
+                .register(meterRegistry);
+        if (watchExternalChanges) {
+            Counter externalChangeCounter = Counter.builder("ai_workspace_external_changes_total")
+                    .description("同步到项目工作区的外部修改文件数")
+                    .register(meterRegistry);
+            try {
+                watcher = new ProjectWorkspaceWatcher(externalChangeCounter);
+            } catch (IOException e) {
+                log.warn("创建工作区外部修改监听失败，不再监听: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Vue 项目目录
+     */
+    public static Path getProjectRoot(long appId) {
+        return Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, CodeGenTypeEnum.VUE_PROJECT.getValue() + "_" + appId);
+    }
+
+    /**
+     * 生成开始时打开工作区；上一次生成的工作区尚未写回时先写回
+     */
+    public ProjectWorkspace open(long appId) {
+        flush(appId);
+        ProjectWorkspace workspace = createWorkspace(appId);
+        workspaces.put(appId, workspace);
+        log.info("打开项目工作区, appId: {}, 文件数: {}", appId, workspace.getFileCount());
+        return workspace;
+    }
+
+    /**
+     * 获取应用打开中的工作区
+     *
+     * @throws IllegalStateException 应用没有打开中的工作区（不在生成流程中，或生成已经结束）
+     */
+    public ProjectWorkspace get(long appId) {
+        ProjectWorkspace workspace = workspaces.get(appId);
+        if (workspace == null) {
+            throw new IllegalStateException("应用没有进行中的生成，工作区未打开 - " + appId);
+        }
+        return workspace;
+    }
+
+    /**
+     * 写回并关闭工作区，没有打开的工作区时直接返回
+     *
+     * @return 是否写回成功（没有修改也算成功）
+     */
+    public boolean flush(long appId) {
+        ProjectWorkspace workspace = workspaces.remove(appId);
+        if (workspace == null) {
+            return true;
+        }
+        if (watcher != null) {
+            watcher.unwatch(workspace);
+        }
+        lockProject(appId);
+        long startNanos = System.nanoTime();
+        try {
+            int fileCount = workspace.flush();
+            if (fileCount > 0) {
+                sourceVersions.computeIfAbsent(appId, k -> new AtomicLong()).incrementAndGet();
+                flushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                flushFilesSummary.record(fileCount);
+                log.info("项目工作区已写回, appId: {}, 文件数: {}, 耗时: {}ms", appId, fileCount,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("项目工作区写回失败, appId: {}, error: {}", appId, e.getMessage(), e);
+            return false;
+        } finally {
+            unlockProject(appId);
+        }
+    }
+
+    /**
+     * 把项目源码（不含依赖和构建产物目录）复制到构建目录，构建目录中的 node_modules 保留以复用依赖
+     *
+     * @param buildDir 构建目录
+     * @return 快照对应的源码版本
+     */
+    public long snapshotSources(long appId, Path buildDir) throws IOException {
+        Path root = getProjectRoot(appId).toAbsolutePath().normalize();
+        lockProject(appId);
+        try {
+            if (!Files.isDirectory(root)) {
+                throw new NoSuchFileException(root.toString());
+            }
+            Files.createDirectories(buildDir);
+            try (Stream<Path> entries = Files.list(buildDir)) {
+                for (Path entry : (Iterable<Path>) entries::iterator) {
+                    if (!"node_modules".equals(entry.getFileName().toString())) {
+                        FileUtil.del(entry);
+                    }
+                }
+            }
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (root.equals(dir.getParent()) && ProjectWorkspace.PRESERVED_DIRS.contains(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    Files.createDirectories(buildDir.resolve(root.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile()) {
+                        Files.copy(file, buildDir.resolve(root.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return getSourceVersion(appId);
+        } finally {
+            unlockProject(appId);
+        }
+    }
+
+    /**
+     * 把构建目录中的 dist 发布到项目目录，替换旧的 dist
+     *
+     * @param distDir 构建产物目录
+     */
+    public void publishBuildOutput(long appId, Path distDir) throws IOException {
+        Path root = getProjectRoot(appId);
+        lockProject(appId);
+        String suffix = "." + System.nanoTime();
+        Path tempDir = root.resolve(".dist.publish" + suffix);
+        Path trashDir = root.resolve(".dist.trash" + suffix);
+        try {
+            if (!Files.isDirectory(root)) {
+                throw new NoSuchFileException(root.toString());
+            }
+            FileUtil.copyContent(distDir.toFile(), tempDir.toFile(), true);
+            Path target = root.resolve("dist");
+            boolean targetMoved = false;
+            try {
+                if (Files.exists(target)) {
+                    Files.move(target, trashDir, StandardCopyOption.ATOMIC_MOVE);
+                    targetMoved = true;
+                }
+                Files.move(tempDir, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // 还原旧的 dist
+                if (targetMoved && !Files.exists(target)) {
+                    Files.move(trashDir, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                throw e;
+            }
+        } finally {
+            unlockProject(appId);
+            FileUtil.del(tempDir);
+            FileUtil.del(trashDir);
+        }
+    }
+
+    /**
+     * 应用当前的源码版本（进程内有效），与磁盘源码对应的版本以 snapshotSources 的返回值为准
+     */
+    public long getSourceVersion(long appId) {
+        AtomicLong version = sourceVersions.get(appId);
+        return version == null ? 0 : version.get();
+    }
+
+    private ProjectWorkspace createWorkspace(long appId) {
+        ProjectWorkspace workspace = new ProjectWorkspace(getProjectRoot(appId));
+        if (watcher != null) {
+            watcher.watch(workspace);
+        }
+        return workspace;
+    }
+
+    private void lockProject(long appId) {
+        ProjectLock projectLock = projectLocks.compute(appId, (key, value) -> {
+            ProjectLock current = value == null ? new ProjectLock() : value;
+            current.users++;
+            return current;
+        });
+        projectLock.lock.lock();
+    }
+
+    private void unlockProject(long appId) {
+        projectLocks.get(appId).lock.unlock();
+        projectLocks.computeIfPresent(appId, (key, value) -> --value.users == 0 ? null : value);
+    }
+
+    /**
+     * 项目目录锁，users 为持有者和等待者的数量，只在 projectLocks.compute 中修改
+     */
+    private static class ProjectLock {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private int users;
+    }
+}
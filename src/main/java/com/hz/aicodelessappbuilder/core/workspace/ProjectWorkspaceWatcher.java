@@ -0,0 +1,124 @@
+package com.hz.aicodelessappbuilder.core.workspace;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作区外部修改监听
+ * 打开中的工作区注册项目目录树（依赖和构建产物目录除外）到同一个 WatchService，
+ * 单个守护线程接收事件，把变化的路径同步到对应工作区的内存目录索引。
+ * 事件溢出时重新同步所在目录。
+ */
+@Slf4j
+class ProjectWorkspaceWatcher implements AutoCloseable {
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Registration> registrations = new ConcurrentHashMap<>();
+
+    private final Counter externalChangeCounter;
+
+    ProjectWorkspaceWatcher(Counter externalChangeCounter) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.externalChangeCounter = externalChangeCounter;
+        Thread.ofPlatform().name("workspace-watcher").daemon().start(this::run);
+    }
+
+    /**
+     * 开始监听工作区，注册目录的同时把磁盘状态同步一次，覆盖打开工作区到注册之间的修改
+     */
+    void watch(ProjectWorkspace workspace) {
+        sync(workspace, "");
+    }
+
+    /**
+     * 停止监听工作区，写回之前调用，写回本身的修改不再同步回工作区
+     */
+    void unwatch(ProjectWorkspace workspace) {
+        registrations.entrySet().removeIf(entry -> {
+            if (entry.getValue().workspace != workspace) {
+                return false;
+            }
+            entry.getKey().cancel();
+            return true;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Registration registration = registrations.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (registration == null) {
+                    continue;
+                }
+                String path = registration.dir;
+                if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                    String name = event.context().toString();
+                    path = path.isEmpty() ? name : path + "/" + name;
+                }
+                sync(registration.workspace, path);
+            }
+            if (!key.reset()) {
+                // 目录已删除
+                registrations.remove(key);
+            }
+        }
+    }
+
+    private void sync(ProjectWorkspace workspace, String relativePath) {
+        try {
+            int changes = workspace.syncFromDisk(relativePath, dir -> register(workspace, dir));
+            if (changes > 0) {
+                externalChangeCounter.increment(changes);
+                log.debug("同步工作区外部修改, root: {}, path: {}, 文件数: {}", workspace.getRoot(), relativePath, changes);
+            }
+        } catch (Exception e) {
+            log.warn("同步工作区外部修改失败, root: {}, path: {}, error: {}", workspace.getRoot(), relativePath, e.getMessage());
+        }
+    }
+
+    private void register(ProjectWorkspace workspace, Path dir) {
+        try {
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            String relativeDir = workspace.getRoot().relativize(dir).toString().replace('\\', '/');
+            registrations.put(key, new Registration(workspace, relativeDir));
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.warn("注册工作区目录监听失败, dir: {}, error: {}", dir, e.getMessage());
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Registration {
+
+        private final ProjectWorkspace workspace;
+
+        /**
+         * 目录相对项目根目录的路径
+         */
+        private final String dir;
+    }
+}
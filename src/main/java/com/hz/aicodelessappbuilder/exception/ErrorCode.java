@@ -13,7 +13,8 @@ public enum ErrorCode {
     TOO_MANY_REQUEST(42900, "请求过于频繁"),
     FORBIDDEN_ERROR(40300, "禁止访问"),
     SYSTEM_ERROR(50000, "系统内部异常"),
-    OPERATION_ERROR(50001, "操作失败");
+    OPERATION_ERROR(50001, "操作失败"),
+    SERVICE_UNAVAILABLE(50300, "服务暂时不可用，请稍后重试");
 
     /**
      * 状态码
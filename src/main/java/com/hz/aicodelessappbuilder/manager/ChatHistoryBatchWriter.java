@@ -0,0 +1,440 @@
+package com.hz.aicodelessappbuilder.manager;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hz.aicodelessappbuilder.mapper.ChatHistoryMapper;
+import com.hz.aicodelessappbuilder.model.entity.ChatHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 对话历史批量写入器
+ * 对话消息先进入有界队列，由后台线程按条数或时间间隔合并为多行插入，避免在请求线程上逐条写库：
+ * - 队列满时调用方最多等待一段时间（背压），仍无法入队则同步写入；调用方需在可阻塞的线程上提交（流式处理器在弹性线程上提交）
+ * - 批量和逐条写入都失败的消息保留为未落库状态，间隔一段时间后重试，不丢消息
+ * - 尚未落库的消息按应用索引，加载对话记忆和分页查询对话历史时可以一并读取
+ * - 丢弃应用的消息时留下墓碑，早于丢弃提交的消息即使已被写线程取走也不再写入；丢弃会等待正在进行的写入完成
+ * - 长响应可以只提交内容所在的临时文件，落库时才读取内容，之后删除该文件
+ * - 应用关闭时先写完队列中剩余的消息
+ * 指标：
+ * - ai_chat_history_queue_depth：待写入的消息数
+ * - ai_chat_history_flush_latency_seconds：消息从入队到落库的延迟（按批次中最早的消息计算）
+ * - ai_chat_history_flush_batch_size：每批写入的消息数
+ * - ai_chat_history_sync_fallback_total：队列满时同步写入的次数
+ * - ai_chat_history_retry_depth：写入失败、等待重试的消息数
+ */
+@Slf4j
+@Component
+public class ChatHistoryBatchWriter {
+
+    @Resource
+    private ChatHistoryMapper chatHistoryMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 队列容量
+     */
+    @Value("${chat-history.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 单批最多写入的消息数
+     */
+    @Value("${chat-history.write-behind.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 最长写入间隔（毫秒）
+     */
+    @Value("${chat-history.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    /**
+     * 队列满时调用方等待入队的最长时间（毫秒）
+     */
+    @Value("${chat-history.write-behind.offer-timeout-ms:1000}")
+    private long offerTimeoutMillis;
+
+    /**
+     * 写入失败的消息的重试间隔（毫秒）
+     */
+    @Value("${chat-history.write-behind.retry-interval-ms:5000}")
+    private long retryIntervalMillis;
+
+    private BlockingQueue<PendingMessage> queue;
+
+    /**
+     * 写入失败、等待重试的消息（仍保留在 pendingByApp 中）
+     */
+    private final Queue<PendingMessage> retryQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 下次重试的时间（纳秒）
+     */
+    private volatile long nextRetryNanos;
+
+    /**
+     * 尚未落库的消息，按应用分组
+     */
+    private final Map<Long, Queue<PendingMessage>> pendingByApp = new ConcurrentHashMap<>();
+
+    /**
+     * 墓碑：应用ID -> 丢弃时间（纳秒），入队时间不晚于该时间的消息不再写入
+     */
+    private final Cache<Long, Long> tombstones = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    /**
+     * 写入与丢弃互斥，丢弃返回后不会再有该应用此前提交的消息落库
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private Thread flushThread;
+
+    private volatile boolean running;
+
+    private Timer flushLatencyTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    private Counter syncFallbackCounter;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("ai_chat_history_queue_depth", queue, BlockingQueue::size)
+                .description("待写入的对话历史消息数")
+                .register(meterRegistry);
+        flushLatencyTimer = Timer.builder("ai_chat_history_flush_latency_seconds")
+                .description("对话历史从入队到落库的延迟")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("ai_chat_history_flush_batch_size")
+                .description("对话历史每批写入的消息数")
+                .register(meterRegistry);
+        syncFallbackCounter = Counter.builder("ai_chat_history_sync_fallback_total")
+                .description("队列满时同步写入对话历史的次数")
+                .register(meterRegistry);
+        Gauge.builder("ai_chat_history_retry_depth", retryQueue, Queue::size)
+                .description("写入失败、等待重试的对话历史消息数")
+                .register(meterRegistry);
+        running = true;
+        flushThread = new Thread(this::flushLoop, "chat-history-writer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    /**
+     * 应用关闭时停止接收并写完剩余消息
+     */
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        flushThread.interrupt();
+        try {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写线程异常退出时兜底写入
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        drainRetries(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        if (!retryQueue.isEmpty()) {
+            log.error("关闭时仍有 {} 条对话历史写入失败", retryQueue.size());
+        }
+        log.info("对话历史写入器已关闭");
+    }
+
+    /**
+     * 提交待写入的消息，队列满时会等待
+     *
+     * @param chatHistory 对话消息（需已设置 id 和 createTime）
+     */
+    public void submit(ChatHistory chatHistory) {
+        submit(chatHistory, null);
+    }
+
+    /**
+     * 提交待写入的消息，内容在临时文件中（落库时读取，之后删除该文件），队列满时会等待
+     *
+     * @param chatHistory 对话消息（需已设置 id 和 createTime，message 为空）
+     * @param contentFile 消息内容所在的文件（UTF-8），为 null 时使用 chatHistory 的 message
+     */
+    public void submit(ChatHistory chatHistory, Path contentFile) {
+        PendingMessage pendingMessage = new PendingMessage(chatHistory, contentFile, System.nanoTime());
+        pendingByApp.compute(chatHistory.getAppId(), (appId, pending) -> {
+            Queue<PendingMessage> queueOfApp = pending == null ? new ConcurrentLinkedQueue<>() : pending;
+            queueOfApp.add(pendingMessage);
+            return queueOfApp;
+        });
+        boolean offered = false;
+        try {
+            // 队列已满时调用方等待入队（背压）
+            offered = running && queue.offer(pendingMessage, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!offered) {
+            // 队列持续写满或已关闭，直接同步写入
+            syncFallbackCounter.increment();
+            flush(List.of(pendingMessage));
+        }
+    }
+
+    /**
+     * 获取应用尚未落库的消息
+     *
+     * @param appId 应用ID
+     * @return 未落库的消息（按提交顺序）
+     */
+    public List<ChatHistory> getPendingMessages(long appId) {
+        Queue<PendingMessage> pending = pendingByApp.get(appId);
+        if (pending == null) {
+            return List.of();
+        }
+        List<ChatHistory> result = new ArrayList<>(pending.size());
+        for (PendingMessage pendingMessage : pending) {
+            if (isDiscarded(pendingMessage)) {
+                continue;
+            }
+            if (pendingMessage.getContentFile() == null) {
+                result.add(pendingMessage.getChatHistory());
+                continue;
+            }
+            try {
+                ChatHistory copy = BeanUtil.copyProperties(pendingMessage.getChatHistory(), ChatHistory.class);
+                copy.setMessage(Files.readString(pendingMessage.getContentFile(), StandardCharsets.UTF_8));
+                result.add(copy);
+            } catch (NoSuchFileException e) {
+                // 已落库并删除了临时文件，调用方随后查库时会读到
+            } catch (IOException e) {
+                log.error("读取待写入消息内容失败, appId: {}, error: {}", appId, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 丢弃应用尚未落库的消息（删除对话历史时调用，避免删除后又被写入）
+     * 会等待正在进行的写入完成，返回后再删除库中的记录即可
+     *
+     * @param appId 应用ID
+     */
+    public void discard(long appId) {
+        Queue<PendingMessage> pending;
+        flushLock.lock();
+        try {
+            // 已被写线程取走、尚未写入的消息由墓碑拦下
+            tombstones.put(appId, System.nanoTime());
+            queue.removeIf(pendingMessage -> pendingMessage.getChatHistory().getAppId() == appId);
+            retryQueue.removeIf(pendingMessage -> pendingMessage.getChatHistory().getAppId() == appId);
+            pending = pendingByApp.remove(appId);
+        } finally {
+            flushLock.unlock();
+        }
+        if (pending != null) {
+            pending.forEach(this::deleteContentFile);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    // 等待一个间隔凑批，达到批量大小提前写入
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    while (batch.size() < batchSize && running) {
+                        long remainingNanos = deadline - System.nanoTime();
+                        if (remainingNanos <= 0) {
+                            break;
+                        }
+                        PendingMessage next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断，继续写完队列中的消息
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            // 写入失败的消息到达重试时间后随本批一起重试
+            if (!retryQueue.isEmpty() && System.nanoTime() - nextRetryNanos >= 0) {
+                drainRetries(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void drainRetries(List<PendingMessage> batch) {
+        PendingMessage retry;
+        while ((retry = retryQueue.poll()) != null) {
+            batch.add(retry);
+        }
+    }
+
+    /**
+     * 多行插入一批消息，失败时逐条重试，仍失败的消息留待下次重试；已丢弃的消息跳过
+     */
+    private void flush(List<PendingMessage> batch) {
+        List<ChatHistory> chatHistories = new ArrayList<>(batch.size());
+        Set<ChatHistory> failed;
+        long oldestNanos = Long.MAX_VALUE;
+        flushLock.lock();
+        try {
+            for (PendingMessage pendingMessage : batch) {
+                oldestNanos = Math.min(oldestNanos, pendingMessage.getEnqueueNanos());
+                if (isDiscarded(pendingMessage)) {
+                    continue;
+                }
+                if (pendingMessage.getContentFile() != null) {
+                    // 长响应在落库前才读入内存
+                    try {
+                        pendingMessage.getChatHistory().setMessage(
+                                Files.readString(pendingMessage.getContentFile(), StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        log.error("读取待写入消息内容失败, appId: {}, error: {}",
+                                pendingMessage.getChatHistory().getAppId(), e.getMessage());
+                        continue;
+                    }
+                }
+                chatHistories.add(pendingMessage.getChatHistory());
+            }
+            failed = insert(chatHistories);
+        } finally {
+            flushLock.unlock();
+        }
+        for (PendingMessage pendingMessage : batch) {
+            if (failed.contains(pendingMessage.getChatHistory())) {
+                // 仍保留在未落库的消息中，读取不受影响
+                retryQueue.add(pendingMessage);
+                continue;
+            }
+            pendingByApp.computeIfPresent(pendingMessage.getChatHistory().getAppId(), (appId, pending) -> {
+                pending.remove(pendingMessage);
+                return pending.isEmpty() ? null : pending;
+            });
+            deleteContentFile(pendingMessage);
+        }
+        if (!failed.isEmpty()) {
+            nextRetryNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryIntervalMillis);
+            log.error("{} 条对话历史写入失败，{}ms 后重试", failed.size(), retryIntervalMillis);
+        }
+        batchSizeSummary.record(chatHistories.size() - failed.size());
+        flushLatencyTimer.record(Duration.ofNanos(System.nanoTime() - oldestNanos));
+    }
+
+    /**
+     * 写入消息
+     *
+     * @return 写入失败的消息
+     */
+    private Set<ChatHistory> insert(List<ChatHistory> chatHistories) {
+        Set<ChatHistory> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (chatHistories.isEmpty()) {
+            return failed;
+        }
+        try {
+            chatHistoryMapper.insertBatch(chatHistories);
+        } catch (Exception e) {
+            log.error("批量写入对话历史失败，改为逐条写入, size: {}, error: {}", chatHistories.size(), e.getMessage());
+            for (ChatHistory chatHistory : chatHistories) {
+                try {
+                    chatHistoryMapper.insert(chatHistory);
+                } catch (Exception ex) {
+                    log.error("写入对话历史失败, appId: {}, error: {}", chatHistory.getAppId(), ex.getMessage());
+                    failed.add(chatHistory);
+                }
+            }
+        }
+        return failed;
+    }
+
+    private boolean isDiscarded(PendingMessage pendingMessage) {
+        Long discardNanos = tombstones.getIfPresent(pendingMessage.getChatHistory().getAppId());
+        return discardNanos != null && pendingMessage.getEnqueueNanos() - discardNanos <= 0;
+    }
+
+    private void deleteContentFile(PendingMessage pendingMessage) {
+        if (pendingMessage.getContentFile() == null) {
+            return;
+        }
+        // 已写入的内容不再保留在内存中
+        pendingMessage.getChatHistory().setMessage(null);
+        try {
+            Files.deleteIfExists(pendingMessage.getContentFile());
+        } catch (IOException e) {
+            log.warn("删除消息内容临时文件失败: {}", pendingMessage.getContentFile(), e);
+        }
+    }
+
+    /**
+     * 待写入的消息
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class PendingMessage {
+
+        /**
+         * 对话消息
+         */
+        private final ChatHistory chatHistory;
+
+        /**
+         * 消息内容所在的临时文件，为 null 时内容在 chatHistory 中
+         */
+        private final Path contentFile;
+
+        /**
+         * 入队时间
+         */
+        private final long enqueueNanos;
+    }
+}
@@ -59,6 +59,12 @@ public class App implements Serializable {
     @Column("codeGenType")
     private String codeGenType;
 
+    /**
+     * 代码生成类型来源（llm/shadow/fast_path/fallback）
+     */
+    @Column("codeGenTypeSource")
+    private String codeGenTypeSource;
+
     /**
      * 部署标识
      */
@@ -0,0 +1,42 @@
+package com.hz.aicodelessappbuilder.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 构建事件类型枚举
+ */
+@Getter
+public enum BuildEventTypeEnum {
+
+    STATUS("状态变更", "status"),
+    STEP("构建步骤", "step"),
+    LOG("构建日志", "log");
+
+    private final String text;
+
+    private final String value;
+
+    BuildEventTypeEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static BuildEventTypeEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (BuildEventTypeEnum anEnum : BuildEventTypeEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
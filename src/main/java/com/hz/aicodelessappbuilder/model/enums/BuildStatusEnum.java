@@ -0,0 +1,50 @@
+package com.hz.aicodelessappbuilder.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 构建任务状态枚举
+ */
+@Getter
+public enum BuildStatusEnum {
+
+    QUEUED("排队中", "queued"),
+    RUNNING("构建中", "running"),
+    SUCCESS("构建成功", "success"),
+    FAILED("构建失败", "failed");
+
+    private final String text;
+
+    private final String value;
+
+    BuildStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 是否为结束状态
+     */
+    public boolean isFinished() {
+        return this == SUCCESS || this == FAILED;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static BuildStatusEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (BuildStatusEnum anEnum : BuildStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
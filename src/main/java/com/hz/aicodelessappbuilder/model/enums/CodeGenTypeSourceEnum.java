@@ -0,0 +1,44 @@
+package com.hz.aicodelessappbuilder.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * 代码生成类型来源枚举
+ * 记录应用的生成类型是怎样得到的，本地分类器只用模型给出或经模型复核的类型训练
+ */
+@Getter
+public enum CodeGenTypeSourceEnum {
+
+    LLM("模型路由", "llm"),
+    SHADOW("快速路由且模型复核一致", "shadow"),
+    FAST_PATH("本地分类器快速路由", "fast_path"),
+    FALLBACK("路由超时或失败时的默认类型", "fallback");
+
+    private final String text;
+
+    private final String value;
+
+    CodeGenTypeSourceEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static CodeGenTypeSourceEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (CodeGenTypeSourceEnum anEnum : CodeGenTypeSourceEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
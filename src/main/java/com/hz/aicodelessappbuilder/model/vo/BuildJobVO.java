@@ -0,0 +1,50 @@
+package com.hz.aicodelessappbuilder.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 构建任务视图对象
+ */
+@Data
+public class BuildJobVO implements Serializable {
+
+    /**
+     * 应用id
+     */
+    private Long appId;
+
+    /**
+     * 构建状态
+     */
+    private String status;
+
+    /**
+     * 当前步骤
+     */
+    private String step;
+
+    /**
+     * 排队位置（从 1 开始，仅排队中有效）
+     */
+    private Integer queuePosition;
+
+    /**
+     * 提交时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 开始构建时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime endTime;
+
+    private static final long serialVersionUID = 1L;
+}
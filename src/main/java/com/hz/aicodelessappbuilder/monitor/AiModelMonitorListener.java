@@ -4,6 +4,7 @@ import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
 import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
 import dev.langchain4j.model.output.TokenUsage;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
@@ -92,9 +93,25 @@ public class AiModelMonitorListener implements ChatModelListener {
         TokenUsage tokenUsage = responseContext.chatResponse().metadata().tokenUsage();
         if (tokenUsage != null) {
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input", tokenUsage.inputTokenCount());
+            // 输入中命中服务端前缀缓存的部分（未返回缓存信息时全部计为未命中）
+            long inputTokens = tokenUsage.inputTokenCount() == null ? 0 : tokenUsage.inputTokenCount();
+            long cachedTokens = getCachedInputTokens(tokenUsage);
+            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input_cached", cachedTokens);
+            aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input_uncached", inputTokens - cachedTokens);
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output", tokenUsage.outputTokenCount());
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total", tokenUsage.totalTokenCount());
         }
     }
-}
 
+    /**
+     * 从响应元数据中读取命中前缀缓存的输入 token 数
+     */
+    private long getCachedInputTokens(TokenUsage tokenUsage) {
+        if (tokenUsage instanceof OpenAiTokenUsage openAiTokenUsage
+                && openAiTokenUsage.inputTokensDetails() != null
+                && openAiTokenUsage.inputTokensDetails().cachedTokens() != null) {
+            return openAiTokenUsage.inputTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,48 @@
+package com.hz.aicodelessappbuilder.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SSE 推送指标
+ * - ai_sse_events_total：推送的 SSE 事件数，rate() 即每秒事件数
+ * - ai_sse_event_bytes：单个 SSE 事件的数据大小分布
+ */
+@Component
+public class SseMetricsCollector {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter eventCounter;
+
+    private DistributionSummary eventBytesSummary;
+
+    @PostConstruct
+    public void initMetrics() {
+        eventCounter = Counter.builder("ai_sse_events_total")
+                .description("SSE 推送事件数")
+                .register(meterRegistry);
+        eventBytesSummary = DistributionSummary.builder("ai_sse_event_bytes")
+                .description("单个 SSE 事件数据大小")
+                .baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录一次 SSE 推送
+     *
+     * @param data 事件数据
+     */
+    public void recordEvent(String data) {
+        eventCounter.increment();
+        eventBytesSummary.record(data.getBytes(StandardCharsets.UTF_8).length);
+    }
+}
@@ -1,5 +1,6 @@
 package com.hz.aicodelessappbuilder.service;
 
+import com.hz.aicodelessappbuilder.core.session.GenerationLease;
 import com.hz.aicodelessappbuilder.model.dto.app.AppAddRequest;
 import com.hz.aicodelessappbuilder.model.dto.app.AppQueryRequest;
 import com.hz.aicodelessappbuilder.model.entity.User;
@@ -57,9 +58,10 @@ public interface AppService extends IService<App> {
      * @param appId 应用id
      * @param message 消息
      * @param loginUser 登录用户
+     * @param generationLease 已获取的应用生成租约，生成流结束时释放
      * @return
      */
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    Flux<String> chatToGenCode(Long appId, String message, User loginUser, GenerationLease generationLease);
 
     /**
      * 部署应用
@@ -0,0 +1,43 @@
+package com.hz.aicodelessappbuilder.service;
+
+import com.hz.aicodelessappbuilder.core.builder.BuildJob;
+import com.hz.aicodelessappbuilder.model.vo.BuildJobVO;
+
+/**
+ * 构建任务服务
+ * 在有界工作线程池中执行 Vue 项目构建，同一应用排队中的构建请求会合并
+ */
+public interface BuildJobService {
+
+    /**
+     * 提交构建任务，应用已有排队中的任务时直接复用
+     *
+     * @param appId 应用ID
+     * @return 构建任务
+     */
+    BuildJob submitBuild(long appId);
+
+    /**
+     * 获取可用于部署的构建任务：复用排队中的任务和源码版本与当前一致的执行中任务，否则提交新构建
+     *
+     * @param appId 应用ID
+     * @return 构建任务
+     */
+    BuildJob getOrSubmitBuild(long appId);
+
+    /**
+     * 获取应用最近一次的构建任务
+     *
+     * @param appId 应用ID
+     * @return 构建任务，不存在时返回 null
+     */
+    BuildJob getLatestJob(long appId);
+
+    /**
+     * 获取构建任务视图
+     *
+     * @param buildJob 构建任务
+     * @return 构建任务视图
+     */
+    BuildJobVO getBuildJobVO(BuildJob buildJob);
+}
@@ -1,14 +1,16 @@
 package com.hz.aicodelessappbuilder.service;
 
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.hz.aicodelessappbuilder.model.entity.ChatHistory;
 import com.hz.aicodelessappbuilder.model.entity.User;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 对话历史 服务层
@@ -27,7 +29,7 @@ public interface ChatHistoryService extends IService<ChatHistory> {
     QueryWrapper getQueryWrapper(ChatHistoryQueryRequest chatHistoryQueryRequest);
 
     /**
-     * 添加对话消息
+     * 添加对话消息，写入队列满时会等待，需在可阻塞的线程上调用
      *
      * @param appId        应用id
      * @param message      消息内容
@@ -37,6 +39,18 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     boolean addChatMessage(Long appId, String message, String messageType, Long userId);
 
+    /**
+     * 添加对话消息，内容取自本次生成的响应缓冲区
+     * 已转存到临时文件的长响应把文件交给批量写入器，落库时才读取；写入队列满时会等待，需在可阻塞的线程上调用
+     *
+     * @param appId          应用id
+     * @param responseBuffer 响应缓冲区
+     * @param messageType    消息类型
+     * @param userId         用户id
+     * @return 添加是否成功
+     */
+    boolean addChatMessage(Long appId, ResponseBuffer responseBuffer, String messageType, Long userId);
+
     /**
      * 分页获取应用对话历史（支持向前加载更多）
      *
@@ -66,5 +80,14 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      * @param maxCount
      * @return
      */
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
+
+    /**
+     * 获取应用最近的用户消息（含尚未落库的）
+     *
+     * @param appId 应用id
+     * @param count 最多返回的条数
+     * @return 用户消息内容，新的在前
+     */
+    List<String> listLatestUserMessages(Long appId, int count);
 }
@@ -6,11 +6,17 @@ import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hz.aicodelessappbuilder.ai.AiAppNameGeneratorService;
-import com.hz.aicodelessappbuilder.ai.AiCodeGenTypeRoutingService;
+import com.hz.aicodelessappbuilder.ai.routing.FastPathCodeGenTypeRouter;
+import com.hz.aicodelessappbuilder.ai.routing.RoutingDecision;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
 import com.hz.aicodelessappbuilder.constant.AppConstant;
 import com.hz.aicodelessappbuilder.core.AiCodeGeneratorFacade;
-import com.hz.aicodelessappbuilder.core.builder.VueProjectBuilder;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBufferFactory;
+import com.hz.aicodelessappbuilder.core.builder.BuildJob;
 import com.hz.aicodelessappbuilder.core.handler.StreamHandlerExecutor;
+import com.hz.aicodelessappbuilder.core.handler.StreamMessageCoalescer;
+import com.hz.aicodelessappbuilder.core.session.GenerationLease;
 import com.hz.aicodelessappbuilder.exception.BusinessException;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.exception.ThrowUtils;
@@ -18,11 +24,13 @@ import com.hz.aicodelessappbuilder.model.dto.app.AppAddRequest;
 import com.hz.aicodelessappbuilder.model.dto.app.AppQueryRequest;
 import com.hz.aicodelessappbuilder.model.entity.User;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeSourceEnum;
 import com.hz.aicodelessappbuilder.model.enums.MessageTypeEnum;
 import com.hz.aicodelessappbuilder.model.vo.AppVO;
 import com.hz.aicodelessappbuilder.model.vo.UserVO;
 import com.hz.aicodelessappbuilder.monitor.MonitorContext;
 import com.hz.aicodelessappbuilder.monitor.MonitorContextHolder;
+import com.hz.aicodelessappbuilder.service.BuildJobService;
 import com.hz.aicodelessappbuilder.service.ChatHistoryService;
 import com.hz.aicodelessappbuilder.service.ScreenshotService;
 import com.hz.aicodelessappbuilder.service.UserService;
@@ -32,11 +40,19 @@ import com.mybatisflex.spring.service.impl.ServiceImpl;
 import com.hz.aicodelessappbuilder.model.entity.App;
 import com.hz.aicodelessappbuilder.mapper.AppMapper;
 import com.hz.aicodelessappbuilder.service.AppService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
 import java.io.Serializable;
@@ -45,6 +61,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -56,6 +80,11 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppService {
 
+    /**
+     * 部署时等待构建完成的最长时间（秒），npm install + npm run build 的超时之和再留出排队时间
+     */
+    private static final long BUILD_TIMEOUT_SECONDS = 600;
+
     @Resource
     private UserService userService;
 
@@ -69,20 +98,75 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     private StreamHandlerExecutor streamHandlerExecutor;
 
     @Resource
-    private VueProjectBuilder vueProjectBuilder;
+    private StreamMessageCoalescer streamMessageCoalescer;
+
+    @Resource
+    private ResponseBufferFactory responseBufferFactory;
+
+    @Resource
+    private BuildJobService buildJobService;
 
     @Resource
     private ScreenshotService screenshotService;
 
     @Resource
-    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+    private FastPathCodeGenTypeRouter fastPathCodeGenTypeRouter;
 
     @Resource
     private AiAppNameGeneratorService aiAppNameGeneratorService;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
     @Value("${code.deploy-host:http://localhost}")
     private String deployHost;
 
+    /**
+     * 创建应用时等待模型调用（名称生成、类型路由）的最长时间（毫秒）
+     */
+    @Value("${code.create-app.deadline-ms:20000}")
+    private long createAppDeadlineMs;
+
+    /**
+     * 创建应用时的模型调用使用虚拟线程，阻塞等待不占用平台线程
+     */
+    private final ExecutorService aiCallExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Timer createAppTimer;
+
+    private Timer appNameTimer;
+
+    private Timer codeGenTypeRoutingTimer;
+
+    private Counter appNameDeferredCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        createAppTimer = Timer.builder("ai_app_create_seconds")
+                .description("创建应用接口的耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        appNameTimer = Timer.builder("ai_app_create_step_seconds")
+                .tag("step", "app_name")
+                .description("创建应用时各模型调用的耗时（并发执行，总耗时接近较慢的一个）")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        codeGenTypeRoutingTimer = Timer.builder("ai_app_create_step_seconds")
+                .tag("step", "routing")
+                .description("创建应用时各模型调用的耗时（并发执行，总耗时接近较慢的一个）")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        appNameDeferredCounter = Counter.builder("ai_app_name_deferred_total")
+                .description("应用先以占位名称入库、名称异步生成的次数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 中断仍在进行的模型调用（如异步生成的应用名称）
+        aiCallExecutor.shutdownNow();
+    }
+
 
     @Override
     public AppVO getAppVO(App app) {
@@ -160,7 +244,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
 
     @Override
-    public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+    public Flux<String> chatToGenCode(Long appId, String message, User loginUser, GenerationLease generationLease) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -177,24 +261,64 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
         }
-        // 5. 保存用户消息
-        chatHistoryService.addChatMessage(appId, message, MessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 设置监控上下文
-        MonitorContextHolder.setContext(
-                MonitorContext.builder()
-                        .userId(loginUser.getId().toString())
-                        .appId(appId.toString())
-                        .build()
-        );
-        // 7. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
-        // 8. 收集 AI 响应内容并在完成后记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum)
-                .doFinally(signalType -> {
-                    // 流结束时清理（无论成功/失败/取消）
+        MonitorContext monitorContext = MonitorContext.builder()
+                .userId(loginUser.getId().toString())
+                .appId(appId.toString())
+                .build();
+        // 5. 调用方已获取应用生成租约（同一应用同时只允许一个生成，跨节点），由本次生成流负责释放
+        return Flux.defer(() -> {
+                    // 6. 保存用户消息
+                    chatHistoryService.addChatMessage(appId, message, MessageTypeEnum.USER.getValue(), loginUser.getId());
+                    // 7. 在监控上下文中订阅生成流，模型调用和监听器在订阅时读取上下文
+                    // 8. 订阅时创建本次生成共享的响应缓冲区（代码保存和对话历史共用同一份响应内容），流结束或创建流失败时都会关闭
+                    return subscribeWithMonitorContext(monitorContext, Flux.using(responseBufferFactory::create, responseBuffer -> {
+                                // 9. 调用 AI 生成代码（流式）
+                                Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId, responseBuffer);
+                                // 合并连续的响应片段，减少 SSE 推送次数（工具调用消息和流结束时立即输出）
+                                codeStream = streamMessageCoalescer.coalesce(codeStream);
+                                // 10. 收集 AI 响应内容并在完成后记录到对话历史
+                                return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum, responseBuffer);
+                            }, ResponseBuffer::close));
+                })
+                // 保存消息和创建生成流都有阻塞操作
+                .subscribeOn(Schedulers.boundedElastic())
+                // 流结束时释放租约（无论成功/失败/取消），生成完成后提交了项目构建的等构建结束再释放
+                .doFinally(signalType -> releaseLease(generationLease, signalType, appId, codeGenTypeEnum));
+    }
+
+    /**
+     * 在监控上下文中订阅生成流，订阅结束后恢复当前线程原有的上下文
+     */
+    private static <T> Flux<T> subscribeWithMonitorContext(MonitorContext monitorContext, Flux<T> source) {
+        return Flux.create(sink -> {
+            MonitorContext previous = MonitorContextHolder.getContext();
+            MonitorContextHolder.setContext(monitorContext);
+            try {
+                Disposable subscription = source.subscribe(sink::next, sink::error, sink::complete);
+                sink.onDispose(subscription);
+            } finally {
+                if (previous != null) {
+                    MonitorContextHolder.setContext(previous);
+                } else {
                     MonitorContextHolder.clearContext();
-                });
+                }
+            }
+        });
+    }
 
+    /**
+     * 释放生成租约
+     * Vue 项目生成完成后会提交构建任务，构建读取项目目录，租约延后到构建结束再释放，期间同一应用的新生成继续排队
+     */
+    private void releaseLease(GenerationLease generationLease, SignalType signalType, long appId, CodeGenTypeEnum codeGenTypeEnum) {
+        if (signalType == SignalType.ON_COMPLETE && codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
+            BuildJob buildJob = buildJobService.getLatestJob(appId);
+            if (buildJob != null && buildJob.getEndTime() == null) {
+                generationLease.releaseAfter(buildJob.whenFinished());
+                return;
+            }
+        }
+        generationLease.release();
     }
 
 
@@ -228,8 +352,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         // 7. Vue 项目特殊处理：执行构建
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == CodeGenTypeEnum.VUE_PROJECT) {
-            // Vue 项目需要构建
-            boolean buildSuccess = vueProjectBuilder.buildProject(sourceDirPath);
+            // Vue 项目需要构建：复用生成结束时提交的构建任务，没有可用结果时重新构建
+            BuildJob buildJob = buildJobService.getOrSubmitBuild(appId);
+            boolean buildSuccess = buildJob.await(BUILD_TIMEOUT_SECONDS);
             ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败，请检查代码和依赖");
             // 检查 dist 目录是否存在
             File distDir = new File(sourceDirPath, "dist");
@@ -306,6 +431,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
 
     @Override
     public Long createApp(AppAddRequest appAddRequest, User loginUser) {
+        long startNanos = System.nanoTime();
         // 参数校验
         String initPrompt = appAddRequest.getInitPrompt();
         ThrowUtils.throwIf(StrUtil.isBlank(initPrompt), ErrorCode.PARAMS_ERROR, "初始化 prompt 不能为空");
@@ -313,24 +439,138 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         App app = new App();
         BeanUtil.copyProperties(appAddRequest, app);
         app.setUserId(loginUser.getId());
-        // 使用 AI 智能生成应用名称
-        String generatedAppName = aiAppNameGeneratorService.generateAppName(initPrompt);
-        app.setAppName(generatedAppName);
-        // 使用 AI 智能选择代码生成类型
-        String codeGenTypeResult = aiCodeGenTypeRoutingService.routeCodeGenType(initPrompt);
-        CodeGenTypeEnum selectedCodeGenType;
-        try {
-            selectedCodeGenType = CodeGenTypeEnum.valueOf(codeGenTypeResult.trim());
-        } catch (IllegalArgumentException e) {
-            // 如果 AI 返回了提示信息而非枚举值，默认使用 HTML 类型
-            selectedCodeGenType = CodeGenTypeEnum.HTML;
-        }
+        // 名称生成和类型路由是两次独立的模型调用，在虚拟线程上并发执行，共用同一个截止时间
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(createAppDeadlineMs);
+        CompletableFuture<String> appNameFuture = supplyTimed(appNameTimer,
+                () -> aiAppNameGeneratorService.generateAppName(initPrompt));
+        CompletableFuture<RoutingDecision> codeGenTypeFuture = supplyTimed(codeGenTypeRoutingTimer,
+                () -> fastPathCodeGenTypeRouter.route(initPrompt));
+        // 使用 AI 智能选择代码生成类型（决定后续生成方式，必须等待）
+        RoutingDecision routingDecision = awaitUntil(codeGenTypeFuture, deadlineNanos, "代码生成类型路由");
+        CodeGenTypeEnum routedCodeGenType = routingDecision == null ? null : parseCodeGenType(routingDecision.getResult());
+        // 路由超时、失败或模型没有返回合法类型时默认使用 HTML 类型，来源记为默认值，不作为分类器的训练样本
+        CodeGenTypeEnum selectedCodeGenType = routedCodeGenType == null ? CodeGenTypeEnum.HTML : routedCodeGenType;
+        CodeGenTypeSourceEnum codeGenTypeSource = routedCodeGenType == null
+                ? CodeGenTypeSourceEnum.FALLBACK : routingDecision.getSource();
         app.setCodeGenType(selectedCodeGenType.getValue());
+        app.setCodeGenTypeSource(codeGenTypeSource.getValue());
+        // 使用 AI 智能生成应用名称：路由完成时名称已生成则直接使用，否则先用占位名称入库，生成后再更新
+        String generatedAppName = appNameFuture.isDone() ? awaitUntil(appNameFuture, deadlineNanos, "应用名称生成") : null;
+        String placeholderAppName = StrUtil.maxLength(StrUtil.trim(initPrompt), 12);
+        boolean appNameDeferred = StrUtil.isBlank(generatedAppName);
+        app.setAppName(appNameDeferred ? placeholderAppName : generatedAppName);
         // 插入数据库
         boolean result = this.save(app);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
-        log.info("应用创建成功，ID: {}, 类型: {}", app.getId(), selectedCodeGenType.getValue());
-        return app.getId();
+        Long appId = app.getId();
+        if (codeGenTypeSource == CodeGenTypeSourceEnum.FAST_PATH && routingDecision.getShadowCheck() != null) {
+            // 抽样复核一致的快速路由结果可以作为训练样本
+            routingDecision.getShadowCheck().thenAccept(agree -> {
+                if (agree) {
+                    updateCodeGenTypeSource(appId, CodeGenTypeSourceEnum.FAST_PATH, CodeGenTypeSourceEnum.SHADOW);
+                }
+            });
+        }
+        if (appNameDeferred && !appNameFuture.isDone()) {
+            appNameDeferredCounter.increment();
+            long remainingNanos = Math.max(deadlineNanos - System.nanoTime(), 0);
+            // 截止时间到达仍未生成时中断名称生成的模型调用
+            appNameFuture.orTimeout(remainingNanos, TimeUnit.NANOSECONDS)
+                    .whenComplete((appName, e) -> {
+                        if (e != null) {
+                            log.warn("应用名称生成失败，保留占位名称, appId: {}, error: {}", appId, e.getMessage());
+                        } else {
+                            updatePlaceholderAppName(appId, placeholderAppName, appName);
+                        }
+                    });
+        }
+        createAppTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        log.info("应用创建成功，ID: {}, 类型: {}", appId, selectedCodeGenType.getValue());
+        return appId;
+    }
+
+    /**
+     * 在虚拟线程上执行模型调用并记录耗时
+     * 返回的结果被取消或超时结束时中断模型调用所在的线程，不再等待模型返回
+     */
+    private <T> CompletableFuture<T> supplyTimed(Timer timer, Supplier<T> supplier) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = aiCallExecutor.submit(() -> {
+            long startNanos = System.nanoTime();
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 等待结果直到截止时间，超时或失败时返回 null，超时时取消模型调用
+     */
+    private <T> T awaitUntil(CompletableFuture<T> future, long deadlineNanos, String taskName) {
+        try {
+            return future.get(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("{}超时", taskName);
+        } catch (ExecutionException e) {
+            log.warn("{}失败: {}", taskName, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * 解析路由结果，AI 返回了提示信息而非枚举名时返回 null
+     */
+    private CodeGenTypeEnum parseCodeGenType(String codeGenTypeResult) {
+        if (codeGenTypeResult == null) {
+            return null;
+        }
+        try {
+            return CodeGenTypeEnum.valueOf(codeGenTypeResult.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 更新生成类型来源，来源已被修改时不覆盖
+     */
+    private void updateCodeGenTypeSource(Long appId, CodeGenTypeSourceEnum expected, CodeGenTypeSourceEnum source) {
+        App updateApp = new App();
+        updateApp.setCodeGenTypeSource(source.getValue());
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(App::getId, appId)
+                .eq(App::getCodeGenTypeSource, expected.getValue());
+        this.update(updateApp, queryWrapper);
+    }
+
+    /**
+     * 名称异步生成后更新，用户已修改名称时不覆盖
+     */
+    private void updatePlaceholderAppName(Long appId, String placeholderAppName, String appName) {
+        if (StrUtil.isBlank(appName)) {
+            return;
+        }
+        App updateApp = new App();
+        updateApp.setAppName(appName);
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(App::getId, appId)
+                .eq(App::getAppName, placeholderAppName);
+        boolean updated = this.update(updateApp, queryWrapper);
+        log.info("应用名称异步生成完成, appId: {}, 名称: {}, 已更新: {}", appId, appName, updated);
     }
 
 
@@ -0,0 +1,249 @@
+package com.hz.aicodelessappbuilder.service.impl;
+
+import com.hz.aicodelessappbuilder.constant.AppConstant;
+import com.hz.aicodelessappbuilder.core.builder.BuildEvent;
+import com.hz.aicodelessappbuilder.core.builder.BuildJob;
+import com.hz.aicodelessappbuilder.core.builder.VueProjectBuilder;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import com.hz.aicodelessappbuilder.model.enums.BuildStatusEnum;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import com.hz.aicodelessappbuilder.model.vo.BuildJobVO;
+import com.hz.aicodelessappbuilder.service.BuildJobService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 构建任务服务实现
+ * 指标：
+ * - ai_build_queue_depth：排队中的构建任务数（包括等待同一应用前序构建结束的任务）
+ * - ai_build_running：执行中的构建任务数
+ * - ai_build_duration_seconds：构建耗时（按结果区分）
+ */
+@Service
+@Slf4j
+public class BuildJobServiceImpl implements BuildJobService {
+
+    @Resource
+    private VueProjectBuilder vueProjectBuilder;
+
+    @Resource
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 构建工作线程数
+     */
+    @Value("${code.build.worker-count:2}")
+    private int workerCount;
+
+    /**
+     * 最大排队任务数
+     */
+    @Value("${code.build.queue-capacity:32}")
+    private int queueCapacity;
+
+    /**
+     * 构建结束后任务状态的保留时间（秒）
+     */
+    @Value("${code.build.retention-seconds:600}")
+    private long retentionSeconds;
+
+    /**
+     * 每个应用最近一次的构建任务
+     */
+    private final Map<Long, BuildJob> latestJobs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger runningCount = new AtomicInteger();
+
+    /**
+     * 等待同一应用前序构建结束、尚未提交到线程池的任务数
+     */
+    private final AtomicInteger waitingCount = new AtomicInteger();
+
+    private ThreadPoolExecutor buildExecutor;
+
+    private Timer successTimer;
+
+    private Timer failedTimer;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        buildExecutor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "vue-builder-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("ai_build_queue_depth", buildExecutor, executor -> executor.getQueue().size() + waitingCount.get())
+                .description("排队中的构建任务数")
+                .register(meterRegistry);
+        Gauge.builder("ai_build_running", runningCount, AtomicInteger::get)
+                .description("执行中的构建任务数")
+                .register(meterRegistry);
+        successTimer = buildDurationTimer(BuildStatusEnum.SUCCESS);
+        failedTimer = buildDurationTimer(BuildStatusEnum.FAILED);
+    }
+
+    private Timer buildDurationTimer(BuildStatusEnum status) {
+        return Timer.builder("ai_build_duration_seconds")
+                .description("Vue 项目构建耗时")
+                .tag("status", status.getValue())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildExecutor.shutdownNow();
+    }
+
+    @Override
+    public synchronized BuildJob submitBuild(long appId) {
+        BuildJob latestJob = latestJobs.get(appId);
+        if (latestJob != null && latestJob.getStatus() == BuildStatusEnum.QUEUED) {
+            // 排队中的任务尚未开始，会构建到最新的代码，直接合并
+            return latestJob;
+        }
+        // 仍在执行的任务作为前序任务，新任务等待其结束后再构建
+        BuildJob previous = latestJob != null && latestJob.getStatus() == BuildStatusEnum.RUNNING ? latestJob : null;
+        // 在构建目录中构建源码快照，不占用项目目录
+        String buildPath = AppConstant.CODE_BUILD_ROOT_DIR + File.separator
+                + CodeGenTypeEnum.VUE_PROJECT.getValue() + "_" + appId;
+        BuildJob buildJob = new BuildJob(appId, buildPath, previous);
+        if (previous == null) {
+            try {
+                buildExecutor.execute(() -> runJob(buildJob));
+            } catch (RejectedExecutionException e) {
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "构建任务过多，请稍后再试");
+            }
+        } else {
+            // 同一目录不能并发执行 npm：前序任务结束后才提交到线程池，等待期间保持排队状态，不占用工作线程
+            waitingCount.incrementAndGet();
+            previous.whenFinished().whenComplete((previousSuccess, error) -> {
+                waitingCount.decrementAndGet();
+                executeAfterPrevious(buildJob);
+            });
+        }
+        latestJobs.put(appId, buildJob);
+        log.info("提交构建任务, appId: {}, 排队数: {}", appId, buildExecutor.getQueue().size());
+        return buildJob;
+    }
+
+    @Override
+    public synchronized BuildJob getOrSubmitBuild(long appId) {
+        BuildJob latestJob = latestJobs.get(appId);
+        if (latestJob != null) {
+            BuildStatusEnum status = latestJob.getStatus();
+            // 排队中的任务开始时才读取源码，一定会构建到最新版本；执行中的任务只有源码版本一致时才复用
+            if (status == BuildStatusEnum.QUEUED || (status == BuildStatusEnum.RUNNING
+                    && latestJob.getSourceVersion() == projectWorkspaceManager.getSourceVersion(appId))) {
+                return latestJob;
+            }
+        }
+        return submitBuild(appId);
+    }
+
+    @Override
+    public BuildJob getLatestJob(long appId) {
+        return latestJobs.get(appId);
+    }
+
+    @Override
+    public BuildJobVO getBuildJobVO(BuildJob buildJob) {
+        if (buildJob == null) {
+            return null;
+        }
+        BuildJobVO buildJobVO = new BuildJobVO();
+        buildJobVO.setAppId(buildJob.getAppId());
+        buildJobVO.setStatus(buildJob.getStatus().getValue());
+        buildJobVO.setStep(buildJob.getStep());
+        buildJobVO.setCreateTime(buildJob.getCreateTime());
+        buildJobVO.setStartTime(buildJob.getStartTime());
+        buildJobVO.setEndTime(buildJob.getEndTime());
+        if (buildJob.getStatus() == BuildStatusEnum.QUEUED) {
+            buildJobVO.setQueuePosition(getQueuePosition(buildJob));
+        }
+        return buildJobVO;
+    }
+
+    /**
+     * 前序任务结束后提交任务，线程池已满时任务直接失败
+     */
+    private void executeAfterPrevious(BuildJob buildJob) {
+        try {
+            buildExecutor.execute(() -> runJob(buildJob));
+        } catch (RejectedExecutionException e) {
+            log.error("前序构建结束后提交构建任务被拒绝, appId: {}", buildJob.getAppId());
+            buildJob.onEvent(BuildEvent.log("构建任务过多，请稍后再试"));
+            buildJob.finish(false);
+            scheduleRemoval(buildJob);
+        }
+    }
+
+    /**
+     * 执行构建任务
+     */
+    private void runJob(BuildJob buildJob) {
+        runningCount.incrementAndGet();
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try {
+            // 只在复制源码快照和发布 dist 时持有项目目录锁，npm 执行期间写回不受影响
+            Path buildDir = Paths.get(buildJob.getProjectPath());
+            buildJob.markRunning(projectWorkspaceManager.snapshotSources(buildJob.getAppId(), buildDir));
+            success = vueProjectBuilder.buildProject(buildJob.getProjectPath(), buildJob::onEvent);
+            if (success) {
+                projectWorkspaceManager.publishBuildOutput(buildJob.getAppId(), buildDir.resolve("dist"));
+            }
+        } catch (Exception e) {
+            success = false;
+            log.error("构建 Vue 项目时发生异常, appId: {}, error: {}", buildJob.getAppId(), e.getMessage(), e);
+        } finally {
+            runningCount.decrementAndGet();
+            (success ? successTimer : failedTimer).record(Duration.ofNanos(System.nanoTime() - startNanos));
+            buildJob.finish(success);
+            scheduleRemoval(buildJob);
+        }
+    }
+
+    private void scheduleRemoval(BuildJob buildJob) {
+        Schedulers.parallel().schedule(() -> latestJobs.remove(buildJob.getAppId(), buildJob),
+                retentionSeconds, TimeUnit.SECONDS);
+    }
+
+    private int getQueuePosition(BuildJob buildJob) {
+        int position = 1;
+        for (BuildJob job : latestJobs.values()) {
+            if (job != buildJob && job.getStatus() == BuildStatusEnum.QUEUED
+                    && job.getCreateTime().isBefore(buildJob.getCreateTime())) {
+                position++;
+            }
+        }
+        return position;
+    }
+}
@@ -1,10 +1,13 @@
 package com.hz.aicodelessappbuilder.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hz.aicodelessappbuilder.constant.UserConstant;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
 import com.hz.aicodelessappbuilder.exception.ErrorCode;
 import com.hz.aicodelessappbuilder.exception.ThrowUtils;
+import com.hz.aicodelessappbuilder.manager.ChatHistoryBatchWriter;
 import com.hz.aicodelessappbuilder.mapper.ChatHistoryMapper;
 import com.hz.aicodelessappbuilder.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.hz.aicodelessappbuilder.model.entity.App;
@@ -19,14 +22,18 @@ import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 对话历史 服务层实现
@@ -44,6 +51,15 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     @Resource
     private AppService appService;
 
+    @Resource
+    private ChatHistoryBatchWriter chatHistoryBatchWriter;
+
+    /**
+     * 按创建时间（相同时按 id）降序
+     */
+    private static final Comparator<ChatHistory> NEWEST_FIRST =
+            Comparator.comparing(ChatHistory::getCreateTime).thenComparing(ChatHistory::getId).reversed();
+
 
     @Override
     public QueryWrapper getQueryWrapper(ChatHistoryQueryRequest chatHistoryQueryRequest) {
@@ -83,20 +99,44 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
-        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "消息内容不能为空");
+        chatHistoryBatchWriter.submit(buildChatMessage(appId, message, messageType, userId));
+        return true;
+    }
+
+    @Override
+    public boolean addChatMessage(Long appId, ResponseBuffer responseBuffer, String messageType, Long userId) {
+        Path spillFile = responseBuffer.detachSpillFile();
+        if (spillFile == null) {
+            // 未转存的内容本来就在内存中
+            return addChatMessage(appId, responseBuffer.readAll(), messageType, userId);
+        }
+        // 长响应的临时文件交给批量写入器，落库时才读取，之后由写入器删除
+        chatHistoryBatchWriter.submit(buildChatMessage(appId, null, messageType, userId), spillFile);
+        return true;
+    }
+
+    /**
+     * 校验参数并创建对话消息，提前生成 id 和创建时间，保证排序与写入时机无关
+     */
+    private ChatHistory buildChatMessage(Long appId, String message, String messageType, Long userId) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
         ThrowUtils.throwIf(StrUtil.isBlank(messageType), ErrorCode.PARAMS_ERROR, "消息类型不能为空");
         ThrowUtils.throwIf(userId == null || userId <= 0, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
         // 验证消息类型是否有效
         MessageTypeEnum messageTypeEnum = MessageTypeEnum.getEnumByValue(messageType);
         ThrowUtils.throwIf(messageTypeEnum == null, ErrorCode.PARAMS_ERROR, "不支持的消息类型: " + messageType);
-        ChatHistory chatHistory = ChatHistory.builder()
+        LocalDateTime now = LocalDateTime.now();
+        return ChatHistory.builder()
+                .id(IdUtil.getSnowflakeNextId())
                 .appId(appId)
                 .message(message)
                 .messageType(messageType)
                 .userId(userId)
+                .createTime(now)
+                .updateTime(now)
+                .isDelete(0)
                 .build();
-        return this.save(chatHistory);
     }
 
 
@@ -113,19 +153,43 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
         boolean isCreator = app.getUserId().equals(loginUser.getId());
         ThrowUtils.throwIf(!isAdmin && !isCreator, ErrorCode.NO_AUTH_ERROR, "无权查看该应用的对话历史");
+        // 先取尚未落库的消息，再查库，保证批量写入期间的消息不会漏读
+        List<ChatHistory> pendingList = chatHistoryBatchWriter.getPendingMessages(appId).stream()
+                .filter(history -> lastCreateTime == null || history.getCreateTime().isBefore(lastCreateTime))
+                .toList();
         // 构建查询条件
         ChatHistoryQueryRequest queryRequest = new ChatHistoryQueryRequest();
         queryRequest.setAppId(appId);
         queryRequest.setLastCreateTime(lastCreateTime);
         QueryWrapper queryWrapper = this.getQueryWrapper(queryRequest);
         // 查询数据
-        return this.page(Page.of(1, pageSize), queryWrapper);
+        Page<ChatHistory> savedPage = this.page(Page.of(1, pageSize), queryWrapper);
+        if (pendingList.isEmpty()) {
+            return savedPage;
+        }
+        // 未落库的消息都比库中的新，合并后按创建时间降序取一页
+        Map<Long, ChatHistory> historyMap = new HashMap<>();
+        for (ChatHistory history : savedPage.getRecords()) {
+            historyMap.put(history.getId(), history);
+        }
+        long unsavedCount = pendingList.stream()
+                .filter(history -> historyMap.putIfAbsent(history.getId(), history) == null)
+                .count();
+        Page<ChatHistory> mergedPage = new Page<>(savedPage.getPageNumber(), savedPage.getPageSize(),
+                savedPage.getTotalRow() + unsavedCount);
+        mergedPage.setRecords(historyMap.values().stream()
+                .sorted(NEWEST_FIRST)
+                .limit(pageSize)
+                .toList());
+        return mergedPage;
     }
 
 
     @Override
     public boolean deleteByAppId(Long appId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
+        // 先丢弃尚未落库的消息，避免删除后又被写入
+        chatHistoryBatchWriter.discard(appId);
         QueryWrapper queryWrapper = QueryWrapper.create()
                 .eq("appId", appId);
         return this.remove(queryWrapper);
@@ -133,19 +197,19 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount) {
         try {
-            // 直接构造查询条件，起始点为 1 而不是 0，用于排除最新的用户消息
+            // 先取尚未落库的消息，再查库，保证批量写入期间的消息不会漏读
+            List<ChatHistory> pendingList = chatHistoryBatchWriter.getPendingMessages(appId);
+            // 多取一条，合并后排除最新的用户消息
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId)
                     .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
+                    .limit(0, maxCount + 1);
+            List<ChatHistory> historyList = mergePendingMessages(this.list(queryWrapper), pendingList, maxCount);
             if (CollUtil.isEmpty(historyList)) {
                 return 0;
             }
-            // 反转列表，确保按时间正序（老的在前，新的在后）
-            historyList = historyList.reversed();
             // 按时间顺序添加到记忆中
             int loadedCount = 0;
             // 先清理历史缓存，防止重复加载
@@ -168,5 +232,51 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    @Override
+    public List<String> listLatestUserMessages(Long appId, int count) {
+        // 先取尚未落库的消息，再查库
+        List<ChatHistory> pendingList = chatHistoryBatchWriter.getPendingMessages(appId).stream()
+                .filter(history -> MessageTypeEnum.USER.getValue().equals(history.getMessageType()))
+                .toList();
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistory::getAppId, appId)
+                .eq(ChatHistory::getMessageType, MessageTypeEnum.USER.getValue())
+                .orderBy(ChatHistory::getCreateTime, false)
+                .limit(0, count);
+        Map<Long, ChatHistory> historyMap = new HashMap<>();
+        for (ChatHistory history : this.list(queryWrapper)) {
+            historyMap.put(history.getId(), history);
+        }
+        for (ChatHistory history : pendingList) {
+            historyMap.putIfAbsent(history.getId(), history);
+        }
+        return historyMap.values().stream()
+                .sorted(NEWEST_FIRST)
+                .limit(count)
+                .map(ChatHistory::getMessage)
+                .toList();
+    }
+
+    /**
+     * 合并已落库和未落库的消息（按 id 去重），排除最新的一条用户消息后取最近 maxCount 条
+     *
+     * @return 按时间正序（老的在前，新的在后）的消息
+     */
+    private List<ChatHistory> mergePendingMessages(List<ChatHistory> savedList, List<ChatHistory> pendingList, int maxCount) {
+        Map<Long, ChatHistory> historyMap = new HashMap<>();
+        for (ChatHistory history : savedList) {
+            historyMap.put(history.getId(), history);
+        }
+        for (ChatHistory history : pendingList) {
+            historyMap.putIfAbsent(history.getId(), history);
+        }
+        return historyMap.values().stream()
+                .sorted(NEWEST_FIRST)
+                .skip(1)
+                .limit(maxCount)
+                .toList()
+                .reversed();
+    }
+
 
 }
\ No newline at end of file
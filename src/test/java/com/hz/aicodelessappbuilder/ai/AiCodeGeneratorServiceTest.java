@@ -17,13 +17,13 @@ class AiCodeGeneratorServiceTest {
 
     @Test
     void generateHtmlCode() {
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode("做个工作记录小工具");
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(1L, "做个工作记录小工具");
         Assertions.assertNotNull(result);
     }
 
     @Test
     void generateMultiFileCode() {
-        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode("做个留言板");
+        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode(1L, "做个留言板");
         Assertions.assertNotNull(multiFileCode);
     }
 }
@@ -0,0 +1,139 @@
+package com.hz.aicodelessappbuilder.ai;
+
+import com.hz.aicodelessappbuilder.ai.guardrail.PromptSafetyInputGuardrail;
+import com.hz.aicodelessappbuilder.ai.model.HtmlCodeResult;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 服务实例的堆占用基准测试
+ * 模拟大量活跃应用各完成一次 HTML 生成（使用本地假模型，不发起网络请求），对比：
+ * - 每个应用单独创建 AiServices 代理（原有方式）
+ * - 所有应用共享一个代理，对话记忆按 @MemoryId 获取
+ * 两种方式的对话记忆内容相同，差异来自代理本身。耗时为创建并完成全部应用首次调用的时间，
+ * 每次迭代结束时输出 GC 后仍占用的堆内存。
+ * 运行方式：执行 main 方法
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class AiServiceHeapBenchmark {
+
+    /**
+     * 原有方式的服务接口：不带 @MemoryId，每个代理绑定一个对话记忆
+     */
+    interface PerAppHtmlService {
+
+        @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
+        HtmlCodeResult generateHtmlCode(String userMessage);
+    }
+
+    @Param({"10000"})
+    private int appCount;
+
+    private final ChatModel chatModel = new ChatModel() {
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            return ChatResponse.builder()
+                    .aiMessage(AiMessage.from("{\"htmlCode\":\"<html></html>\",\"description\":\"示例页面\"}"))
+                    .build();
+        }
+    };
+
+    private InMemoryChatMemoryStore chatMemoryStore;
+
+    /**
+     * 迭代期间保持引用，结束时统计堆占用
+     */
+    private List<Object> retained;
+
+    private long baselineBytes;
+
+    @Setup(Level.Iteration)
+    public void beforeIteration() {
+        chatMemoryStore = new InMemoryChatMemoryStore();
+        retained = new ArrayList<>();
+        baselineBytes = usedHeapAfterGc();
+    }
+
+    @TearDown(Level.Iteration)
+    public void afterIteration() {
+        long retainedBytes = usedHeapAfterGc() - baselineBytes;
+        System.out.printf("%n%d 个应用占用堆内存: %.1f MB（每个应用 %.1f KB）%n",
+                appCount, retainedBytes / 1024.0 / 1024.0, retainedBytes / 1024.0 / appCount);
+        retained = null;
+        chatMemoryStore = null;
+    }
+
+    /**
+     * 每个应用一个代理
+     */
+    @Benchmark
+    public void perAppProxies() {
+        for (long appId = 1; appId <= appCount; appId++) {
+            MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                    .id(appId)
+                    .chatMemoryStore(chatMemoryStore)
+                    .maxMessages(50)
+                    .build();
+            PerAppHtmlService service = AiServices.builder(PerAppHtmlService.class)
+                    .chatModel(chatModel)
+                    .inputGuardrails(new PromptSafetyInputGuardrail())
+                    .chatMemory(chatMemory)
+                    .build();
+            service.generateHtmlCode("做个工作记录小工具");
+            retained.add(service);
+        }
+    }
+
+    /**
+     * 共享代理，按记忆ID获取对话记忆
+     */
+    @Benchmark
+    public void sharedProxy() {
+        AiCodeGeneratorService service = AiServices.builder(AiCodeGeneratorService.class)
+                .chatModel(chatModel)
+                .inputGuardrails(new PromptSafetyInputGuardrail())
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder()
+                        .id(memoryId)
+                        .chatMemoryStore(chatMemoryStore)
+                        .maxMessages(50)
+                        .build())
+                .build();
+        for (long appId = 1; appId <= appCount; appId++) {
+            service.generateHtmlCode(appId, "做个工作记录小工具");
+        }
+        retained.add(service);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AiServiceHeapBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,172 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对话记忆压缩测试
+ */
+class ChatMemoryCompactorTest {
+
+    private static final String LONG_CONTENT = StrUtil.repeat("<div class=\"card\">内容</div>\n", 40);
+
+    private ChatMemoryCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        compactor = new ChatMemoryCompactor();
+        ReflectionTestUtils.setField(compactor, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(compactor, "maxTokens", 24000);
+        ReflectionTestUtils.setField(compactor, "lowWaterRatio", 0.75);
+        ReflectionTestUtils.setField(compactor, "compactMinChars", 256);
+        ReflectionTestUtils.setField(compactor, "summaryMaxTurns", 20);
+        compactor.initMetrics();
+    }
+
+    @Test
+    void splitTurnsStartsTurnAtUserMessage() {
+        ChatMessage leading = AiMessage.from("开场");
+        ChatMessage firstRequest = UserMessage.from("生成页面");
+        ChatMessage firstReply = AiMessage.from("已生成");
+        ChatMessage secondRequest = UserMessage.from("修改标题");
+        ChatMessage secondReply = AiMessage.from("已修改");
+        List<List<ChatMessage>> turns = ChatMemoryCompactor.splitTurns(
+                List.of(leading, firstRequest, firstReply, secondRequest, secondReply));
+        // 第一条用户消息之前的消息归入第一轮
+        Assertions.assertEquals(List.of(
+                List.of(leading, firstRequest, firstReply),
+                List.of(secondRequest, secondReply)), turns);
+        Assertions.assertTrue(ChatMemoryCompactor.splitTurns(List.of()).isEmpty());
+    }
+
+    @Test
+    void countTokensSumsMessages() {
+        ChatMessage first = UserMessage.from("生成一个待办事项页面");
+        ChatMessage second = AiMessage.from(LONG_CONTENT);
+        int firstTokens = compactor.countTokens(List.of(first));
+        int secondTokens = compactor.countTokens(List.of(second));
+        Assertions.assertTrue(firstTokens > 0);
+        Assertions.assertTrue(secondTokens > firstTokens);
+        Assertions.assertEquals(firstTokens + secondTokens, compactor.countTokens(List.of(first, second)));
+        Assertions.assertEquals(0, compactor.countTokens(List.of()));
+    }
+
+    @Test
+    void withinBudgetIsReturnedAsIs() {
+        List<ChatMessage> messages = List.of(SystemMessage.from("系统"), UserMessage.from("你好"), AiMessage.from("你好"));
+        Assertions.assertSame(messages, compactor.compact(1L, messages, true));
+    }
+
+    @Test
+    void staleFileBodiesBecomeReferences() {
+        ToolExecutionRequest write = toolRequest("call_write", "writeFile",
+                JSONUtil.createObj().set("relativeFilePath", "src/App.vue").set("content", LONG_CONTENT));
+        ToolExecutionRequest batchEdit = toolRequest("call_batch", "batchEditFiles", JSONUtil.createObj()
+                .set("edits", JSONUtil.createArray()
+                        .put(JSONUtil.createObj().set("type", "WRITE")
+                                .set("relativeFilePath", "src/Home.vue").set("content", LONG_CONTENT))
+                        .put(JSONUtil.createObj().set("type", "REPLACE").set("relativeFilePath", "src/main.js")
+                                .set("oldContent", LONG_CONTENT).set("newContent", "短内容"))));
+        ToolExecutionRequest read = toolRequest("call_read", "readFile",
+                JSONUtil.createObj().set("relativeFilePath", "src/App.vue"));
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from("系统"));
+        messages.add(UserMessage.from("生成页面"));
+        messages.add(AiMessage.from(List.of(write, batchEdit, read)));
+        messages.add(ToolExecutionResultMessage.from(write, "文件写入成功: src/App.vue（内容哈希: 0123456789abcdef）"));
+        messages.add(ToolExecutionResultMessage.from(batchEdit, "1. src/Home.vue：成功（内容哈希: 0123456789abcdef）"));
+        messages.add(ToolExecutionResultMessage.from(read, "文件 src/App.vue（内容哈希: 0123456789abcdef，共 40 行）：\n" + LONG_CONTENT));
+        messages.add(AiMessage.from("已生成"));
+        // 最近一轮的文件内容保留原样
+        ToolExecutionRequest latestWrite = toolRequest("call_latest", "writeFile",
+                JSONUtil.createObj().set("relativeFilePath", "src/App.vue").set("content", LONG_CONTENT));
+        messages.add(UserMessage.from("修改标题"));
+        messages.add(AiMessage.from(List.of(latestWrite)));
+        budget(compactor.countTokens(messages) - 1, 1.0);
+
+        List<ChatMessage> result = compactor.compact(1L, messages, true);
+
+        Assertions.assertEquals(messages.size(), result.size());
+        Assertions.assertTrue(compactor.countTokens(result) < compactor.countTokens(messages));
+        List<ToolExecutionRequest> requests = ((AiMessage) result.get(2)).toolExecutionRequests();
+        JSONObject writeArguments = JSONUtil.parseObj(requests.get(0).arguments());
+        Assertions.assertEquals("src/App.vue", writeArguments.getStr("relativeFilePath"));
+        Assertions.assertTrue(writeArguments.getStr("content").startsWith("[已省略"));
+        JSONObject firstEdit = JSONUtil.parseObj(requests.get(1).arguments()).getJSONArray("edits").getJSONObject(0);
+        JSONObject secondEdit = JSONUtil.parseObj(requests.get(1).arguments()).getJSONArray("edits").getJSONObject(1);
+        Assertions.assertTrue(firstEdit.getStr("content").startsWith("[已省略"));
+        Assertions.assertTrue(secondEdit.getStr("oldContent").startsWith("[已省略"));
+        Assertions.assertEquals("短内容", secondEdit.getStr("newContent"));
+        String readResult = ((ToolExecutionResultMessage) result.get(5)).text();
+        Assertions.assertTrue(readResult.startsWith("[文件内容已省略] src/App.vue"), readResult);
+        // 内容已替换为引用，结果中的哈希一并去掉
+        Assertions.assertEquals("文件写入成功: src/App.vue", ((ToolExecutionResultMessage) result.get(3)).text());
+        Assertions.assertEquals("1. src/Home.vue：成功", ((ToolExecutionResultMessage) result.get(4)).text());
+        Assertions.assertFalse(readResult.contains("0123456789abcdef"), readResult);
+        Assertions.assertSame(messages.get(7), result.get(7));
+        Assertions.assertSame(messages.get(8), result.get(8));
+    }
+
+    @Test
+    void oldTurnsAreSummarized() {
+        ToolExecutionRequest batchEdit = toolRequest("call_batch", "batchEditFiles", JSONUtil.createObj()
+                .set("edits", JSONUtil.createArray()
+                        .put(JSONUtil.createObj().set("type", "WRITE")
+                                .set("relativeFilePath", "src/Home.vue").set("content", LONG_CONTENT))
+                        .put(JSONUtil.createObj().set("type", "DELETE").set("relativeFilePath", "src/Old.vue"))));
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(SystemMessage.from("系统"));
+        messages.add(UserMessage.from("生成首页"));
+        messages.add(AiMessage.from(List.of(batchEdit)));
+        messages.add(ToolExecutionResultMessage.from(batchEdit, "批量编辑成功"));
+        messages.add(AiMessage.from("首页已生成"));
+        messages.add(UserMessage.from("修改标题"));
+        messages.add(AiMessage.from("标题已修改"));
+        budget(compactor.countTokens(messages) - 1, 0.5);
+
+        List<ChatMessage> result = compactor.compact(1L, messages, false);
+
+        // 系统消息 + 摘要 + 最近一轮
+        Assertions.assertEquals(4, result.size());
+        Assertions.assertSame(messages.get(0), result.get(0));
+        Assertions.assertTrue(ChatMemoryCompactor.isSummary(result.get(1)));
+        String summary = ((UserMessage) result.get(1)).singleText();
+        Assertions.assertEquals(ChatMemoryCompactor.SUMMARY_PREFIX
+                + "\n- 用户：生成首页；操作：writeFile src/Home.vue、deleteFile src/Old.vue；回复：首页已生成", summary);
+        Assertions.assertEquals(messages.subList(5, 7), result.subList(2, 4));
+
+        // 再次压缩时在已有摘要后追加
+        List<ChatMessage> next = new ArrayList<>(result);
+        next.add(UserMessage.from("增加页脚"));
+        next.add(AiMessage.from("页脚已增加"));
+        budget(compactor.countTokens(next) - 1, 0.5);
+        List<ChatMessage> nextResult = compactor.compact(1L, next, false);
+        String nextSummary = ((UserMessage) nextResult.get(1)).singleText();
+        Assertions.assertEquals(summary + "\n- 用户：修改标题；回复：标题已修改", nextSummary);
+        Assertions.assertEquals(next.subList(4, 6), nextResult.subList(2, 4));
+    }
+
+    private void budget(int maxTokens, double lowWaterRatio) {
+        ReflectionTestUtils.setField(compactor, "maxTokens", maxTokens);
+        ReflectionTestUtils.setField(compactor, "lowWaterRatio", lowWaterRatio);
+    }
+
+    private static ToolExecutionRequest toolRequest(String id, String name, JSONObject arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments.toString()).build();
+    }
+}
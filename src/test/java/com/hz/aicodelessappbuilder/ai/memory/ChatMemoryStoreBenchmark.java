@@ -0,0 +1,183 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.community.store.memory.chat.redis.StoreType;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.redisnode.RedisNode;
+import org.redisson.api.redisnode.RedisNodes;
+import org.redisson.config.Config;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话记忆存储的基准测试
+ * 模拟一轮工具调用较多的 VUE_PROJECT 对话（用户消息 + 多次写文件工具调用 + 最终回复，记忆窗口已满），
+ * 对比整体读写的 RedisChatMemoryStore 与增量写入的 TieredChatMemoryStore 每轮的耗时和 Redis 网络流量。
+ * 需要本地 Redis（默认 localhost:6379，密码 123456，可通过 -Dredis.host / -Dredis.port / -Dredis.password 指定）；
+ * RedisChatMemoryStore 默认使用 RedisJSON，没有 JSON 模块的 Redis 可指定 -Dredis.store-type=STRING。
+ * 运行方式：执行 main 方法，每轮的 Redis 字节数在每次迭代结束时输出
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMemoryStoreBenchmark {
+
+    private static final int MAX_MESSAGES = 50;
+
+    /**
+     * 每轮的工具调用次数
+     */
+    @Param({"20"})
+    private int toolCallsPerTurn;
+
+    /**
+     * 每次工具调用写入的文件大小（字符）
+     */
+    @Param({"4096"})
+    private int fileSize;
+
+    private RedissonClient redissonClient;
+
+    private MessageWindowChatMemory redisMemory;
+
+    private MessageWindowChatMemory tieredMemory;
+
+    private String fileContent;
+
+    private long turns;
+
+    private long bytesBefore;
+
+    @Setup
+    public void setup() {
+        String host = System.getProperty("redis.host", "localhost");
+        int port = Integer.getInteger("redis.port", 6379);
+        String password = System.getProperty("redis.password", "123456");
+        Config config = new Config();
+        config.useSingleServer()
+                .setAddress("redis://" + host + ":" + port)
+                .setPassword(StrUtil.emptyToNull(password));
+        redissonClient = Redisson.create(config);
+
+        RedisChatMemoryStore redisChatMemoryStore = RedisChatMemoryStore.builder()
+                .host(host)
+                .port(port)
+                .user("default")
+                .password(password)
+                .ttl(3600L)
+                .storeType(StoreType.valueOf(System.getProperty("redis.store-type", StoreType.JSON.name())))
+                .build();
+        TieredChatMemoryStore tieredChatMemoryStore = new TieredChatMemoryStore();
+        ReflectionTestUtils.setField(tieredChatMemoryStore, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(tieredChatMemoryStore, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tieredChatMemoryStore, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(tieredChatMemoryStore, "localCacheMaximumSize", 2000L);
+        ReflectionTestUtils.setField(tieredChatMemoryStore, "localCacheExpireMinutes", 10L);
+        tieredChatMemoryStore.init();
+
+        fileContent = "<template>\n  <div class=\"item\"></div>\n</template>\n".repeat(fileSize / 50 + 1).substring(0, fileSize);
+        redisMemory = createMemory("benchmark_redis", redisChatMemoryStore);
+        tieredMemory = createMemory("benchmark_tiered", tieredChatMemoryStore);
+    }
+
+    @TearDown
+    public void tearDown() {
+        redisMemory.clear();
+        tieredMemory.clear();
+        redissonClient.shutdown();
+    }
+
+    @Setup(Level.Iteration)
+    public void beforeIteration() {
+        turns = 0;
+        bytesBefore = readNetBytes();
+    }
+
+    @TearDown(Level.Iteration)
+    public void afterIteration() {
+        if (turns > 0) {
+            System.out.printf("%n每轮 Redis 网络流量: %d 字节（%d 轮）%n", (readNetBytes() - bytesBefore) / turns, turns);
+        }
+    }
+
+    /**
+     * 每次添加消息都读出并整体写回消息列表
+     */
+    @Benchmark
+    public void redisChatMemoryStore() {
+        runTurn(redisMemory);
+    }
+
+    /**
+     * 本地缓存读取，Redis 中只裁剪和追加
+     */
+    @Benchmark
+    public void tieredChatMemoryStore() {
+        runTurn(tieredMemory);
+    }
+
+    private MessageWindowChatMemory createMemory(String memoryId, ChatMemoryStore chatMemoryStore) {
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .chatMemoryStore(chatMemoryStore)
+                .maxMessages(MAX_MESSAGES)
+                .build();
+        chatMemory.clear();
+        chatMemory.add(SystemMessage.from("你是一位资深的 Vue3 前端架构师"));
+        // 预先填满窗口，测量稳定状态（每轮都会淘汰旧消息）
+        while (chatMemory.messages().size() < MAX_MESSAGES) {
+            runTurn(chatMemory);
+        }
+        return chatMemory;
+    }
+
+    /**
+     * 一轮对话：用户消息、多次写文件工具调用及结果、最终回复
+     */
+    private void runTurn(MessageWindowChatMemory chatMemory) {
+        chatMemory.add(UserMessage.from("帮我做一个任务管理应用"));
+        for (int i = 0; i < toolCallsPerTurn; i++) {
+            ToolExecutionRequest request = ToolExecutionRequest.builder()
+                    .id("call_" + turns + "_" + i)
+                    .name("writeFile")
+                    .arguments("{\"relativeFilePath\":\"src/components/Item" + i + ".vue\",\"content\":\"" + fileContent + "\"}")
+                    .build();
+            chatMemory.add(AiMessage.from(request));
+            chatMemory.add(ToolExecutionResultMessage.from(request, "文件写入成功: src/components/Item" + i + ".vue"));
+        }
+        chatMemory.add(AiMessage.from("项目已生成完成"));
+        turns++;
+    }
+
+    private long readNetBytes() {
+        Map<String, String> stats = redissonClient.getRedisNodes(RedisNodes.SINGLE)
+                .getInstance()
+                .info(RedisNode.InfoSection.STATS);
+        return Long.parseLong(stats.get("total_net_input_bytes")) + Long.parseLong(stats.get("total_net_output_bytes"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChatMemoryStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
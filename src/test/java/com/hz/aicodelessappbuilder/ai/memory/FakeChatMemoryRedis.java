@@ -0,0 +1,196 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 内存中模拟 {@link TieredChatMemoryStore} 用到的 Redis 脚本和失效通知
+ * 脚本按 TieredChatMemoryStore 中的脚本常量识别，在同一把锁内执行（与 Redis 单线程执行脚本一致）；
+ * 多个存储实例共用同一个对象即模拟多个节点共用一个 Redis。失效通知可以暂停投递，脚本结果可以暂停返回，模拟网络延迟；
+ * 所有 key 可以一起过期，版本号过期后与脚本一致，从当前时间（微秒）重新开始。
+ */
+class FakeChatMemoryRedis {
+
+    private static final String APPEND_SCRIPT = script("APPEND_SCRIPT");
+
+    private static final String REWRITE_SCRIPT = script("REWRITE_SCRIPT");
+
+    private static final String DELETE_SCRIPT = script("DELETE_SCRIPT");
+
+    private static final String READ_SCRIPT = script("READ_SCRIPT");
+
+    private final Map<String, String> strings = new HashMap<>();
+
+    private final Map<String, List<String>> lists = new HashMap<>();
+
+    private final List<MessageListener<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger nextListenerId = new AtomicInteger();
+
+    private volatile boolean deliverInvalidations = true;
+
+    /**
+     * 下一次脚本执行后在此等待，打开后才返回结果
+     */
+    private final AtomicReference<CountDownLatch> nextResponseGate = new AtomicReference<>();
+
+    /**
+     * 是否投递失效通知，暂停期间的通知直接丢弃
+     */
+    void setDeliverInvalidations(boolean deliverInvalidations) {
+        this.deliverInvalidations = deliverInvalidations;
+    }
+
+    /**
+     * 暂停下一次脚本执行的返回（脚本已在 Redis 中执行），模拟先执行的写入后收到结果
+     *
+     * @return 闸门，打开后返回结果
+     */
+    CountDownLatch pauseNextResponse() {
+        CountDownLatch gate = new CountDownLatch(1);
+        nextResponseGate.set(gate);
+        return gate;
+    }
+
+    /**
+     * 所有 key 过期
+     */
+    synchronized void expireAll() {
+        strings.clear();
+        lists.clear();
+    }
+
+    synchronized List<String> getList(String key) {
+        return List.copyOf(lists.getOrDefault(key, List.of()));
+    }
+
+    synchronized String getString(String key) {
+        return strings.get(key);
+    }
+
+    /**
+     * 创建连接到本模拟 Redis 的客户端，只实现存储用到的方法
+     */
+    RedissonClient client() {
+        RScript script = proxy(RScript.class, (method, args) -> {
+            if (!method.equals("eval") || args.length != 6) {
+                throw new UnsupportedOperationException(method);
+            }
+            @SuppressWarnings("unchecked")
+            List<Object> keys = (List<Object>) args[4];
+            Object result = eval((String) args[2], keys.stream().map(String::valueOf).toList(), (Object[]) args[5]);
+            CountDownLatch gate = nextResponseGate.getAndSet(null);
+            if (gate != null && !gate.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("等待返回超时");
+            }
+            return result;
+        });
+        RTopic topic = proxy(RTopic.class, (method, args) -> switch (method) {
+            case "addListener" -> {
+                @SuppressWarnings("unchecked")
+                MessageListener<String> listener = (MessageListener<String>) args[1];
+                listeners.add(listener);
+                yield nextListenerId.incrementAndGet();
+            }
+            case "removeListener" -> null;
+            default -> throw new UnsupportedOperationException(method);
+        });
+        return proxy(RedissonClient.class, (method, args) -> switch (method) {
+            case "getScript" -> script;
+            case "getTopic" -> topic;
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private synchronized Object eval(String luaScript, List<String> keys, Object[] values) {
+        List<String> argv = new ArrayList<>();
+        for (Object value : values) {
+            argv.add(String.valueOf(value));
+        }
+        String messagesKey = keys.get(0);
+        String systemKey = keys.get(1);
+        String versionKey = keys.get(2);
+        long version = Long.parseLong(strings.getOrDefault(versionKey, "0"));
+        if (luaScript.equals(READ_SCRIPT)) {
+            List<Object> result = new ArrayList<>();
+            result.add(String.valueOf(version));
+            result.add(strings.getOrDefault(systemKey, ""));
+            result.addAll(lists.getOrDefault(messagesKey, List.of()));
+            return result;
+        }
+        if (luaScript.equals(APPEND_SCRIPT)) {
+            if (version != Long.parseLong(argv.get(0))) {
+                return -1L;
+            }
+            List<String> messages = new ArrayList<>(lists.getOrDefault(messagesKey, List.of()));
+            int trimCount = Math.min(Integer.parseInt(argv.get(1)), messages.size());
+            messages = new ArrayList<>(messages.subList(trimCount, messages.size()));
+            messages.addAll(argv.subList(5, argv.size()));
+            lists.put(messagesKey, messages);
+            if (!argv.get(2).isEmpty()) {
+                strings.put(systemKey, argv.get(2));
+            }
+            return increment(versionKey, version, argv.get(4));
+        }
+        if (luaScript.equals(REWRITE_SCRIPT)) {
+            lists.put(messagesKey, new ArrayList<>(argv.subList(3, argv.size())));
+            if (argv.get(0).isEmpty()) {
+                strings.remove(systemKey);
+            } else {
+                strings.put(systemKey, argv.get(0));
+            }
+            return increment(versionKey, version, argv.get(2));
+        }
+        if (luaScript.equals(DELETE_SCRIPT)) {
+            lists.remove(messagesKey);
+            strings.remove(systemKey);
+            return increment(versionKey, version, argv.get(1));
+        }
+        throw new UnsupportedOperationException("未知脚本");
+    }
+
+    private long increment(String versionKey, long version, String invalidateMessage) {
+        long nextVersion = (strings.containsKey(versionKey) ? version : TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis())) + 1;
+        strings.put(versionKey, String.valueOf(nextVersion));
+        if (deliverInvalidations) {
+            for (MessageListener<String> listener : listeners) {
+                listener.onMessage("chat_memory:invalidate", invalidateMessage);
+            }
+        }
+        return nextVersion;
+    }
+
+    private static String script(String name) {
+        return (String) ReflectionTestUtils.getField(TieredChatMemoryStore.class, name);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> type.getSimpleName();
+                    default -> handler.invoke(method.getName(), args == null ? new Object[0] : args);
+                }));
+    }
+}
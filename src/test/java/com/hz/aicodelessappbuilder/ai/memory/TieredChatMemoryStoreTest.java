@@ -0,0 +1,217 @@
+package com.hz.aicodelessappbuilder.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 两级对话记忆存储测试
+ * Redis 用内存模拟（{@link FakeChatMemoryRedis}），多个存储实例共用一个模拟 Redis 即多个节点
+ */
+class TieredChatMemoryStoreTest {
+
+    private static final String MEMORY_ID = "1";
+
+    private static final String MESSAGES_KEY = "chat_memory:{1}:messages";
+
+    private static final String VERSION_KEY = "chat_memory:{1}:version";
+
+    private static final SystemMessage SYSTEM_MESSAGE = SystemMessage.from("系统");
+
+    private final FakeChatMemoryRedis redis = new FakeChatMemoryRedis();
+
+    @Test
+    void windowEvictionTrimsInsteadOfRewriting() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TieredChatMemoryStore store = createStore(meterRegistry);
+        List<ChatMessage> messages = new ArrayList<>(List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面"), AiMessage.from("已生成")));
+        store.updateMessages(MEMORY_ID, messages);
+        // 追加末尾
+        messages.add(UserMessage.from("修改标题"));
+        messages.add(AiMessage.from("已修改"));
+        store.updateMessages(MEMORY_ID, messages);
+        // 窗口已满：淘汰开头两条再追加一条，系统消息保持在最前
+        messages.remove(1);
+        messages.remove(1);
+        messages.add(UserMessage.from("增加页脚"));
+        store.updateMessages(MEMORY_ID, List.copyOf(messages));
+
+        Assertions.assertEquals(json(messages.subList(1, messages.size())), redis.getList(MESSAGES_KEY));
+        Assertions.assertEquals(3, meterRegistry.counter("ai_chat_memory_write_total", "mode", "append").count());
+        Assertions.assertEquals(0, meterRegistry.counter("ai_chat_memory_write_total", "mode", "rewrite").count());
+        // 其他节点从 Redis 读到相同的内容
+        Assertions.assertEquals(messages, createStore(new SimpleMeterRegistry()).getMessages(MEMORY_ID));
+    }
+
+    @Test
+    void unrelatedListTrimsEverything() {
+        TieredChatMemoryStore store = createStore(new SimpleMeterRegistry());
+        store.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面"), AiMessage.from("已生成")));
+        // 没有可保留的消息时淘汰全部旧消息，重复的消息也能按位置对齐
+        List<ChatMessage> messages = List.of(SYSTEM_MESSAGE, UserMessage.from("重新开始"), AiMessage.from("已生成"));
+        store.updateMessages(MEMORY_ID, messages);
+        Assertions.assertEquals(json(messages.subList(1, 3)), redis.getList(MESSAGES_KEY));
+        store.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE));
+        Assertions.assertTrue(redis.getList(MESSAGES_KEY).isEmpty());
+    }
+
+    @Test
+    void versionMismatchFallsBackToRewrite() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TieredChatMemoryStore nodeA = createStore(new SimpleMeterRegistry());
+        TieredChatMemoryStore nodeB = createStore(meterRegistry);
+        List<ChatMessage> initial = List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面"));
+        nodeA.updateMessages(MEMORY_ID, initial);
+        long initialVersion = version();
+        Assertions.assertEquals(initial, nodeB.getMessages(MEMORY_ID));
+        // 节点 A 写入后失效通知未送达，节点 B 的本地缓存落后于 Redis
+        redis.setDeliverInvalidations(false);
+        nodeA.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面"), AiMessage.from("来自节点 A")));
+        List<ChatMessage> fromB = List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面"), AiMessage.from("来自节点 B"));
+        nodeB.updateMessages(MEMORY_ID, fromB);
+
+        // 增量写入的版本校验失败，改为整体重写，不会在节点 A 的消息后面追加
+        Assertions.assertEquals(1, meterRegistry.counter("ai_chat_memory_write_total", "mode", "rewrite").count());
+        Assertions.assertEquals(json(fromB.subList(1, 3)), redis.getList(MESSAGES_KEY));
+        Assertions.assertEquals(initialVersion + 2, version());
+        Assertions.assertEquals(fromB, nodeB.getMessages(MEMORY_ID));
+    }
+
+    @Test
+    void concurrentAppendsKeepLocalCacheInStepWithRedis() throws Exception {
+        TieredChatMemoryStore store = createStore(new SimpleMeterRegistry());
+        store.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE));
+        long initialVersion = version();
+        int threadCount = 8;
+        int appendsPerThread = 50;
+        CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    barrier.await(5, TimeUnit.SECONDS);
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        List<ChatMessage> messages = new ArrayList<>(store.getMessages(MEMORY_ID));
+                        messages.add(UserMessage.from(thread + "-" + i));
+                        store.updateMessages(MEMORY_ID, messages);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // 同一记忆的并发写入可能互相覆盖，但本地缓存必须与 Redis 中最后一次写入一致
+        List<ChatMessage> cached = store.getMessages(MEMORY_ID);
+        Assertions.assertEquals(cached, createStore(new SimpleMeterRegistry()).getMessages(MEMORY_ID));
+        Assertions.assertEquals(SYSTEM_MESSAGE, cached.getFirst());
+        Assertions.assertEquals(initialVersion + threadCount * appendsPerThread, version());
+        // 之后的写入仍按增量追加到 Redis 中的最新内容之后
+        List<ChatMessage> next = new ArrayList<>(cached);
+        next.add(AiMessage.from("完成"));
+        store.updateMessages(MEMORY_ID, next);
+        Assertions.assertEquals(json(next.subList(1, next.size())), redis.getList(MESSAGES_KEY));
+    }
+
+    @Test
+    void lateWriteResultDoesNotOverwriteNewerCache() throws Exception {
+        TieredChatMemoryStore store = createStore(new SimpleMeterRegistry());
+        store.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE));
+        long initialVersion = version();
+        // 第一次写入已在 Redis 中执行，结果迟迟未返回
+        CountDownLatch responseGate = redis.pauseNextResponse();
+        Thread slowWriter = Thread.ofVirtual().start(() ->
+                store.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE, UserMessage.from("先执行"))));
+        await(() -> version() == initialVersion + 1);
+        // 第二次写入基于旧版本，校验失败后整体重写并先写入本地缓存
+        List<ChatMessage> latest = List.of(SYSTEM_MESSAGE, UserMessage.from("后执行"));
+        store.updateMessages(MEMORY_ID, latest);
+        responseGate.countDown();
+        slowWriter.join(5000);
+
+        // 迟到的结果版本较旧，不覆盖本地缓存
+        Assertions.assertEquals(latest, store.getMessages(MEMORY_ID));
+        Assertions.assertEquals(latest, createStore(new SimpleMeterRegistry()).getMessages(MEMORY_ID));
+    }
+
+    @Test
+    void deleteKeepsVersionIncreasing() {
+        TieredChatMemoryStore nodeA = createStore(new SimpleMeterRegistry());
+        TieredChatMemoryStore nodeB = createStore(new SimpleMeterRegistry());
+        nodeA.updateMessages(MEMORY_ID, List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面")));
+        long initialVersion = version();
+        nodeB.getMessages(MEMORY_ID);
+        nodeA.deleteMessages(MEMORY_ID);
+        Assertions.assertEquals(initialVersion + 1, version());
+        Assertions.assertTrue(nodeA.getMessages(MEMORY_ID).isEmpty());
+        Assertions.assertTrue(nodeB.getMessages(MEMORY_ID).isEmpty());
+    }
+
+    @Test
+    void expiredKeysDoNotLeaveStaleLocalCache() {
+        TieredChatMemoryStore store = createStore(new SimpleMeterRegistry());
+        List<ChatMessage> messages = new ArrayList<>(List.of(SYSTEM_MESSAGE, UserMessage.from("生成页面")));
+        for (int i = 0; i < 5; i++) {
+            messages.add(AiMessage.from("第 " + i + " 轮"));
+            store.updateMessages(MEMORY_ID, List.copyOf(messages));
+        }
+        long expiredVersion = version();
+        // 本地缓存一直被读取，Redis 中的 key 先过期；之后的写入版本校验失败，整体重写
+        redis.expireAll();
+        List<ChatMessage> next = List.of(SYSTEM_MESSAGE, UserMessage.from("重新开始"));
+        store.updateMessages(MEMORY_ID, next);
+
+        // 重新开始的版本号仍大于过期前的版本号，本地缓存接受新写入
+        Assertions.assertTrue(version() > expiredVersion);
+        Assertions.assertEquals(next, store.getMessages(MEMORY_ID));
+        Assertions.assertEquals(next, createStore(new SimpleMeterRegistry()).getMessages(MEMORY_ID));
+    }
+
+    private long version() {
+        return Long.parseLong(redis.getString(VERSION_KEY));
+    }
+
+    private TieredChatMemoryStore createStore(SimpleMeterRegistry meterRegistry) {
+        TieredChatMemoryStore store = new TieredChatMemoryStore();
+        ReflectionTestUtils.setField(store, "redissonClient", redis.client());
+        ReflectionTestUtils.setField(store, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(store, "localCacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(store, "localCacheExpireMinutes", 10L);
+        store.init();
+        return store;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<String> json(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessageSerializer::messageToJson).toList();
+    }
+}
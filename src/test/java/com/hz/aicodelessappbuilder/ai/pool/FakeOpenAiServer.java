@@ -0,0 +1,138 @@
+package com.hz.aicodelessappbuilder.ai.pool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地的 OpenAI 兼容假服务，用于离线测试模型池的路由、对冲和故障转移
+ * POST {baseUrl}/chat/completions 以 SSE 流式返回固定内容（包含服务名称），可设置首个 token 延迟和失败模式；
+ * 等待首个 token 期间发送 SSE 注释作为心跳，客户端断开后写入失败即计入断开次数。
+ * 也可以单独运行 main 方法，把 model-pool 下的端点指向这里在本地调试：
+ * java FakeOpenAiServer 18080 fast 100 18081 slow 3000
+ */
+public class FakeOpenAiServer {
+
+    private static final long HEARTBEAT_MILLIS = 50;
+
+    private final String name;
+
+    private final HttpServer server;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private final AtomicInteger disconnectCount = new AtomicInteger();
+
+    private volatile long firstTokenDelayMillis;
+
+    private volatile boolean failing;
+
+    public FakeOpenAiServer(String name, int port, long firstTokenDelayMillis) throws IOException {
+        this.name = name;
+        this.firstTokenDelayMillis = firstTokenDelayMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/chat/completions", this::handle);
+    }
+
+    public FakeOpenAiServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 响应完成之前客户端断开的次数
+     */
+    public int getDisconnectCount() {
+        return disconnectCount.get();
+    }
+
+    public void setFirstTokenDelayMillis(long firstTokenDelayMillis) {
+        this.firstTokenDelayMillis = firstTokenDelayMillis;
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        if (failing) {
+            byte[] body = "{\"error\":{\"message\":\"fake server error\",\"type\":\"server_error\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(500, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            long firstTokenAt = System.currentTimeMillis() + firstTokenDelayMillis;
+            while (System.currentTimeMillis() < firstTokenAt) {
+                sleep(Math.min(HEARTBEAT_MILLIS, firstTokenAt - System.currentTimeMillis()));
+                out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            String[] tokens = {"来自 ", name, " 的回复"};
+            for (String token : tokens) {
+                writeEvent(out, "{\"id\":\"fake\",\"object\":\"chat.completion.chunk\",\"model\":\"fake-model\","
+                        + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token + "\"},\"finish_reason\":null}]}");
+                sleep(5);
+            }
+            writeEvent(out, "{\"id\":\"fake\",\"object\":\"chat.completion.chunk\",\"model\":\"fake-model\","
+                    + "\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],"
+                    + "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":3,\"total_tokens\":13}}");
+            writeEvent(out, "[DONE]");
+        } catch (IOException e) {
+            // 客户端取消请求时连接被关闭
+            disconnectCount.incrementAndGet();
+        }
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 参数：端口 名称 首个token延迟毫秒，可重复多组
+     */
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i + 2 < args.length; i += 3) {
+            FakeOpenAiServer server = new FakeOpenAiServer(args[i + 1], Integer.parseInt(args[i]), Long.parseLong(args[i + 2])).start();
+            System.out.println(server.getName() + " 已启动: " + server.getBaseUrl());
+        }
+    }
+}
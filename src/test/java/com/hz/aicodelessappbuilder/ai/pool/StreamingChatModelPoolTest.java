@@ -0,0 +1,175 @@
+package com.hz.aicodelessappbuilder.ai.pool;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 模型池测试，使用本地的 OpenAI 兼容假服务，不需要网络
+ */
+class StreamingChatModelPoolTest {
+
+    private FakeOpenAiServer fastServer;
+
+    private FakeOpenAiServer slowServer;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * EWMA 衰减半衰期（毫秒），足够长时测试期间相当于不衰减
+     */
+    private long decayHalfLifeMillis = 60_000;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fastServer = new FakeOpenAiServer("fast", 0, 20).start();
+        slowServer = new FakeOpenAiServer("slow", 0, 600).start();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fastServer.stop();
+        slowServer.stop();
+    }
+
+    @Test
+    void routesToLowerTtftBackend() throws Exception {
+        // 慢的在前，两个后端都会先被试用一次，之后按首个 token 延迟路由
+        StreamingChatModelPool pool = createPool(0, slowServer, fastServer);
+        Assertions.assertEquals("来自 slow 的回复", chat(pool));
+        for (int i = 0; i < 9; i++) {
+            Assertions.assertEquals("来自 fast 的回复", chat(pool));
+        }
+        Assertions.assertEquals(1, slowServer.getRequestCount());
+        Assertions.assertEquals(9, fastServer.getRequestCount());
+        ModelBackend slow = pool.getBackends().get(0);
+        ModelBackend fast = pool.getBackends().get(1);
+        Assertions.assertTrue(slow.getEwmaTtftMillis() > fast.getEwmaTtftMillis());
+        Assertions.assertEquals(0, slow.getInFlight());
+        Assertions.assertEquals(0, fast.getInFlight());
+    }
+
+    @Test
+    void hedgesWhenFirstTokenIsLate() throws Exception {
+        StreamingChatModelPool pool = createPool(100, slowServer, fastServer);
+        // 首次请求发往慢的后端，100ms 内没有输出，对冲到快的后端
+        Assertions.assertEquals("来自 fast 的回复", chat(pool));
+        Assertions.assertEquals(1, slowServer.getRequestCount());
+        Assertions.assertEquals(1, fastServer.getRequestCount());
+        Assertions.assertEquals(1, meterRegistry.get("ai_model_pool_hedge_total").tag("result", "fired").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("ai_model_pool_hedge_total").tag("result", "won").counter().count());
+        // 落败的慢后端按已等待的时间计入延迟，之后不再优先
+        Assertions.assertTrue(pool.getBackends().get(0).getEwmaTtftMillis() >= 100);
+        Assertions.assertEquals("来自 fast 的回复", chat(pool));
+        Assertions.assertEquals(1, slowServer.getRequestCount());
+    }
+
+    @Test
+    void losingHedgeIsDisconnectedBeforeFirstToken() throws Exception {
+        slowServer.setFirstTokenDelayMillis(5000);
+        StreamingChatModelPool pool = createPool(100, slowServer, fastServer);
+        Assertions.assertEquals("来自 fast 的回复", chat(pool));
+        // 慢后端还没有输出首个 token，落败后立即断开，不等到首个 token
+        await(() -> slowServer.getDisconnectCount() == 1, 2000);
+        Assertions.assertEquals(0, pool.getBackends().get(0).getInFlight());
+    }
+
+    @Test
+    void slowBackendIsProbedAgainAfterDecay() throws Exception {
+        decayHalfLifeMillis = 100;
+        StreamingChatModelPool pool = createPool(0, slowServer, fastServer);
+        Assertions.assertEquals("来自 slow 的回复", chat(pool));
+        // 慢后端恢复后，衰减的 EWMA 低于快后端时重新被选中试探，新样本拉低它的 EWMA
+        slowServer.setFirstTokenDelayMillis(20);
+        ModelBackend slow = pool.getBackends().get(0);
+        double slowEwma = slow.getEwmaTtftMillis();
+        await(() -> {
+            try {
+                chat(pool);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return slowServer.getRequestCount() == 2;
+        }, 5000);
+        Assertions.assertTrue(fastServer.getRequestCount() > 0);
+        Assertions.assertTrue(slow.getEwmaTtftMillis() < slowEwma / 2);
+    }
+
+    @Test
+    void failsOverBeforeFirstToken() throws Exception {
+        slowServer.setFailing(true);
+        StreamingChatModelPool pool = createPool(0, slowServer, fastServer);
+        Assertions.assertEquals("来自 fast 的回复", chat(pool));
+        Assertions.assertEquals(1, meterRegistry.get("ai_model_pool_failover_total").counter().count());
+        Assertions.assertEquals(0, pool.getBackends().get(0).getInFlight());
+    }
+
+    @Test
+    void reportsErrorWhenAllBackendsFail() {
+        slowServer.setFailing(true);
+        fastServer.setFailing(true);
+        StreamingChatModelPool pool = createPool(0, slowServer, fastServer);
+        Assertions.assertThrows(Exception.class, () -> chat(pool));
+        Assertions.assertEquals(1, slowServer.getRequestCount());
+        Assertions.assertEquals(1, fastServer.getRequestCount());
+    }
+
+    private StreamingChatModelPool createPool(long hedgeDelayMillis, FakeOpenAiServer... servers) {
+        List<ModelBackend> backends = Arrays.stream(servers)
+                .map(server -> new ModelBackend(server.getName(), createModel(server), 0.3, decayHalfLifeMillis))
+                .toList();
+        return new StreamingChatModelPool("test", backends, hedgeDelayMillis, 3, 30_000, meterRegistry);
+    }
+
+    private static StreamingChatModel createModel(FakeOpenAiServer server) {
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl(server.getBaseUrl())
+                .apiKey("fake")
+                .httpClientBuilder(new CancellableStreamHttpClientBuilder())
+                .modelName("fake-model")
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static String chat(StreamingChatModel model) throws Exception {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        ChatRequest chatRequest = ChatRequest.builder()
+                .messages(UserMessage.from("你好"))
+                .build();
+        model.chat(chatRequest, new StreamingChatResponseHandler() {
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS).aiMessage().text();
+    }
+}
@@ -0,0 +1,170 @@
+package com.hz.aicodelessappbuilder.ai.prompt;
+
+import com.hz.aicodelessappbuilder.ai.memory.ChatMemoryCompactor;
+import com.hz.aicodelessappbuilder.ai.memory.CompactingChatMemory;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 提示词前缀稳定性测试
+ * 使用本地脚本模型（每轮先调用一次写文件工具，再给出回复）记录每次发给模型的请求，
+ * 检查上一次请求的全部内容是否逐字节出现在下一次请求的开头
+ */
+class StablePromptAssemblerTest {
+
+    private static final long APP_ID = 1L;
+
+    private final List<ChatRequest> requests = new ArrayList<>();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ChatMemoryCompactor chatMemoryCompactor;
+
+    private StablePromptAssembler stablePromptAssembler;
+
+    interface ProjectService {
+
+        @SystemMessage("你是一位资深的 Vue3 前端工程师\r\n请使用工具写入文件  \r\n")
+        String chat(@MemoryId long appId, @dev.langchain4j.service.UserMessage String userMessage);
+    }
+
+    static class FileTools {
+
+        @Tool("写入文件")
+        public String writeFile(@P("文件的相对路径") String relativeFilePath, @P("文件内容") String content) {
+            return "文件写入成功: " + relativeFilePath;
+        }
+
+        @Tool("读取文件")
+        public String readFile(@P("文件的相对路径") String relativeFilePath) {
+            return "";
+        }
+    }
+
+    /**
+     * 本地脚本模型：收到用户消息时写一个文件，收到工具结果时结束本轮
+     */
+    private final ChatModel scriptedModel = new ChatModel() {
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            requests.add(chatRequest);
+            ChatMessage lastMessage = chatRequest.messages().getLast();
+            if (lastMessage instanceof UserMessage) {
+                String content = "<template>\n  <div class=\"item\">" + requests.size() + "</div>\n</template>\n";
+                ToolExecutionRequest toolRequest = ToolExecutionRequest.builder()
+                        .id("call_" + requests.size())
+                        .name("writeFile")
+                        .arguments("{\"relativeFilePath\":\"src/components/Item" + requests.size() + ".vue\",\"content\":\""
+                                + content.repeat(40).replace("\"", "\\\"").replace("\n", "\\n") + "\"}")
+                        .build();
+                return ChatResponse.builder().aiMessage(AiMessage.from(toolRequest)).build();
+            }
+            return ChatResponse.builder().aiMessage(AiMessage.from("已完成第 " + requests.size() + " 次修改")).build();
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        chatMemoryCompactor = new ChatMemoryCompactor();
+        ReflectionTestUtils.setField(chatMemoryCompactor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(chatMemoryCompactor, "maxTokens", 24000);
+        ReflectionTestUtils.setField(chatMemoryCompactor, "lowWaterRatio", 0.75);
+        ReflectionTestUtils.setField(chatMemoryCompactor, "compactMinChars", 256);
+        ReflectionTestUtils.setField(chatMemoryCompactor, "summaryMaxTurns", 20);
+        chatMemoryCompactor.initMetrics();
+        stablePromptAssembler = new StablePromptAssembler();
+        ReflectionTestUtils.setField(stablePromptAssembler, "meterRegistry", meterRegistry);
+        stablePromptAssembler.initMetrics();
+    }
+
+    @Test
+    void prefixStableAcrossTurnsAndToolCalls() {
+        ProjectService service = createService();
+        for (int i = 0; i < 5; i++) {
+            service.chat(APP_ID, "修改第 " + i + " 个组件");
+        }
+        Assertions.assertEquals(10, requests.size());
+        for (int i = 1; i < requests.size(); i++) {
+            Assertions.assertTrue(isPrefix(requests.get(i - 1), requests.get(i)), "第 " + i + " 次请求的前缀发生变化");
+        }
+        for (ChatRequest request : requests) {
+            dev.langchain4j.data.message.SystemMessage systemMessage =
+                    (dev.langchain4j.data.message.SystemMessage) request.messages().getFirst();
+            Assertions.assertEquals("你是一位资深的 Vue3 前端工程师\n请使用工具写入文件", systemMessage.text());
+            List<String> toolNames = request.toolSpecifications().stream().map(ToolSpecification::name).toList();
+            Assertions.assertEquals(List.of("readFile", "writeFile"), toolNames);
+        }
+        Assertions.assertEquals(1.0, meterRegistry.get("ai_prompt_prefix_total").tag("result", "new").counter().count());
+        Assertions.assertEquals(9.0, meterRegistry.get("ai_prompt_prefix_total").tag("result", "reused").counter().count());
+    }
+
+    @Test
+    void historyRewrittenOnlyWhenOverBudget() {
+        ReflectionTestUtils.setField(chatMemoryCompactor, "maxTokens", 6000);
+        ProjectService service = createService();
+        int turns = 20;
+        for (int i = 0; i < turns; i++) {
+            service.chat(APP_ID, "修改第 " + i + " 个组件");
+        }
+        int changed = 0;
+        for (int i = 1; i < requests.size(); i++) {
+            if (!isPrefix(requests.get(i - 1), requests.get(i))) {
+                changed++;
+            }
+        }
+        // 压缩到低水位后多轮只追加，前缀变化远少于轮数
+        Assertions.assertTrue(changed > 0, "超出预算后应压缩历史");
+        Assertions.assertTrue(changed <= turns / 4, "前缀变化次数过多: " + changed);
+        Assertions.assertEquals(changed, meterRegistry.get("ai_prompt_prefix_total").tag("result", "changed").counter().count());
+    }
+
+    private ProjectService createService() {
+        InMemoryChatMemoryStore chatMemoryStore = new InMemoryChatMemoryStore();
+        return AiServices.builder(ProjectService.class)
+                .chatModel(scriptedModel)
+                .chatMemoryProvider(memoryId -> new CompactingChatMemory(memoryId, chatMemoryStore, chatMemoryCompactor, true))
+                .tools(new FileTools())
+                .chatRequestTransformer(stablePromptAssembler)
+                .build();
+    }
+
+    /**
+     * 上一次请求的工具定义和全部消息是否逐字节出现在下一次请求的开头
+     */
+    private static boolean isPrefix(ChatRequest previous, ChatRequest next) {
+        if (!previous.toolSpecifications().equals(next.toolSpecifications())
+                || previous.messages().size() > next.messages().size()) {
+            return false;
+        }
+        for (int i = 0; i < previous.messages().size(); i++) {
+            String previousJson = ChatMessageSerializer.messageToJson(previous.messages().get(i));
+            String nextJson = ChatMessageSerializer.messageToJson(next.messages().get(i));
+            if (!previousJson.equals(nextJson)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
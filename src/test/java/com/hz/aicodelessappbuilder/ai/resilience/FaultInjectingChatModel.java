@@ -0,0 +1,159 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可注入故障的本地模型，同时实现同步和流式接口，用于离线测试舱壁和熔断
+ * - latencyMillis：响应前（流式为首个 token 前）的延迟
+ * - fault：NONE 正常返回，SERVER_ERROR 模拟服务端故障（计入熔断），INVALID_REQUEST 模拟请求错误（不计入熔断）
+ * 流式响应在虚拟线程上依次输出 tokenCount 个 token，下游取消后停止输出
+ */
+public class FaultInjectingChatModel implements ChatModel, StreamingChatModel {
+
+    public enum Fault {
+        NONE, SERVER_ERROR, INVALID_REQUEST
+    }
+
+    private volatile long latencyMillis;
+
+    private volatile Fault fault = Fault.NONE;
+
+    private volatile int tokenCount = 3;
+
+    private final AtomicInteger callCount = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setFault(Fault fault) {
+        this.fault = fault;
+    }
+
+    public void setTokenCount(int tokenCount) {
+        this.tokenCount = tokenCount;
+    }
+
+    public int getCallCount() {
+        return callCount.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return DefaultChatRequestParameters.EMPTY;
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return List.of();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return ModelProvider.OTHER;
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return Set.of();
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        callCount.incrementAndGet();
+        inFlight.incrementAndGet();
+        try {
+            sleep(latencyMillis);
+            throwFault();
+            return ChatResponse.builder().aiMessage(AiMessage.from("ok")).build();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        callCount.incrementAndGet();
+        inFlight.incrementAndGet();
+        Thread.ofVirtual().start(() -> {
+            StreamingHandle streamingHandle = new CancellableHandle();
+            try {
+                sleep(latencyMillis);
+                throwFault();
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < tokenCount && !streamingHandle.isCancelled(); i++) {
+                    text.append("t").append(i);
+                    handler.onPartialResponse(new PartialResponse("t" + i), new PartialResponseContext(streamingHandle));
+                    sleep(5);
+                }
+                if (!streamingHandle.isCancelled()) {
+                    handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(text.toString())).build());
+                }
+            } catch (RuntimeException e) {
+                handler.onError(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private void throwFault() {
+        switch (fault) {
+            case SERVER_ERROR -> throw new InternalServerException("fault injected: server error");
+            case INVALID_REQUEST -> throw new InvalidRequestException("fault injected: invalid request");
+            default -> {
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CancellableHandle implements StreamingHandle {
+
+        private volatile boolean cancelled;
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.hz.aicodelessappbuilder.ai.resilience;
+
+import com.hz.aicodelessappbuilder.exception.BusinessException;
+import com.hz.aicodelessappbuilder.exception.ErrorCode;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.InternalServerException;
+import dev.langchain4j.exception.InvalidRequestException;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 舱壁和熔断测试，使用可注入故障的本地模型，不需要网络
+ */
+class ModelResilienceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private FaultInjectingChatModel model;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        model = new FaultInjectingChatModel();
+    }
+
+    @Test
+    void opensAfterFailuresAndProbesBeforeClosing() throws Exception {
+        ResilientChatModel chatModel = new ResilientChatModel(model, createGuard(5, 0, 0));
+        model.setFault(FaultInjectingChatModel.Fault.SERVER_ERROR);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThrows(InternalServerException.class, () -> chatModel.chat("你好"));
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, chatModel.getGuard().getCircuitBreaker().getState());
+        Assertions.assertEquals(1, meterRegistry.get("ai_model_circuit_state").gauge().value());
+        // 打开后直接失败，不再调用模型
+        BusinessException e = Assertions.assertThrows(BusinessException.class, () -> chatModel.chat("你好"));
+        Assertions.assertEquals(ErrorCode.SERVICE_UNAVAILABLE.getCode(), e.getCode());
+        Assertions.assertEquals(4, model.getCallCount());
+        // 到期后半开，探测成功后关闭
+        Thread.sleep(250);
+        model.setFault(FaultInjectingChatModel.Fault.NONE);
+        Assertions.assertEquals("ok", chatModel.chat("你好"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, chatModel.getGuard().getCircuitBreaker().getState());
+        Assertions.assertEquals(5, chatModel.getGuard().getBulkhead().getAvailablePermits());
+    }
+
+    @Test
+    void failedProbeReopens() throws Exception {
+        ResilientChatModel chatModel = new ResilientChatModel(model, createGuard(5, 0, 0));
+        model.setFault(FaultInjectingChatModel.Fault.SERVER_ERROR);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertThrows(InternalServerException.class, () -> chatModel.chat("你好"));
+        }
+        Thread.sleep(250);
+        Assertions.assertThrows(InternalServerException.class, () -> chatModel.chat("你好"));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, chatModel.getGuard().getCircuitBreaker().getState());
+        Assertions.assertEquals(5, model.getCallCount());
+    }
+
+    @Test
+    void callsAdmittedBeforeHalfOpenAreNotProbes() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.5, 200, 1, meterRegistry);
+        // 关闭时放行、半开后才结束的调用
+        CircuitBreaker.Permission lateSuccess = breaker.tryAcquirePermission();
+        CircuitBreaker.Permission lateFailure = breaker.tryAcquirePermission();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(breaker.tryAcquirePermission(), false);
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(250);
+        CircuitBreaker.Permission probe = breaker.tryAcquirePermission();
+        Assertions.assertNotNull(probe);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // 不计入探测结果，也不归还探测许可
+        breaker.onSuccess(lateSuccess);
+        breaker.onFailure(lateFailure, false);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assertions.assertNull(breaker.tryAcquirePermission());
+        breaker.onSuccess(probe);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void invalidRequestsDoNotOpenCircuit() {
+        ResilientChatModel chatModel = new ResilientChatModel(model, createGuard(5, 0, 0));
+        model.setFault(FaultInjectingChatModel.Fault.INVALID_REQUEST);
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertThrows(InvalidRequestException.class, () -> chatModel.chat("你好"));
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, chatModel.getGuard().getCircuitBreaker().getState());
+    }
+
+    @Test
+    void bulkheadRejectsWhenFull() throws Exception {
+        ResilientStreamingChatModel streamingModel = new ResilientStreamingChatModel(model, createGuard(2, 0, 0));
+        model.setLatencyMillis(300);
+        CompletableFuture<ChatResponse> first = stream(streamingModel);
+        CompletableFuture<ChatResponse> second = stream(streamingModel);
+        long startNanos = System.nanoTime();
+        CompletableFuture<ChatResponse> rejected = stream(streamingModel);
+        Exception e = Assertions.assertThrows(Exception.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(BusinessException.class, e.getCause());
+        Assertions.assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(100));
+        Assertions.assertEquals("t0t1t2", first.get(5, TimeUnit.SECONDS).aiMessage().text());
+        Assertions.assertEquals("t0t1t2", second.get(5, TimeUnit.SECONDS).aiMessage().text());
+        Assertions.assertEquals(2, model.getCallCount());
+        Assertions.assertEquals(2, streamingModel.getGuard().getBulkhead().getAvailablePermits());
+        Assertions.assertEquals(1, meterRegistry.get("ai_model_bulkhead_rejected_total").counter().count());
+    }
+
+    @Test
+    void cancelReleasesPermit() throws Exception {
+        ResilientStreamingChatModel streamingModel = new ResilientStreamingChatModel(model, createGuard(1, 0, 0));
+        model.setTokenCount(100);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        streamingModel.chat(request(), new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(PartialResponse partialResponse, PartialResponseContext context) {
+                context.streamingHandle().cancel();
+                cancelled.countDown();
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+        });
+        Assertions.assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, streamingModel.getGuard().getBulkhead().getAvailablePermits());
+        Assertions.assertEquals(0, meterRegistry.get("ai_model_circuit_calls_total").tag("result", "success").counter().count());
+    }
+
+    @Test
+    void slowFirstTokenCountsAsFailure() throws Exception {
+        ResilientStreamingChatModel streamingModel = new ResilientStreamingChatModel(model, createGuard(5, 0, 50));
+        model.setLatencyMillis(100);
+        for (int i = 0; i < 4; i++) {
+            stream(streamingModel).get(5, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(4, meterRegistry.get("ai_model_circuit_calls_total").tag("result", "slow").counter().count());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, streamingModel.getGuard().getCircuitBreaker().getState());
+    }
+
+    private ModelCallGuard createGuard(int maxConcurrent, long maxWaitMillis, long slowCallMillis) {
+        Bulkhead bulkhead = new Bulkhead("test", maxConcurrent, maxWaitMillis, meterRegistry);
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 4, 4, 0.5, 200, 1, meterRegistry);
+        return new ModelCallGuard(bulkhead, circuitBreaker, slowCallMillis);
+    }
+
+    private static ChatRequest request() {
+        return ChatRequest.builder().messages(UserMessage.from("你好")).build();
+    }
+
+    private static CompletableFuture<ChatResponse> stream(ResilientStreamingChatModel streamingModel) {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        streamingModel.chat(request(), new StreamingChatResponseHandler() {
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+}
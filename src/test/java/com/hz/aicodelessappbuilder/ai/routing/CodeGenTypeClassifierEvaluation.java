@@ -0,0 +1,191 @@
+package com.hz.aicodelessappbuilder.ai.routing;
+
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 本地路由分类器的离线评估
+ * 读取提示词导出文件做 k 折交叉验证，输出各置信度阈值下的快速路由比例（覆盖率）、快速路由的准确率，
+ * 以及混淆矩阵和单次分类耗时，用于选择 routing-classifier.confidence-threshold。
+ * 导出文件为制表符分隔的两列：生成类型（value 或枚举名）和初始提示词，可以直接用 mysql 导出：
+ * mysql -B -e "select codeGenType, initPrompt from app where isDelete = 0" > prompt-dump.tsv
+ * 运行：java CodeGenTypeClassifierEvaluation prompt-dump.tsv [折数]
+ */
+public class CodeGenTypeClassifierEvaluation {
+
+    static final double[] THRESHOLDS = {0.5, 0.6, 0.7, 0.8, 0.9, 0.95, 0.99};
+
+    public static void main(String[] args) throws IOException {
+        List<CodeGenTypeClassifier.Sample> samples = readDump(Path.of(args[0]));
+        int folds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Report report = evaluate(samples, folds, 42);
+        report.print();
+    }
+
+    /**
+     * 读取导出文件，跳过表头和无法识别类型的行；mysql -B 输出中转义的换行和制表符会还原
+     */
+    public static List<CodeGenTypeClassifier.Sample> readDump(Path path) throws IOException {
+        List<CodeGenTypeClassifier.Sample> samples = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            CodeGenTypeEnum codeGenType = parseCodeGenType(line.substring(0, tab).trim());
+            String prompt = line.substring(tab + 1)
+                    .replace("\\n", "\n")
+                    .replace("\\t", "\t")
+                    .replace("\\\\", "\\");
+            if (codeGenType != null && !prompt.isBlank()) {
+                samples.add(new CodeGenTypeClassifier.Sample(prompt, codeGenType));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * k 折交叉验证
+     */
+    public static Report evaluate(List<CodeGenTypeClassifier.Sample> samples, int folds, long seed) {
+        List<CodeGenTypeClassifier.Sample> shuffled = new ArrayList<>(samples);
+        Collections.shuffle(shuffled, new Random(seed));
+        Report report = new Report(shuffled.size());
+        for (int fold = 0; fold < folds; fold++) {
+            List<CodeGenTypeClassifier.Sample> train = new ArrayList<>();
+            List<CodeGenTypeClassifier.Sample> test = new ArrayList<>();
+            for (int i = 0; i < shuffled.size(); i++) {
+                (i % folds == fold ? test : train).add(shuffled.get(i));
+            }
+            CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(train);
+            for (CodeGenTypeClassifier.Sample sample : test) {
+                long startNanos = System.nanoTime();
+                CodeGenTypeClassifier.Prediction prediction = classifier.classify(sample.getPrompt());
+                report.totalNanos += System.nanoTime() - startNanos;
+                report.add(sample.getCodeGenType(), prediction);
+            }
+        }
+        return report;
+    }
+
+    private static CodeGenTypeEnum parseCodeGenType(String text) {
+        CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(text);
+        if (codeGenType != null) {
+            return codeGenType;
+        }
+        for (CodeGenTypeEnum value : CodeGenTypeEnum.values()) {
+            if (value.name().equals(text)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 评估结果
+     */
+    public static class Report {
+
+        private final int total;
+
+        private final int[] covered = new int[THRESHOLDS.length];
+
+        private final int[] correct = new int[THRESHOLDS.length];
+
+        private final Map<CodeGenTypeEnum, Map<CodeGenTypeEnum, Integer>> confusion = new EnumMap<>(CodeGenTypeEnum.class);
+
+        private int unknown;
+
+        private long totalNanos;
+
+        Report(int total) {
+            this.total = total;
+        }
+
+        void add(CodeGenTypeEnum actual, CodeGenTypeClassifier.Prediction prediction) {
+            if (prediction == null) {
+                unknown++;
+                return;
+            }
+            confusion.computeIfAbsent(actual, k -> new EnumMap<>(CodeGenTypeEnum.class))
+                    .merge(prediction.getCodeGenType(), 1, Integer::sum);
+            for (int i = 0; i < THRESHOLDS.length; i++) {
+                if (prediction.getConfidence() >= THRESHOLDS[i]) {
+                    covered[i]++;
+                    if (prediction.getCodeGenType() == actual) {
+                        correct[i]++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 置信度不低于阈值的样本比例（快速路由比例）
+         */
+        public double coverage(double threshold) {
+            int index = indexOf(threshold);
+            return total == 0 ? 0 : (double) covered[index] / total;
+        }
+
+        /**
+         * 置信度不低于阈值的样本中分类正确的比例
+         */
+        public double accuracy(double threshold) {
+            int index = indexOf(threshold);
+            return covered[index] == 0 ? 0 : (double) correct[index] / covered[index];
+        }
+
+        /**
+         * 不设阈值时的准确率
+         */
+        public double overallAccuracy() {
+            int hits = 0;
+            int predicted = 0;
+            for (Map.Entry<CodeGenTypeEnum, Map<CodeGenTypeEnum, Integer>> row : confusion.entrySet()) {
+                for (Map.Entry<CodeGenTypeEnum, Integer> cell : row.getValue().entrySet()) {
+                    predicted += cell.getValue();
+                    if (row.getKey() == cell.getKey()) {
+                        hits += cell.getValue();
+                    }
+                }
+            }
+            return predicted == 0 ? 0 : (double) hits / predicted;
+        }
+
+        public void print() {
+            System.out.printf("样本数: %d, 无已知特征: %d, 不设阈值准确率: %.3f, 平均分类耗时: %.1fµs%n",
+                    total, unknown, overallAccuracy(), total == 0 ? 0 : totalNanos / 1000.0 / total);
+            System.out.println("阈值\t快速路由比例\t快速路由准确率");
+            for (double threshold : THRESHOLDS) {
+                System.out.printf("%.2f\t%.3f\t%.3f%n", threshold, coverage(threshold), accuracy(threshold));
+            }
+            System.out.println("混淆矩阵（行: 实际, 列: 预测）");
+            for (CodeGenTypeEnum actual : CodeGenTypeEnum.values()) {
+                StringBuilder row = new StringBuilder(actual.name());
+                for (CodeGenTypeEnum predicted : CodeGenTypeEnum.values()) {
+                    row.append('\t').append(confusion.getOrDefault(actual, Map.of()).getOrDefault(predicted, 0));
+                }
+                System.out.println(row);
+            }
+        }
+
+        private static int indexOf(double threshold) {
+            for (int i = 0; i < THRESHOLDS.length; i++) {
+                if (THRESHOLDS[i] == threshold) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("未评估的阈值: " + threshold);
+        }
+    }
+}
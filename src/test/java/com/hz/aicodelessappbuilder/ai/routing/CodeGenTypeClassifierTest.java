@@ -0,0 +1,43 @@
+package com.hz.aicodelessappbuilder.ai.routing;
+
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 本地路由分类器测试，使用 src/test/resources/routing 下的提示词导出样例
+ */
+class CodeGenTypeClassifierTest {
+
+    @Test
+    void classifiesObviousPrompts() throws Exception {
+        CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(readSample());
+        assertPrediction(classifier, "用 Vue3 做一个后台管理系统，有登录和用户管理", CodeGenTypeEnum.VUE_PROJECT);
+        assertPrediction(classifier, "做一个企业官网，首页、关于我们、联系我们三个页面", CodeGenTypeEnum.MULTI_FILE);
+        assertPrediction(classifier, "帮我做一个简单的个人简介页面", CodeGenTypeEnum.HTML);
+        Assertions.assertNull(classifier.classify("！！！"));
+    }
+
+    @Test
+    void crossValidationOnSampleDump() throws Exception {
+        CodeGenTypeClassifierEvaluation.Report report = CodeGenTypeClassifierEvaluation.evaluate(readSample(), 5, 42);
+        report.print();
+        Assertions.assertTrue(report.overallAccuracy() >= 0.7);
+        // 阈值越高，快速路由比例越低
+        Assertions.assertTrue(report.coverage(0.99) <= report.coverage(0.5));
+    }
+
+    private static void assertPrediction(CodeGenTypeClassifier classifier, String prompt, CodeGenTypeEnum expected) {
+        CodeGenTypeClassifier.Prediction prediction = classifier.classify(prompt);
+        Assertions.assertNotNull(prediction);
+        Assertions.assertEquals(expected, prediction.getCodeGenType(), prompt);
+    }
+
+    private static List<CodeGenTypeClassifier.Sample> readSample() throws Exception {
+        return CodeGenTypeClassifierEvaluation.readDump(
+                Path.of(CodeGenTypeClassifierTest.class.getResource("/routing/prompt-dump-sample.tsv").toURI()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.hz.aicodelessappbuilder.ai.tools;
+
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 文件读取工具的行号范围与内容哈希测试
+ */
+class FileReadToolTest {
+
+    private static final long APP_ID = 1L;
+
+    @TempDir
+    private Path tempDir;
+
+    private ProjectWorkspace workspace;
+
+    private FileReadTool fileReadTool;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ProjectWorkspaceManager projectWorkspaceManager = new ProjectWorkspaceManager();
+        workspace = new ProjectWorkspace(tempDir);
+        ((Map<Long, ProjectWorkspace>) ReflectionTestUtils.getField(projectWorkspaceManager, "workspaces"))
+                .put(APP_ID, workspace);
+        fileReadTool = new FileReadTool();
+        ReflectionTestUtils.setField(fileReadTool, "projectWorkspaceManager", projectWorkspaceManager);
+        ReflectionTestUtils.setField(fileReadTool, "meterRegistry", new SimpleMeterRegistry());
+        fileReadTool.init();
+    }
+
+    @Test
+    void trailingNewlineIsNotALine() {
+        write("a.txt", "第一行\n第二行\n");
+        write("b.txt", "第一行\n第二行");
+        Assertions.assertTrue(read("a.txt", null, null, null).contains("共 2 行"));
+        Assertions.assertTrue(read("b.txt", null, null, null).contains("共 2 行"));
+        Assertions.assertEquals("文件 a.txt 第 2-2 行（共 2 行）：\n第二行", read("a.txt", 2, 2, null));
+        // 结束行号超出时读到最后一行
+        Assertions.assertEquals("文件 a.txt 第 1-2 行（共 2 行）：\n第一行\n第二行", read("a.txt", null, 10, null));
+    }
+
+    @Test
+    void outOfRangeIsAnError() {
+        write("a.txt", "第一行\n第二行\n");
+        Assertions.assertEquals("错误：行号范围无效，文件共 2 行 - a.txt", read("a.txt", 3, null, null));
+        Assertions.assertEquals("错误：行号范围无效，文件共 2 行 - a.txt", read("a.txt", 2, 1, null));
+        Assertions.assertTrue(read("missing.txt", null, null, null).startsWith("错误：文件不存在"));
+    }
+
+    @Test
+    void matchingHashSkipsContent() {
+        write("a.txt", "第一行\n第二行\n");
+        String hash = workspace.contentHash("a.txt");
+        String full = read("a.txt", null, null, null);
+        Assertions.assertEquals("文件 a.txt（内容哈希: " + hash + "，共 2 行）：\n第一行\n第二行\n", full);
+        // 范围读取不返回哈希，只看过部分内容时无法凭哈希跳过完整读取
+        Assertions.assertFalse(read("a.txt", 1, 1, null).contains(hash));
+        // 已知哈希与当前内容一致时，范围读取也只回复未变化
+        String unchanged = "文件未变化（内容哈希: " + hash + "），请使用之前得到的内容 - a.txt";
+        Assertions.assertEquals(unchanged, read("a.txt", 2, 2, hash));
+        Assertions.assertEquals(unchanged, read("a.txt", null, null, " " + hash + " "));
+        // 文件变化后旧哈希不再匹配
+        write("a.txt", "第一行\n新的第二行\n");
+        Assertions.assertEquals("文件 a.txt 第 2-2 行（共 2 行）：\n新的第二行", read("a.txt", 2, 2, hash));
+    }
+
+    private void write(String path, String content) {
+        workspace.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String path, Integer startLine, Integer endLine, String knownHash) {
+        return fileReadTool.readFile(path, startLine, endLine, knownHash, APP_ID);
+    }
+}
@@ -0,0 +1,70 @@
+package com.hz.aicodelessappbuilder.ai.tools;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialResponse;
+import dev.langchain4j.model.chat.response.PartialResponseContext;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 按脚本回复的本地流式模型，用于离线测试工具调用循环
+ * 每次请求依次取出下一条脚本回复：包含工具调用时按顺序逐个回调 onCompleteToolCall（与真实流式模型一致），
+ * 否则输出文本；收到的请求都记录下来，便于检查工具结果回传给模型的顺序
+ */
+public class ScriptedStreamingChatModel implements StreamingChatModel {
+
+    private final Queue<AiMessage> script = new ConcurrentLinkedQueue<>();
+
+    private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+
+    public ScriptedStreamingChatModel(List<AiMessage> responses) {
+        script.addAll(responses);
+    }
+
+    public List<ChatRequest> getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        requests.add(chatRequest);
+        AiMessage aiMessage = script.poll();
+        Thread.ofVirtual().start(() -> {
+            if (aiMessage == null) {
+                handler.onError(new IllegalStateException("脚本回复已用完"));
+                return;
+            }
+            if (aiMessage.hasToolExecutionRequests()) {
+                List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+                for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                    handler.onCompleteToolCall(new CompleteToolCall(i, toolExecutionRequests.get(i)));
+                }
+            } else {
+                handler.onPartialResponse(new PartialResponse(aiMessage.text()), new PartialResponseContext(new NoopHandle()));
+            }
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(aiMessage).build());
+        });
+    }
+
+    private static class NoopHandle implements StreamingHandle {
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.hz.aicodelessappbuilder.ai.tools;
+
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspace;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.MemoryId;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.UserMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工具调用并发执行测试
+ * 脚本模型在一轮响应中返回多个工具调用，由真实的写文件、读文件工具在内存工作区上执行；
+ * 工作区写入处用栅栏和闩锁检查调用是否并发，并检查结果按调用顺序回传、同一路径的调用按顺序串行
+ */
+class ToolCallSchedulerTest {
+
+    private static final long APP_ID = 1L;
+
+    private static final int CALL_COUNT = 8;
+
+    private static final long AWAIT_SECONDS = 10;
+
+    interface Assistant {
+
+        TokenStream chat(@MemoryId long appId, @UserMessage String message);
+    }
+
+    @TempDir
+    private Path tempDir;
+
+    private ProjectWorkspaceManager projectWorkspaceManager;
+
+    private FileWriteTool fileWriteTool;
+
+    private FileReadTool fileReadTool;
+
+    @BeforeEach
+    void setUp() {
+        projectWorkspaceManager = new ProjectWorkspaceManager();
+        fileWriteTool = new FileWriteTool();
+        ReflectionTestUtils.setField(fileWriteTool, "projectWorkspaceManager", projectWorkspaceManager);
+        fileReadTool = new FileReadTool();
+        ReflectionTestUtils.setField(fileReadTool, "projectWorkspaceManager", projectWorkspaceManager);
+        ReflectionTestUtils.setField(fileReadTool, "meterRegistry", new SimpleMeterRegistry());
+        fileReadTool.init();
+    }
+
+    @Test
+    void distinctPathsRunConcurrently() throws Exception {
+        // 所有写入同时到达栅栏才能继续，顺序执行时第一个写入就会等待超时
+        CyclicBarrier barrier = new CyclicBarrier(CALL_COUNT);
+        openWorkspace(new GatedWorkspace(tempDir) {
+            @Override
+            protected void beforeWrite(String relativePath, String content) throws Exception {
+                barrier.await(AWAIT_SECONDS, TimeUnit.SECONDS);
+            }
+        });
+        List<ToolExecutionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CALL_COUNT; i++) {
+            requests.add(writeRequest(i, "src/components/File" + i + ".vue"));
+        }
+        ScriptedStreamingChatModel model = scriptedModel(requests);
+        run(model);
+
+        List<ToolExecutionResultMessage> results = toolResults(model);
+        Assertions.assertEquals(ids(requests), results.stream().map(ToolExecutionResultMessage::id).toList());
+        for (ToolExecutionResultMessage result : results) {
+            Assertions.assertTrue(result.text().startsWith("文件写入成功"), result.text());
+        }
+    }
+
+    @Test
+    void samePathCallsStaySerialized() throws Exception {
+        // 交替写入同一个文件和不同文件，最后读取同一个文件
+        CountDownLatch othersArrived = new CountDownLatch(CALL_COUNT / 2);
+        AtomicInteger appInFlight = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        List<String> appWrites = new CopyOnWriteArrayList<>();
+        openWorkspace(new GatedWorkspace(tempDir) {
+            @Override
+            protected void beforeWrite(String relativePath, String content) throws Exception {
+                if (!relativePath.equals("src/App.vue")) {
+                    // 不同文件的写入彼此等待，只有并发执行才能全部通过
+                    othersArrived.countDown();
+                    Assertions.assertTrue(othersArrived.await(AWAIT_SECONDS, TimeUnit.SECONDS));
+                    return;
+                }
+                if (appInFlight.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                try {
+                    // 第一次写入停在这里直到其他文件都已开始写入，给同一文件的后续写入留出重叠的机会
+                    Assertions.assertTrue(othersArrived.await(AWAIT_SECONDS, TimeUnit.SECONDS));
+                    appWrites.add(content);
+                } finally {
+                    appInFlight.decrementAndGet();
+                }
+            }
+        });
+        List<ToolExecutionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CALL_COUNT; i++) {
+            requests.add(writeRequest(i, i % 2 == 0 ? "src/App.vue" : "src/components/File" + i + ".vue"));
+        }
+        requests.add(ToolExecutionRequest.builder()
+                .id("call_read")
+                .name("readFile")
+                .arguments("{\"relativeFilePath\":\"src/App.vue\"}")
+                .build());
+        ScriptedStreamingChatModel model = scriptedModel(requests);
+        run(model);
+
+        // 同一文件的 4 次写入依次执行，之后的读取看到最后一次写入
+        Assertions.assertFalse(overlapped.get());
+        Assertions.assertEquals(List.of("0", "2", "4", "6"), appWrites);
+        List<ToolExecutionResultMessage> results = toolResults(model);
+        Assertions.assertEquals(ids(requests), results.stream().map(ToolExecutionResultMessage::id).toList());
+        Assertions.assertTrue(results.get(CALL_COUNT).text().endsWith("：\n6"), results.get(CALL_COUNT).text());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void openWorkspace(ProjectWorkspace workspace) {
+        ((Map<Long, ProjectWorkspace>) ReflectionTestUtils.getField(projectWorkspaceManager, "workspaces"))
+                .put(APP_ID, workspace);
+    }
+
+    private static ToolExecutionRequest writeRequest(int index, String path) {
+        return ToolExecutionRequest.builder()
+                .id("call_" + index)
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"" + path + "\",\"content\":\"" + index + "\"}")
+                .build();
+    }
+
+    private static List<String> ids(List<ToolExecutionRequest> requests) {
+        return requests.stream().map(ToolExecutionRequest::id).toList();
+    }
+
+    private static ScriptedStreamingChatModel scriptedModel(List<ToolExecutionRequest> requests) {
+        return new ScriptedStreamingChatModel(List.of(AiMessage.from(requests), AiMessage.from("完成")));
+    }
+
+    private void run(ScriptedStreamingChatModel model) throws Exception {
+        ToolCallScheduler scheduler = new ToolCallScheduler(new SimpleMeterRegistry());
+        Assistant assistant = AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemoryProvider(id -> MessageWindowChatMemory.withMaxMessages(50))
+                .tools(scheduler.wrapTools(fileWriteTool, fileReadTool))
+                .executeToolsConcurrently(scheduler)
+                .build();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        assistant.chat(APP_ID, "生成项目")
+                .onPartialResponse(partialResponse -> {
+                })
+                .onCompleteResponse(response -> done.complete(null))
+                .onError(done::completeExceptionally)
+                .start();
+        done.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 模型第二次请求中的工具结果（按消息顺序）
+     */
+    private static List<ToolExecutionResultMessage> toolResults(ScriptedStreamingChatModel model) {
+        List<ToolExecutionResultMessage> result = new ArrayList<>();
+        for (ChatMessage message : model.getRequests().get(1).messages()) {
+            if (message instanceof ToolExecutionResultMessage toolResult) {
+                result.add(toolResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入前先经过测试设置的关卡的工作区，关卡在工作区锁外执行
+     */
+    abstract static class GatedWorkspace extends ProjectWorkspace {
+
+        GatedWorkspace(Path root) {
+            super(root);
+        }
+
+        protected abstract void beforeWrite(String relativePath, String content) throws Exception;
+
+        @Override
+        public void write(String relativePath, byte[] content) {
+            try {
+                beforeWrite(relativePath, new String(content, StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            super.write(relativePath, content);
+        }
+    }
+}
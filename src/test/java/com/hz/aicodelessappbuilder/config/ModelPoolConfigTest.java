@@ -0,0 +1,56 @@
+package com.hz.aicodelessappbuilder.config;
+
+import com.hz.aicodelessappbuilder.ai.pool.ModelBackend;
+import com.hz.aicodelessappbuilder.ai.pool.StreamingChatModelPool;
+import com.hz.aicodelessappbuilder.monitor.AiModelMonitorListener;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+/**
+ * 流式模型池配置测试
+ * 只创建模型池，不发出请求
+ */
+class ModelPoolConfigTest {
+
+    private ModelPoolConfig modelPoolConfig;
+
+    @BeforeEach
+    void setUp() {
+        modelPoolConfig = new ModelPoolConfig();
+        ReflectionTestUtils.setField(modelPoolConfig, "aiModelMonitorListener", new AiModelMonitorListener());
+        ReflectionTestUtils.setField(modelPoolConfig, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @Test
+    void endpointNameDefaultsToBaseUrlHost() {
+        StreamingChatModelPool pool = modelPoolConfig.createPool("streaming",
+                List.of(endpoint(null, "https://api.deepseek.com/v1", "key"), endpoint("backup", "https://api.deepseek.com/v1", "key")),
+                null);
+        Assertions.assertEquals(List.of("api.deepseek.com", "backup"), pool.getBackends().stream().map(ModelBackend::getName).toList());
+    }
+
+    @Test
+    void invalidEndpointFailsWithClearMessage() {
+        IllegalArgumentException missingApiKey = Assertions.assertThrows(IllegalArgumentException.class, () ->
+                modelPoolConfig.createPool("streaming", List.of(endpoint("primary", "https://api.deepseek.com/v1", " ")), null));
+        Assertions.assertEquals("模型池 streaming 的第 1 个端点缺少 api-key", missingApiKey.getMessage());
+        IllegalArgumentException duplicateName = Assertions.assertThrows(IllegalArgumentException.class, () ->
+                modelPoolConfig.createPool("streaming", List.of(endpoint(null, "https://api.deepseek.com/v1", "key"),
+                        endpoint(null, "https://api.deepseek.com/beta", "key")), null));
+        Assertions.assertEquals("模型池 streaming 的端点名称重复: api.deepseek.com", duplicateName.getMessage());
+    }
+
+    private static ModelPoolConfig.Endpoint endpoint(String name, String baseUrl, String apiKey) {
+        ModelPoolConfig.Endpoint endpoint = new ModelPoolConfig.Endpoint();
+        endpoint.setName(name);
+        endpoint.setBaseUrl(baseUrl);
+        endpoint.setApiKey(apiKey);
+        endpoint.setModelName("deepseek-chat");
+        return endpoint;
+    }
+}
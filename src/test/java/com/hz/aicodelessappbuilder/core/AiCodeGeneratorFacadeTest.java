@@ -1,5 +1,7 @@
 package com.hz.aicodelessappbuilder.core;
 
+import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
 import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
@@ -24,9 +26,9 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("登录页面，不超过50行", CodeGenTypeEnum.HTML,1L);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("登录页面，不超过50行", CodeGenTypeEnum.HTML,1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<String> result = codeStream.map(message -> ((AiResponseMessage) message).getData()).collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
         String completeContent = String.join("", result);
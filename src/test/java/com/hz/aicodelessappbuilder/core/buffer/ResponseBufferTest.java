@@ -0,0 +1,60 @@
+package com.hz.aicodelessappbuilder.core.buffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 响应缓冲区测试
+ */
+class ResponseBufferTest {
+
+    @Test
+    void spilledContentIsStreamedNotReadBack() throws Exception {
+        ResponseBuffer responseBuffer = new ResponseBuffer(16, buffer -> {
+        });
+        responseBuffer.append("0123456789");
+        Assertions.assertFalse(responseBuffer.isSpilled());
+        Assertions.assertEquals("0123456789", responseBuffer.readAll());
+        responseBuffer.append("abcdefghij");
+        Assertions.assertTrue(responseBuffer.isSpilled());
+        // 转存后不允许整体读回
+        Assertions.assertThrows(IllegalStateException.class, responseBuffer::readAll);
+        StringWriter writer = new StringWriter();
+        responseBuffer.transferTo(writer);
+        Assertions.assertEquals("0123456789abcdefghij", writer.toString());
+        responseBuffer.close();
+    }
+
+    @Test
+    void detachedSpillFileSurvivesClose() throws Exception {
+        ResponseBuffer responseBuffer = new ResponseBuffer(4, buffer -> {
+        });
+        responseBuffer.append("长响应内容");
+        Path spillFile = responseBuffer.detachSpillFile();
+        Assertions.assertNotNull(spillFile);
+        Assertions.assertEquals(0, responseBuffer.getMemoryBytes());
+        // 交出文件后不再追加
+        responseBuffer.append("忽略");
+        responseBuffer.close();
+        Assertions.assertEquals("长响应内容", Files.readString(spillFile, StandardCharsets.UTF_8));
+        Files.delete(spillFile);
+    }
+
+    @Test
+    void closeDeletesOwnedSpillFile() throws Exception {
+        ResponseBuffer responseBuffer = new ResponseBuffer(4, buffer -> {
+        });
+        Assertions.assertNull(responseBuffer.detachSpillFile());
+        responseBuffer.append("0123456789");
+        StringWriter writer = new StringWriter();
+        responseBuffer.transferTo(writer);
+        responseBuffer.close();
+        Assertions.assertTrue(responseBuffer.isSpilled());
+        Assertions.assertEquals("0123456789", writer.toString());
+    }
+}
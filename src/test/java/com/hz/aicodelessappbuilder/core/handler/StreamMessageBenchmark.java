@@ -0,0 +1,94 @@
+package com.hz.aicodelessappbuilder.core.handler;
+
+import cn.hutool.json.JSONUtil;
+import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessageTypeEnum;
+import com.hz.aicodelessappbuilder.ai.model.message.ToolExecutedMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.ToolRequestMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VUE_PROJECT 流式 token 路径的基准测试
+ * 对比"每个 token 经 JSON 序列化、两次反序列化后再由 SSE 编码"与"类型化事件直接传递、仅在 SSE 出口编码"的吞吐和内存分配。
+ * 运行方式：执行 main 方法（附带 GC 分配统计）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamMessageBenchmark {
+
+    /**
+     * 单次调用处理的 token 数，结果按 token 计算（与 @OperationsPerInvocation 一致）
+     */
+    private static final int TOKEN_COUNT = 1000;
+
+    private List<String> tokens;
+
+    @Setup
+    public void setup() {
+        tokens = new ArrayList<>(TOKEN_COUNT);
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            tokens.add("<div class=\"item-" + (i % 10) + "\">");
+        }
+    }
+
+    /**
+     * 原有方式：生产端序列化为 JSON，处理器先解析类型再解析具体消息，SSE 出口再次编码
+     */
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void jsonRoundTrip(Blackhole blackhole) {
+        for (String token : tokens) {
+            // processTokenStream
+            String chunk = JSONUtil.toJsonStr(new AiResponseMessage(token));
+            // JsonMessageStreamHandler：解析类型
+            String type = JSONUtil.parseObj(chunk).getStr("type");
+            StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(type);
+            String data = null;
+            if (typeEnum == StreamMessageTypeEnum.AI_RESPONSE) {
+                // 解析具体消息
+                data = JSONUtil.toBean(chunk, AiResponseMessage.class).getData();
+            }
+            // AppController：SSE 编码
+            blackhole.consume(JSONUtil.toJsonStr(Map.of("d", data)));
+        }
+    }
+
+    /**
+     * 类型化方式：事件对象直接在 Flux 中传递，只在 SSE 出口编码一次
+     */
+    @Benchmark
+    @OperationsPerInvocation(TOKEN_COUNT)
+    public void typedEvents(Blackhole blackhole) {
+        for (String token : tokens) {
+            StreamMessage streamMessage = new AiResponseMessage(token);
+            String data = switch (streamMessage) {
+                case AiResponseMessage aiMessage -> aiMessage.getData();
+                case ToolRequestMessage toolRequestMessage -> toolRequestMessage.getName();
+                case ToolExecutedMessage toolExecutedMessage -> toolExecutedMessage.getResult();
+            };
+            blackhole.consume(JSONUtil.toJsonStr(Map.of("d", data)));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StreamMessageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
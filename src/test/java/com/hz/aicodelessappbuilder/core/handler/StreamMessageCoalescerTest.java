@@ -0,0 +1,62 @@
+package com.hz.aicodelessappbuilder.core.handler;
+
+import com.hz.aicodelessappbuilder.ai.model.message.AiResponseMessage;
+import com.hz.aicodelessappbuilder.ai.model.message.StreamMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 流式消息合并器测试
+ * 时间窗口设得足够长，只观察按大小输出
+ */
+class StreamMessageCoalescerTest {
+
+    private static final int MAX_BYTES = 30;
+
+    private StreamMessageCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new StreamMessageCoalescer();
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(coalescer, "windowMillis", 60_000L);
+        ReflectionTestUtils.setField(coalescer, "maxBytes", MAX_BYTES);
+        coalescer.initMetrics();
+    }
+
+    @Test
+    void flushesByUtf8Bytes() {
+        // 每个片段 4 个中文字符，12 个字节：第三个片段累计 36 字节达到上限，此时字符数只有 12
+        List<String> emitted = coalesce("你好世界", "你好世界", "你好世界", "你好世界");
+        Assertions.assertEquals(List.of("你好世界你好世界你好世界"), emitted);
+    }
+
+    @Test
+    void countsAsciiAndSupplementaryCharacters() {
+        // 28 个 ASCII 字符不足上限，再加一个 4 字节的表情后达到上限
+        List<String> emitted = coalesce("a".repeat(28), "😀", "b");
+        Assertions.assertEquals(List.of("a".repeat(28) + "😀"), emitted);
+    }
+
+    /**
+     * 片段之后不结束流，只收集按大小输出的消息
+     */
+    private List<String> coalesce(String... chunks) {
+        List<String> emitted = new CopyOnWriteArrayList<>();
+        Flux<StreamMessage> source = Flux.fromArray(chunks)
+                .<StreamMessage>map(AiResponseMessage::new)
+                .concatWith(Flux.never());
+        Disposable subscription = coalescer.coalesce(source)
+                .subscribe(message -> emitted.add(((AiResponseMessage) message).getData()));
+        subscription.dispose();
+        return emitted;
+    }
+}
@@ -0,0 +1,119 @@
+package com.hz.aicodelessappbuilder.core.parser;
+
+import com.hz.aicodelessappbuilder.ai.model.MultiFileCodeResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 正则解析与流式解析的基准测试
+ * 模拟 MULTI_FILE 生成的流式片段，对比"收集完整响应后正则解析"与"逐片段增量解析"的耗时和内存分配。
+ * 运行方式：执行 main 方法（附带 GC 分配统计）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeParserBenchmark {
+
+    /**
+     * 模拟的模型响应大小（字节）
+     */
+    @Param({"102400", "524288", "1048576"})
+    private int responseSize;
+
+    /**
+     * 单个流式片段的大小，接近模型每次输出的 token 长度
+     */
+    @Param({"16"})
+    private int chunkSize;
+
+    private List<String> chunks;
+
+    private final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
+
+    @Setup
+    public void setup() {
+        String response = buildResponse(responseSize);
+        chunks = new ArrayList<>(response.length() / chunkSize + 1);
+        for (int i = 0; i < response.length(); i += chunkSize) {
+            chunks.add(response.substring(i, Math.min(response.length(), i + chunkSize)));
+        }
+    }
+
+    /**
+     * 原有方式：收集完整响应后一次性正则解析
+     */
+    @Benchmark
+    public MultiFileCodeResult regexParser() {
+        StringBuilder codeBuilder = new StringBuilder();
+        for (String chunk : chunks) {
+            codeBuilder.append(chunk);
+        }
+        return multiFileCodeParser.parseCode(codeBuilder.toString());
+    }
+
+    /**
+     * 流式方式：逐片段增量解析，代码内容直接交给下游
+     */
+    @Benchmark
+    public void streamingParser(Blackhole blackhole) {
+        StreamingCodeParser parser = new StreamingCodeParser(new StreamingCodeParser.CodeBlockHandler() {
+            @Override
+            public boolean onBlockStart(String language) {
+                return true;
+            }
+
+            @Override
+            public void onCode(CharSequence code) {
+                blackhole.consume(code);
+            }
+
+            @Override
+            public void onBlockEnd() {
+            }
+        });
+        for (String chunk : chunks) {
+            parser.feed(chunk);
+        }
+        parser.finish();
+    }
+
+    /**
+     * 构造接近真实输出的响应：说明文字 + html/css/js 三个代码块，三者按 2:1:1 分配
+     */
+    private static String buildResponse(int size) {
+        StringBuilder builder = new StringBuilder(size + 256);
+        builder.append("好的，下面是为你生成的页面代码，包含 HTML、CSS 和 JavaScript 三个文件。\n\n");
+        appendBlock(builder, "html", "<div class=\"item\"><span>`item`</span></div>\n", size / 2);
+        appendBlock(builder, "css", ".item { color: #333; margin: 0 auto; }\n", size / 4);
+        appendBlock(builder, "javascript", "document.querySelectorAll('.item').forEach(e => e.remove());\n", size / 4);
+        builder.append("以上代码可以直接在浏览器中打开预览。\n");
+        return builder.toString();
+    }
+
+    private static void appendBlock(StringBuilder builder, String language, String line, int size) {
+        builder.append("```").append(language).append('\n');
+        int end = builder.length() + size;
+        while (builder.length() < end) {
+            builder.append(line);
+        }
+        builder.append("```\n\n");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CodeParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,171 @@
+package com.hz.aicodelessappbuilder.core.saver;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import com.hz.aicodelessappbuilder.ai.model.MultiFileCodeResult;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBuffer;
+import com.hz.aicodelessappbuilder.core.buffer.ResponseBufferFactory;
+import com.hz.aicodelessappbuilder.core.parser.HtmlCodeParser;
+import com.hz.aicodelessappbuilder.core.parser.MultiFileCodeParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * 流式保存与正则解析的一致性测试
+ * 样例响应按多种方式切分成流式片段（包括把围栏拆到相邻片段），流式保存写出的文件应与完整响应经正则解析的结果相同。
+ */
+class StreamingCodeFileSaverTest {
+
+    private static final List<String> HTML_SAMPLES = List.of(
+            "html-basic.txt", "html-no-fence.txt", "html-blank-block.txt", "html-truncated.txt");
+
+    private static final List<String> MULTI_FILE_SAMPLES = List.of(
+            "multi-file-basic.txt", "multi-file-variants.txt", "multi-file-missing.txt", "html-truncated.txt");
+
+    @TempDir
+    private Path tempDir;
+
+    private ResponseBufferFactory responseBufferFactory;
+
+    @BeforeEach
+    void setUp() {
+        responseBufferFactory = new ResponseBufferFactory();
+        ReflectionTestUtils.setField(responseBufferFactory, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(responseBufferFactory, "spillThreshold", 1024L);
+        responseBufferFactory.initMetrics();
+    }
+
+    @Test
+    void htmlMatchesRegexParser() throws Exception {
+        HtmlCodeFileSaverTemplate template = new HtmlCodeFileSaverTemplate();
+        for (String sample : HTML_SAMPLES) {
+            String response = loadSample(sample);
+            String expected = new HtmlCodeParser().parseCode(response).getHtmlCode();
+            for (List<String> chunks : splits(response)) {
+                Path dir = save(template, chunks);
+                Assertions.assertEquals(Set.of("index.html"), listFiles(dir), sample);
+                Assertions.assertEquals(expected, Files.readString(dir.resolve("index.html")), sample);
+            }
+        }
+    }
+
+    @Test
+    void multiFileMatchesRegexParser() throws Exception {
+        MultiFileCodeFileSaverTemplate template = new MultiFileCodeFileSaverTemplate();
+        for (String sample : MULTI_FILE_SAMPLES) {
+            String response = loadSample(sample);
+            MultiFileCodeResult result = new MultiFileCodeParser().parseCode(response);
+            Map<String, String> expected = new HashMap<>();
+            expected.put("index.html", result.getHtmlCode());
+            expected.put("style.css", result.getCssCode());
+            expected.put("script.js", result.getJsCode());
+            for (List<String> chunks : splits(response)) {
+                Path dir = save(template, chunks);
+                for (Map.Entry<String, String> entry : expected.entrySet()) {
+                    Path file = dir.resolve(entry.getKey());
+                    String actual = Files.exists(file) ? Files.readString(file) : null;
+                    Assertions.assertEquals(entry.getValue(), actual, sample + " " + entry.getKey());
+                }
+                // 没有遗留临时文件
+                Assertions.assertTrue(expected.keySet().containsAll(listFiles(dir)), sample);
+            }
+        }
+    }
+
+    @Test
+    void unfinishedBlockKeepsPreviousFile() throws Exception {
+        Path dir = Files.createTempDirectory(tempDir, "cancel");
+        Files.writeString(dir.resolve("index.html"), "<p>上一次的页面</p>");
+        ResponseBuffer responseBuffer = responseBufferFactory.create();
+        StreamingCodeFileSaver saver = new StreamingCodeFileSaver(dir.toString(),
+                new HtmlCodeFileSaverTemplate()::resolveFileName, "index.html", responseBuffer);
+        saver.append("```html\n<p>新页面，生成到一半");
+        // 生成被取消：只关闭，不调用 complete
+        saver.close();
+        responseBuffer.close();
+        Assertions.assertEquals(Set.of("index.html"), listFiles(dir));
+        Assertions.assertEquals("<p>上一次的页面</p>", Files.readString(dir.resolve("index.html")));
+    }
+
+    @Test
+    void failedRenameRemovesTempFile() throws Exception {
+        Path dir = Files.createTempDirectory(tempDir, "rename");
+        // 目标位置是非空目录，重命名失败
+        Files.createDirectories(dir.resolve("index.html"));
+        Files.writeString(dir.resolve("index.html").resolve("keep.txt"), "占位");
+        ResponseBuffer responseBuffer = responseBufferFactory.create();
+        StreamingCodeFileSaver saver = new StreamingCodeFileSaver(dir.toString(),
+                new HtmlCodeFileSaverTemplate()::resolveFileName, null, responseBuffer);
+        saver.append("```html\n<p>新页面</p>\n```\n");
+        saver.complete();
+        responseBuffer.close();
+        Assertions.assertEquals(Set.of("index.html"), listFiles(dir));
+    }
+
+    private Path save(CodeFileSaverTemplate<?> template, List<String> chunks) throws Exception {
+        Path dir = Files.createTempDirectory(tempDir, "run");
+        ResponseBuffer responseBuffer = responseBufferFactory.create();
+        try {
+            StreamingCodeFileSaver saver = new StreamingCodeFileSaver(dir.toString(), template::resolveFileName,
+                    template.getFallbackFileName(), responseBuffer);
+            for (String chunk : chunks) {
+                responseBuffer.append(chunk);
+                saver.append(chunk);
+            }
+            saver.complete();
+        } finally {
+            responseBuffer.close();
+        }
+        return dir;
+    }
+
+    /**
+     * 固定长度切分（1、2 个字符时围栏必然跨片段）和固定种子的随机切分
+     */
+    private static List<List<String>> splits(String response) {
+        List<List<String>> result = new ArrayList<>();
+        for (int size : new int[]{1, 2, 3, 5, 16, 64, response.length()}) {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < response.length(); i += size) {
+                chunks.add(response.substring(i, Math.min(response.length(), i + size)));
+            }
+            result.add(chunks);
+        }
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < response.length(); ) {
+                int end = Math.min(response.length(), i + 1 + random.nextInt(12));
+                chunks.add(response.substring(i, end));
+                i = end;
+            }
+            result.add(chunks);
+        }
+        return result;
+    }
+
+    private static String loadSample(String name) {
+        return ResourceUtil.readStr("codegen/" + name, StandardCharsets.UTF_8);
+    }
+
+    private static Set<String> listFiles(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString()).collect(TreeSet::new, Set::add, Set::addAll);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.hz.aicodelessappbuilder.core.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.redisson.api.RPermitExpirableSemaphore;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 生成会话管理器测试
+ * 生成流换成不结束的流，观察会话在客户端断开后的取消；租约换成本地实现，可以让指定应用停在等待租约
+ */
+class GenerationSessionManagerTest {
+
+    private static final long DETACH_TIMEOUT_SECONDS = 1;
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private GenerationScheduler generationScheduler;
+
+    private GenerationSessionManager generationSessionManager;
+
+    /**
+     * 生成流是否被取消
+     */
+    private final AtomicBoolean upstreamCancelled = new AtomicBoolean(false);
+
+    /**
+     * 等待租约的应用，测试交付租约后才获得
+     */
+    private final Map<Long, Sinks.One<GenerationLease>> pendingLeases = new ConcurrentHashMap<>();
+
+    /**
+     * 已释放的租约数
+     */
+    private final AtomicInteger releasedLeases = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        generationScheduler = new GenerationScheduler();
+        ReflectionTestUtils.setField(generationScheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(generationScheduler, "maxConcurrent", 4);
+        ReflectionTestUtils.setField(generationScheduler, "maxPerUser", 2);
+        ReflectionTestUtils.setField(generationScheduler, "queueCapacity", 10);
+        generationScheduler.initMetrics();
+        generationSessionManager = new GenerationSessionManager();
+        ReflectionTestUtils.setField(generationSessionManager, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(generationSessionManager, "generationScheduler", generationScheduler);
+        ReflectionTestUtils.setField(generationSessionManager, "generationLeaseManager", new GenerationLeaseManager() {
+            @Override
+            public Mono<GenerationLease> acquire(long appId) {
+                Sinks.One<GenerationLease> pendingLease = pendingLeases.get(appId);
+                return pendingLease != null ? pendingLease.asMono() : Mono.just(lease(appId));
+            }
+        });
+        ReflectionTestUtils.setField(generationSessionManager, "replayCapacity", 16);
+        ReflectionTestUtils.setField(generationSessionManager, "retentionSeconds", 60L);
+        ReflectionTestUtils.setField(generationSessionManager, "detachTimeoutSeconds", DETACH_TIMEOUT_SECONDS);
+        generationSessionManager.initMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationScheduler.destroy();
+    }
+
+    @Test
+    void neverAttachedSessionIsCancelled() throws Exception {
+        // 客户端在连接会话之前就断开，不会触发断开回调
+        GenerationSession session = start("生成页面");
+        await(() -> upstreamCancelled.get() && session.isFinished());
+        await(() -> meterRegistry.counter("ai_generation_session_cancel_total").count() == 1);
+        // 生成流取消后释放租约
+        await(() -> releasedLeases.get() == 1);
+    }
+
+    @Test
+    void attachedSessionKeepsRunning() throws Exception {
+        GenerationSession session = start("生成页面");
+        Disposable client = session.attach(0).subscribe(event -> {
+        }, error -> {
+        });
+        Thread.sleep(DETACH_TIMEOUT_SECONDS * 1000 + 500);
+        Assertions.assertFalse(session.isFinished());
+        // 断开后重新计时，超时仍无人重连则取消
+        client.dispose();
+        await(() -> upstreamCancelled.get() && session.isFinished());
+    }
+
+    @Test
+    void leaseWaitDoesNotHoldSchedulerSlot() throws Exception {
+        Sinks.One<GenerationLease> pendingLease = Sinks.one();
+        pendingLeases.put(1L, pendingLease);
+        GenerationSession waiting = start(1L, "生成页面");
+        waiting.attach(0).subscribe(event -> {
+        }, error -> {
+        });
+        // 等待租约期间不占用也不排队调度器的名额，其他应用照常开始
+        GenerationSession other = start(2L, "生成页面");
+        other.attach(0).subscribe(event -> {
+        }, error -> {
+        });
+        Assertions.assertEquals(1, meterRegistry.get("ai_generation_running").gauge().value());
+        Assertions.assertEquals(0, meterRegistry.get("ai_generation_waiting").gauge().value());
+
+        // 拿到租约后才获得名额
+        pendingLease.tryEmitValue(lease(1L));
+        await(() -> meterRegistry.get("ai_generation_running").gauge().value() == 2);
+        Assertions.assertFalse(waiting.isFinished());
+    }
+
+    @Test
+    void cancelWhileWaitingForLeaseReleasesNothing() throws Exception {
+        pendingLeases.put(1L, Sinks.one());
+        GenerationSession session = start(1L, "生成页面");
+        // 无人连接，超时取消排队中的会话
+        await(session::isFinished);
+        Assertions.assertEquals(0, meterRegistry.get("ai_generation_running").gauge().value());
+        Assertions.assertEquals(0, releasedLeases.get());
+        Assertions.assertEquals(0, pendingLeases.get(1L).currentSubscriberCount());
+    }
+
+    private GenerationSession start(String message) {
+        return start(1L, message);
+    }
+
+    /**
+     * 生成流结束时释放租约，与服务中的生成流一致
+     */
+    private GenerationSession start(long appId, String message) {
+        return generationSessionManager.start(appId, 1L, message,
+                lease -> Flux.<String>never()
+                        .doOnCancel(() -> upstreamCancelled.set(true))
+                        .doFinally(signalType -> lease.release()));
+    }
+
+    private GenerationLease lease(long appId) {
+        RPermitExpirableSemaphore semaphore = (RPermitExpirableSemaphore) Proxy.newProxyInstance(
+                RPermitExpirableSemaphore.class.getClassLoader(), new Class<?>[]{RPermitExpirableSemaphore.class},
+                (proxy, method, args) -> "tryRelease".equals(method.getName()) ? Boolean.TRUE : null);
+        return new GenerationLease(appId, semaphore, "permit", Disposables.single(), releasedLeases::incrementAndGet);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
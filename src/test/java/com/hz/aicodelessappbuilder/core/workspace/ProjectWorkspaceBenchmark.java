@@ -0,0 +1,142 @@
+package com.hz.aicodelessappbuilder.core.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 工具调用循环的基准测试：直接读写磁盘 vs 内存工作区 + 结束时写回
+ * 模拟一次 Vue 项目修改：在 50 个文件的项目（另有 node_modules）上读取目录、读取并修改每个文件、
+ * 新增和删除少量文件，工作区方式在最后执行一次 flush。每次调用前重新生成项目目录。
+ * 运行方式：执行 main 方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectWorkspaceBenchmark {
+
+    /**
+     * 项目源码文件数
+     */
+    @Param({"50"})
+    private int fileCount;
+
+    /**
+     * node_modules 下的文件数，工作区写回时整体移动，不应随数量变慢
+     */
+    @Param({"500"})
+    private int dependencyFileCount;
+
+    private Path baseDir;
+
+    private Path projectRoot;
+
+    private List<String> sourceFiles;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        baseDir = Files.createTempDirectory("workspace-bench");
+        sourceFiles = Stream.iterate(0, i -> i + 1).limit(fileCount)
+                .map(i -> "src/" + (i % 5 == 0 ? "views/" : "components/") + "File" + i + ".vue")
+                .toList();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupProject() throws IOException {
+        projectRoot = baseDir.resolve("vue_project_" + System.nanoTime());
+        for (String file : sourceFiles) {
+            writeFile(projectRoot.resolve(file), sourceContent(file));
+        }
+        writeFile(projectRoot.resolve("package.json"), "{\"name\":\"bench\"}");
+        for (int i = 0; i < dependencyFileCount; i++) {
+            writeFile(projectRoot.resolve("node_modules/pkg" + (i % 20) + "/index" + i + ".js"), "module.exports = " + i + ";");
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownProject() {
+        FileUtil.del(projectRoot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        FileUtil.del(baseDir);
+    }
+
+    /**
+     * 原有方式：每次工具调用直接读写磁盘，读取目录时遍历整个项目
+     */
+    @Benchmark
+    public void directDisk(Blackhole blackhole) throws IOException {
+        try (Stream<Path> walk = Files.walk(projectRoot)) {
+            blackhole.consume(walk.filter(path -> !path.toString().contains("node_modules")).count());
+        }
+        for (String file : sourceFiles) {
+            Path path = projectRoot.resolve(file);
+            String content = Files.readString(path);
+            Files.writeString(path, content.replace("old-value", "new-value"),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        for (int i = 0; i < 5; i++) {
+            writeFile(projectRoot.resolve("src/components/Added" + i + ".vue"), sourceContent("Added" + i));
+        }
+        Files.delete(projectRoot.resolve(sourceFiles.get(0)));
+        Files.delete(projectRoot.resolve(sourceFiles.get(1)));
+    }
+
+    /**
+     * 内存工作区：工具调用只访问内存，结束时原子写回
+     */
+    @Benchmark
+    public void workspace(Blackhole blackhole) throws IOException {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        blackhole.consume(workspace.listFiles(""));
+        for (String file : sourceFiles) {
+            String content = workspace.readString(file);
+            workspace.writeString(file, content.replace("old-value", "new-value"));
+        }
+        for (int i = 0; i < 5; i++) {
+            workspace.writeString("src/components/Added" + i + ".vue", sourceContent("Added" + i));
+        }
+        workspace.delete(sourceFiles.get(0));
+        workspace.delete(sourceFiles.get(1));
+        blackhole.consume(workspace.flush());
+    }
+
+    private static String sourceContent(String name) {
+        return """
+                <template>
+                  <div class="%s">{{ message }}</div>
+                </template>
+                <script setup>
+                const message = 'old-value'
+                </script>
+                """.formatted(name).repeat(20);
+    }
+
+    private static void writeFile(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProjectWorkspaceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
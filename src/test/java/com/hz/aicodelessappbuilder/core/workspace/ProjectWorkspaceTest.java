@@ -0,0 +1,224 @@
+package com.hz.aicodelessappbuilder.core.workspace;
+
+import cn.hutool.core.io.FileUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * 内存项目工作区测试
+ */
+class ProjectWorkspaceTest {
+
+    private Path baseDir;
+
+    private Path projectRoot;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        baseDir = Files.createTempDirectory("workspace-test");
+        projectRoot = baseDir.resolve("vue_project_1");
+        Files.createDirectories(projectRoot.resolve("src"));
+        Files.writeString(projectRoot.resolve("src/App.vue"), "<template>old</template>");
+        Files.writeString(projectRoot.resolve("src/Old.vue"), "old");
+        Files.createDirectories(projectRoot.resolve("node_modules/vue"));
+        Files.writeString(projectRoot.resolve("node_modules/vue/index.js"), "vue");
+    }
+
+    @AfterEach
+    void tearDown() {
+        FileUtil.del(baseDir);
+    }
+
+    @Test
+    void changesStayInMemoryUntilFlush() throws Exception {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        Assertions.assertEquals(List.of("src/App.vue", "src/Old.vue"), workspace.listFiles(""));
+        workspace.writeString("src/components/Hello.vue", "hello");
+        workspace.writeString("src/App.vue", "<template>new</template>");
+        workspace.delete("src/Old.vue");
+        Assertions.assertEquals(List.of("App.vue", "components"), workspace.listChildren("src"));
+        Assertions.assertEquals("<template>old</template>", Files.readString(projectRoot.resolve("src/App.vue")));
+        Assertions.assertFalse(Files.exists(projectRoot.resolve("src/components")));
+
+        Assertions.assertEquals(3, workspace.flush());
+        Assertions.assertEquals("<template>new</template>", Files.readString(projectRoot.resolve("src/App.vue")));
+        Assertions.assertEquals("hello", Files.readString(projectRoot.resolve("src/components/Hello.vue")));
+        Assertions.assertFalse(Files.exists(projectRoot.resolve("src/Old.vue")));
+        // 依赖目录原样保留，临时文件已清理
+        Assertions.assertEquals("vue", Files.readString(projectRoot.resolve("node_modules/vue/index.js")));
+        try (var entries = Files.list(baseDir)) {
+            Assertions.assertEquals(List.of(projectRoot), entries.toList());
+        }
+        try (var entries = Files.list(projectRoot.resolve("src"))) {
+            Assertions.assertEquals(2, entries.count());
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> workspace.readString("src/App.vue"));
+    }
+
+    @Test
+    void flushWritesInPlaceWithoutMovingProject() throws Exception {
+        Files.createDirectories(projectRoot.resolve("dist"));
+        Files.writeString(projectRoot.resolve("dist/index.html"), "built");
+        Object rootKey = Files.readAttributes(projectRoot, BasicFileAttributes.class).fileKey();
+        Object distKey = Files.readAttributes(projectRoot.resolve("dist"), BasicFileAttributes.class).fileKey();
+        // 文件改为目录
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        workspace.delete("src/Old.vue");
+        workspace.writeString("src/Old.vue/index.vue", "moved");
+        workspace.writeString("README.md", "readme");
+        workspace.flush();
+        Assertions.assertEquals("moved", Files.readString(projectRoot.resolve("src/Old.vue/index.vue")));
+        Assertions.assertEquals("<template>old</template>", Files.readString(projectRoot.resolve("src/App.vue")));
+        // 项目目录和构建产物目录没有被移走
+        Assertions.assertEquals(rootKey, Files.readAttributes(projectRoot, BasicFileAttributes.class).fileKey());
+        Assertions.assertEquals(distKey, Files.readAttributes(projectRoot.resolve("dist"), BasicFileAttributes.class).fileKey());
+        Assertions.assertEquals("built", Files.readString(projectRoot.resolve("dist/index.html")));
+
+        // 目录改为文件
+        ProjectWorkspace next = new ProjectWorkspace(projectRoot);
+        next.delete("src/Old.vue/index.vue");
+        next.writeString("src/Old.vue", "back to file");
+        next.flush();
+        Assertions.assertEquals("back to file", Files.readString(projectRoot.resolve("src/Old.vue")));
+    }
+
+    @Test
+    void emptyDirectoriesAreRemovedFromIndex() {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        workspace.writeString("src/a/b/c.js", "c");
+        Assertions.assertTrue(workspace.isDirectory("src/a/b"));
+        workspace.delete("src/a/b/c.js");
+        Assertions.assertFalse(workspace.isDirectory("src/a"));
+        Assertions.assertTrue(workspace.isDirectory("src"));
+    }
+
+    @Test
+    void failedTransactionRollsBack() {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        Assertions.assertFalse(workspace.transaction(ws -> {
+            ws.writeString("src/App.vue", "changed");
+            ws.writeString("src/views/Home.vue", "home");
+            ws.delete("src/Old.vue");
+            return false;
+        }));
+        Assertions.assertEquals("<template>old</template>", workspace.readString("src/App.vue"));
+        Assertions.assertEquals(List.of("src/App.vue", "src/Old.vue"), workspace.listFiles(""));
+        Assertions.assertFalse(workspace.isDirectory("src/views"));
+        Assertions.assertFalse(workspace.isDirty());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> workspace.transaction(ws -> {
+            ws.writeString("src/App.vue", "changed");
+            ws.writeString("node_modules/vue/index.js", "x");
+            return true;
+        }));
+        Assertions.assertEquals("<template>old</template>", workspace.readString("src/App.vue"));
+
+        Assertions.assertTrue(workspace.transaction(ws -> {
+            ws.writeString("src/App.vue", "changed");
+            return true;
+        }));
+        Assertions.assertEquals("changed", workspace.readString("src/App.vue"));
+        Assertions.assertTrue(workspace.isDirty());
+    }
+
+    @Test
+    void contentHashFollowsContent() throws Exception {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        String original = workspace.contentHash("src/App.vue");
+        Assertions.assertEquals(16, original.length());
+        Assertions.assertNull(workspace.contentHash("src/Missing.vue"));
+
+        workspace.writeString("src/App.vue", "<template>new</template>");
+        String changed = workspace.contentHash("src/App.vue");
+        Assertions.assertNotEquals(original, changed);
+        // 回滚后恢复原内容的哈希
+        workspace.transaction(ws -> {
+            ws.writeString("src/App.vue", "<template>tmp</template>");
+            Assertions.assertNotEquals(changed, ws.contentHash("src/App.vue"));
+            return false;
+        });
+        Assertions.assertEquals(changed, workspace.contentHash("src/App.vue"));
+        // 外部修改同步后重新计算
+        String oldHash = workspace.contentHash("src/Old.vue");
+        Files.writeString(projectRoot.resolve("src/Old.vue"), "changed");
+        workspace.syncFromDisk("src/Old.vue", dir -> {
+        });
+        Assertions.assertNotEquals(oldHash, workspace.contentHash("src/Old.vue"));
+        // 哈希只由内容决定，重新打开的工作区得到相同结果
+        workspace.flush();
+        Assertions.assertEquals(changed, new ProjectWorkspace(projectRoot).contentHash("src/App.vue"));
+    }
+
+    @Test
+    void walkFilesRendersIndexBreadthFirst() {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        workspace.writeString("index.html", "html");
+        workspace.writeString("src/components/Hello.vue", "hello");
+        workspace.writeString("src/.cache/tmp.js", "tmp");
+        Assertions.assertEquals(List.of("index.html", "src/App.vue", "src/Old.vue", "src/components/Hello.vue"),
+                workspace.walkFiles("", name -> name.equals(".cache")));
+        Assertions.assertEquals(List.of("src/components/Hello.vue"), workspace.walkFiles("src/components", name -> false));
+    }
+
+    @Test
+    void syncFromDiskKeepsWorkspaceChanges() throws Exception {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        workspace.writeString("src/App.vue", "<template>mine</template>");
+        Assertions.assertEquals("old", workspace.readString("src/Old.vue"));
+        // 外部修改：新增文件和目录、修改和删除文件，以及 node_modules 内的变化
+        Files.writeString(projectRoot.resolve("package-lock.json"), "{}");
+        Files.createDirectories(projectRoot.resolve("src/router"));
+        Files.writeString(projectRoot.resolve("src/router/index.js"), "router");
+        Files.writeString(projectRoot.resolve("src/App.vue"), "<template>external</template>");
+        Files.writeString(projectRoot.resolve("src/Old.vue"), "changed");
+        Files.writeString(projectRoot.resolve("node_modules/vue/extra.js"), "extra");
+
+        Assertions.assertEquals(3, workspace.syncFromDisk("", dir -> {
+        }));
+        Assertions.assertEquals(List.of("package-lock.json", "src/App.vue", "src/Old.vue", "src/router/index.js"),
+                workspace.listFiles(""));
+        Assertions.assertEquals("<template>mine</template>", workspace.readString("src/App.vue"));
+        Assertions.assertEquals("changed", workspace.readString("src/Old.vue"));
+
+        Files.delete(projectRoot.resolve("src/router/index.js"));
+        Assertions.assertEquals(1, workspace.syncFromDisk("src/router", dir -> {
+        }));
+        Assertions.assertFalse(workspace.isDirectory("src/router"));
+    }
+
+    @Test
+    void watcherPicksUpExternalChanges() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        try (ProjectWorkspaceWatcher watcher = new ProjectWorkspaceWatcher(meterRegistry.counter("changes"))) {
+            watcher.watch(workspace);
+            Files.createDirectories(projectRoot.resolve("src/router"));
+            Files.writeString(projectRoot.resolve("src/router/index.js"), "router");
+            Files.delete(projectRoot.resolve("src/Old.vue"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!workspace.isFile("src/router/index.js") || workspace.isFile("src/Old.vue")) {
+                Assertions.assertTrue(System.currentTimeMillis() < deadline, "外部修改未同步到工作区");
+                Thread.sleep(20);
+            }
+            watcher.unwatch(workspace);
+        }
+    }
+
+    @Test
+    void rejectsPathsOutsideProjectAndPreservedDirs() {
+        ProjectWorkspace workspace = new ProjectWorkspace(projectRoot);
+        Assertions.assertEquals("src/App.vue", workspace.resolve(projectRoot.resolve("src/App.vue").toString()));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> workspace.resolve("../vue_project_2/a.js"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> workspace.resolve("/etc/passwd"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> workspace.writeString("node_modules/vue/index.js", "x"));
+        Assertions.assertFalse(workspace.isFile("node_modules/vue/index.js"));
+    }
+}
@@ -0,0 +1,220 @@
+package com.hz.aicodelessappbuilder.manager;
+
+import com.hz.aicodelessappbuilder.mapper.ChatHistoryMapper;
+import com.hz.aicodelessappbuilder.model.entity.ChatHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 对话历史批量写入器测试
+ * 用记录插入内容的映射器代替数据库，可以让插入停住以观察写入期间的状态
+ */
+class ChatHistoryBatchWriterTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    private static final long RETRY_INTERVAL_MILLIS = 100;
+
+    @TempDir
+    private Path tempDir;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * 已插入的消息内容（插入时记录，写入器落库后会释放长响应的内容）
+     */
+    private final List<String> inserted = new CopyOnWriteArrayList<>();
+
+    /**
+     * 插入在此等待，测试打开后才继续
+     */
+    private final CountDownLatch insertGate = new CountDownLatch(1);
+
+    /**
+     * 为 true 时插入抛出异常，模拟数据库不可用
+     */
+    private final AtomicBoolean failInserts = new AtomicBoolean();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ChatHistoryBatchWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        insertGate.countDown();
+        if (writer != null) {
+            writer.destroy();
+        }
+    }
+
+    @Test
+    void pendingMessagesAreReadableUntilFlushed() throws Exception {
+        startWriter(10, 200, 50, true);
+        Path contentFile = Files.writeString(tempDir.resolve("response.txt"), "长响应内容", StandardCharsets.UTF_8);
+        writer.submit(message(1L, "你好"));
+        writer.submit(message(1L, null), contentFile);
+        // 插入停住时仍能读到未落库的消息，临时文件中的内容也能读到
+        await(() -> ReflectionTestUtils.getField(writer, "queue") instanceof Collection<?> queue && queue.isEmpty());
+        Assertions.assertEquals(List.of("你好", "长响应内容"),
+                writer.getPendingMessages(1L).stream().map(ChatHistory::getMessage).toList());
+        Assertions.assertTrue(writer.getPendingMessages(2L).isEmpty());
+
+        insertGate.countDown();
+        await(() -> inserted.size() == 2);
+        Assertions.assertEquals(List.of("你好", "长响应内容"), inserted);
+        await(() -> writer.getPendingMessages(1L).isEmpty());
+        Assertions.assertFalse(Files.exists(contentFile));
+    }
+
+    @Test
+    void discardStopsMessagesAlreadyTakenByFlushThread() throws Exception {
+        // 写线程取到第一条后等待一个较长的间隔凑批，丢弃发生在这段时间内
+        startWriter(10, 200, 1000, false);
+        Path contentFile = Files.writeString(tempDir.resolve("response.txt"), "长响应内容", StandardCharsets.UTF_8);
+        writer.submit(message(1L, "你好"));
+        writer.submit(message(1L, null), contentFile);
+        await(() -> ReflectionTestUtils.getField(writer, "queue") instanceof Collection<?> queue && queue.isEmpty());
+        writer.discard(1L);
+        Assertions.assertTrue(writer.getPendingMessages(1L).isEmpty());
+        // 丢弃之后提交的消息照常写入
+        writer.submit(message(1L, "新的对话"));
+        await(() -> inserted.size() == 1);
+        Thread.sleep(200);
+        Assertions.assertEquals(List.of("新的对话"), inserted);
+        Assertions.assertFalse(Files.exists(contentFile));
+    }
+
+    @Test
+    void fullQueueMakesCallerWait() throws Exception {
+        // 每批一条，第一条停在插入处，第二条占满队列
+        startWriter(1, 1, 50, true);
+        writer.submit(message(1L, "0"));
+        await(() -> ReflectionTestUtils.getField(writer, "queue") instanceof Collection<?> queue && queue.isEmpty());
+        writer.submit(message(1L, "1"));
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread caller = new Thread(() -> {
+            writer.submit(message(1L, "2"));
+            submitted.countDown();
+        });
+        caller.start();
+        // 调用方等待入队，期间消息仍可读到
+        Assertions.assertFalse(submitted.await(OFFER_TIMEOUT_MILLIS / 5, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(3, writer.getPendingMessages(1L).size());
+
+        // 队列腾出空间后入队，不走同步写入
+        insertGate.countDown();
+        Assertions.assertTrue(submitted.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+        await(() -> inserted.size() == 3);
+        Assertions.assertEquals(List.of("0", "1", "2"), inserted);
+        Assertions.assertEquals(0, meterRegistry.counter("ai_chat_history_sync_fallback_total").count());
+        await(() -> writer.getPendingMessages(1L).isEmpty());
+    }
+
+    @Test
+    void failedRowsStayPendingUntilRetrySucceeds() throws Exception {
+        startWriter(10, 200, 50, false);
+        failInserts.set(true);
+        writer.submit(message(1L, "你好"));
+        await(() -> meterRegistry.get("ai_chat_history_retry_depth").gauge().value() == 1);
+        // 批量和逐条写入都失败，消息仍可读到
+        Assertions.assertEquals(List.of("你好"),
+                writer.getPendingMessages(1L).stream().map(ChatHistory::getMessage).toList());
+
+        failInserts.set(false);
+        await(() -> inserted.size() == 1);
+        Assertions.assertEquals(List.of("你好"), inserted);
+        await(() -> writer.getPendingMessages(1L).isEmpty());
+        Assertions.assertEquals(0, meterRegistry.get("ai_chat_history_retry_depth").gauge().value());
+    }
+
+    private void startWriter(int queueCapacity, int batchSize, long flushIntervalMillis, boolean gated) {
+        if (!gated) {
+            insertGate.countDown();
+        }
+        writer = new ChatHistoryBatchWriter();
+        ReflectionTestUtils.setField(writer, "chatHistoryMapper", recordingMapper());
+        ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writer, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(writer, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writer, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(writer, "offerTimeoutMillis", OFFER_TIMEOUT_MILLIS);
+        ReflectionTestUtils.setField(writer, "retryIntervalMillis", RETRY_INTERVAL_MILLIS);
+        writer.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ChatHistoryMapper recordingMapper() {
+        return (ChatHistoryMapper) Proxy.newProxyInstance(ChatHistoryMapper.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryMapper.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "insertBatch" -> {
+                            Assertions.assertTrue(insertGate.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+                            failIfRequested();
+                            ((Collection<ChatHistory>) args[0]).forEach(chatHistory -> inserted.add(chatHistory.getMessage()));
+                            return ((Collection<?>) args[0]).size();
+                        }
+                        case "insert" -> {
+                            Assertions.assertTrue(insertGate.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+                            failIfRequested();
+                            inserted.add(((ChatHistory) args[0]).getMessage());
+                            return 1;
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "toString" -> {
+                            return "recordingMapper";
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private void failIfRequested() {
+        if (failInserts.get()) {
+            throw new IllegalStateException("数据库不可用");
+        }
+    }
+
+    private ChatHistory message(long appId, String message) {
+        return ChatHistory.builder()
+                .id(nextId.getAndIncrement())
+                .appId(appId)
+                .message(message)
+                .messageType("user")
+                .userId(1L)
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.hz.aicodelessappbuilder.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.hz.aicodelessappbuilder.ai.AiAppNameGeneratorService;
+import com.hz.aicodelessappbuilder.ai.routing.FastPathCodeGenTypeRouter;
+import com.hz.aicodelessappbuilder.ai.routing.RoutingDecision;
+import com.hz.aicodelessappbuilder.model.dto.app.AppAddRequest;
+import com.hz.aicodelessappbuilder.model.entity.App;
+import com.hz.aicodelessappbuilder.model.entity.User;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeEnum;
+import com.hz.aicodelessappbuilder.model.enums.CodeGenTypeSourceEnum;
+import com.mybatisflex.core.query.QueryWrapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 创建应用时模型调用的截止时间测试
+ * 名称生成和类型路由换成可控制耗时的实现，入库和更新只记录不落库
+ */
+class AppServiceImplTest {
+
+    private static final long APP_ID = 1L;
+
+    private static final long DEADLINE_MILLIS = 300;
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private static final String INIT_PROMPT = "  做一个记录每日待办事项并支持提醒的网站  ";
+
+    private static final String PLACEHOLDER_NAME = StrUtil.maxLength(StrUtil.trim(INIT_PROMPT), 12);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<App> saved = new CopyOnWriteArrayList<>();
+
+    private final List<App> updated = new CopyOnWriteArrayList<>();
+
+    /**
+     * 阻塞中的模型调用在此等待，测试打开后才返回
+     */
+    private final CountDownLatch modelGate = new CountDownLatch(1);
+
+    /**
+     * 阻塞中的模型调用是否被中断
+     */
+    private final AtomicBoolean interrupted = new AtomicBoolean(false);
+
+    private AppServiceImpl appService;
+
+    @BeforeEach
+    void setUp() {
+        appService = new AppServiceImpl() {
+            @Override
+            public boolean save(App app) {
+                app.setId(APP_ID);
+                saved.add(app);
+                return true;
+            }
+
+            @Override
+            public boolean update(App app, QueryWrapper queryWrapper) {
+                updated.add(app);
+                return true;
+            }
+        };
+        ReflectionTestUtils.setField(appService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(appService, "createAppDeadlineMs", DEADLINE_MILLIS);
+        appService.initMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        modelGate.countDown();
+        appService.destroy();
+    }
+
+    @Test
+    void routingPastDeadlineFallsBackAndIsCancelled() throws Exception {
+        stubModels(() -> "待办助手", () -> new RoutingDecision(blockOnGate(), CodeGenTypeSourceEnum.LLM, null));
+        long startNanos = System.nanoTime();
+        createApp();
+        // 不等待超过截止时间的路由，默认使用 HTML 类型，来源记为默认值
+        Assertions.assertTrue(System.nanoTime() - startNanos < TimeUnit.MILLISECONDS.toNanos(DEADLINE_MILLIS * 3));
+        App app = savedApp();
+        Assertions.assertEquals(CodeGenTypeEnum.HTML.getValue(), app.getCodeGenType());
+        Assertions.assertEquals(CodeGenTypeSourceEnum.FALLBACK.getValue(), app.getCodeGenTypeSource());
+        Assertions.assertEquals("待办助手", app.getAppName());
+        // 超时的路由调用被中断
+        await(interrupted::get);
+    }
+
+    @Test
+    void invalidRoutingResultFallsBack() {
+        stubModels(() -> "待办助手", () -> new RoutingDecision("请描述具体需求", CodeGenTypeSourceEnum.LLM, null));
+        createApp();
+        App app = savedApp();
+        Assertions.assertEquals(CodeGenTypeEnum.HTML.getValue(), app.getCodeGenType());
+        Assertions.assertEquals(CodeGenTypeSourceEnum.FALLBACK.getValue(), app.getCodeGenTypeSource());
+    }
+
+    @Test
+    void slowNameIsDeferred() throws Exception {
+        stubModels(() -> {
+            blockOnGate();
+            return "待办助手";
+        }, () -> new RoutingDecision(CodeGenTypeEnum.VUE_PROJECT.name(), CodeGenTypeSourceEnum.LLM, null));
+        createApp();
+        // 路由完成时名称还没生成，先以占位名称入库
+        App app = savedApp();
+        Assertions.assertEquals(PLACEHOLDER_NAME, app.getAppName());
+        Assertions.assertEquals(CodeGenTypeEnum.VUE_PROJECT.getValue(), app.getCodeGenType());
+        Assertions.assertEquals(CodeGenTypeSourceEnum.LLM.getValue(), app.getCodeGenTypeSource());
+        Assertions.assertEquals(1, meterRegistry.counter("ai_app_name_deferred_total").count());
+        // 截止时间前生成完成后更新名称
+        modelGate.countDown();
+        await(() -> updated.size() == 1);
+        Assertions.assertEquals("待办助手", updated.get(0).getAppName());
+    }
+
+    @Test
+    void deferredNamePastDeadlineIsCancelled() throws Exception {
+        stubModels(() -> {
+            blockOnGate();
+            return "待办助手";
+        }, () -> new RoutingDecision(CodeGenTypeEnum.MULTI_FILE.name(), CodeGenTypeSourceEnum.LLM, null));
+        createApp();
+        Assertions.assertEquals(PLACEHOLDER_NAME, savedApp().getAppName());
+        // 截止时间到达后中断名称生成，保留占位名称
+        await(interrupted::get);
+        modelGate.countDown();
+        Thread.sleep(100);
+        Assertions.assertTrue(updated.isEmpty());
+    }
+
+    private void stubModels(Supplier<String> appNameGenerator, Supplier<RoutingDecision> router) {
+        ReflectionTestUtils.setField(appService, "aiAppNameGeneratorService",
+                (AiAppNameGeneratorService) userPrompt -> appNameGenerator.get());
+        ReflectionTestUtils.setField(appService, "fastPathCodeGenTypeRouter", new FastPathCodeGenTypeRouter() {
+            @Override
+            public RoutingDecision route(String userPrompt) {
+                return router.get();
+            }
+        });
+    }
+
+    /**
+     * 模拟耗时的模型调用，阻塞到测试打开闸门或线程被中断
+     */
+    private String blockOnGate() {
+        try {
+            Assertions.assertTrue(modelGate.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS));
+            return CodeGenTypeEnum.VUE_PROJECT.name();
+        } catch (InterruptedException e) {
+            interrupted.set(true);
+            throw new IllegalStateException("模型调用被中断", e);
+        }
+    }
+
+    private void createApp() {
+        AppAddRequest appAddRequest = new AppAddRequest();
+        appAddRequest.setInitPrompt(INIT_PROMPT);
+        User loginUser = new User();
+        loginUser.setId(1L);
+        Assertions.assertEquals(APP_ID, appService.createApp(appAddRequest, loginUser));
+    }
+
+    private App savedApp() {
+        Assertions.assertEquals(1, saved.size());
+        return saved.get(0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}
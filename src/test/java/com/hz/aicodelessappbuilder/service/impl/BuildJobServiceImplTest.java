@@ -0,0 +1,124 @@
+package com.hz.aicodelessappbuilder.service.impl;
+
+import com.hz.aicodelessappbuilder.core.builder.BuildEvent;
+import com.hz.aicodelessappbuilder.core.builder.BuildJob;
+import com.hz.aicodelessappbuilder.core.builder.VueProjectBuilder;
+import com.hz.aicodelessappbuilder.core.workspace.ProjectWorkspaceManager;
+import com.hz.aicodelessappbuilder.model.enums.BuildStatusEnum;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 构建任务服务测试
+ * npm 构建换成可控制结束时间的实现，源码快照和发布 dist 不落盘
+ */
+class BuildJobServiceImplTest {
+
+    private static final long AWAIT_MILLIS = 5000;
+
+    private static final long BLOCKED_APP_ID = 1L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * BLOCKED_APP_ID 的第一次构建在此等待，测试打开后才结束
+     */
+    private final CountDownLatch buildGate = new CountDownLatch(1);
+
+    private final AtomicBoolean firstBlockedBuild = new AtomicBoolean(true);
+
+    /**
+     * 开始构建的应用，按开始顺序
+     */
+    private final List<Long> startedApps = new CopyOnWriteArrayList<>();
+
+    private BuildJobServiceImpl buildJobService;
+
+    @BeforeEach
+    void setUp() {
+        buildJobService = new BuildJobServiceImpl();
+        ReflectionTestUtils.setField(buildJobService, "vueProjectBuilder", new VueProjectBuilder() {
+            @Override
+            public boolean buildProject(String projectPath, Consumer<BuildEvent> eventConsumer) {
+                long appId = Long.parseLong(projectPath.substring(projectPath.lastIndexOf('_') + 1));
+                startedApps.add(appId);
+                if (appId == BLOCKED_APP_ID && firstBlockedBuild.getAndSet(false)) {
+                    try {
+                        return buildGate.await(AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+        ReflectionTestUtils.setField(buildJobService, "projectWorkspaceManager", new ProjectWorkspaceManager() {
+            @Override
+            public long snapshotSources(long appId, Path buildDir) {
+                return 1;
+            }
+
+            @Override
+            public void publishBuildOutput(long appId, Path distDir) {
+            }
+
+            @Override
+            public long getSourceVersion(long appId) {
+                return 1;
+            }
+        });
+        ReflectionTestUtils.setField(buildJobService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(buildJobService, "workerCount", 2);
+        ReflectionTestUtils.setField(buildJobService, "queueCapacity", 4);
+        ReflectionTestUtils.setField(buildJobService, "retentionSeconds", 60L);
+        buildJobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        buildGate.countDown();
+        buildJobService.destroy();
+    }
+
+    @Test
+    void followUpBuildDoesNotHoldWorker() throws Exception {
+        BuildJob first = buildJobService.submitBuild(BLOCKED_APP_ID);
+        await(() -> first.getStatus() == BuildStatusEnum.RUNNING);
+        // 同一应用的后续构建等待前序任务结束，保持排队状态
+        BuildJob followUp = buildJobService.submitBuild(BLOCKED_APP_ID);
+        Assertions.assertNotSame(first, followUp);
+        Assertions.assertEquals(1, meterRegistry.get("ai_build_queue_depth").gauge().value());
+        // 另一个工作线程仍可构建其他应用
+        BuildJob other = buildJobService.submitBuild(2L);
+        Assertions.assertTrue(other.await(AWAIT_MILLIS / 1000));
+        Assertions.assertEquals(BuildStatusEnum.QUEUED, followUp.getStatus());
+
+        buildGate.countDown();
+        Assertions.assertTrue(followUp.await(AWAIT_MILLIS / 1000));
+        Assertions.assertEquals(List.of(BLOCKED_APP_ID, 2L, BLOCKED_APP_ID), startedApps);
+        Assertions.assertEquals(0, meterRegistry.get("ai_build_queue_depth").gauge().value());
+        Assertions.assertEquals(3, meterRegistry.get("ai_build_duration_seconds").tag("status", "success").timer().count());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+}